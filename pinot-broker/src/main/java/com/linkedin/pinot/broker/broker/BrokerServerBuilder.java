@@ -41,10 +41,12 @@ import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.core.query.reduce.DefaultReduceService;
 import com.linkedin.pinot.requestHandler.BrokerRequestHandler;
+import com.linkedin.pinot.requestHandler.BrokerResultCache;
 import com.linkedin.pinot.routing.CfgBasedRouting;
 import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
 import com.linkedin.pinot.routing.RoutingTable;
 import com.linkedin.pinot.routing.TimeBoundaryService;
+import com.linkedin.pinot.transport.common.CompressionCodec;
 import com.linkedin.pinot.transport.conf.TransportClientConf;
 import com.linkedin.pinot.transport.conf.TransportClientConf.RoutingMode;
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
@@ -66,9 +68,16 @@ public class BrokerServerBuilder {
   private static final String CLIENT_CONFIG_PREFIX = "pinot.broker.client";
   private static final String METRICS_CONFIG_PREFIX = "pinot.broker.metrics";
   private static final String BROKER_TIME_OUT_CONFIG = "pinot.broker.time.out";
+  private static final String BROKER_STREAMING_REDUCE_CONFIG = "pinot.broker.reduce.streaming";
+  private static final String BROKER_RESULT_CACHE_MAX_ENTRIES_CONFIG = "pinot.broker.resultCache.maxEntries";
+  private static final String BROKER_RESULT_CACHE_OFFLINE_TTL_CONFIG = "pinot.broker.resultCache.offlineTtlMs";
+  private static final String BROKER_RESULT_CACHE_REALTIME_TTL_CONFIG = "pinot.broker.resultCache.realtimeTtlMs";
+  private static final String BROKER_RESPONSE_COMPRESSION_CODEC_CONFIG = "pinot.broker.response.compression.codec";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerServerBuilder.class);
   private static final long DEFAULT_BROKER_TIME_OUT = 10 * 1000L;
+  private static final long DEFAULT_BROKER_RESULT_CACHE_OFFLINE_TTL = 60 * 60 * 1000L;
+  private static final long DEFAULT_BROKER_RESULT_CACHE_REALTIME_TTL = 10 * 1000L;
 
   // Connection Pool Related
   private KeyedPool<ServerInstance, NettyClientConnection> _connPool;
@@ -161,7 +170,7 @@ public class BrokerServerBuilder {
     }
 
     // Setup ScatterGather
-    _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool);
+    _scatterGather = new ScatterGatherImpl(_connPool, _requestSenderPool, _poolTimeoutExecutor);
 
     // Setup Broker Request Handler
     long brokerTimeOut = DEFAULT_BROKER_TIME_OUT;
@@ -174,9 +183,40 @@ public class BrokerServerBuilder {
     }
     LOGGER.info("Broker timeout is - " + brokerTimeOut + " ms");
 
+    boolean streamingReduce = _config.getBoolean(BROKER_STREAMING_REDUCE_CONFIG, false);
+    LOGGER.info("Broker streaming reduce is - " + (streamingReduce ? "enabled" : "disabled"));
+    LOGGER.info("Broker speculative requests config is - " + conf.getSpeculativeRequest());
+
+    // Servers only compress responses when asked to, which is disabled by default
+    CompressionCodec responseCompressionCodec = CompressionCodec.NONE;
+    String responseCompressionCodecName = _config.getString(BROKER_RESPONSE_COMPRESSION_CODEC_CONFIG);
+    if (responseCompressionCodecName != null) {
+      try {
+        responseCompressionCodec = CompressionCodec.valueOf(responseCompressionCodecName.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Unsupported response compression codec {}, responses will not be compressed",
+            responseCompressionCodecName);
+      }
+    }
+    LOGGER.info("Broker response compression codec is - " + responseCompressionCodec);
+
+    // Result cache is disabled unless a maximum number of entries is configured
+    BrokerResultCache resultCache = null;
+    int resultCacheMaxEntries = _config.getInt(BROKER_RESULT_CACHE_MAX_ENTRIES_CONFIG, 0);
+    if (resultCacheMaxEntries > 0) {
+      long offlineTtlMs =
+          _config.getLong(BROKER_RESULT_CACHE_OFFLINE_TTL_CONFIG, DEFAULT_BROKER_RESULT_CACHE_OFFLINE_TTL);
+      long realtimeTtlMs =
+          _config.getLong(BROKER_RESULT_CACHE_REALTIME_TTL_CONFIG, DEFAULT_BROKER_RESULT_CACHE_REALTIME_TTL);
+      resultCache = new BrokerResultCache(resultCacheMaxEntries, offlineTtlMs, realtimeTtlMs);
+      LOGGER.info("Broker result cache is - enabled with " + resultCacheMaxEntries + " entries, offline TTL "
+          + offlineTtlMs + " ms, realtime TTL " + realtimeTtlMs + " ms");
+    }
+
     _requestHandler =
         new BrokerRequestHandler(_routingTable, _timeBoundaryService, _scatterGather, new DefaultReduceService(),
-            _brokerMetrics, brokerTimeOut);
+            _brokerMetrics, brokerTimeOut, streamingReduce, conf.getSpeculativeRequest(),
+            conf.getCfgBasedRouting(), resultCache, responseCompressionCodec);
 
     //TODO: Start Broker Server : Code goes here. Broker Server part should use request handler to submit requests
 
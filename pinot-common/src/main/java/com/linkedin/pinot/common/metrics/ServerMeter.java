@@ -26,7 +26,11 @@ public enum ServerMeter implements AbstractMetrics.Meter {
   QUERIES("queries", true),
   UNCAUGHT_EXCEPTIONS("exceptions", true),
   RESPONSE_SERIALIZATION_EXCEPTIONS("exceptions", true),
-  QUERY_EXECUTION_EXCEPTIONS("exceptions", false);
+  RESPONSE_COMPRESSION_EXCEPTIONS("exceptions", true),
+  QUERY_EXECUTION_EXCEPTIONS("exceptions", false),
+  QUERIES_REJECTED("queries", false),
+  SCHEDULING_TIMEOUT_EXCEPTIONS("exceptions", false),
+  NUM_GROUPS_TRIMMED("groups", false);
 
   private final String meterName;
   private final String unit;
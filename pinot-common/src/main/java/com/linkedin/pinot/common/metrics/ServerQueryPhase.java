@@ -24,10 +24,12 @@ import com.linkedin.pinot.common.Utils;
 */
 public enum ServerQueryPhase implements AbstractMetrics.QueryPhase {
   TOTAL_QUERY_TIME,
+  SCHEDULER_WAIT,
   SEGMENT_PRUNING,
   BUILD_QUERY_PLAN,
   QUERY_PLAN_EXECUTION,
   RESPONSE_SERIALIZATION,
+  RESPONSE_COMPRESSION,
   QUERY_PROCESSING;
 
   private final String queryPhaseName;
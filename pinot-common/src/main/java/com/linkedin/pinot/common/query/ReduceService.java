@@ -50,4 +50,14 @@ public interface ReduceService {
   public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
       Map<ServerInstance, DataTable> instanceResponseMap);
 
+  /**
+   * Creates a reducer which folds the DataTables of the given request in as they arrive, and gives the same
+   * BrokerResponse as {@link #reduceOnDataTable(BrokerRequest, Map)} on all of them.
+   *
+   *
+   * @param brokerRequest
+   * @return StreamingReducer
+   */
+  public StreamingReducer getStreamingReducer(BrokerRequest brokerRequest);
+
 }
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.query;
+
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Reduces the DataTables of one broker request one at a time, as they arrive from the server instances, into a running
+ * merged state. Only the merged state and the DataTable being folded in have to be kept in memory.
+ *
+ * Instances are not thread safe, DataTables are expected to be folded in by a single thread.
+ */
+public interface StreamingReducer {
+  /**
+   * Folds the DataTable gathered from the given server instance into the running state.
+   *
+   * @param serverInstance
+   * @param instanceResponse
+   */
+  public void reduce(ServerInstance serverInstance, DataTable instanceResponse);
+
+  /**
+   * Builds the broker response from everything reduced so far. No more DataTables should be folded in afterwards.
+   *
+   * @return BrokerResponse
+   */
+  public BrokerResponse getBrokerResponse();
+}
@@ -47,6 +47,9 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
   private static final org.apache.thrift.protocol.TField QUERY_FIELD_DESC = new org.apache.thrift.protocol.TField("query", org.apache.thrift.protocol.TType.STRUCT, (short)2);
   private static final org.apache.thrift.protocol.TField SEARCH_SEGMENTS_FIELD_DESC = new org.apache.thrift.protocol.TField("searchSegments", org.apache.thrift.protocol.TType.LIST, (short)3);
   private static final org.apache.thrift.protocol.TField ENABLE_TRACE_FIELD_DESC = new org.apache.thrift.protocol.TField("enableTrace", org.apache.thrift.protocol.TType.BOOL, (short)4);
+  private static final org.apache.thrift.protocol.TField DATA_TABLE_VERSION_FIELD_DESC = new org.apache.thrift.protocol.TField("dataTableVersion", org.apache.thrift.protocol.TType.I32, (short)5);
+  private static final org.apache.thrift.protocol.TField TIMEOUT_MS_FIELD_DESC = new org.apache.thrift.protocol.TField("timeoutMs", org.apache.thrift.protocol.TType.I64, (short)6);
+  private static final org.apache.thrift.protocol.TField RESPONSE_COMPRESSION_CODEC_FIELD_DESC = new org.apache.thrift.protocol.TField("responseCompressionCodec", org.apache.thrift.protocol.TType.I32, (short)7);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -58,13 +61,19 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
   private BrokerRequest query; // required
   private List<String> searchSegments; // optional
   private boolean enableTrace; // optional
+  private int dataTableVersion; // optional
+  private long timeoutMs; // optional
+  private int responseCompressionCodec; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     REQUEST_ID((short)1, "requestId"),
     QUERY((short)2, "query"),
     SEARCH_SEGMENTS((short)3, "searchSegments"),
-    ENABLE_TRACE((short)4, "enableTrace");
+    ENABLE_TRACE((short)4, "enableTrace"),
+    DATA_TABLE_VERSION((short)5, "dataTableVersion"),
+    TIMEOUT_MS((short)6, "timeoutMs"),
+    RESPONSE_COMPRESSION_CODEC((short)7, "responseCompressionCodec");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -87,6 +96,12 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
           return SEARCH_SEGMENTS;
         case 4: // ENABLE_TRACE
           return ENABLE_TRACE;
+        case 5: // DATA_TABLE_VERSION
+          return DATA_TABLE_VERSION;
+        case 6: // TIMEOUT_MS
+          return TIMEOUT_MS;
+        case 7: // RESPONSE_COMPRESSION_CODEC
+          return RESPONSE_COMPRESSION_CODEC;
         default:
           return null;
       }
@@ -129,8 +144,11 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
   // isset id assignments
   private static final int __REQUESTID_ISSET_ID = 0;
   private static final int __ENABLETRACE_ISSET_ID = 1;
+  private static final int __DATATABLEVERSION_ISSET_ID = 2;
+  private static final int __TIMEOUTMS_ISSET_ID = 3;
+  private static final int __RESPONSECOMPRESSIONCODEC_ISSET_ID = 4;
   private byte __isset_bitfield = 0;
-  private static final _Fields optionals[] = {_Fields.SEARCH_SEGMENTS,_Fields.ENABLE_TRACE};
+  private static final _Fields optionals[] = {_Fields.SEARCH_SEGMENTS,_Fields.ENABLE_TRACE,_Fields.DATA_TABLE_VERSION,_Fields.TIMEOUT_MS,_Fields.RESPONSE_COMPRESSION_CODEC};
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -143,6 +161,12 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
             new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING))));
     tmpMap.put(_Fields.ENABLE_TRACE, new org.apache.thrift.meta_data.FieldMetaData("enableTrace", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
+    tmpMap.put(_Fields.DATA_TABLE_VERSION, new org.apache.thrift.meta_data.FieldMetaData("dataTableVersion", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.TIMEOUT_MS, new org.apache.thrift.meta_data.FieldMetaData("timeoutMs", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
+    tmpMap.put(_Fields.RESPONSE_COMPRESSION_CODEC, new org.apache.thrift.meta_data.FieldMetaData("responseCompressionCodec", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(InstanceRequest.class, metaDataMap);
   }
@@ -174,6 +198,9 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       this.searchSegments = __this__searchSegments;
     }
     this.enableTrace = other.enableTrace;
+    this.dataTableVersion = other.dataTableVersion;
+    this.timeoutMs = other.timeoutMs;
+    this.responseCompressionCodec = other.responseCompressionCodec;
   }
 
   public InstanceRequest deepCopy() {
@@ -188,6 +215,12 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     this.searchSegments = null;
     setEnableTraceIsSet(false);
     this.enableTrace = false;
+    setDataTableVersionIsSet(false);
+    this.dataTableVersion = 0;
+    setTimeoutMsIsSet(false);
+    this.timeoutMs = 0;
+    setResponseCompressionCodecIsSet(false);
+    this.responseCompressionCodec = 0;
   }
 
   public long getRequestId() {
@@ -295,6 +328,72 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __ENABLETRACE_ISSET_ID, value);
   }
 
+  public int getDataTableVersion() {
+    return this.dataTableVersion;
+  }
+
+  public void setDataTableVersion(int dataTableVersion) {
+    this.dataTableVersion = dataTableVersion;
+    setDataTableVersionIsSet(true);
+  }
+
+  public void unsetDataTableVersion() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __DATATABLEVERSION_ISSET_ID);
+  }
+
+  /** Returns true if field dataTableVersion is set (has been assigned a value) and false otherwise */
+  public boolean isSetDataTableVersion() {
+    return EncodingUtils.testBit(__isset_bitfield, __DATATABLEVERSION_ISSET_ID);
+  }
+
+  public void setDataTableVersionIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __DATATABLEVERSION_ISSET_ID, value);
+  }
+
+  public long getTimeoutMs() {
+    return this.timeoutMs;
+  }
+
+  public void setTimeoutMs(long timeoutMs) {
+    this.timeoutMs = timeoutMs;
+    setTimeoutMsIsSet(true);
+  }
+
+  public void unsetTimeoutMs() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __TIMEOUTMS_ISSET_ID);
+  }
+
+  /** Returns true if field timeoutMs is set (has been assigned a value) and false otherwise */
+  public boolean isSetTimeoutMs() {
+    return EncodingUtils.testBit(__isset_bitfield, __TIMEOUTMS_ISSET_ID);
+  }
+
+  public void setTimeoutMsIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __TIMEOUTMS_ISSET_ID, value);
+  }
+
+  public int getResponseCompressionCodec() {
+    return this.responseCompressionCodec;
+  }
+
+  public void setResponseCompressionCodec(int responseCompressionCodec) {
+    this.responseCompressionCodec = responseCompressionCodec;
+    setResponseCompressionCodecIsSet(true);
+  }
+
+  public void unsetResponseCompressionCodec() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __RESPONSECOMPRESSIONCODEC_ISSET_ID);
+  }
+
+  /** Returns true if field responseCompressionCodec is set (has been assigned a value) and false otherwise */
+  public boolean isSetResponseCompressionCodec() {
+    return EncodingUtils.testBit(__isset_bitfield, __RESPONSECOMPRESSIONCODEC_ISSET_ID);
+  }
+
+  public void setResponseCompressionCodecIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __RESPONSECOMPRESSIONCODEC_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case REQUEST_ID:
@@ -329,6 +428,30 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       }
       break;
 
+    case DATA_TABLE_VERSION:
+      if (value == null) {
+        unsetDataTableVersion();
+      } else {
+        setDataTableVersion((Integer)value);
+      }
+      break;
+
+    case TIMEOUT_MS:
+      if (value == null) {
+        unsetTimeoutMs();
+      } else {
+        setTimeoutMs((Long)value);
+      }
+      break;
+
+    case RESPONSE_COMPRESSION_CODEC:
+      if (value == null) {
+        unsetResponseCompressionCodec();
+      } else {
+        setResponseCompressionCodec((Integer)value);
+      }
+      break;
+
     }
   }
 
@@ -346,6 +469,15 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     case ENABLE_TRACE:
       return Boolean.valueOf(isEnableTrace());
 
+    case DATA_TABLE_VERSION:
+      return Integer.valueOf(getDataTableVersion());
+
+    case TIMEOUT_MS:
+      return Long.valueOf(getTimeoutMs());
+
+    case RESPONSE_COMPRESSION_CODEC:
+      return Integer.valueOf(getResponseCompressionCodec());
+
     }
     throw new IllegalStateException();
   }
@@ -365,6 +497,12 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       return isSetSearchSegments();
     case ENABLE_TRACE:
       return isSetEnableTrace();
+    case DATA_TABLE_VERSION:
+      return isSetDataTableVersion();
+    case TIMEOUT_MS:
+      return isSetTimeoutMs();
+    case RESPONSE_COMPRESSION_CODEC:
+      return isSetResponseCompressionCodec();
     }
     throw new IllegalStateException();
   }
@@ -418,6 +556,33 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         return false;
     }
 
+    boolean this_present_dataTableVersion = true && this.isSetDataTableVersion();
+    boolean that_present_dataTableVersion = true && that.isSetDataTableVersion();
+    if (this_present_dataTableVersion || that_present_dataTableVersion) {
+      if (!(this_present_dataTableVersion && that_present_dataTableVersion))
+        return false;
+      if (this.dataTableVersion != that.dataTableVersion)
+        return false;
+    }
+
+    boolean this_present_timeoutMs = true && this.isSetTimeoutMs();
+    boolean that_present_timeoutMs = true && that.isSetTimeoutMs();
+    if (this_present_timeoutMs || that_present_timeoutMs) {
+      if (!(this_present_timeoutMs && that_present_timeoutMs))
+        return false;
+      if (this.timeoutMs != that.timeoutMs)
+        return false;
+    }
+
+    boolean this_present_responseCompressionCodec = true && this.isSetResponseCompressionCodec();
+    boolean that_present_responseCompressionCodec = true && that.isSetResponseCompressionCodec();
+    if (this_present_responseCompressionCodec || that_present_responseCompressionCodec) {
+      if (!(this_present_responseCompressionCodec && that_present_responseCompressionCodec))
+        return false;
+      if (this.responseCompressionCodec != that.responseCompressionCodec)
+        return false;
+    }
+
     return true;
   }
 
@@ -445,6 +610,21 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
     if (present_enableTrace)
       list.add(enableTrace);
 
+    boolean present_dataTableVersion = true && (isSetDataTableVersion());
+    list.add(present_dataTableVersion);
+    if (present_dataTableVersion)
+      list.add(dataTableVersion);
+
+    boolean present_timeoutMs = true && (isSetTimeoutMs());
+    list.add(present_timeoutMs);
+    if (present_timeoutMs)
+      list.add(timeoutMs);
+
+    boolean present_responseCompressionCodec = true && (isSetResponseCompressionCodec());
+    list.add(present_responseCompressionCodec);
+    if (present_responseCompressionCodec)
+      list.add(responseCompressionCodec);
+
     return list.hashCode();
   }
 
@@ -496,6 +676,36 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetDataTableVersion()).compareTo(other.isSetDataTableVersion());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetDataTableVersion()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.dataTableVersion, other.dataTableVersion);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = Boolean.valueOf(isSetTimeoutMs()).compareTo(other.isSetTimeoutMs());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetTimeoutMs()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.timeoutMs, other.timeoutMs);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = Boolean.valueOf(isSetResponseCompressionCodec()).compareTo(other.isSetResponseCompressionCodec());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetResponseCompressionCodec()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.responseCompressionCodec, other.responseCompressionCodec);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -543,6 +753,24 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       sb.append(this.enableTrace);
       first = false;
     }
+    if (isSetDataTableVersion()) {
+      if (!first) sb.append(", ");
+      sb.append("dataTableVersion:");
+      sb.append(this.dataTableVersion);
+      first = false;
+    }
+    if (isSetTimeoutMs()) {
+      if (!first) sb.append(", ");
+      sb.append("timeoutMs:");
+      sb.append(this.timeoutMs);
+      first = false;
+    }
+    if (isSetResponseCompressionCodec()) {
+      if (!first) sb.append(", ");
+      sb.append("responseCompressionCodec:");
+      sb.append(this.responseCompressionCodec);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -642,6 +870,30 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 5: // DATA_TABLE_VERSION
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.dataTableVersion = iprot.readI32();
+              struct.setDataTableVersionIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 6: // TIMEOUT_MS
+            if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+              struct.timeoutMs = iprot.readI64();
+              struct.setTimeoutMsIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 7: // RESPONSE_COMPRESSION_CODEC
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.responseCompressionCodec = iprot.readI32();
+              struct.setResponseCompressionCodecIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -682,6 +934,21 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         oprot.writeBool(struct.enableTrace);
         oprot.writeFieldEnd();
       }
+      if (struct.isSetDataTableVersion()) {
+        oprot.writeFieldBegin(DATA_TABLE_VERSION_FIELD_DESC);
+        oprot.writeI32(struct.dataTableVersion);
+        oprot.writeFieldEnd();
+      }
+      if (struct.isSetTimeoutMs()) {
+        oprot.writeFieldBegin(TIMEOUT_MS_FIELD_DESC);
+        oprot.writeI64(struct.timeoutMs);
+        oprot.writeFieldEnd();
+      }
+      if (struct.isSetResponseCompressionCodec()) {
+        oprot.writeFieldBegin(RESPONSE_COMPRESSION_CODEC_FIELD_DESC);
+        oprot.writeI32(struct.responseCompressionCodec);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -708,7 +975,16 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       if (struct.isSetEnableTrace()) {
         optionals.set(1);
       }
-      oprot.writeBitSet(optionals, 2);
+      if (struct.isSetDataTableVersion()) {
+        optionals.set(2);
+      }
+      if (struct.isSetTimeoutMs()) {
+        optionals.set(3);
+      }
+      if (struct.isSetResponseCompressionCodec()) {
+        optionals.set(4);
+      }
+      oprot.writeBitSet(optionals, 5);
       if (struct.isSetSearchSegments()) {
         {
           oprot.writeI32(struct.searchSegments.size());
@@ -721,6 +997,15 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       if (struct.isSetEnableTrace()) {
         oprot.writeBool(struct.enableTrace);
       }
+      if (struct.isSetDataTableVersion()) {
+        oprot.writeI32(struct.dataTableVersion);
+      }
+      if (struct.isSetTimeoutMs()) {
+        oprot.writeI64(struct.timeoutMs);
+      }
+      if (struct.isSetResponseCompressionCodec()) {
+        oprot.writeI32(struct.responseCompressionCodec);
+      }
     }
 
     @Override
@@ -731,7 +1016,7 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
       struct.query = new BrokerRequest();
       struct.query.read(iprot);
       struct.setQueryIsSet(true);
-      BitSet incoming = iprot.readBitSet(2);
+      BitSet incoming = iprot.readBitSet(5);
       if (incoming.get(0)) {
         {
           org.apache.thrift.protocol.TList _list73 = new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, iprot.readI32());
@@ -749,6 +1034,18 @@ public class InstanceRequest implements org.apache.thrift.TBase<InstanceRequest,
         struct.enableTrace = iprot.readBool();
         struct.setEnableTraceIsSet(true);
       }
+      if (incoming.get(2)) {
+        struct.dataTableVersion = iprot.readI32();
+        struct.setDataTableVersionIsSet(true);
+      }
+      if (incoming.get(3)) {
+        struct.timeoutMs = iprot.readI64();
+        struct.setTimeoutMsIsSet(true);
+      }
+      if (incoming.get(4)) {
+        struct.responseCompressionCodec = iprot.readI32();
+        struct.setResponseCompressionCodecIsSet(true);
+      }
     }
   }
 
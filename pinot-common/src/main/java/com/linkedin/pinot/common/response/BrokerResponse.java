@@ -36,6 +36,7 @@ public class BrokerResponse {
   private long _totalDocs = 0;
   private long _numDocsScanned = 0;
   private long _timeUsedMs = 0;
+  private boolean _partialResult = false;
   private List<JSONObject> _aggregationResults;
   private List<ResponseStatistics> _segmentStatistics;
   private List<ProcessingException> _exceptions;
@@ -88,6 +89,17 @@ public class BrokerResponse {
     _timeUsedMs = timeUsedMs;
   }
 
+  /**
+   * Returns true when some server ran out of time and left part of its segments out of the response.
+   */
+  public boolean isPartialResult() {
+    return _partialResult;
+  }
+
+  public void setPartialResult(boolean partialResult) {
+    _partialResult = partialResult;
+  }
+
   public int getAggregationResultsSize() {
     return (_aggregationResults == null) ? 0 : _aggregationResults.size();
   }
@@ -184,6 +196,53 @@ public class BrokerResponse {
     _traceInfo = traceInfo;
   }
 
+  /**
+   * Returns a copy of the response which shares no mutable state with it, so that it can be handed out while the
+   * response itself is kept, eg. in a cache.
+   */
+  public BrokerResponse deepCopy() {
+    BrokerResponse copy = new BrokerResponse();
+    copy._totalDocs = _totalDocs;
+    copy._numDocsScanned = _numDocsScanned;
+    copy._timeUsedMs = _timeUsedMs;
+    copy._partialResult = _partialResult;
+    if (_aggregationResults == null) {
+      copy._aggregationResults = null;
+    } else {
+      for (JSONObject aggregationResult : _aggregationResults) {
+        copy._aggregationResults.add(deepCopy(aggregationResult));
+      }
+    }
+    if (_segmentStatistics == null) {
+      copy._segmentStatistics = null;
+    } else {
+      for (ResponseStatistics segmentStatistics : _segmentStatistics) {
+        copy._segmentStatistics.add(segmentStatistics.deepCopy());
+      }
+    }
+    if (_exceptions == null) {
+      copy._exceptions = null;
+    } else {
+      for (ProcessingException exception : _exceptions) {
+        copy._exceptions.add(exception.deepCopy());
+      }
+    }
+    copy._traceInfo = (_traceInfo == null) ? null : new HashMap<String, String>(_traceInfo);
+    copy._selectionResults = deepCopy(_selectionResults);
+    return copy;
+  }
+
+  private static JSONObject deepCopy(JSONObject jsonObject) {
+    if (jsonObject == null) {
+      return null;
+    }
+    try {
+      return new JSONObject(jsonObject.toString());
+    } catch (JSONException e) {
+      throw new IllegalStateException("Failed to copy JSON object : " + jsonObject, e);
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder("BrokerResponse(");
@@ -199,6 +258,9 @@ public class BrokerResponse {
     sb.append("timeUsedMs:");
     sb.append(_timeUsedMs);
     sb.append(", ");
+    sb.append("partialResult:");
+    sb.append(_partialResult);
+    sb.append(", ");
     sb.append("aggregationResults:");
     if (_aggregationResults == null) {
       sb.append("null");
@@ -242,6 +304,7 @@ public class BrokerResponse {
     retJsonObject.put("totalDocs", _totalDocs);
     retJsonObject.put("timeUsedMs", _timeUsedMs);
     retJsonObject.put("numDocsScanned", _numDocsScanned);
+    retJsonObject.put("partialResult", _partialResult);
     retJsonObject.put("aggregationResults", new JSONArray(_aggregationResults));
     retJsonObject.put("selectionResults", _selectionResults);
     retJsonObject.put("segmentStatistics", new JSONArray(_segmentStatistics));
@@ -259,6 +322,7 @@ public class BrokerResponse {
     brokerResponse.setTotalDocs(retJsonObject.getLong("totalDocs"));
     brokerResponse.setTimeUsedMs(retJsonObject.getLong("timeUsedMs"));
     brokerResponse.setNumDocsScanned(retJsonObject.getLong("numDocsScanned"));
+    brokerResponse.setPartialResult(retJsonObject.optBoolean("partialResult", false));
     if (retJsonObject.has("aggregationResults")) {
       JSONArray aggregationResults = retJsonObject.getJSONArray("aggregationResults");
       if (aggregationResults != null && aggregationResults.length() > 0) {
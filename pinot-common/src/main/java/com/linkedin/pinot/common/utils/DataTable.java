@@ -17,13 +17,8 @@ package com.linkedin.pinot.common.utils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -31,11 +26,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
@@ -56,7 +49,16 @@ public class DataTable {
 
   DataSchema schema;
 
-  static int VERSION = 1;
+  /**
+   * Version 1 encodes OBJECT columns with java serialization, version 2 with the SerDe registered in
+   * {@link DataTableSerDeRegistry}.
+   */
+  public static final int VERSION_1 = 1;
+  public static final int VERSION_2 = 2;
+
+  private static final int HEADER_SIZE = 52;
+
+  private int version = VERSION_1;
 
   private Map<String, Map<Integer, String>> dictionary;
 
@@ -86,6 +88,26 @@ public class DataTable {
    */
   public DataTable(int numRows, Map<String, Map<Integer, String>> dictionary, Map<String, String> metadata,
       DataSchema schema, byte[] fixedSizeDataBytes, byte[] variableSizeDataBytes) throws Exception {
+    this(VERSION_1, numRows, dictionary, metadata, schema, fixedSizeDataBytes, variableSizeDataBytes);
+  }
+
+  /**
+   * Build a data table of the given serialization version, the version decides how objects are serialized, see
+   * {@link DataTableSerDeRegistry}.
+   *
+   * @param version Serialization version of the data table
+   * @param numRows Number of rows in the fixed size data
+   * @param dictionary Dictionary of the string columns, column name to dictionary id to value
+   * @param metadata Metadata of the data table, e.g. number of docs scanned
+   * @param schema Column names and types
+   * @param fixedSizeDataBytes Fixed size data of all the rows
+   * @param variableSizeDataBytes Variable size data the fixed size data points into
+   * @throws Exception
+   */
+  public DataTable(int version, int numRows, Map<String, Map<Integer, String>> dictionary,
+      Map<String, String> metadata, DataSchema schema, byte[] fixedSizeDataBytes, byte[] variableSizeDataBytes)
+      throws Exception {
+    this.version = version;
     this.numRows = numRows;
     this.dictionary = dictionary;
     this.metadata = metadata;
@@ -173,10 +195,22 @@ public class DataTable {
    * @param buffer
    */
   public DataTable(byte[] buffer) {
+    this(ByteBuffer.wrap(buffer));
+  }
 
-    final ByteBuffer input = ByteBuffer.wrap(buffer);
+  /**
+   * Decode a data table from the remaining bytes of the given buffer. Fixed and variable size data are kept as views
+   * over the buffer instead of being copied, so the buffer must not be modified while the data table is in use.
+   *
+   * @param buffer Serialized data table, from its position to its limit
+   */
+  public DataTable(ByteBuffer buffer) {
+    final ByteBuffer input = buffer.slice();
 
-    final int version = input.getInt();
+    version = input.getInt();
+    if (version != VERSION_1 && version != VERSION_2) {
+      throw new IllegalArgumentException("Unsupported data table version: " + version);
+    }
     numRows = input.getInt();
     numCols = input.getInt();
     // READ dictionary
@@ -192,36 +226,34 @@ public class DataTable {
     final int variableDataLength = input.getInt();
 
     // READ DICTIONARY
-    final byte[] dictionaryBytes = new byte[dictionaryLength];
-    input.position(dictionaryStart);
-    input.get(dictionaryBytes);
-    dictionary = (Map<String, Map<Integer, String>>) deserializeDictionary(dictionaryBytes);
+    dictionary = deserializeDictionary(getBytes(input, dictionaryStart, dictionaryLength));
 
     // READ METADATA
-    final byte[] metadataBytes = new byte[metadataLength];
-    input.position(metadataStart);
-    input.get(metadataBytes);
-    metadata = (Map<String, String>) deserializeMetadata(metadataBytes);
+    metadata = deserializeMetadata(getBytes(input, metadataStart, metadataLength));
 
     // READ SCHEMA
-    final byte[] schemaBytes = new byte[schemaLength];
-    input.position(schemaStart);
-    input.get(schemaBytes);
-    schema = DataSchema.fromBytes(schemaBytes);
+    schema = DataSchema.fromBytes(getBytes(input, schemaStart, schemaLength));
     columnOffsets = computeColumnOffsets(schema);
 
     // READ FIXED SIZE DATA BYTES 
-    fixedSizeDataBytes = new byte[fixedDataLength];
-    input.position(fixedDataStart);
-    input.get(fixedSizeDataBytes);
-    fixedSizeData = ByteBuffer.wrap(fixedSizeDataBytes);
+    fixedSizeData = sliceBuffer(input, fixedDataStart, fixedDataLength);
 
     // READ VARIABLE SIZE DATA BYTES 
-    variableSizeDataBytes = new byte[variableDataLength];
-    input.position(variableDataStart);
-    input.get(variableSizeDataBytes);
-    variableSizeData = ByteBuffer.wrap(variableSizeDataBytes);
+    variableSizeData = sliceBuffer(input, variableDataStart, variableDataLength);
+  }
+
+  private static byte[] getBytes(ByteBuffer input, int start, int length) {
+    final byte[] bytes = new byte[length];
+    input.position(start);
+    input.get(bytes);
+    return bytes;
+  }
 
+  private static ByteBuffer sliceBuffer(ByteBuffer input, int start, int length) {
+    final ByteBuffer duplicate = input.duplicate();
+    duplicate.limit(start + length);
+    duplicate.position(start);
+    return duplicate.slice();
   }
 
   public DataTable() {
@@ -238,68 +270,88 @@ public class DataTable {
    * @throws Exception
    */
   public byte[] toBytes() throws Exception {
+    final ByteBuffer[] buffers = toByteBuffers();
+    int size = 0;
+    for (ByteBuffer buffer : buffers) {
+      size += buffer.remaining();
+    }
+    final ByteBuffer bytes = ByteBuffer.allocate(size);
+    for (ByteBuffer buffer : buffers) {
+      bytes.put(buffer);
+    }
+    return bytes.array();
+  }
+
+  /**
+   * Serialize the data table as buffers to be sent one after the other: the header along with the dictionary,
+   * metadata and schema, then the fixed and variable size data. The data sections are views over the data of this
+   * data table rather than copies, so the data table must not be modified until they have been written.
+   *
+   * @return
+   * @throws Exception
+   */
+  public ByteBuffer[] toByteBuffers() throws Exception {
     final byte[] dictionaryBytes = serializeDictionary();
     final byte[] metadataBytes = serializeMetadata();
     byte[] schemaBytes = new byte[0];
     if (schema != null) {
       schemaBytes = schema.toBytes();
     }
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    final DataOutputStream out = new DataOutputStream(baos);
     // TODO: convert this format into a proper class
     // VERSION|NUM_ROW|NUM_COL|(START|SIZE) -- START|SIZE 5 PAIRS FOR
     // DICTIONARY, METADATA,
     // SCHEMA, DATATABLE, VARIABLE DATA BUFFER --> 4 + 4 + 4 + 5*8 = 52
     // bytes
-    out.writeInt(VERSION);
-    out.writeInt(numRows);
-    out.writeInt(numCols);
+    final ByteBuffer fixedSizeDataBuffer = getDataBuffer(fixedSizeDataBytes, fixedSizeData);
+    final ByteBuffer variableSizeDataBuffer = getDataBuffer(variableSizeDataBytes, variableSizeData);
+    final ByteBuffer header =
+        ByteBuffer.allocate(HEADER_SIZE + dictionaryBytes.length + metadataBytes.length + schemaBytes.length);
+    header.putInt(version);
+    header.putInt(numRows);
+    header.putInt(numCols);
     // dictionary
-    int baseOffset = 52;
-    out.writeInt(baseOffset);
-    out.writeInt(dictionaryBytes.length);
+    int baseOffset = HEADER_SIZE;
+    header.putInt(baseOffset);
+    header.putInt(dictionaryBytes.length);
     baseOffset += dictionaryBytes.length;
 
     // metadata
-    out.writeInt(baseOffset);
-    out.writeInt(metadataBytes.length);
+    header.putInt(baseOffset);
+    header.putInt(metadataBytes.length);
     baseOffset += metadataBytes.length;
 
     // schema
-    out.writeInt(baseOffset);
-    out.writeInt(schemaBytes.length);
+    header.putInt(baseOffset);
+    header.putInt(schemaBytes.length);
     baseOffset += schemaBytes.length;
 
     // datatable
-    out.writeInt(baseOffset);
-    if (fixedSizeDataBytes == null) {
-      out.writeInt(0);
-    } else {
-      out.writeInt(fixedSizeDataBytes.length);
-      baseOffset += fixedSizeDataBytes.length;
-    }
+    header.putInt(baseOffset);
+    header.putInt(fixedSizeDataBuffer.remaining());
+    baseOffset += fixedSizeDataBuffer.remaining();
 
     // variable data
-    out.writeInt(baseOffset);
-    if (variableSizeDataBytes == null) {
-      out.writeInt(0);
-    } else {
-      out.writeInt(variableSizeDataBytes.length);
-    }
+    header.putInt(baseOffset);
+    header.putInt(variableSizeDataBuffer.remaining());
 
     // write them
-    out.write(dictionaryBytes);
-    out.write(metadataBytes);
-    out.write(schemaBytes);
-    if (fixedSizeDataBytes != null) {
-      out.write(fixedSizeDataBytes);
+    header.put(dictionaryBytes);
+    header.put(metadataBytes);
+    header.put(schemaBytes);
+    header.flip();
+    return new ByteBuffer[] { header, fixedSizeDataBuffer, variableSizeDataBuffer };
+  }
+
+  private static ByteBuffer getDataBuffer(byte[] bytes, ByteBuffer buffer) {
+    if (bytes != null) {
+      return ByteBuffer.wrap(bytes);
     }
-    if (variableSizeDataBytes != null) {
-      out.write(variableSizeDataBytes);
+    if (buffer != null) {
+      final ByteBuffer duplicate = buffer.duplicate();
+      duplicate.clear();
+      return duplicate;
     }
-    byte[] byteArray = baos.toByteArray();
-    long end = System.currentTimeMillis();
-    return byteArray;
+    return ByteBuffer.allocate(0);
   }
 
   private byte[] serializeMetadata() throws Exception {
@@ -394,58 +446,10 @@ public class DataTable {
 
   /**
    *
-   * @param value
-   * @return
+   * @return version of the serialized format this data table was built with or read from
    */
-  private byte[] serializeObject(Object value) {
-    long start = System.nanoTime();
-
-    byte[] bytes;
-    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutput out = null;
-
-    try {
-      try {
-        out = new ObjectOutputStream(bos);
-        out.writeObject(value);
-      } catch (final IOException e) {
-        LOGGER.error("Caught exception", e);
-        Utils.rethrowException(e);
-      }
-      bytes = bos.toByteArray();
-
-    } finally {
-      IOUtils.closeQuietly((Closeable) out);
-      IOUtils.closeQuietly(bos);
-    }
-    long end = System.nanoTime();
-    LOGGER.info("java ser time:{}", (end - start));
-    return bytes;
-  }
-
-  @SuppressWarnings("unchecked")
-  private <T extends Serializable> T deserialize(byte[] value) {
-    long start = System.nanoTime();
-    final ByteArrayInputStream bais = new ByteArrayInputStream(value);
-    ObjectInputStream out = null;
-    Object readObject;
-    try {
-      try {
-        out = new ObjectInputStream(bais);
-        readObject = out.readObject();
-
-      } catch (final Exception e) {
-        LOGGER.error("Caught exception while deserializing DataTable", e);
-        return null;
-      }
-    } finally {
-      IOUtils.closeQuietly(out);
-      IOUtils.closeQuietly(bais);
-    }
-    long end = System.nanoTime();
-    LOGGER.info("java deser time:{}", (end - start));
-    return (T) readObject;
-
+  public int getVersion() {
+    return version;
   }
 
   /**
@@ -704,9 +708,9 @@ public class DataTable {
   @SuppressWarnings("unchecked")
   public <T extends Serializable> T getObject(int rowId, int colId) {
     final int length = positionCursorInVariableBuffer(rowId, colId);
-    final byte[] serData = new byte[length];
-    variableSizeData.get(serData);
-    return (T) deserialize(serData);
+    final ByteBuffer serData = variableSizeData.slice();
+    serData.limit(length);
+    return (T) DataTableSerDeRegistry.getInstance().get(version).deserialize(serData);
   }
 
   /**
@@ -15,16 +15,11 @@
  */
 package com.linkedin.pinot.common.utils;
 
-import com.linkedin.pinot.common.Utils;
-
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
@@ -33,7 +28,6 @@ import java.util.Map;
 
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -134,7 +128,23 @@ public class DataTableBuilder {
 
   boolean isOpen = false;
 
+  private final int version;
+
+  private final DataTableSerDe objectSerDe;
+
   public DataTableBuilder(DataSchema schema) {
+    this(schema, DataTable.VERSION_1);
+  }
+
+  /**
+   * Build a data table in the given format version, see {@link DataTable#VERSION_2}.
+   *
+   * @param schema
+   * @param version
+   */
+  public DataTableBuilder(DataSchema schema, int version) {
+    this.version = version;
+    this.objectSerDe = DataTableSerDeRegistry.getInstance().get(version);
     this.schema = schema;
     this.metadata = new HashMap<String, String>();
     columnOffsets = new int[schema.columnNames.length];
@@ -327,8 +337,7 @@ public class DataTableBuilder {
    */
   public void setColumn(int columnIndex, Object value) throws Exception {
 
-    byte[] bytes = new byte[0];
-    bytes = serializeObject(value);
+    byte[] bytes = objectSerDe.serialize(value);
     currentRowData.position(columnOffsets[columnIndex]);
     currentRowData.putInt(variableSizeDataHolder.position());
     variableSizeDataHolder.add(bytes);
@@ -470,32 +479,6 @@ public class DataTableBuilder {
     currentRowData.putInt(values.length);
   }
 
-  /**
-   *
-   * @param value
-   * @return
-   */
-  private byte[] serializeObject(Object value) {
-    byte[] bytes;
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutput out = null;
-
-    try {
-      try {
-        out = new ObjectOutputStream(bos);
-        out.writeObject(value);
-      } catch (IOException e) {
-        LOGGER.error("Caught exception", e);
-        Utils.rethrowException(e);
-      }
-      bytes = bos.toByteArray();
-    } finally {
-      IOUtils.closeQuietly((Closeable) out);
-      IOUtils.closeQuietly(bos);
-    }
-    return bytes;
-  }
-
   /**
    *
    * @throws Exception
@@ -527,7 +510,7 @@ public class DataTableBuilder {
    */
   public DataTable build() throws Exception {
 
-    return new DataTable(currentRowId, reverseDictionary, metadata, schema, fixedSizeDataHolder.toBytes(),
+    return new DataTable(version, currentRowId, reverseDictionary, metadata, schema, fixedSizeDataHolder.toBytes(),
         variableSizeDataHolder.toBytes());
   }
 
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+
+
+/**
+ * DataTableSerDe based on java serialization, used for version 1 data tables and as the fallback when no other SerDe
+ * is registered.
+ */
+public class DataTableJavaSerDe implements DataTableSerDe {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DataTableJavaSerDe.class);
+
+  @Override
+  public byte[] serialize(Object value) {
+    byte[] bytes;
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutput out = null;
+
+    try {
+      try {
+        out = new ObjectOutputStream(bos);
+        out.writeObject(value);
+      } catch (IOException e) {
+        LOGGER.error("Caught exception", e);
+        Utils.rethrowException(e);
+      }
+      bytes = bos.toByteArray();
+    } finally {
+      IOUtils.closeQuietly((Closeable) out);
+      IOUtils.closeQuietly(bos);
+    }
+    return bytes;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Serializable> T deserialize(ByteBuffer buffer) {
+    final InputStream in = new ByteBufferInputStream(buffer);
+    ObjectInputStream ois = null;
+    try {
+      ois = new ObjectInputStream(in);
+      return (T) ois.readObject();
+    } catch (final Exception e) {
+      LOGGER.error("Caught exception while deserializing DataTable", e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(ois);
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Reads the remaining bytes of a buffer without copying them into an intermediate array.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer _buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      _buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      if (!_buffer.hasRemaining()) {
+        return -1;
+      }
+      return _buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!_buffer.hasRemaining()) {
+        return -1;
+      }
+      int toRead = Math.min(length, _buffer.remaining());
+      _buffer.get(bytes, offset, toRead);
+      return toRead;
+    }
+
+    @Override
+    public int available() {
+      return _buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Encodes and decodes the values stored in OBJECT columns of a {@link DataTable}.
+ *
+ * Version 1 data tables always use plain java serialization, version 2 data tables use the SerDe registered in
+ * {@link DataTableSerDeRegistry}.
+ */
+public interface DataTableSerDe {
+
+  /**
+   * Serialize the given value into bytes.
+   *
+   * @param value
+   * @return
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * Deserialize the value held by the remaining bytes of the given buffer. The buffer may be a view over the
+   * underlying response buffer, so implementations must not assume it is backed by an array.
+   *
+   * @param buffer
+   * @return
+   */
+  <T extends Serializable> T deserialize(ByteBuffer buffer);
+}
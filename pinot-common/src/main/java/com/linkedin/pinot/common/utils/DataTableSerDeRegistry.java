@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.utils;
+
+/**
+ * Holds the SerDe used for OBJECT columns of version 2 data tables. The aggregation intermediate types live outside
+ * of pinot-common, so the module that defines them registers the SerDe at start up. Until then version 2 is not
+ * advertised, see {@link #getMaxSupportedDataTableVersion()}.
+ */
+public class DataTableSerDeRegistry {
+  private static final DataTableSerDeRegistry INSTANCE = new DataTableSerDeRegistry();
+
+  private final DataTableSerDe _javaSerDe = new DataTableJavaSerDe();
+  private volatile DataTableSerDe _serDe = null;
+
+  private DataTableSerDeRegistry() {
+  }
+
+  public static DataTableSerDeRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  public void register(DataTableSerDe serDe) {
+    _serDe = serDe;
+  }
+
+  public boolean isRegistered() {
+    return _serDe != null;
+  }
+
+  /**
+   * Returns the SerDe for OBJECT columns of a data table with the given version.
+   *
+   * @param version
+   * @return
+   */
+  public DataTableSerDe get(int version) {
+    if (version >= DataTable.VERSION_2) {
+      DataTableSerDe serDe = _serDe;
+      if (serDe == null) {
+        throw new IllegalStateException("No DataTableSerDe registered for data table version " + version);
+      }
+      return serDe;
+    }
+    return _javaSerDe;
+  }
+
+  /**
+   * Highest data table version this process is able to encode and decode.
+   *
+   * @return
+   */
+  public int getMaxSupportedDataTableVersion() {
+    return isRegistered() ? DataTable.VERSION_2 : DataTable.VERSION_1;
+  }
+}
@@ -21,6 +21,7 @@ import org.apache.thrift.TDeserializer;
 import org.apache.thrift.TException;
 import org.apache.thrift.TSerializer;
 import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,8 +43,10 @@ public class SerDe {
 
   private final TSerializer _serializer;
   private final TDeserializer _deserializer;
+  private final TProtocolFactory _factory;
 
   public SerDe(TProtocolFactory factory) {
+    _factory = factory;
     _serializer = new TSerializer(factory);
     _deserializer = new TDeserializer(factory);
   }
@@ -66,4 +69,18 @@ public class SerDe {
     }
     return true;
   }
+
+  /**
+   * Deserialize the object by reading directly from the given transport, which avoids copying the payload into an
+   * intermediate byte array when the caller already holds it in a buffer.
+   */
+  public boolean deserialize(@SuppressWarnings("rawtypes") TBase obj, TTransport transport) {
+    try {
+      obj.read(_factory.getProtocol(transport));
+    } catch (TException e) {
+      LOGGER.error("Unable to deserialize to object :" + obj, e);
+      return false;
+    }
+    return true;
+  }
 }
@@ -20,6 +20,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -191,6 +192,49 @@ public class DataTableBuilderTest {
 
   }
 
+  @Test
+  public void testToByteBuffers() throws Exception {
+    DataType[] columnTypes = new DataType[] { DataType.INT, DataType.STRING };
+    String[] columnNames = new String[] { "col-0", "col-1" };
+    DataSchema schema = new DataSchema(columnNames, columnTypes);
+    DataTableBuilder builder = new DataTableBuilder(schema);
+    builder.open();
+    int NUM_ROWS = 10;
+    Object[] ints = new Object[NUM_ROWS];
+    Object[] strings = new Object[NUM_ROWS];
+    for (int rowId = 0; rowId < NUM_ROWS; rowId++) {
+      builder.startRow();
+      ints[rowId] = rowId;
+      strings[rowId] = "value-" + rowId;
+      builder.setColumn(0, rowId);
+      builder.setColumn(1, "value-" + rowId);
+      builder.finishRow();
+    }
+    builder.seal();
+    DataTable dataTable = builder.build();
+    dataTable.getMetadata().put("numDocsScanned", "10");
+
+    ByteBuffer[] buffers = dataTable.toByteBuffers();
+    int size = 0;
+    for (ByteBuffer buffer : buffers) {
+      size += buffer.remaining();
+    }
+    ByteBuffer concatenated = ByteBuffer.allocate(size);
+    for (ByteBuffer buffer : buffers) {
+      concatenated.put(buffer.duplicate());
+    }
+    byte[] bytes = dataTable.toBytes();
+    org.testng.Assert.assertEquals(concatenated.array(), bytes);
+
+    concatenated.flip();
+    DataTable newDataTable = new DataTable(concatenated);
+    org.testng.Assert.assertEquals(newDataTable.getMetadata().get("numDocsScanned"), "10");
+    for (int rowId = 0; rowId < NUM_ROWS; rowId++) {
+      validate(DataType.INT, newDataTable, ints, rowId, 0);
+      validate(DataType.STRING, newDataTable, strings, rowId, 1);
+    }
+  }
+
   @Test
   public void testIntArray() throws Exception {
     DataType[] columnTypes = new DataType[] { DataType.INT_ARRAY };
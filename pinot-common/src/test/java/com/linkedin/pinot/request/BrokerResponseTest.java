@@ -35,6 +35,15 @@ public class BrokerResponseTest {
     System.out.println(newBrokerResponse);
   }
 
+  @Test
+  public void testPartialResponse() throws JSONException {
+    BrokerResponse brokerResponse = new BrokerResponse();
+    Assert.assertFalse(BrokerResponse.fromJson(brokerResponse.toJson()).isPartialResult());
+    brokerResponse.setPartialResult(true);
+    BrokerResponse newBrokerResponse = BrokerResponse.fromJson(new JSONObject(brokerResponse.toJson().toString()));
+    Assert.assertTrue(newBrokerResponse.isPartialResult());
+  }
+
   @Test
   public void testNullResponse() throws JSONException {
     BrokerResponse brokerResponse = BrokerResponse.getNullBrokerResponse();
@@ -135,4 +135,7 @@ struct InstanceRequest {
   2: required BrokerRequest query;
   3: optional list<string> searchSegments;
   4: optional bool enableTrace;
+  5: optional i32 dataTableVersion;
+  6: optional i64 timeoutMs;
+  7: optional i32 responseCompressionCodec;
 }
@@ -18,6 +18,7 @@ package com.linkedin.pinot.core.block.query;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +37,7 @@ import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionUtils;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultMap;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
 
 
@@ -57,11 +59,13 @@ public class IntermediateResultsBlock implements Block {
   private List<Map<String, Serializable>> _aggregationGroupByOperatorResult;
   private DataSchema _dataSchema;
   private Collection<Serializable[]> _selectionResult;
+  private boolean _isPartialResult = false;
 
   private static String REQUEST_ID = "requestId";
   private static String NUM_DOCS_SCANNED = "numDocsScanned";
   private static String TIME_USED_MS = "timeUsedMs";
   private static String TOTAL_DOCS = "totalDocs";
+  private static String PARTIAL_RESULT = "partialResult";
 
   public IntermediateResultsBlock(List<AggregationFunction> aggregationFunctionList,
       List<Serializable> aggregationResult) {
@@ -120,12 +124,24 @@ public class IntermediateResultsBlock implements Block {
   }
 
   public DataTable getDataTable() throws Exception {
+    return getDataTable(DataTable.VERSION_1);
+  }
+
+  /**
+   * Build the instance response, OBJECT columns of aggregation and group by results are encoded according to the
+   * given data table version.
+   *
+   * @param dataTableVersion
+   * @return
+   * @throws Exception
+   */
+  public DataTable getDataTable(int dataTableVersion) throws Exception {
     if (_aggregationResultList != null) {
-      return getAggregationResultDataTable();
+      return getAggregationResultDataTable(dataTableVersion);
     }
 
     if (_aggregationGroupByOperatorResult != null) {
-      return getAggregationGroupByResultDataTable();
+      return getAggregationGroupByResultDataTable(dataTableVersion);
     }
     if (_selectionResult != null) {
       return getSelectionResultDataTable();
@@ -141,6 +157,9 @@ public class IntermediateResultsBlock implements Block {
     dataTable.getMetadata().put(NUM_DOCS_SCANNED, _numDocsScanned + "");
     dataTable.getMetadata().put(TIME_USED_MS, _timeUsedMs + "");
     dataTable.getMetadata().put(TOTAL_DOCS, _totalDocs + "");
+    if (_isPartialResult) {
+      dataTable.getMetadata().put(PARTIAL_RESULT, "true");
+    }
     if (_processingExceptions != null && _processingExceptions.size() > 0) {
       for (int i = 0; i < _processingExceptions.size(); ++i) {
         dataTable.addException(_processingExceptions.get(i));
@@ -158,8 +177,12 @@ public class IntermediateResultsBlock implements Block {
   }
 
   public DataTable getAggregationResultDataTable() throws Exception {
+    return getAggregationResultDataTable(DataTable.VERSION_1);
+  }
+
+  private DataTable getAggregationResultDataTable(int dataTableVersion) throws Exception {
     DataSchema schema = AggregationFunctionUtils.getAggregationResultsDataSchema(_aggregationFunctionList);
-    DataTableBuilder builder = new DataTableBuilder(schema);
+    DataTableBuilder builder = new DataTableBuilder(schema, dataTableVersion);
     builder.open();
     builder.startRow();
     for (int i = 0; i < _aggregationResultList.size(); ++i) {
@@ -191,17 +214,25 @@ public class IntermediateResultsBlock implements Block {
   }
 
   public DataTable getAggregationGroupByResultDataTable() throws Exception {
+    return getAggregationGroupByResultDataTable(DataTable.VERSION_1);
+  }
 
+  private DataTable getAggregationGroupByResultDataTable(int dataTableVersion) throws Exception {
     String[] columnNames = new String[] { "functionName", "GroupByResultMap" };
     DataType[] columnTypes = new DataType[] { DataType.STRING, DataType.OBJECT };
     DataSchema dataSchema = new DataSchema(columnNames, columnTypes);
 
-    DataTableBuilder dataTableBuilder = new DataTableBuilder(dataSchema);
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(dataSchema, dataTableVersion);
     dataTableBuilder.open();
     for (int i = 0; i < _aggregationGroupByOperatorResult.size(); ++i) {
       dataTableBuilder.startRow();
       dataTableBuilder.setColumn(0, _aggregationFunctionList.get(i).getFunctionName());
-      dataTableBuilder.setColumn(1, _aggregationGroupByOperatorResult.get(i));
+      Map<String, Serializable> groupByResult = _aggregationGroupByOperatorResult.get(i);
+      if (dataTableVersion < DataTable.VERSION_2 && groupByResult instanceof GroupByResultMap) {
+        // Version 1 brokers java deserialize the results and may not know about GroupByResultMap.
+        groupByResult = new HashMap<String, Serializable>(groupByResult);
+      }
+      dataTableBuilder.setColumn(1, groupByResult);
       dataTableBuilder.finishRow();
     }
     dataTableBuilder.seal();
@@ -264,6 +295,17 @@ public class IntermediateResultsBlock implements Block {
     _traceInfo = traceInfo;
   }
 
+  /**
+   * Returns true when some segments were skipped or only partially scanned because the query ran out of time.
+   */
+  public boolean isPartialResult() {
+    return _isPartialResult;
+  }
+
+  public void setPartialResult(boolean isPartialResult) {
+    _isPartialResult = isPartialResult;
+  }
+
   public void setAggregationFunctions(List<AggregationFunction> aggregationFunctions) {
     _aggregationFunctionList = aggregationFunctions;
   }
@@ -30,6 +30,19 @@ public abstract class BlockSingleValIterator implements BlockValIterator {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Reads the int values of up to maxLength consecutive docs into values, starting at the current doc.
+   * Implementations backed by a forward index should override this to decode the values in bulk.
+   * @return the number of values read, 0 once the iterator is exhausted
+   */
+  public int nextIntVals(int[] values, int maxLength) {
+    int length = 0;
+    while (length < maxLength && hasNext()) {
+      values[length++] = nextIntVal();
+    }
+    return length;
+  }
+
   public float nextFloatVal(){
     throw new UnsupportedOperationException();
   }
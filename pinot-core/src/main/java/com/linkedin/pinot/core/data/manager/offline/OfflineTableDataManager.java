@@ -42,6 +42,7 @@ import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.core.data.manager.config.TableDataManagerConfig;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
@@ -176,6 +177,7 @@ public class OfflineTableDataManager implements TableDataManager {
         if (segment != null) {
           _currentNumberOfDocuments.dec(segment.getSegment().getTotalDocs());
           _currentNumberOfDocuments.inc(indexSegmentToAdd.getTotalDocs());
+          SegmentResultCache.getInstance().invalidate(_tableName, indexSegmentToAdd.getSegmentName());
           segment.getSegment().destroy();
         }
       }
@@ -227,6 +229,7 @@ public class OfflineTableDataManager implements TableDataManager {
         _currentNumberOfSegments.dec();
         _currentNumberOfDocuments.dec(segment.getSegment().getTotalDocs());
         _numDeletedSegments.inc();
+        SegmentResultCache.getInstance().invalidate(_tableName, segmentId);
         segment.getSegment().destroy();
       }
       LOGGER.info("Segment " + segmentId + " has been deleted");
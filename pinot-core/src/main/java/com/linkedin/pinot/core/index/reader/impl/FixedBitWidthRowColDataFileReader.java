@@ -268,6 +268,35 @@ public class FixedBitWidthRowColDataFileReader {
 
   }
 
+  /**
+   * Reads the values of a column for rows [startRow, startRow + length) into values. The bit offset
+   * is computed once and then advanced by the row size, instead of being recomputed for every row.
+   *
+   * @param startRow
+   * @param col
+   * @param length
+   * @param values
+   */
+  public void readInts(int startRow, int col, int length, int[] values) {
+    if (length <= 0) {
+      return;
+    }
+    // Check the whole range up front, as the loop below does not go through computeBitOffset()
+    if (startRow < 0 || startRow + length > rows || col >= cols) {
+      final String message = String.format(
+          "Input rows [%d,%d) of col %d are not with in expected range (%d,%d)", startRow,
+          startRow + length, col, rows, cols);
+      throw new IndexOutOfBoundsException(message);
+    }
+    final int colSizeInBits = colSizesInBits[col];
+    final int offset = offsets[col];
+    int startBitOffset = computeBitOffset(startRow, col);
+    for (int i = 0; i < length; i++) {
+      values[i] = customBitSet.readInt(startBitOffset, startBitOffset + colSizeInBits) - offset;
+      startBitOffset += rowSizeInBits;
+    }
+  }
+
   public int getNumberOfRows() {
     return rows;
   }
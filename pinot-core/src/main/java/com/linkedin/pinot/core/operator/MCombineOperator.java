@@ -17,14 +17,15 @@ package com.linkedin.pinot.core.operator;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.helix.manager.zk.ZKHelixManager;
 import org.slf4j.Logger;
@@ -37,12 +38,16 @@ import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByArrayBasedOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationOperator;
+import com.linkedin.pinot.core.operator.query.MSegmentResultCacheOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOnlyOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOrderByOperator;
 import com.linkedin.pinot.core.query.aggregation.CombineService;
-import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByTrimmer;
+import com.linkedin.pinot.core.query.executor.QueryDeadline;
+import com.linkedin.pinot.core.query.scheduler.BoundedExecutorService;
 
 
 /**
@@ -68,10 +73,17 @@ public class MCombineOperator implements Operator {
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private long _timeOutMs;
-  //Make this configurable
-  //These two control the parallelism on a per query basis, depending on the number of segments to process
-  private static int MAX_THREADS_PER_QUERY = 5;
-  private static int MIN_SEGMENTS_PER_THREAD = 10;
+  // Number of rows that completes a selection query without ordering, or -1 for any other query. Once that many
+  // rows are collected, no further segment needs to be processed.
+  private final int _selectionOnlyRowLimit;
+  private final GroupByTrimmer _groupByTrimmer;
+  private final boolean _isGroupByQuery;
+  // Lower bound on the number of segments a worker is expected to process, so small queries do not fan out to
+  // more threads than they can use. The actual parallelism also depends on the cores and the executor load.
+  private static final int MIN_SEGMENTS_PER_WORKER = 2;
+  // Upper bound on how long before the query timeout the segment operators are asked to stop
+  private static final long MAX_SEGMENT_STOP_MARGIN_MS = 100L;
+  private int _numCores = Runtime.getRuntime().availableProcessors();
 
   private IntermediateResultsBlock _mergedBlock;
 
@@ -80,14 +92,27 @@ public class MCombineOperator implements Operator {
     _isParallel = false;
     _brokerRequest = brokerRequest;
     _executorService = null;
+    // No deadline
+    _timeOutMs = -1;
+    _selectionOnlyRowLimit = getSelectionOnlyRowLimit(brokerRequest);
+    _groupByTrimmer = new GroupByTrimmer();
+    _isGroupByQuery = isGroupByQuery(brokerRequest);
   }
 
   public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
       BrokerRequest brokerRequest) {
+    this(retOperators, executorService, timeOutMs, brokerRequest, new GroupByTrimmer());
+  }
+
+  public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
+      BrokerRequest brokerRequest, GroupByTrimmer groupByTrimmer) {
     _operators = retOperators;
+    _groupByTrimmer = groupByTrimmer;
+    _isGroupByQuery = isGroupByQuery(brokerRequest);
     _executorService = executorService;
     _brokerRequest = brokerRequest;
     _timeOutMs = timeOutMs;
+    _selectionOnlyRowLimit = getSelectionOnlyRowLimit(brokerRequest);
     if (_executorService != null) {
       _isParallel = true;
     } else {
@@ -109,153 +134,351 @@ public class MCombineOperator implements Operator {
     final long startTime = System.currentTimeMillis();
     if (_isParallel) {
       final long queryEndTime = System.currentTimeMillis() + _timeOutMs;
-      int numGroups = Math.min(MAX_THREADS_PER_QUERY, (_operators.size() + MIN_SEGMENTS_PER_THREAD - 1) / MIN_SEGMENTS_PER_THREAD);
+      // Segment operators stop a bit before the end so their partial results make it back in time
+      final long segmentEndTime = queryEndTime - Math.min(_timeOutMs / 10, MAX_SEGMENT_STOP_MARGIN_MS);
+      final int numWorkers = getNumWorkers(_operators.size(), _numCores, getIdleThreads(_executorService));
 
-      final List<List<Operator>> operatorGroups = new ArrayList<List<Operator>>(numGroups);
-      for (int i = 0; i < numGroups; i++) {
-        operatorGroups.add(new ArrayList<Operator>());
+      // Workers steal segments one at a time from the shared cursor, so one slow segment only delays its own
+      // worker while the others keep draining the remaining segments.
+      final AtomicInteger nextOperatorIndex = new AtomicInteger(0);
+      final AtomicInteger numSelectionRows = new AtomicInteger(0);
+      final AtomicBoolean isPartialResult = new AtomicBoolean(false);
+      final List<CombineWorker> workers = new ArrayList<CombineWorker>(numWorkers);
+      final List<Future<IntermediateResultsBlock>> workerFutures =
+          new ArrayList<Future<IntermediateResultsBlock>>(numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
+        CombineWorker worker =
+            new CombineWorker(nextOperatorIndex, numSelectionRows, isPartialResult, segmentEndTime);
+        workers.add(worker);
+        workerFutures.add(_executorService.submit(worker));
       }
-      for (int i = 0; i < _operators.size(); i++) {
-        operatorGroups.get(i % numGroups).add(_operators.get(i));
+      LOGGER.debug("Submitted {} workers for {} operators and it took: {}", numWorkers, _operators.size(),
+          (System.currentTimeMillis() - startTime));
+
+      List<IntermediateResultsBlock> workerBlocks = collectWorkerBlocks(workers, workerFutures, queryEndTime);
+      LOGGER.debug("Got responses from all workers after: {}", (System.currentTimeMillis() - startTime));
+      _mergedBlock = treeMerge(workerBlocks, queryEndTime);
+      LOGGER.debug("Merged responses from all workers after: {}", (System.currentTimeMillis() - startTime));
+      if (_mergedBlock == null) {
+        _mergedBlock = getExceptionBlock(QueryException.EXECUTION_TIMEOUT_ERROR,
+            new TimeoutException("No segment finished before timeout"));
       }
-      final BlockingQueue<Block> blockingQueue = new ArrayBlockingQueue<Block>(operatorGroups.size());
-      // Submit operators.
-      for (final List<Operator> operatorGroup : operatorGroups) {
-        _executorService.submit(new Runnable() {
-          @Override
-          public void run() {
-            IntermediateResultsBlock mergedBlock = null;
-            try {
-              for (Operator operator : operatorGroup) {
-                IntermediateResultsBlock blockToMerge = (IntermediateResultsBlock) operator.nextBlock();
-                if (mergedBlock == null) {
-                  mergedBlock = blockToMerge;
-                } else {
-                  CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
-                }
-              }
-            } catch (Exception e) {
-              LOGGER.error("exception in the MCombine operator ", e);
-              mergedBlock = new IntermediateResultsBlock(e);
-            }
-            if (blockingQueue != null) {
-              blockingQueue.offer(mergedBlock);
-            }
-          }
-        });
+      if (isPartialResult.get()) {
+        _mergedBlock.setPartialResult(true);
+      }
+    } else {
+      // A serial combine nested in a segment worker keeps the deadline of the worker
+      boolean ownsDeadline = _timeOutMs >= 0 && !QueryDeadline.isSet();
+      if (ownsDeadline) {
+        QueryDeadline.set(startTime + _timeOutMs);
       }
-      LOGGER
-          .debug("Submitting operators to be run in parallel and it took:" + (System.currentTimeMillis() - startTime));
-
-      // Submit merger job:
-      Future<IntermediateResultsBlock> mergedBlockFuture =
-          _executorService.submit(new Callable<IntermediateResultsBlock>() {
-            @Override
-            public IntermediateResultsBlock call() throws Exception {
-              int mergedBlocksNumber = 0;
-              IntermediateResultsBlock mergedBlock = null;
-              while ((queryEndTime > System.currentTimeMillis()) && (mergedBlocksNumber < operatorGroups.size())) {
-                if (mergedBlock == null) {
-                  mergedBlock =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
-                  if (mergedBlock != null) {
-                    mergedBlocksNumber++;
-                  }
-                  LOGGER.debug("Got response from operator 0 after: {}", (System.currentTimeMillis() - startTime));
-                } else {
-                  IntermediateResultsBlock blockToMerge =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
-                  if (blockToMerge != null) {
-                    try {
-                      LOGGER.debug("Got response from operator {} after: {}", mergedBlocksNumber,
-                          (System.currentTimeMillis() - startTime));
-                      CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
-                      LOGGER.debug("Merged response from operator {} after: {}", mergedBlocksNumber,
-                          (System.currentTimeMillis() - startTime));
-                    } catch (Exception e) {
-                      mergedBlock.getExceptions().add(
-                          QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
-                    }
-                    mergedBlocksNumber++;
-                  }
-                }
-              }
-              return mergedBlock;
-            }
-          });
-
-      // Get merge results.
       try {
-        _mergedBlock = mergedBlockFuture.get(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-      } catch (InterruptedException e) {
-        LOGGER.error("InterruptedException ", e);
+        combineSerially();
+      } finally {
+        if (ownsDeadline) {
+          QueryDeadline.clear();
+        }
+      }
+    }
+    if (_isGroupByQuery && _mergedBlock != null) {
+      _groupByTrimmer.trimServerResult(_brokerRequest, _mergedBlock.getAggregationGroupByOperatorResult());
+    }
+    long end = System.currentTimeMillis();
+    LOGGER.info("Time spent in MCombineOperator:" + (end - startTime));
+
+    return _mergedBlock;
+  }
+
+  private void combineSerially() {
+    boolean isPartialResult = false;
+    for (Operator operator : _operators) {
+      if (QueryDeadline.isExpired()) {
+        isPartialResult = true;
+        break;
+      }
+      if ((operator instanceof MAggregationOperator) || (operator instanceof MSelectionOrderByOperator)
+          || (operator instanceof MSelectionOnlyOperator) || (operator instanceof MAggregationGroupByOperator)
+          || (operator instanceof MAggregationGroupByArrayBasedOperator)
+          || (operator instanceof MSegmentResultCacheOperator) || (operator instanceof MCombineOperator)) {
+        IntermediateResultsBlock block = (IntermediateResultsBlock) operator.nextBlock();
+        trimSegmentResult(block);
         if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
+          _mergedBlock = block;
+        } else {
+          CombineService.mergeTwoBlocks(_brokerRequest, _mergedBlock, block);
         }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
+        if (hasEnoughSelectionRows(getNumSelectionRows(_mergedBlock))) {
+          break;
         }
-        exceptions.add(QueryException.getException(QueryException.FUTURE_CALL_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
+      } else {
+        throw new UnsupportedOperationException("Unsupported Operator to be processed in MResultOperator : "
+            + operator);
+      }
+    }
+    if ((isPartialResult || QueryDeadline.hasExpired()) && _mergedBlock != null) {
+      _mergedBlock.setPartialResult(true);
+    }
+  }
+
+  /**
+   * Decides how many workers a query gets: enough to keep MIN_SEGMENTS_PER_WORKER segments per worker, but no
+   * more than the cores of the box nor the threads the executor can still hand out.
+   */
+  static int getNumWorkers(int numOperators, int numCores, int numIdleThreads) {
+    int numWorkers = (numOperators + MIN_SEGMENTS_PER_WORKER - 1) / MIN_SEGMENTS_PER_WORKER;
+    numWorkers = Math.min(numWorkers, numCores);
+    numWorkers = Math.min(numWorkers, numIdleThreads);
+    return Math.max(1, numWorkers);
+  }
+
+  /**
+   * Overrides the number of cores the number of workers is based on, for tests.
+   */
+  void setNumCores(int numCores) {
+    _numCores = numCores;
+  }
+
+  static int getSelectionOnlyRowLimit(BrokerRequest brokerRequest) {
+    if (brokerRequest.isSetAggregationsInfo() || !brokerRequest.isSetSelections()
+        || brokerRequest.getSelections().isSetSelectionSortSequence()) {
+      return -1;
+    }
+    return brokerRequest.getSelections().getSize();
+  }
+
+  private boolean hasEnoughSelectionRows(int numSelectionRows) {
+    return _selectionOnlyRowLimit >= 0 && numSelectionRows >= _selectionOnlyRowLimit;
+  }
+
+  private static int getNumSelectionRows(IntermediateResultsBlock block) {
+    if (block == null || block.getSelectionResult() == null) {
+      return 0;
+    }
+    return block.getSelectionResult().size();
+  }
+
+  private static int getIdleThreads(ExecutorService executorService) {
+    if (executorService instanceof BoundedExecutorService) {
+      return ((BoundedExecutorService) executorService).getNumAvailableThreads();
+    }
+    if (executorService instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executorService;
+      int maxPoolSize = threadPoolExecutor.getMaximumPoolSize();
+      if (maxPoolSize != Integer.MAX_VALUE) {
+        return maxPoolSize - threadPoolExecutor.getActiveCount() - threadPoolExecutor.getQueue().size();
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Collects the blocks of the segment workers. A worker still busy with a segment when the query times out is not
+   * interrupted, the segments it merged so far are taken over and returned as a partial result instead.
+   */
+  private List<IntermediateResultsBlock> collectWorkerBlocks(List<CombineWorker> workers,
+      List<Future<IntermediateResultsBlock>> futures, long queryEndTime) {
+    List<IntermediateResultsBlock> blocks = new ArrayList<IntermediateResultsBlock>(futures.size());
+    for (int i = 0; i < futures.size(); i++) {
+      IntermediateResultsBlock block;
+      try {
+        block = futures.get(i).get(Math.max(0, queryEndTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        LOGGER.error("InterruptedException ", e);
+        block = getExceptionBlock(QueryException.FUTURE_CALL_ERROR, e);
       } catch (ExecutionException e) {
         LOGGER.error("Execution Exception", e);
-        if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
-        }
-        exceptions.add(QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
+        block = getExceptionBlock(QueryException.MERGE_RESPONSE_ERROR, e);
       } catch (TimeoutException e) {
-        LOGGER.error("TimeoutException ", e);
-        if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
+        block = workers.get(i).takeMergedBlock();
+        if (block == null) {
+          LOGGER.error("TimeoutException ", e);
+          block = getExceptionBlock(QueryException.EXECUTION_TIMEOUT_ERROR, e);
+        } else {
+          LOGGER.warn("Worker did not finish its segment before timeout, using the segments it merged so far");
         }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
+        block.setPartialResult(true);
+      }
+      if (block != null) {
+        blocks.add(block);
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Merges the per worker blocks pairwise, running every level of the merge tree in parallel.
+   *
+   * Merges are neither interrupted nor dropped at the deadline, as they hold the segments the workers already
+   * processed: a merge the executor did not start in time runs on the calling thread instead, and a merge already
+   * running is waited for, as it only combines results in memory.
+   */
+  private IntermediateResultsBlock treeMerge(List<IntermediateResultsBlock> blocks, long queryEndTime) {
+    while (blocks.size() > 1) {
+      int numMerges = blocks.size() / 2;
+      List<Future<IntermediateResultsBlock>> mergeFutures = new ArrayList<Future<IntermediateResultsBlock>>(numMerges);
+      for (int i = 0; i < numMerges; i++) {
+        final IntermediateResultsBlock leftBlock = blocks.get(2 * i);
+        final IntermediateResultsBlock rightBlock = blocks.get(2 * i + 1);
+        mergeFutures.add(_executorService.submit(new Callable<IntermediateResultsBlock>() {
+          @Override
+          public IntermediateResultsBlock call() throws Exception {
+            return mergeBlocks(leftBlock, rightBlock);
+          }
+        }));
+      }
+      List<IntermediateResultsBlock> mergedBlocks = new ArrayList<IntermediateResultsBlock>(numMerges + 1);
+      for (int i = 0; i < numMerges; i++) {
+        mergedBlocks.add(getMergedBlock(mergeFutures.get(i), blocks.get(2 * i), blocks.get(2 * i + 1), queryEndTime));
+      }
+      if (blocks.size() % 2 == 1) {
+        mergedBlocks.add(blocks.get(blocks.size() - 1));
+      }
+      blocks = mergedBlocks;
+    }
+    return blocks.isEmpty() ? null : blocks.get(0);
+  }
+
+  private IntermediateResultsBlock getMergedBlock(Future<IntermediateResultsBlock> mergeFuture,
+      IntermediateResultsBlock leftBlock, IntermediateResultsBlock rightBlock, long queryEndTime) {
+    try {
+      try {
+        return mergeFuture.get(Math.max(0, queryEndTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (mergeFuture.cancel(false)) {
+          // Not started, the executor threads are still busy with segments that ran past the deadline
+          return mergeBlocks(leftBlock, rightBlock);
         }
-        exceptions.add(QueryException.getException(QueryException.EXECUTION_TIMEOUT_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
+        return mergeFuture.get();
       }
+    } catch (InterruptedException e) {
+      LOGGER.error("InterruptedException ", e);
+      return getExceptionBlock(QueryException.FUTURE_CALL_ERROR, e);
+    } catch (ExecutionException e) {
+      LOGGER.error("Execution Exception", e);
+      return getExceptionBlock(QueryException.MERGE_RESPONSE_ERROR, e);
+    }
+  }
 
-    } else {
-      for (Operator operator : _operators) {
-        if ((operator instanceof MAggregationOperator) || (operator instanceof MSelectionOrderByOperator)
-            || (operator instanceof MSelectionOnlyOperator) || (operator instanceof MAggregationGroupByOperator)
-            || (operator instanceof MCombineOperator)) {
-          IntermediateResultsBlock block = (IntermediateResultsBlock) operator.nextBlock();
-          if (_mergedBlock == null) {
-            _mergedBlock = block;
-          } else {
-            CombineService.mergeTwoBlocks(_brokerRequest, _mergedBlock, block);
+  /**
+   * Processes segments taken from the shared cursor and merges them into its own block until none are left, enough
+   * selection rows are collected, the deadline expires or the block is taken over by the collector.
+   *
+   * Merging and taking over the block are done under the worker lock, while the segments are processed outside of it,
+   * so the collector can take over the segments merged so far without waiting for a slow segment.
+   */
+  private class CombineWorker implements Callable<IntermediateResultsBlock> {
+    private final AtomicInteger _nextOperatorIndex;
+    private final AtomicInteger _numSelectionRows;
+    private final AtomicBoolean _isPartialResult;
+    private final long _segmentEndTime;
+
+    private IntermediateResultsBlock _workerBlock;
+    private boolean _isTakenOver;
+
+    CombineWorker(AtomicInteger nextOperatorIndex, AtomicInteger numSelectionRows, AtomicBoolean isPartialResult,
+        long segmentEndTime) {
+      _nextOperatorIndex = nextOperatorIndex;
+      _numSelectionRows = numSelectionRows;
+      _isPartialResult = isPartialResult;
+      _segmentEndTime = segmentEndTime;
+    }
+
+    @Override
+    public IntermediateResultsBlock call() throws Exception {
+      QueryDeadline.set(_segmentEndTime);
+      try {
+        int operatorIndex;
+        while ((operatorIndex = _nextOperatorIndex.getAndIncrement()) < _operators.size()) {
+          if (hasEnoughSelectionRows(_numSelectionRows.get())) {
+            break;
           }
-        } else {
-          throw new UnsupportedOperationException("Unsupported Operator to be processed in MResultOperator : "
-              + operator);
+          if (QueryDeadline.isExpired()) {
+            break;
+          }
+          IntermediateResultsBlock blockToMerge;
+          try {
+            blockToMerge = (IntermediateResultsBlock) _operators.get(operatorIndex).nextBlock();
+          } catch (Exception e) {
+            LOGGER.error("exception in the MCombine operator ", e);
+            blockToMerge = getExceptionBlock(QueryException.QUERY_EXECUTION_ERROR, e);
+          }
+          trimSegmentResult(blockToMerge);
+          if (!merge(blockToMerge)) {
+            break;
+          }
+          if (_selectionOnlyRowLimit >= 0) {
+            _numSelectionRows.addAndGet(getNumSelectionRows(blockToMerge));
+          }
+        }
+        if (QueryDeadline.hasExpired()) {
+          _isPartialResult.set(true);
         }
+      } finally {
+        QueryDeadline.clear();
       }
+      return takeMergedBlock();
     }
-    if ((_brokerRequest.getAggregationsInfoSize() > 0) && (_brokerRequest.getGroupBy() != null)
-        && (_brokerRequest.getGroupBy().getColumnsSize() > 0)) {
-      trimToSize(_brokerRequest, _mergedBlock);
+
+    /**
+     * @return false if the block was already taken over, in which case the segment is dropped
+     */
+    private synchronized boolean merge(IntermediateResultsBlock blockToMerge) {
+      if (_isTakenOver) {
+        return false;
+      }
+      _workerBlock = mergeBlocks(_workerBlock, blockToMerge);
+      return true;
     }
-    long end = System.currentTimeMillis();
-    LOGGER.info("Time spent in MCombineOperator:" + (end - startTime));
 
-    return _mergedBlock;
+    /**
+     * Returns the segments merged so far, no further segment is merged into the returned block.
+     */
+    synchronized IntermediateResultsBlock takeMergedBlock() {
+      _isTakenOver = true;
+      return _workerBlock;
+    }
+  }
+
+  private IntermediateResultsBlock mergeBlocks(IntermediateResultsBlock mergedBlock,
+      IntermediateResultsBlock blockToMerge) {
+    if (mergedBlock == null) {
+      return blockToMerge;
+    }
+    try {
+      CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while merging blocks", e);
+      List<ProcessingException> exceptions = mergedBlock.getExceptions();
+      if (exceptions == null) {
+        exceptions = new ArrayList<ProcessingException>();
+      }
+      exceptions.add(QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
+      mergedBlock.setExceptionsList(exceptions);
+    }
+    return mergedBlock;
+  }
+
+  private static IntermediateResultsBlock getExceptionBlock(ProcessingException processingException, Exception e) {
+    IntermediateResultsBlock exceptionBlock = new IntermediateResultsBlock(e);
+    List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
+    exceptions.add(QueryException.getException(processingException, e));
+    exceptionBlock.setExceptionsList(exceptions);
+    return exceptionBlock;
   }
 
-  private void trimToSize(BrokerRequest brokerRequest, IntermediateResultsBlock mergedBlock) {
-    AggregationGroupByOperatorService aggregationGroupByOperatorService =
-        new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
-    aggregationGroupByOperatorService.trimToSize(mergedBlock.getAggregationGroupByOperatorResult());
+  private static boolean isGroupByQuery(BrokerRequest brokerRequest) {
+    return (brokerRequest.getAggregationsInfoSize() > 0) && (brokerRequest.getGroupBy() != null)
+        && (brokerRequest.getGroupBy().getColumnsSize() > 0);
+  }
 
+  /**
+   * Trims the group by result of a segment before it is merged, so the merged result does not grow with the union
+   * of the groups of all the segments.
+   */
+  private void trimSegmentResult(IntermediateResultsBlock block) {
+    if (_isGroupByQuery && block != null) {
+      _groupByTrimmer.trimSegmentResult(_brokerRequest, block.getAggregationGroupByOperatorResult());
+    }
   }
 
   @Override
@@ -25,6 +25,7 @@ import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.query.executor.QueryDeadline;
 
 
 /**
@@ -65,6 +66,11 @@ public class MProjectionOperator implements Operator {
 
   @Override
   public Block nextBlock() {
+    // Every operator scanning the segment pulls its blocks from here, ending the scan stops them all
+    if (QueryDeadline.isExpired()) {
+      LOGGER.debug("Query deadline passed, stop scanning the segment");
+      return null;
+    }
     long start = System.currentTimeMillis();
     _currentBlock = new ProjectionBlock(_docIdSetOperator, _columnToDataSourceMap);
     if (_currentBlock.getDocIdSetBlock() == null) {
@@ -18,6 +18,7 @@ package com.linkedin.pinot.core.operator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.core.block.query.InstanceResponseBlock;
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockId;
@@ -35,6 +36,7 @@ public class UResultOperator implements Operator {
   private static final Logger LOGGER = LoggerFactory.getLogger(UResultOperator.class);
 
   private final Operator _operator;
+  private int _dataTableVersion = DataTable.VERSION_1;
 
   public UResultOperator(Operator combinedOperator) {
     _operator = combinedOperator;
@@ -49,12 +51,16 @@ public class UResultOperator implements Operator {
   @Override
   public Block nextBlock() {
     long start = System.currentTimeMillis();
-    InstanceResponseBlock instanceResponseBlock = new InstanceResponseBlock(_operator.nextBlock());
+    InstanceResponseBlock instanceResponseBlock = new InstanceResponseBlock(_operator.nextBlock(), _dataTableVersion);
     long end = System.currentTimeMillis();
     LOGGER.debug("Time spent in UResultOperator:" + (end - start));
     return instanceResponseBlock;
   }
 
+  public void setDataTableVersion(int dataTableVersion) {
+    _dataTableVersion = dataTableVersion;
+  }
+
   @Override
   public Block nextBlock(BlockId BlockId) {
     throw new UnsupportedOperationException();
@@ -15,10 +15,13 @@
  */
 package com.linkedin.pinot.core.operator.docidsets;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,12 +40,12 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
   private static final Logger LOGGER = LoggerFactory.getLogger(AndOperator.class);
   boolean reachedEnd = false;
   int currentDocId = -1;
-  public final AtomicLong timeMeasure = new AtomicLong(0);
   private List<FilterBlockDocIdSet> blockDocIdSets;
   private int minDocId = Integer.MIN_VALUE;
   private int maxDocId = Integer.MAX_VALUE;
 
   public AndBlockDocIdSet(List<FilterBlockDocIdSet> blockDocIdSets) {
+    blockDocIdSets = intersectBitmaps(blockDocIdSets);
     this.blockDocIdSets = blockDocIdSets;
     final int[] docIdPointers = new int[blockDocIdSets.size()];
     final BlockDocIdIterator[] docIdIterators = new BlockDocIdIterator[blockDocIdSets.size()];
@@ -55,6 +58,56 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
     updateMinMaxRange();
   }
 
+  /**
+   * Intersects all the bitmap backed children into a single bitmap up front, so that only the remaining children
+   * (scans, sorted ranges and nested operators) need to be leapfrogged. The intersection starts from the smallest
+   * bitmap and becomes the first child, driving the iteration.
+   */
+  static List<FilterBlockDocIdSet> intersectBitmaps(List<FilterBlockDocIdSet> blockDocIdSets) {
+    List<BitmapDocIdSet> bitmapDocIdSets = new ArrayList<BitmapDocIdSet>();
+    List<FilterBlockDocIdSet> otherDocIdSets = new ArrayList<FilterBlockDocIdSet>();
+    for (FilterBlockDocIdSet blockDocIdSet : blockDocIdSets) {
+      if (blockDocIdSet instanceof BitmapDocIdSet) {
+        bitmapDocIdSets.add((BitmapDocIdSet) blockDocIdSet);
+      } else {
+        otherDocIdSets.add(blockDocIdSet);
+      }
+    }
+    if (bitmapDocIdSets.isEmpty()
+        || (bitmapDocIdSets.size() == 1 && bitmapDocIdSets.get(0).<ImmutableRoaringBitmap[]> getRaw().length == 1)) {
+      return blockDocIdSets;
+    }
+
+    int minDocId = Integer.MIN_VALUE;
+    int maxDocId = Integer.MAX_VALUE;
+    ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[bitmapDocIdSets.size()];
+    for (int i = 0; i < bitmaps.length; i++) {
+      BitmapDocIdSet bitmapDocIdSet = bitmapDocIdSets.get(i);
+      minDocId = Math.max(minDocId, bitmapDocIdSet.getMinDocId());
+      maxDocId = Math.min(maxDocId, bitmapDocIdSet.getMaxDocId());
+      bitmaps[i] = bitmapDocIdSet.getUnionBitmap();
+    }
+    Arrays.sort(bitmaps, new Comparator<ImmutableRoaringBitmap>() {
+      @Override
+      public int compare(ImmutableRoaringBitmap o1, ImmutableRoaringBitmap o2) {
+        return Integer.compare(o1.getCardinality(), o2.getCardinality());
+      }
+    });
+    ImmutableRoaringBitmap intersection = bitmaps[0];
+    if (bitmaps.length > 1) {
+      MutableRoaringBitmap answer = ImmutableRoaringBitmap.and(bitmaps[0], bitmaps[1]);
+      for (int i = 2; i < bitmaps.length && answer.getCardinality() > 0; i++) {
+        answer.and(bitmaps[i]);
+      }
+      intersection = answer;
+    }
+
+    List<FilterBlockDocIdSet> result = new ArrayList<FilterBlockDocIdSet>(otherDocIdSets.size() + 1);
+    result.add(new BitmapDocIdSet(minDocId, maxDocId, intersection));
+    result.addAll(otherDocIdSets);
+    return result;
+  }
+
   private void updateMinMaxRange() {
     for (FilterBlockDocIdSet blockDocIdSet : blockDocIdSets) {
       minDocId = Math.max(minDocId, blockDocIdSet.getMinDocId());
@@ -86,7 +139,6 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
 
       @Override
       public int next() {
-        long start = System.currentTimeMillis();
         if (currentDocId == Constants.EOF) {
           return currentDocId;
         }
@@ -110,12 +162,6 @@ public final class AndBlockDocIdSet implements FilterBlockDocIdSet {
           }
         }
         currentDocId = currentMax;
-        long end = System.currentTimeMillis();
-        timeMeasure.addAndGet(end - start);
-        //Remove this after tracing is added
-//      if (currentDocId == Constants.EOF) {
-//        LOGGER.debug("AND operator took:" + timeMeasure.get());
-//      }
         return currentDocId;
       }
 
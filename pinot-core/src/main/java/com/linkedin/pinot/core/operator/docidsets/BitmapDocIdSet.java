@@ -36,23 +36,30 @@ public class BitmapDocIdSet implements FilterBlockDocIdSet {
 
   final private ImmutableRoaringBitmap[] raw;
   public final AtomicLong timeMeasure = new AtomicLong(0);
-  private BlockMetadata blockMetadata;
+  private final int minDocId;
+  private final int maxDocId;
   BitmapBasedBlockIdSetIterator bitmapBasedBlockIdSetIterator;
 
   public BitmapDocIdSet(BlockMetadata blockMetadata, ImmutableRoaringBitmap... bitmaps) {
-    this.blockMetadata = blockMetadata;
+    this(blockMetadata.getStartDocId(), blockMetadata.getEndDocId(), bitmaps);
+  }
+
+  public BitmapDocIdSet(int minDocId, int maxDocId, ImmutableRoaringBitmap... bitmaps) {
+    this.minDocId = minDocId;
+    this.maxDocId = maxDocId;
     raw = bitmaps;
     IntIterator[] iterators = new IntIterator[bitmaps.length];
     for (int i = 0; i < bitmaps.length; i++) {
       iterators[i] = bitmaps[i].getIntIterator();
     }
     bitmapBasedBlockIdSetIterator = new BitmapBasedBlockIdSetIterator(iterators);
-    bitmapBasedBlockIdSetIterator.setStartDocId(blockMetadata.getStartDocId());
-    bitmapBasedBlockIdSetIterator.setEndDocId(blockMetadata.getEndDocId());
+    bitmapBasedBlockIdSetIterator.setStartDocId(minDocId);
+    bitmapBasedBlockIdSetIterator.setEndDocId(maxDocId);
   }
 
   public BitmapDocIdSet(BlockMetadata blockMetadata, MutableRoaringBitmap... bitmaps) {
-    this.blockMetadata = blockMetadata;
+    this.minDocId = blockMetadata.getStartDocId();
+    this.maxDocId = blockMetadata.getEndDocId();
     raw = bitmaps;
     IntIterator[] iterators = new IntIterator[bitmaps.length];
     for (int i = 0; i < bitmaps.length; i++) {
@@ -65,12 +72,26 @@ public class BitmapDocIdSet implements FilterBlockDocIdSet {
 
   @Override
   public int getMinDocId() {
-    return blockMetadata.getStartDocId();
+    return minDocId;
   }
 
   @Override
   public int getMaxDocId() {
-    return blockMetadata.getEndDocId();
+    return maxDocId;
+  }
+
+  /**
+   * Returns the docs of this set as a single bitmap, the union of its posting lists.
+   */
+  public ImmutableRoaringBitmap getUnionBitmap() {
+    if (raw.length == 1) {
+      return raw[0];
+    }
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    for (ImmutableRoaringBitmap posting : raw) {
+      bitmap.or(posting);
+    }
+    return bitmap;
   }
 
   /**
@@ -15,10 +15,13 @@
  */
 package com.linkedin.pinot.core.operator.docidsets;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
-import java.util.concurrent.atomic.AtomicLong;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import com.linkedin.pinot.common.utils.Pairs;
 import com.linkedin.pinot.common.utils.Pairs.IntPair;
@@ -32,12 +35,12 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
    * 
    */
   private final BlockDocIdIterator[] docIdIterators;
-  final public AtomicLong timeMeasure = new AtomicLong(0);
   private List<FilterBlockDocIdSet> docIdSets;
   private int maxDocId = Integer.MIN_VALUE;
   private int minDocId = Integer.MAX_VALUE;
 
   public OrBlockDocIdSet(List<FilterBlockDocIdSet> blockDocIdSets) {
+    blockDocIdSets = unionBitmaps(blockDocIdSets);
     this.docIdSets = blockDocIdSets;
     final BlockDocIdIterator[] docIdIterators = new BlockDocIdIterator[blockDocIdSets.size()];
     for (int srcId = 0; srcId < blockDocIdSets.size(); srcId++) {
@@ -47,6 +50,42 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
     updateMinMaxRange();
   }
 
+  /**
+   * Unions all the bitmap backed children into a single bitmap up front, so that only the remaining children are
+   * merged doc by doc. When every child is bitmap backed the OR is a single bitmap iteration.
+   */
+  static List<FilterBlockDocIdSet> unionBitmaps(List<FilterBlockDocIdSet> blockDocIdSets) {
+    List<BitmapDocIdSet> bitmapDocIdSets = new ArrayList<BitmapDocIdSet>();
+    List<FilterBlockDocIdSet> otherDocIdSets = new ArrayList<FilterBlockDocIdSet>();
+    for (FilterBlockDocIdSet blockDocIdSet : blockDocIdSets) {
+      if (blockDocIdSet instanceof BitmapDocIdSet) {
+        bitmapDocIdSets.add((BitmapDocIdSet) blockDocIdSet);
+      } else {
+        otherDocIdSets.add(blockDocIdSet);
+      }
+    }
+    if (bitmapDocIdSets.isEmpty()
+        || (bitmapDocIdSets.size() == 1 && bitmapDocIdSets.get(0).<ImmutableRoaringBitmap[]> getRaw().length == 1)) {
+      return blockDocIdSets;
+    }
+
+    int minDocId = Integer.MAX_VALUE;
+    int maxDocId = Integer.MIN_VALUE;
+    MutableRoaringBitmap union = new MutableRoaringBitmap();
+    for (BitmapDocIdSet bitmapDocIdSet : bitmapDocIdSets) {
+      minDocId = Math.min(minDocId, bitmapDocIdSet.getMinDocId());
+      maxDocId = Math.max(maxDocId, bitmapDocIdSet.getMaxDocId());
+      for (ImmutableRoaringBitmap bitmap : bitmapDocIdSet.<ImmutableRoaringBitmap[]> getRaw()) {
+        union.or(bitmap);
+      }
+    }
+
+    List<FilterBlockDocIdSet> result = new ArrayList<FilterBlockDocIdSet>(otherDocIdSets.size() + 1);
+    result.add(new BitmapDocIdSet(minDocId, maxDocId, union));
+    result.addAll(otherDocIdSets);
+    return result;
+  }
+
   private void updateMinMaxRange() {
     for (FilterBlockDocIdSet blockDocIdSet : docIdSets) {
       minDocId = Math.min(minDocId, blockDocIdSet.getMinDocId());
@@ -88,8 +127,6 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
           currentDocId = Constants.EOF;
           return currentDocId;
         }
-        long start = System.nanoTime();
-
         // Remove iterators that are before the target document id from the queue
         Iterator<IntPair> iterator = queue.iterator();
         while (iterator.hasNext()) {
@@ -118,15 +155,11 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
           currentDocId = Constants.EOF;
         }
 
-        long end = System.nanoTime();
-        timeMeasure.addAndGet(end - start);
         return currentDocId;
       }
 
       @Override
       public int next() {
-        long start = System.currentTimeMillis();
-
         if (currentDocId == Constants.EOF) {
           return currentDocId;
         }
@@ -154,13 +187,6 @@ public final class OrBlockDocIdSet implements FilterBlockDocIdSet {
         } else {
           currentDocId = Constants.EOF;
         }
-        long end = System.currentTimeMillis();
-        timeMeasure.addAndGet(end - start);
-        //Remove this after tracing is added
-//      if (currentDocId == Constants.EOF) {
-//        LOGGER.debug("OR took:" + timeMeasure.get());
-//      }
-
         return currentDocId;
       }
 
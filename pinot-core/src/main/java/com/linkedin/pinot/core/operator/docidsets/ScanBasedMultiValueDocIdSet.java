@@ -16,8 +16,6 @@
 package com.linkedin.pinot.core.operator.docidsets;
 
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockMetadata;
@@ -25,6 +23,7 @@ import com.linkedin.pinot.core.common.BlockMultiValIterator;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
+import com.linkedin.pinot.core.operator.filter.utils.DictionaryIdMatcher;
 
 
 public class ScanBasedMultiValueDocIdSet implements FilterBlockDocIdSet {
@@ -72,23 +71,19 @@ public class ScanBasedMultiValueDocIdSet implements FilterBlockDocIdSet {
   public static class BlockValSetBlockDocIdIterator implements BlockDocIdIterator {
     BlockMultiValIterator valueIterator;
     int currentDocId = -1;
-    private Set<Integer> dictIdSet;
+    private final DictionaryIdMatcher dictIdMatcher;
     final int[] intArray;
     private int startDocId;
     private int endDocId;
 
     public BlockValSetBlockDocIdIterator(BlockValSet blockValSet, BlockMetadata blockMetadata, int[] dictIds) {
-      if (dictIds.length > 0) {
-        this.dictIdSet = new HashSet<Integer>(dictIds.length);
-        for (int dictId : dictIds) {
-          dictIdSet.add(dictId);
-        }
+      this.dictIdMatcher = new DictionaryIdMatcher(dictIds);
+      if (!dictIdMatcher.isEmpty()) {
         this.intArray = new int[blockMetadata.getMaxNumberOfMultiValues()];
         Arrays.fill(intArray, 0);
         setStartDocId(blockMetadata.getStartDocId());
         setEndDocId(blockMetadata.getEndDocId());
       } else {
-        this.dictIdSet = null;
         this.intArray = new int[0];
         setStartDocId(Constants.EOF);
         setEndDocId(Constants.EOF);
@@ -140,14 +135,7 @@ public class ScanBasedMultiValueDocIdSet implements FilterBlockDocIdSet {
       while (valueIterator.hasNext() && currentDocId <= endDocId) {
         currentDocId = currentDocId + 1;
         int length = valueIterator.nextIntVal(intArray);
-        boolean found = false;
-        for (int i = 0; i < length; i++) {
-          if (dictIdSet.contains(intArray[i])) {
-            found = true;
-            break;
-          }
-        }
-        if (found) {
+        if (dictIdMatcher.firstMatch(intArray, 0, length) >= 0) {
           return currentDocId;
         }
       }
@@ -15,15 +15,13 @@
  */
 package com.linkedin.pinot.core.operator.docidsets;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockMetadata;
 import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
+import com.linkedin.pinot.core.operator.filter.utils.DictionaryIdMatcher;
 
 
 public class ScanBasedSingleValueDocIdSet implements FilterBlockDocIdSet {
@@ -66,24 +64,35 @@ public class ScanBasedSingleValueDocIdSet implements FilterBlockDocIdSet {
     return blockValSetBlockDocIdIterator;
   }
 
+  /**
+   * Scans the dictionary ids of the block in batches of {@link #BATCH_SIZE} docs, so the forward index
+   * is decoded in bulk and the matching is done on a plain int[].
+   */
   public static class BlockValSetBasedDocIdIterator implements BlockDocIdIterator {
+    static final int BATCH_SIZE = 1024;
+
     int currentDocId = -1;
     BlockSingleValIterator valueIterator;
-    private Set<Integer> dictIdSet;
+    private final DictionaryIdMatcher dictIdMatcher;
+    private final int[] dictIdBuffer;
+    // Doc id of dictIdBuffer[0], number of valid entries in the buffer and the next entry to test.
+    private int bufferStartDocId = 0;
+    private int bufferLength = 0;
+    private int bufferPosition = 0;
+    // Doc id the value iterator will read next.
+    private int nextReadDocId = 0;
     private int startDocId;
     private int endDocId;
 
     public BlockValSetBasedDocIdIterator(BlockValSet blockValSet, BlockMetadata blockMetadata, int[] dictIds) {
-      if (dictIds.length < 1) {
-        this.dictIdSet = null;
+      this.dictIdMatcher = new DictionaryIdMatcher(dictIds);
+      if (dictIdMatcher.isEmpty()) {
+        this.dictIdBuffer = new int[0];
         currentDocId = Constants.EOF;
         setStartDocId(Constants.EOF);
         setEndDocId(Constants.EOF);
       } else {
-        this.dictIdSet = new HashSet<Integer>(dictIds.length);
-        for (int dictId : dictIds) {
-          dictIdSet.add(dictId);
-        }
+        this.dictIdBuffer = new int[BATCH_SIZE];
         setStartDocId(blockMetadata.getStartDocId());
         setEndDocId(blockMetadata.getEndDocId());
       }
@@ -115,14 +124,22 @@ public class ScanBasedSingleValueDocIdSet implements FilterBlockDocIdSet {
         targetDocId = startDocId;
       } else if (targetDocId > endDocId) {
         currentDocId = Constants.EOF;
+        return currentDocId;
       }
       if (currentDocId >= targetDocId) {
         return currentDocId;
+      }
+      currentDocId = targetDocId - 1;
+      if (targetDocId >= bufferStartDocId && targetDocId < bufferStartDocId + bufferLength) {
+        bufferPosition = targetDocId - bufferStartDocId;
       } else {
-        currentDocId = targetDocId - 1;
         valueIterator.skipTo(targetDocId);
-        return next();
+        nextReadDocId = targetDocId;
+        bufferStartDocId = targetDocId;
+        bufferLength = 0;
+        bufferPosition = 0;
       }
+      return next();
     }
 
     @Override
@@ -130,17 +147,37 @@ public class ScanBasedSingleValueDocIdSet implements FilterBlockDocIdSet {
       if (currentDocId == Constants.EOF) {
         return currentDocId;
       }
-      while (valueIterator.hasNext() && currentDocId <= endDocId) {
-        currentDocId = currentDocId + 1;
-        int dictIdForCurrentDoc = valueIterator.nextIntVal();
-        if (dictIdSet.contains(dictIdForCurrentDoc)) {
-          return currentDocId;
+      while (true) {
+        if (bufferPosition < bufferLength) {
+          int index = dictIdMatcher.firstMatch(dictIdBuffer, bufferPosition, bufferLength);
+          if (index >= 0 && bufferStartDocId + index <= endDocId) {
+            bufferPosition = index + 1;
+            currentDocId = bufferStartDocId + index;
+            return currentDocId;
+          }
+          bufferPosition = bufferLength;
+        }
+        if (nextReadDocId > endDocId || !fillBuffer()) {
+          break;
         }
       }
       currentDocId = Constants.EOF;
       return Constants.EOF;
     }
 
+    private boolean fillBuffer() {
+      int maxLength = Math.min(dictIdBuffer.length, endDocId - nextReadDocId + 1);
+      int length = valueIterator.nextIntVals(dictIdBuffer, maxLength);
+      if (length <= 0) {
+        return false;
+      }
+      bufferStartDocId = nextReadDocId;
+      bufferLength = length;
+      bufferPosition = 0;
+      nextReadDocId += length;
+      return true;
+    }
+
     @Override
     public int currentDocId() {
       return currentDocId;
@@ -20,6 +20,9 @@ import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 /**
@@ -30,6 +33,7 @@ public abstract class BaseFilterOperator implements Operator {
 
   private FilterResultBlock resultBlock;
   private Predicate predicate;
+  private PredicateEvaluator predicateEvaluator;
   private int nextBlockCallCounter = 0;
 
   public void setInputBlock(FilterResultBlock block) {
@@ -42,12 +46,26 @@ public abstract class BaseFilterOperator implements Operator {
 
   public void setPredicate(Predicate predicate) {
     this.predicate = predicate;
+    this.predicateEvaluator = null;
   }
 
   public Predicate getPredicate() {
     return predicate;
   }
 
+  /**
+   * Returns the evaluator of the predicate on the dictionary of the filtered column. It is only created once, so the
+   * dictionary ids looked up while planning (eg: to estimate the number of matching docs) are reused by the filter.
+   * @param dictionary
+   * @return
+   */
+  public PredicateEvaluator getPredicateEvaluator(Dictionary dictionary) {
+    if (predicateEvaluator == null) {
+      predicateEvaluator = PredicateEvaluatorProvider.getPredicateFunctionFor(predicate, dictionary);
+    }
+    return predicateEvaluator;
+  }
+
   @Override
   public final BaseFilterBlock nextBlock() {
     return nextBlock(new BlockId(0));
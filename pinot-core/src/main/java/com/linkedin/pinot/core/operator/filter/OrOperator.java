@@ -39,6 +39,10 @@ public class OrOperator extends BaseFilterOperator {
     this.operators = operators;
   }
 
+  public List<Operator> getChildOperators() {
+    return operators;
+  }
+
   @Override
   public boolean open() {
     for (Operator operator : operators) {
@@ -64,7 +68,6 @@ public class OrOperator extends BaseFilterOperator {
     for (Operator operator : operators) {
       operator.close();
     }
-    LOGGER.info("Time spent in OrOperator operator:{} is {}", this, orBlock.orBlockDocIdSet.timeMeasure);
     return true;
   }
 }
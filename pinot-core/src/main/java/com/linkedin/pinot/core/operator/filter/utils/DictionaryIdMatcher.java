@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.filter.utils;
+
+import java.util.Arrays;
+
+
+/**
+ * Tests dictionary ids against the ids matched by a predicate without boxing them.
+ * A contiguous set of ids, as produced by range, equals and most not-equals predicates, is
+ * checked against its bounds; any other set is checked against a bitset of the matching ids.
+ */
+public final class DictionaryIdMatcher {
+  private final int minDictId;
+  private final int maxDictId;
+  private final long[] bits;
+
+  public DictionaryIdMatcher(int[] dictIds) {
+    if (dictIds.length == 0) {
+      minDictId = 0;
+      maxDictId = -1;
+      bits = null;
+      return;
+    }
+    int[] sortedDictIds = Arrays.copyOf(dictIds, dictIds.length);
+    Arrays.sort(sortedDictIds);
+    minDictId = sortedDictIds[0];
+    maxDictId = sortedDictIds[sortedDictIds.length - 1];
+
+    int numDistinctDictIds = 1;
+    for (int i = 1; i < sortedDictIds.length; i++) {
+      if (sortedDictIds[i] != sortedDictIds[i - 1]) {
+        numDistinctDictIds++;
+      }
+    }
+    if (maxDictId - minDictId + 1 == numDistinctDictIds) {
+      bits = null;
+    } else {
+      bits = new long[((maxDictId - minDictId) >>> 6) + 1];
+      for (int dictId : sortedDictIds) {
+        int offset = dictId - minDictId;
+        bits[offset >>> 6] |= 1L << offset;
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return maxDictId < minDictId;
+  }
+
+  public boolean matches(int dictId) {
+    if (dictId < minDictId || dictId > maxDictId) {
+      return false;
+    }
+    if (bits == null) {
+      return true;
+    }
+    int offset = dictId - minDictId;
+    return (bits[offset >>> 6] & (1L << offset)) != 0;
+  }
+
+  /**
+   * Returns the index of the first dictionary id in dictIds[from, to) that matches, or -1 if none does.
+   */
+  public int firstMatch(int[] dictIds, int from, int to) {
+    if (bits == null) {
+      for (int i = from; i < to; i++) {
+        int dictId = dictIds[i];
+        if (dictId >= minDictId && dictId <= maxDictId) {
+          return i;
+        }
+      }
+    } else {
+      for (int i = from; i < to; i++) {
+        int offset = dictIds[i] - minDictId;
+        if (offset >= 0 && dictIds[i] <= maxDictId && (bits[offset >>> 6] & (1L << offset)) != 0) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+}
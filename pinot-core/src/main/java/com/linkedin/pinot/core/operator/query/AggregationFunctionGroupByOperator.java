@@ -27,6 +27,7 @@ import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.DictionaryIdAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
 
 
@@ -103,9 +104,26 @@ public abstract class AggregationFunctionGroupByOperator implements Operator {
   }
 
   public Map<String, Serializable> getAggregationGroupByResult() {
+    if (_aggregationFunction instanceof DictionaryIdAggregationFunction) {
+      for (Map.Entry<String, Serializable> entry : _aggregateGroupedValue.entrySet()) {
+        entry.setValue(toSegmentResult(entry.getValue()));
+      }
+    }
     return _aggregateGroupedValue;
   }
 
+  /**
+   * Converts the result of a group to the intermediate result returned for the segment, see
+   * {@link DictionaryIdAggregationFunction}.
+   */
+  protected Serializable toSegmentResult(Serializable aggregationResult) {
+    if (_aggregationFunction instanceof DictionaryIdAggregationFunction) {
+      return ((DictionaryIdAggregationFunction) _aggregationFunction).toSegmentResult(aggregationResult,
+          _aggregationFunctionBlocks);
+    }
+    return aggregationResult;
+  }
+
   public GroupBy getGroupBy() {
     return _groupBy;
   }
@@ -184,7 +184,7 @@ public class MAggregationFunctionGroupByWithDictionaryAndTrieTreeOperator extend
         traverseTrieTree(rootNode.getNextGroupedColumnValues().get(key), level + 1);
       }
     } else {
-      _aggregateGroupedValue.put(getGroupedKey(), rootNode.getAggregationResult());
+      _aggregateGroupedValue.put(getGroupedKey(), toSegmentResult(rootNode.getAggregationResult()));
     }
   }
 
@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.core.operator.query;
 
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import java.io.Serializable;
@@ -38,7 +40,7 @@ import com.linkedin.pinot.core.operator.DocIdSetBlock;
 import com.linkedin.pinot.core.operator.MProjectionOperator;
 import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
 import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
-import com.linkedin.pinot.core.query.aggregation.groupby.GroupByConstants;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultMap;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 
@@ -55,7 +57,6 @@ import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 public class MAggregationFunctionGroupByWithDictionaryOperator extends AggregationFunctionGroupByOperator {
 
   private int[] _groupKeyBitSize;
-  private final String[] _stringArray;
 
   private final Dictionary[] _dictionaries;
   private final BlockValIterator[] _groupByBlockValIterators;
@@ -69,7 +70,6 @@ public class MAggregationFunctionGroupByWithDictionaryOperator extends Aggregati
     _dictionaries = new Dictionary[_groupBy.getColumnsSize()];
     _groupByBlockValIterators = new BlockValIterator[_groupBy.getColumnsSize()];
     setGroupKeyOffset();
-    _stringArray = new String[_groupKeyBitSize.length];
   }
 
   private void setGroupKeyOffset() {
@@ -171,29 +171,34 @@ public class MAggregationFunctionGroupByWithDictionaryOperator extends Aggregati
         "Method: nextBlock(BlockId BlockId) is Not Supported in MAggregationFunctionGroupByOperator");
   }
 
+  /**
+   * Returns a {@link GroupByResultMap}, dictionary values are converted to strings once per distinct value rather
+   * than once per group.
+   */
   @Override
   public Map<String, Serializable> getAggregationGroupByResult() {
-    _aggregateGroupedValue.clear();
-    for (final long key : _tempAggregationResults.keySet()) {
-      _aggregateGroupedValue.put(decodeGroupedKeyFromLong(key), _tempAggregationResults.get(key));
+    final int numGroupByColumns = _groupKeyBitSize.length;
+    final GroupByResultMap groupByResultMap = new GroupByResultMap(numGroupByColumns, _tempAggregationResults.size());
+    final Int2IntOpenHashMap[] dictIdToValueId = new Int2IntOpenHashMap[numGroupByColumns];
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      dictIdToValueId[i] = new Int2IntOpenHashMap();
+      dictIdToValueId[i].defaultReturnValue(-1);
     }
-    return _aggregateGroupedValue;
-  }
-
-  private String decodeGroupedKeyFromLong(long key) {
-    int i = _groupKeyBitSize.length - 1;
-    while (i >= 0) {
-      final long number = key & (-1L >>> (64 - _groupKeyBitSize[i]));
-      _stringArray[i] = _dictionaries[i].get((int) number).toString();
-      key >>>= _groupKeyBitSize[i];
-      i--;
-    }
-
-    final StringBuilder builder = new StringBuilder();
-    for (int j = 0; j < (_stringArray.length - 1); j++) {
-      builder.append(_stringArray[j]).append(GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString());
+    final int[] valueIds = new int[numGroupByColumns];
+    for (final Long2ObjectMap.Entry<Serializable> entry : _tempAggregationResults.long2ObjectEntrySet()) {
+      long key = entry.getLongKey();
+      for (int i = numGroupByColumns - 1; i >= 0; i--) {
+        final int dictId = (int) (key & (-1L >>> (64 - _groupKeyBitSize[i])));
+        key >>>= _groupKeyBitSize[i];
+        int valueId = dictIdToValueId[i].get(dictId);
+        if (valueId < 0) {
+          valueId = groupByResultMap.appendGroupValue(i, _dictionaries[i].get(dictId).toString());
+          dictIdToValueId[i].put(dictId, valueId);
+        }
+        valueIds[i] = valueId;
+      }
+      groupByResultMap.appendGroup(valueIds, toSegmentResult(entry.getValue()));
     }
-    builder.append(_stringArray[_stringArray.length - 1]);
-    return builder.toString();
+    return groupByResultMap;
   }
 }
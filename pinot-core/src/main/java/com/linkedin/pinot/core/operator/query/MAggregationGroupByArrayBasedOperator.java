@@ -0,0 +1,430 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.block.query.ProjectionBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
+import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultMap;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * MAggregationGroupByArrayBasedOperator applies all the AggregationInfos of a group by query in a single pass over
+ * the filtered docs of a segment.
+ *
+ * Group by columns are dictionary encoded single value columns, so a group key is the mixed radix number built from
+ * the dictionary ids. When the product of the cardinalities is small enough, both in absolute terms and compared to the
+ * number of docs of the segment, the group key is directly used as the index into the result arrays. Otherwise group
+ * keys are mapped to dense group ids through an open addressing long to int map. Intermediate results are kept in
+ * primitive arrays, so no object is allocated per scanned row.
+ *
+ * Only count, sum, min, max and avg on dictionary encoded single value columns are supported, see
+ * {@link #isSupported(String)}.
+ */
+public class MAggregationGroupByArrayBasedOperator implements Operator {
+
+  // Upper bound on the number of group keys to index the result arrays directly. Every aggregation allocates a
+  // primitive array of the whole key space, so this keeps them at 128KB each.
+  public static final int MAX_DENSE_GROUP_KEY_SPACE = 1 << 14;
+  private static final int INITIAL_SPARSE_CAPACITY = 1024;
+
+  private static final int COUNT = 0;
+  private static final int SUM = 1;
+  private static final int MIN = 2;
+  private static final int MAX = 3;
+  private static final int AVG = 4;
+
+  private final IndexSegment _indexSegment;
+  private final List<AggregationInfo> _aggregationInfoList;
+  private final List<AggregationFunction> _aggregationFunctionList;
+  private final MProjectionOperator _projectionOperator;
+  private final GroupBy _groupBy;
+
+  private final String[] _groupByColumns;
+  private final Dictionary[] _groupByDictionaries;
+  private final int[] _groupByCardinalities;
+  private final BlockSingleValIterator[] _groupByIterators;
+
+  // Distinct columns of the aggregation functions, each of them is read once per doc.
+  private final String[] _aggregationColumns;
+  private final Dictionary[] _aggregationDictionaries;
+  private final BlockSingleValIterator[] _aggregationIterators;
+  private final int[] _aggregationDictIds;
+
+  private final int[] _aggregationTypes;
+  // Index into _aggregationColumns for every aggregation function, -1 for count.
+  private final int[] _aggregationColumnIndexes;
+
+  private final boolean _isDense;
+  private final Long2IntOpenHashMap _groupKeyToGroupId;
+  private long[] _groupKeys;
+  private boolean[] _isGroupSeen;
+  private int _numGroups = 0;
+  private int _capacity;
+
+  private final double[][] _values;
+  private final long[][] _counts;
+
+  public MAggregationGroupByArrayBasedOperator(IndexSegment indexSegment, List<AggregationInfo> aggregationInfoList,
+      GroupBy groupBy, Operator projectionOperator) {
+    _indexSegment = indexSegment;
+    _aggregationInfoList = aggregationInfoList;
+    _aggregationFunctionList = AggregationFunctionFactory.getAggregationFunction(aggregationInfoList);
+    _groupBy = groupBy;
+    _projectionOperator = (MProjectionOperator) projectionOperator;
+
+    int numGroupByColumns = _groupBy.getColumnsSize();
+    _groupByColumns = _groupBy.getColumns().toArray(new String[numGroupByColumns]);
+    _groupByDictionaries = new Dictionary[numGroupByColumns];
+    _groupByCardinalities = new int[numGroupByColumns];
+    _groupByIterators = new BlockSingleValIterator[numGroupByColumns];
+    long groupKeySpace = 1L;
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      _groupByDictionaries[i] = getDictionary(_groupByColumns[i]);
+      _groupByCardinalities[i] = _groupByDictionaries[i].length();
+      groupKeySpace *= _groupByCardinalities[i];
+    }
+
+    int numAggregations = _aggregationInfoList.size();
+    _aggregationTypes = new int[numAggregations];
+    _aggregationColumnIndexes = new int[numAggregations];
+    List<String> aggregationColumns = new ArrayList<String>();
+    for (int i = 0; i < numAggregations; ++i) {
+      AggregationInfo aggregationInfo = _aggregationInfoList.get(i);
+      _aggregationTypes[i] = getAggregationType(aggregationInfo.getAggregationType());
+      if (_aggregationTypes[i] == COUNT) {
+        _aggregationColumnIndexes[i] = -1;
+      } else {
+        String column = aggregationInfo.getAggregationParams().get("column").trim();
+        int columnIndex = aggregationColumns.indexOf(column);
+        if (columnIndex < 0) {
+          columnIndex = aggregationColumns.size();
+          aggregationColumns.add(column);
+        }
+        _aggregationColumnIndexes[i] = columnIndex;
+      }
+    }
+    _aggregationColumns = aggregationColumns.toArray(new String[aggregationColumns.size()]);
+    _aggregationDictionaries = new Dictionary[_aggregationColumns.length];
+    _aggregationIterators = new BlockSingleValIterator[_aggregationColumns.length];
+    _aggregationDictIds = new int[_aggregationColumns.length];
+    for (int i = 0; i < _aggregationColumns.length; ++i) {
+      _aggregationDictionaries[i] = getDictionary(_aggregationColumns[i]);
+    }
+
+    _isDense = isDenseGroupKeySpace(groupKeySpace, indexSegment.getTotalDocs());
+    if (_isDense) {
+      _capacity = (int) groupKeySpace;
+      _isGroupSeen = new boolean[_capacity];
+      _groupKeyToGroupId = null;
+    } else {
+      _capacity = INITIAL_SPARSE_CAPACITY;
+      _groupKeys = new long[_capacity];
+      _groupKeyToGroupId = new Long2IntOpenHashMap();
+      _groupKeyToGroupId.defaultReturnValue(-1);
+    }
+    _values = new double[numAggregations][];
+    _counts = new long[numAggregations][];
+    for (int i = 0; i < numAggregations; ++i) {
+      _counts[i] = new long[_capacity];
+      if (_aggregationTypes[i] != COUNT) {
+        _values[i] = new double[_capacity];
+        fillInitialValues(i, 0);
+      }
+    }
+  }
+
+  /**
+   * Returns true if the result arrays can be indexed by the group keys directly. A segment can not have more groups
+   * than docs, so a key space larger than that would mostly be allocated for groups that can never be hit.
+   */
+  public static boolean isDenseGroupKeySpace(long groupKeySpace, int numDocs) {
+    return groupKeySpace <= MAX_DENSE_GROUP_KEY_SPACE && groupKeySpace <= numDocs;
+  }
+
+  /**
+   * Returns true if the given aggregation type can be computed by this operator.
+   */
+  public static boolean isSupported(String aggregationType) {
+    return getAggregationType(aggregationType) >= 0;
+  }
+
+  private static int getAggregationType(String aggregationType) {
+    if (aggregationType.equalsIgnoreCase("count")) {
+      return COUNT;
+    }
+    if (aggregationType.equalsIgnoreCase("sum")) {
+      return SUM;
+    }
+    if (aggregationType.equalsIgnoreCase("min")) {
+      return MIN;
+    }
+    if (aggregationType.equalsIgnoreCase("max")) {
+      return MAX;
+    }
+    if (aggregationType.equalsIgnoreCase("avg")) {
+      return AVG;
+    }
+    return -1;
+  }
+
+  private Dictionary getDictionary(String column) {
+    return _projectionOperator.getDataSource(column).nextBlock(new BlockId(0)).getMetadata().getDictionary();
+  }
+
+  private void fillInitialValues(int aggregationIndex, int fromIndex) {
+    if (_aggregationTypes[aggregationIndex] == MIN) {
+      Arrays.fill(_values[aggregationIndex], fromIndex, _capacity, Double.POSITIVE_INFINITY);
+    } else if (_aggregationTypes[aggregationIndex] == MAX) {
+      Arrays.fill(_values[aggregationIndex], fromIndex, _capacity, Double.NEGATIVE_INFINITY);
+    }
+  }
+
+  @Override
+  public boolean open() {
+    _projectionOperator.open();
+    return true;
+  }
+
+  @Override
+  public Block nextBlock() {
+    final long startTime = System.currentTimeMillis();
+    long numDocsScanned = 0;
+    ProjectionBlock projectionBlock;
+    while ((projectionBlock = (ProjectionBlock) _projectionOperator.nextBlock()) != null) {
+      DocIdSetBlock docIdSetBlock = (DocIdSetBlock) projectionBlock.getDocIdSetBlock();
+      aggregateBlock(projectionBlock, docIdSetBlock);
+      numDocsScanned += docIdSetBlock.getSearchableLength();
+    }
+
+    final IntermediateResultsBlock resultBlock =
+        new IntermediateResultsBlock(_aggregationFunctionList, getAggregationGroupByResults(), true);
+    resultBlock.setNumDocsScanned(numDocsScanned);
+    resultBlock.setTotalDocs(_indexSegment.getTotalDocs());
+    resultBlock.setTimeUsedMs(System.currentTimeMillis() - startTime);
+    return resultBlock;
+  }
+
+  private void aggregateBlock(ProjectionBlock projectionBlock, DocIdSetBlock docIdSetBlock) {
+    for (int i = 0; i < _groupByColumns.length; ++i) {
+      _groupByIterators[i] =
+          (BlockSingleValIterator) projectionBlock.getBlock(_groupByColumns[i]).getBlockValueSet().iterator();
+    }
+    for (int i = 0; i < _aggregationColumns.length; ++i) {
+      _aggregationIterators[i] =
+          (BlockSingleValIterator) projectionBlock.getBlock(_aggregationColumns[i]).getBlockValueSet().iterator();
+    }
+
+    BlockDocIdIterator blockDocIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    int docId;
+    while ((docId = blockDocIdIterator.next()) != Constants.EOF) {
+      int groupId = getGroupId(getGroupKey(docId));
+      for (int i = 0; i < _aggregationColumns.length; ++i) {
+        BlockSingleValIterator iterator = _aggregationIterators[i];
+        _aggregationDictIds[i] = iterator.skipTo(docId) ? iterator.nextIntVal() : Dictionary.NULL_VALUE_INDEX;
+      }
+      for (int i = 0; i < _aggregationTypes.length; ++i) {
+        if (_aggregationTypes[i] == COUNT) {
+          _counts[i][groupId]++;
+          continue;
+        }
+        int columnIndex = _aggregationColumnIndexes[i];
+        int dictId = _aggregationDictIds[columnIndex];
+        if (dictId == Dictionary.NULL_VALUE_INDEX) {
+          continue;
+        }
+        double value = _aggregationDictionaries[columnIndex].getDoubleValue(dictId);
+        double[] values = _values[i];
+        switch (_aggregationTypes[i]) {
+          case SUM:
+          case AVG:
+            values[groupId] += value;
+            break;
+          case MIN:
+            if (value < values[groupId]) {
+              values[groupId] = value;
+            }
+            break;
+          case MAX:
+            if (value > values[groupId]) {
+              values[groupId] = value;
+            }
+            break;
+          default:
+            break;
+        }
+        _counts[i][groupId]++;
+      }
+    }
+  }
+
+  private long getGroupKey(int docId) {
+    long groupKey = 0L;
+    for (int i = 0; i < _groupByIterators.length; ++i) {
+      BlockSingleValIterator iterator = _groupByIterators[i];
+      iterator.skipTo(docId);
+      groupKey = groupKey * _groupByCardinalities[i] + iterator.nextIntVal();
+    }
+    return groupKey;
+  }
+
+  private int getGroupId(long groupKey) {
+    if (_isDense) {
+      int groupId = (int) groupKey;
+      if (!_isGroupSeen[groupId]) {
+        _isGroupSeen[groupId] = true;
+        _numGroups++;
+      }
+      return groupId;
+    }
+    int groupId = _groupKeyToGroupId.get(groupKey);
+    if (groupId < 0) {
+      groupId = _numGroups++;
+      if (groupId == _capacity) {
+        expandCapacity();
+      }
+      _groupKeyToGroupId.put(groupKey, groupId);
+      _groupKeys[groupId] = groupKey;
+    }
+    return groupId;
+  }
+
+  private void expandCapacity() {
+    int oldCapacity = _capacity;
+    _capacity = oldCapacity * 2;
+    _groupKeys = Arrays.copyOf(_groupKeys, _capacity);
+    for (int i = 0; i < _aggregationTypes.length; ++i) {
+      _counts[i] = Arrays.copyOf(_counts[i], _capacity);
+      if (_values[i] != null) {
+        _values[i] = Arrays.copyOf(_values[i], _capacity);
+        fillInitialValues(i, oldCapacity);
+      }
+    }
+  }
+
+  /**
+   * Results are returned as {@link GroupByResultMap}s keyed by dictionary values, each dictionary value is converted
+   * to a string once per segment instead of once per group.
+   */
+  private List<Map<String, Serializable>> getAggregationGroupByResults() {
+    int numGroupByColumns = _groupByColumns.length;
+    GroupByResultMap[] groupByResultMaps = new GroupByResultMap[_aggregationTypes.length];
+    List<Map<String, Serializable>> aggregationGroupByResults = new ArrayList<Map<String, Serializable>>();
+    for (int i = 0; i < _aggregationTypes.length; ++i) {
+      groupByResultMaps[i] = new GroupByResultMap(numGroupByColumns, _numGroups);
+      aggregationGroupByResults.add(groupByResultMaps[i]);
+    }
+
+    // Maps dictionary ids to value ids of the result maps, all result maps get the same values in the same order.
+    Int2IntOpenHashMap[] dictIdToValueId = new Int2IntOpenHashMap[numGroupByColumns];
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      dictIdToValueId[i] = new Int2IntOpenHashMap();
+      dictIdToValueId[i].defaultReturnValue(-1);
+    }
+    int[] dictIds = new int[numGroupByColumns];
+    int[] valueIds = new int[numGroupByColumns];
+    int numGroupIds = _isDense ? _capacity : _numGroups;
+    for (int groupId = 0; groupId < numGroupIds; ++groupId) {
+      if (_isDense && !_isGroupSeen[groupId]) {
+        continue;
+      }
+      decodeGroupKey(_isDense ? groupId : _groupKeys[groupId], dictIds);
+      for (int i = 0; i < numGroupByColumns; ++i) {
+        int valueId = dictIdToValueId[i].get(dictIds[i]);
+        if (valueId < 0) {
+          String value = _groupByDictionaries[i].get(dictIds[i]).toString();
+          for (GroupByResultMap groupByResultMap : groupByResultMaps) {
+            valueId = groupByResultMap.appendGroupValue(i, value);
+          }
+          dictIdToValueId[i].put(dictIds[i], valueId);
+        }
+        valueIds[i] = valueId;
+      }
+      for (int i = 0; i < _aggregationTypes.length; ++i) {
+        // A group whose docs all have a null value for the aggregation column has no result for that aggregation
+        Serializable result = getResult(i, groupId);
+        if (result != null) {
+          groupByResultMaps[i].appendGroup(valueIds, result);
+        }
+      }
+    }
+    return aggregationGroupByResults;
+  }
+
+  private Serializable getResult(int aggregationIndex, int groupId) {
+    long count = _counts[aggregationIndex][groupId];
+    switch (_aggregationTypes[aggregationIndex]) {
+      case COUNT:
+        return count;
+      case AVG:
+        if (count == 0) {
+          return null;
+        }
+        return ((AvgAggregationFunction) _aggregationFunctionList.get(aggregationIndex))
+            .getAvgPair(_values[aggregationIndex][groupId], count);
+      default:
+        if (count == 0) {
+          return null;
+        }
+        return _values[aggregationIndex][groupId];
+    }
+  }
+
+  private void decodeGroupKey(long groupKey, int[] dictIds) {
+    for (int i = _groupByColumns.length - 1; i >= 0; i--) {
+      dictIds[i] = (int) (groupKey % _groupByCardinalities[i]);
+      groupKey /= _groupByCardinalities[i];
+    }
+  }
+
+  @Override
+  public Block nextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean close() {
+    _projectionOperator.close();
+    return true;
+  }
+
+  public GroupBy getGroupBy() {
+    return _groupBy;
+  }
+}
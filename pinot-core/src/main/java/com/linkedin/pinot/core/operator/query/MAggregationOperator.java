@@ -22,13 +22,25 @@ import java.util.List;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.core.block.query.AggregationResultBlock;
 import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.block.query.ProjectionBlock;
 import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockMetadata;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.DocIdSetBlock;
 import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 /**
@@ -36,22 +48,110 @@ import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
  * to a given IndexSegment.
  * nextBlock() will return an IntermediateResultBlock for the given IndexSegment.
  *
+ * Count, sum, min, max and avg on dictionary encoded single value columns are computed together in a single pass over
+ * the filtered docs of each projection block, every column being read once per doc however many functions use it.
+ * The other functions are applied by their own BAggregationFunctionOperator.
  *
  */
 public class MAggregationOperator implements Operator {
 
+  private static final int DELEGATED = -1;
+  private static final int COUNT = 0;
+  private static final int SUM = 1;
+  private static final int MIN = 2;
+  private static final int MAX = 3;
+  private static final int AVG = 4;
+
   private final IndexSegment _indexSegment;
   private final List<AggregationInfo> _aggregationInfoList;
   private final MProjectionOperator _projectionOperator;
 
   private List<BAggregationFunctionOperator> _aggregationFunctionOperatorList;
 
+  // Type of every aggregation function, DELEGATED for the ones not computed in the single pass.
+  private final int[] _aggregationTypes;
+  // Index into _singlePassColumns for every aggregation function computed in the single pass, -1 otherwise.
+  private final int[] _singlePassColumnIndexes;
+  // Distinct columns of the aggregation functions computed in the single pass.
+  private final String[] _singlePassColumns;
+  private final Dictionary[] _singlePassDictionaries;
+  private final BlockSingleValIterator[] _singlePassIterators;
+  private final double[] _singlePassValues;
+  private final boolean[] _isSinglePassValueNull;
+
+  private final double[] _values;
+  private final long[] _counts;
+
   public MAggregationOperator(IndexSegment indexSegment, List<AggregationInfo> aggregationInfoList,
       MProjectionOperator projectionOperator, List<BAggregationFunctionOperator> aggregationFunctionOperatorList) {
     _aggregationInfoList = aggregationInfoList;
     _indexSegment = indexSegment;
     _projectionOperator = projectionOperator;
     _aggregationFunctionOperatorList = aggregationFunctionOperatorList;
+
+    int numAggregations = _aggregationFunctionOperatorList.size();
+    _aggregationTypes = new int[numAggregations];
+    _singlePassColumnIndexes = new int[numAggregations];
+    _values = new double[numAggregations];
+    _counts = new long[numAggregations];
+    List<String> singlePassColumns = new ArrayList<String>();
+    List<Dictionary> singlePassDictionaries = new ArrayList<Dictionary>();
+    for (int i = 0; i < numAggregations; ++i) {
+      _aggregationTypes[i] = getAggregationType(_aggregationFunctionOperatorList.get(i).getAggregationFunction());
+      _singlePassColumnIndexes[i] = -1;
+      if (_aggregationTypes[i] == DELEGATED || _aggregationTypes[i] == COUNT) {
+        continue;
+      }
+      String column = _aggregationInfoList.get(i).getAggregationParams().get("column").trim();
+      int columnIndex = singlePassColumns.indexOf(column);
+      if (columnIndex < 0) {
+        BlockMetadata blockMetadata = getBlockMetadata(column);
+        if (blockMetadata == null || !blockMetadata.hasDictionary() || !blockMetadata.isSingleValue()) {
+          _aggregationTypes[i] = DELEGATED;
+          continue;
+        }
+        columnIndex = singlePassColumns.size();
+        singlePassColumns.add(column);
+        singlePassDictionaries.add(blockMetadata.getDictionary());
+      }
+      _singlePassColumnIndexes[i] = columnIndex;
+    }
+    _singlePassColumns = singlePassColumns.toArray(new String[singlePassColumns.size()]);
+    _singlePassDictionaries = singlePassDictionaries.toArray(new Dictionary[singlePassDictionaries.size()]);
+    _singlePassIterators = new BlockSingleValIterator[_singlePassColumns.length];
+    _singlePassValues = new double[_singlePassColumns.length];
+    _isSinglePassValueNull = new boolean[_singlePassColumns.length];
+  }
+
+  /**
+   * Only the dictionary based implementations are computed in the single pass, their no dictionary subclasses are
+   * delegated.
+   */
+  private static int getAggregationType(AggregationFunction aggregationFunction) {
+    Class<?> functionClass = aggregationFunction.getClass();
+    if (functionClass == CountAggregationFunction.class) {
+      return COUNT;
+    }
+    if (functionClass == SumAggregationFunction.class) {
+      return SUM;
+    }
+    if (functionClass == MinAggregationFunction.class) {
+      return MIN;
+    }
+    if (functionClass == MaxAggregationFunction.class) {
+      return MAX;
+    }
+    if (functionClass == AvgAggregationFunction.class) {
+      return AVG;
+    }
+    return DELEGATED;
+  }
+
+  private BlockMetadata getBlockMetadata(String column) {
+    if (_projectionOperator == null || _projectionOperator.getDataSource(column) == null) {
+      return null;
+    }
+    return _projectionOperator.getDataSource(column).nextBlock(new BlockId(0)).getMetadata();
   }
 
   @Override
@@ -71,10 +171,17 @@ public class MAggregationOperator implements Operator {
     for (int i = 0; i < _aggregationFunctionOperatorList.size(); ++i) {
       aggregationResults.add(AggregationFunctionFactory.get(_aggregationInfoList.get(i), true).getDefaultValue());
     }
+    resetSinglePassResults();
     final long startTime = System.currentTimeMillis();
     long numDocsScanned = 0;
-    while (_projectionOperator.nextBlock() != null) {
+    ProjectionBlock projectionBlock;
+    while ((projectionBlock = (ProjectionBlock) _projectionOperator.nextBlock()) != null) {
+      DocIdSetBlock docIdSetBlock = (DocIdSetBlock) projectionBlock.getDocIdSetBlock();
+      aggregateSinglePass(projectionBlock, docIdSetBlock);
       for (int i = 0; i < _aggregationFunctionOperatorList.size(); ++i) {
+        if (_aggregationTypes[i] != DELEGATED) {
+          continue;
+        }
         AggregationResultBlock block = (AggregationResultBlock) _aggregationFunctionOperatorList.get(i).nextBlock();
         if (block != null) {
           aggregationResults.set(
@@ -83,8 +190,12 @@ public class MAggregationOperator implements Operator {
                   .combineTwoValues(aggregationResults.get(i), block.getAggregationResult()));
         }
       }
-      numDocsScanned +=
-          ((DocIdSetBlock) (_projectionOperator.getCurrentBlock().getDocIdSetBlock())).getSearchableLength();
+      numDocsScanned += docIdSetBlock.getSearchableLength();
+    }
+    for (int i = 0; i < _aggregationFunctionOperatorList.size(); ++i) {
+      if (_aggregationTypes[i] != DELEGATED) {
+        aggregationResults.set(i, getSinglePassResult(i));
+      }
     }
 
     final IntermediateResultsBlock resultBlock =
@@ -96,6 +207,85 @@ public class MAggregationOperator implements Operator {
     return resultBlock;
   }
 
+  private void resetSinglePassResults() {
+    for (int i = 0; i < _aggregationTypes.length; ++i) {
+      _counts[i] = 0;
+      if (_aggregationTypes[i] == MIN) {
+        _values[i] = Double.POSITIVE_INFINITY;
+      } else if (_aggregationTypes[i] == MAX) {
+        _values[i] = Double.NEGATIVE_INFINITY;
+      } else {
+        _values[i] = 0;
+      }
+    }
+  }
+
+  private void aggregateSinglePass(ProjectionBlock projectionBlock, DocIdSetBlock docIdSetBlock) {
+    for (int i = 0; i < _aggregationTypes.length; ++i) {
+      if (_aggregationTypes[i] == COUNT) {
+        _counts[i] += docIdSetBlock.getSearchableLength();
+      }
+    }
+    if (_singlePassColumns.length == 0) {
+      return;
+    }
+    for (int i = 0; i < _singlePassColumns.length; ++i) {
+      _singlePassIterators[i] =
+          (BlockSingleValIterator) projectionBlock.getBlock(_singlePassColumns[i]).getBlockValueSet().iterator();
+    }
+
+    BlockDocIdIterator blockDocIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    int docId;
+    while ((docId = blockDocIdIterator.next()) != Constants.EOF) {
+      for (int i = 0; i < _singlePassColumns.length; ++i) {
+        BlockSingleValIterator iterator = _singlePassIterators[i];
+        int dictId = iterator.skipTo(docId) ? iterator.nextIntVal() : Dictionary.NULL_VALUE_INDEX;
+        _isSinglePassValueNull[i] = (dictId == Dictionary.NULL_VALUE_INDEX);
+        if (!_isSinglePassValueNull[i]) {
+          _singlePassValues[i] = _singlePassDictionaries[i].getDoubleValue(dictId);
+        }
+      }
+      for (int i = 0; i < _aggregationTypes.length; ++i) {
+        int columnIndex = _singlePassColumnIndexes[i];
+        if (columnIndex < 0 || _isSinglePassValueNull[columnIndex]) {
+          continue;
+        }
+        double value = _singlePassValues[columnIndex];
+        switch (_aggregationTypes[i]) {
+          case SUM:
+          case AVG:
+            _values[i] += value;
+            break;
+          case MIN:
+            if (value < _values[i]) {
+              _values[i] = value;
+            }
+            break;
+          case MAX:
+            if (value > _values[i]) {
+              _values[i] = value;
+            }
+            break;
+          default:
+            break;
+        }
+        _counts[i]++;
+      }
+    }
+  }
+
+  private Serializable getSinglePassResult(int aggregationIndex) {
+    switch (_aggregationTypes[aggregationIndex]) {
+      case COUNT:
+        return _counts[aggregationIndex];
+      case AVG:
+        return ((AvgAggregationFunction) _aggregationFunctionOperatorList.get(aggregationIndex).getAggregationFunction())
+            .getAvgPair(_values[aggregationIndex], _counts[aggregationIndex]);
+      default:
+        return _values[aggregationIndex];
+    }
+  }
+
   @Override
   public Block nextBlock(BlockId BlockId) {
     throw new UnsupportedOperationException();
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.query;
+
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.executor.QueryDeadline;
+
+
+/**
+ * Serves the result of a segment from the {@link SegmentResultCache}, or executes the segment operator and caches its
+ * result.
+ */
+public class MSegmentResultCacheOperator implements Operator {
+  private final IntermediateResultsBlock _cachedBlock;
+  private final Operator _segmentOperator;
+  private final SegmentResultCache _segmentResultCache;
+  private final String _cacheKey;
+  private final String _tableName;
+  private final String _segmentName;
+
+  public MSegmentResultCacheOperator(IntermediateResultsBlock cachedBlock) {
+    _cachedBlock = cachedBlock;
+    _segmentOperator = null;
+    _segmentResultCache = null;
+    _cacheKey = null;
+    _tableName = null;
+    _segmentName = null;
+  }
+
+  public MSegmentResultCacheOperator(Operator segmentOperator, SegmentResultCache segmentResultCache, String cacheKey,
+      String tableName, String segmentName) {
+    _cachedBlock = null;
+    _segmentOperator = segmentOperator;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+    _tableName = tableName;
+    _segmentName = segmentName;
+  }
+
+  @Override
+  public boolean open() {
+    if (_segmentOperator != null) {
+      _segmentOperator.open();
+    }
+    return true;
+  }
+
+  @Override
+  public Block nextBlock() {
+    if (_cachedBlock != null) {
+      return _cachedBlock;
+    }
+    IntermediateResultsBlock block = (IntermediateResultsBlock) _segmentOperator.nextBlock();
+    if (block != null && QueryDeadline.hasExpired()) {
+      // The segment operators stopped scanning at the deadline, the block only covers part of the segment
+      block.setPartialResult(true);
+    }
+    // Cache before returning, the combine phase merges other segments into the block
+    _segmentResultCache.put(_cacheKey, _tableName, _segmentName, block);
+    return block;
+  }
+
+  @Override
+  public Block nextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean close() {
+    if (_segmentOperator != null) {
+      _segmentOperator.close();
+    }
+    return true;
+  }
+}
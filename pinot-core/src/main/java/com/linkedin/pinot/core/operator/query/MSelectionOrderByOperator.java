@@ -103,7 +103,12 @@ public class MSelectionOrderByOperator implements Operator {
         _selectionOperatorService.iterateOnBlock(projectionBlock.getDocIdSetBlock().getBlockDocIdSet().iterator(),
             _blocks);
         numDocsScanned += ((DocIdSetBlock) (projectionBlock.getDocIdSetBlock())).getSearchableLength();
+        if (_selectionOperatorService.canTerminate()) {
+          break;
+        }
       }
+      // The rows of the segment are materialized once, after all doc ids are collected.
+      _selectionOperatorService.mergeToRowEventsSet(_blocks);
 
       final IntermediateResultsBlock resultBlock = new IntermediateResultsBlock();
       resultBlock.setSelectionResult(_selectionOperatorService.getRowEventsSet());
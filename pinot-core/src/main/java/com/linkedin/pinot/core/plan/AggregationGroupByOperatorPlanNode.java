@@ -29,6 +29,7 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.query.AggregationFunctionGroupByOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByArrayBasedOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionUtils;
 
@@ -56,6 +57,10 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
     _projectionPlanNode =
         new ProjectionPlanNode(_indexSegment, getAggregationGroupByRelatedColumns(), new DocIdSetPlanNode(
             _indexSegment, _brokerRequest, 10000));
+    if (_aggregationGroupByImplementationType == AggregationGroupByImplementationType.ArrayBased) {
+      // All the aggregation functions are computed by a single operator.
+      return;
+    }
     for (int i = 0; i < _brokerRequest.getAggregationsInfo().size(); ++i) {
       AggregationInfo aggregationInfo = _brokerRequest.getAggregationsInfo().get(i);
       boolean hasDictionary = AggregationFunctionUtils.isAggregationFunctionWithDictionary(aggregationInfo, _indexSegment);
@@ -79,6 +84,10 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
 
   @Override
   public Operator run() {
+    if (_aggregationGroupByImplementationType == AggregationGroupByImplementationType.ArrayBased) {
+      return new MAggregationGroupByArrayBasedOperator(_indexSegment, _brokerRequest.getAggregationsInfo(),
+          _brokerRequest.getGroupBy(), _projectionPlanNode.run());
+    }
     List<AggregationFunctionGroupByOperator> aggregationFunctionOperatorList =
         new ArrayList<AggregationFunctionGroupByOperator>();
     for (AggregationFunctionGroupByPlanNode aggregationFunctionGroupByPlanNode : _aggregationFunctionGroupByPlanNodes) {
@@ -92,6 +101,14 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
   @Override
   public void showTree(String prefix) {
     LOGGER.debug(prefix + "Inner-Segment Plan Node :");
+    if (_aggregationGroupByImplementationType == AggregationGroupByImplementationType.ArrayBased) {
+      LOGGER.debug(prefix + "Operator: MAggregationGroupByArrayBasedOperator");
+      LOGGER.debug(prefix + "Argument 0: Projection - ");
+      _projectionPlanNode.showTree(prefix + "    ");
+      LOGGER.debug(prefix + "Argument 1: Aggregations - " + _brokerRequest.getAggregationsInfo());
+      LOGGER.debug(prefix + "Argument 2: GroupBy - " + _brokerRequest.getGroupBy());
+      return;
+    }
     LOGGER.debug(prefix + "Operator: MAggregationGroupByOperator");
     LOGGER.debug(prefix + "Argument 0: Projection - ");
     _projectionPlanNode.showTree(prefix + "    ");
@@ -104,6 +121,7 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
   public enum AggregationGroupByImplementationType {
     NoDictionary,
     Dictionary,
-    DictionaryAndTrie
+    DictionaryAndTrie,
+    ArrayBased
   }
 }
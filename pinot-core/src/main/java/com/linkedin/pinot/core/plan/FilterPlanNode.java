@@ -18,7 +18,7 @@ package com.linkedin.pinot.core.plan;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -47,12 +47,17 @@ import com.linkedin.pinot.core.operator.filter.InvertedIndexBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.OrOperator;
 import com.linkedin.pinot.core.operator.filter.ScanBasedFilterOperator;
 import com.linkedin.pinot.core.operator.filter.SortedInvertedIndexBasedFilterOperator;
+import com.linkedin.pinot.core.segment.index.InvertedIndexReader;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
 public class FilterPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(FilterPlanNode.class);
   private final BrokerRequest _brokerRequest;
   private final IndexSegment _segment;
+  // Data sources of the leaf operators and memoized estimates, used to order the children of AND/OR.
+  private final Map<Operator, DataSource> _leafDataSources = new IdentityHashMap<Operator, DataSource>();
+  private final Map<Operator, Long> _estimatedNumMatchingDocs = new IdentityHashMap<Operator, Long>();
 
   public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest) {
     _segment = segment;
@@ -144,25 +149,27 @@ public class FilterPlanNode implements PlanNode {
         baseFilterOperator = new ScanBasedFilterOperator(ds);
       }
       baseFilterOperator.setPredicate(predicate);
+      _leafDataSources.put(baseFilterOperator, ds);
       ret = baseFilterOperator;
     }
     return ret;
   }
 
   /**
-   * Re orders operators, puts Sorted -> Inverted and then Raw scan. TODO: With Inverted, we can further optimize based on cardinality
+   * Re orders operators by the estimated number of docs they match, so that AND is driven by its most selective
+   * child. Ties keep the access path order: Sorted -> Inverted -> Raw scan.
    * @param operators
    */
   private void reorder(List<Operator> operators) {
-
-    final Map<Operator, Integer> operatorPriorityMap = new HashMap<Operator, Integer>();
+    final Map<Operator, Long> operatorCostMap = new IdentityHashMap<Operator, Long>();
+    final Map<Operator, Integer> operatorPriorityMap = new IdentityHashMap<Operator, Integer>();
     for (Operator operator : operators) {
       Integer priority = Integer.MAX_VALUE;
       if (operator instanceof SortedInvertedIndexBasedFilterOperator) {
         priority = 0;
       } else if (operator instanceof AndOperator) {
         priority = 1;
-      } else if (operator instanceof InvertedIndexBasedFilterOperator) {
+      } else if (operator instanceof BitmapBasedFilterOperator || operator instanceof InvertedIndexBasedFilterOperator) {
         priority = 2;
       } else if (operator instanceof ScanBasedFilterOperator) {
         priority = 3;
@@ -170,17 +177,85 @@ public class FilterPlanNode implements PlanNode {
         priority = 4;
       }
       operatorPriorityMap.put(operator, priority);
+      operatorCostMap.put(operator, estimateNumMatchingDocs(operator));
     }
 
     Comparator<? super Operator> comparator = new Comparator<Operator>() {
       @Override
       public int compare(Operator o1, Operator o2) {
+        int compare = Long.compare(operatorCostMap.get(o1), operatorCostMap.get(o2));
+        if (compare != 0) {
+          return compare;
+        }
         return Integer.compare(operatorPriorityMap.get(o1), operatorPriorityMap.get(o2));
       }
     };
     Collections.sort(operators, comparator);
   }
 
+  /**
+   * Estimates the number of docs matched by a filter operator. Inverted and sorted indexes give the exact number from
+   * the bitmap cardinalities and doc ranges; scanned columns assume the values are uniformly distributed over the
+   * dictionary.
+   */
+  private long estimateNumMatchingDocs(Operator operator) {
+    Long estimate = _estimatedNumMatchingDocs.get(operator);
+    if (estimate != null) {
+      return estimate;
+    }
+    long totalDocs = _segment.getTotalDocs();
+    if (operator instanceof AndOperator) {
+      estimate = totalDocs;
+      for (Operator child : ((AndOperator) operator).getChildOperators()) {
+        estimate = Math.min(estimate, estimateNumMatchingDocs(child));
+      }
+    } else if (operator instanceof OrOperator) {
+      estimate = 0L;
+      for (Operator child : ((OrOperator) operator).getChildOperators()) {
+        estimate += estimateNumMatchingDocs(child);
+      }
+      estimate = Math.min(estimate, totalDocs);
+    } else {
+      estimate = estimateNumMatchingDocs((BaseFilterOperator) operator, _leafDataSources.get(operator), totalDocs);
+    }
+    _estimatedNumMatchingDocs.put(operator, estimate);
+    return estimate;
+  }
+
+  private static long estimateNumMatchingDocs(BaseFilterOperator operator, DataSource dataSource, long totalDocs) {
+    if (dataSource == null) {
+      return totalDocs;
+    }
+    Dictionary dictionary = dataSource.getDictionary();
+    if (dictionary == null || dictionary.length() == 0) {
+      return totalDocs;
+    }
+    try {
+      // The evaluator is kept by the operator, so the dictionary ids are not looked up again when the filter runs
+      int[] dictionaryIds = operator.getPredicateEvaluator(dictionary).getDictionaryIds();
+      InvertedIndexReader invertedIndex = dataSource.getInvertedIndex();
+      if (operator instanceof BitmapBasedFilterOperator && invertedIndex != null) {
+        long numMatchingDocs = 0;
+        for (int dictionaryId : dictionaryIds) {
+          numMatchingDocs += invertedIndex.getImmutable(dictionaryId).getCardinality();
+        }
+        return numMatchingDocs;
+      }
+      if (operator instanceof SortedInvertedIndexBasedFilterOperator && invertedIndex != null) {
+        long numMatchingDocs = 0;
+        for (int dictionaryId : dictionaryIds) {
+          int[] minMax = invertedIndex.getMinMaxRangeFor(dictionaryId);
+          numMatchingDocs += minMax[1] - minMax[0] + 1;
+        }
+        return numMatchingDocs;
+      }
+      return (totalDocs * dictionaryIds.length + dictionary.length() - 1) / dictionary.length();
+    } catch (Exception e) {
+      LOGGER.debug("Could not estimate the number of docs matching {}", operator.getPredicate(), e);
+      return totalDocs;
+    }
+  }
+
   @Override
   public void showTree(String prefix) {
     final String treeStructure =
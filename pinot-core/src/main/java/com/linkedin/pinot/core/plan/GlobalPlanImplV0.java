@@ -53,6 +53,7 @@ public class GlobalPlanImplV0 extends Plan {
     long startTime = System.currentTimeMillis();
     PlanNode root = getRoot();
     UResultOperator operator = (UResultOperator) root.run();
+    operator.setDataTableVersion(_dataTableVersion);
     long endTime1 = System.currentTimeMillis();
     LOGGER.info("InstanceResponsePlanNode.run took:" + (endTime1 - startTime));
     InstanceResponseBlock instanceResponseBlock = (InstanceResponseBlock) operator.nextBlock();
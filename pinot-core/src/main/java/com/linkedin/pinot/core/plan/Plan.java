@@ -19,6 +19,7 @@ import com.linkedin.pinot.common.utils.DataTable;
 
 
 public abstract class Plan {
+  protected int _dataTableVersion = DataTable.VERSION_1;
 
   public abstract void print();
 
@@ -32,4 +33,13 @@ public abstract class Plan {
   public abstract void execute();
 
   public abstract DataTable getInstanceResponse();
+
+  /**
+   * Format version of the instance response data table, negotiated with the broker per request.
+   *
+   * @param dataTableVersion
+   */
+  public void setDataTableVersion(int dataTableVersion) {
+    _dataTableVersion = dataTableVersion;
+  }
 }
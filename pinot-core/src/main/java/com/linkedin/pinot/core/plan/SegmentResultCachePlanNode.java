@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.query.MSegmentResultCacheOperator;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+
+
+/**
+ * SegmentResultCachePlanNode either serves the cached result of a segment, or wraps the inner segment plan to cache
+ * its result.
+ */
+public class SegmentResultCachePlanNode implements PlanNode {
+  private static final Logger LOGGER = LoggerFactory.getLogger("QueryPlanLog");
+
+  private final IndexSegment _indexSegment;
+  private final IntermediateResultsBlock _cachedBlock;
+  private final PlanNode _segmentPlanNode;
+  private final SegmentResultCache _segmentResultCache;
+  private final String _cacheKey;
+  private final String _tableName;
+
+  public SegmentResultCachePlanNode(IndexSegment indexSegment, IntermediateResultsBlock cachedBlock) {
+    _indexSegment = indexSegment;
+    _cachedBlock = cachedBlock;
+    _segmentPlanNode = null;
+    _segmentResultCache = null;
+    _cacheKey = null;
+    _tableName = null;
+  }
+
+  public SegmentResultCachePlanNode(IndexSegment indexSegment, PlanNode segmentPlanNode,
+      SegmentResultCache segmentResultCache, String cacheKey, String tableName) {
+    _indexSegment = indexSegment;
+    _cachedBlock = null;
+    _segmentPlanNode = segmentPlanNode;
+    _segmentResultCache = segmentResultCache;
+    _cacheKey = cacheKey;
+    _tableName = tableName;
+  }
+
+  @Override
+  public Operator run() {
+    if (_cachedBlock != null) {
+      return new MSegmentResultCacheOperator(_cachedBlock);
+    }
+    return new MSegmentResultCacheOperator(_segmentPlanNode.run(), _segmentResultCache, _cacheKey, _tableName,
+        _indexSegment.getSegmentName());
+  }
+
+  @Override
+  public void showTree(String prefix) {
+    LOGGER.debug(prefix + "Inner-Segment Plan Node :");
+    LOGGER.debug(prefix + "Operator: MSegmentResultCacheOperator");
+    LOGGER.debug(prefix + "Argument 0: IndexSegment - " + _indexSegment.getSegmentName());
+    if (_cachedBlock != null) {
+      LOGGER.debug(prefix + "Argument 1: Cached result");
+    } else {
+      LOGGER.debug(prefix + "Argument 1: Segment Plan - ");
+      _segmentPlanNode.showTree(prefix + "    ");
+    }
+  }
+}
@@ -20,8 +20,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
+import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByArrayBasedOperator;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
@@ -30,9 +34,14 @@ import com.linkedin.pinot.core.plan.GlobalPlanImplV0;
 import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.SegmentResultCachePlanNode;
 import com.linkedin.pinot.core.plan.SelectionPlanNode;
 import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByTrimmer;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 
 
 /**
@@ -42,6 +51,28 @@ import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
  *
  */
 public class InstancePlanMakerImplV2 implements PlanMaker {
+  private final SegmentResultCache _segmentResultCache;
+  private final GroupByTrimmer _groupByTrimmer;
+
+  public InstancePlanMakerImplV2() {
+    this(null);
+  }
+
+  /**
+   * @param segmentResultCache Cache of the per segment results to serve segments from, or null to always execute them
+   */
+  public InstancePlanMakerImplV2(SegmentResultCache segmentResultCache) {
+    this(segmentResultCache, new GroupByTrimmer());
+  }
+
+  /**
+   * @param segmentResultCache Cache of the per segment results to serve segments from, or null to always execute them
+   * @param groupByTrimmer Trims the group by results of the segments and of the server
+   */
+  public InstancePlanMakerImplV2(SegmentResultCache segmentResultCache, GroupByTrimmer groupByTrimmer) {
+    _segmentResultCache = segmentResultCache;
+    _groupByTrimmer = groupByTrimmer;
+  }
 
   @Override
   public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
@@ -55,7 +86,10 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         // Aggregation GroupBy
         PlanNode aggregationGroupByPlanNode;
         if (indexSegment instanceof IndexSegmentImpl) {
-          if (isGroupKeyFitForLong(indexSegment, brokerRequest)) {
+          if (isGroupByFitForArrayBasedAggregation(indexSegment, brokerRequest)) {
+            aggregationGroupByPlanNode =
+                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.ArrayBased);
+          } else if (isGroupKeyFitForLong(indexSegment, brokerRequest)) {
             aggregationGroupByPlanNode =
                 new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.Dictionary);
           } else {
@@ -80,14 +114,35 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
   @Override
   public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
-    final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
+    final CombinePlanNode combinePlanNode =
+        new CombinePlanNode(brokerRequest, executorService, timeOutMs, _groupByTrimmer);
     rootNode.setPlanNode(combinePlanNode);
     for (final IndexSegment indexSegment : indexSegmentList) {
-      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      combinePlanNode.addPlanNode(makeCachedInnerSegmentPlan(indexSegment, brokerRequest));
     }
     return new GlobalPlanImplV0(rootNode);
   }
 
+  /**
+   * Looks the segment up in the segment result cache before building its plan, so that segments served from the cache
+   * never build their operator tree.
+   */
+  private PlanNode makeCachedInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    if (_segmentResultCache == null) {
+      return makeInnerSegmentPlan(indexSegment, brokerRequest);
+    }
+    String cacheKey = _segmentResultCache.getKey(indexSegment, brokerRequest);
+    if (cacheKey == null) {
+      return makeInnerSegmentPlan(indexSegment, brokerRequest);
+    }
+    IntermediateResultsBlock cachedBlock = _segmentResultCache.get(cacheKey, brokerRequest);
+    if (cachedBlock != null) {
+      return new SegmentResultCachePlanNode(indexSegment, cachedBlock);
+    }
+    return new SegmentResultCachePlanNode(indexSegment, makeInnerSegmentPlan(indexSegment, brokerRequest),
+        _segmentResultCache, cacheKey, brokerRequest.getQuerySource().getTableName());
+  }
+
   private boolean isGroupKeyFitForLong(IndexSegment indexSegment, BrokerRequest brokerRequest) {
     final IndexSegmentImpl columnarSegment = (IndexSegmentImpl) indexSegment;
     int totalBitSet = 0;
@@ -99,4 +154,45 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     }
     return true;
   }
+
+  /**
+   * Array based group by needs dictionary encoded single value columns for both group by and aggregation columns,
+   * aggregation functions with primitive intermediate results, and a group key space that fits in a long.
+   */
+  private boolean isGroupByFitForArrayBasedAggregation(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    final IndexSegmentImpl columnarSegment = (IndexSegmentImpl) indexSegment;
+    final SegmentMetadata segmentMetadata = columnarSegment.getSegmentMetadata();
+    for (final AggregationInfo aggregationInfo : brokerRequest.getAggregationsInfo()) {
+      if (!MAggregationGroupByArrayBasedOperator.isSupported(aggregationInfo.getAggregationType())) {
+        return false;
+      }
+      if (aggregationInfo.getAggregationType().equalsIgnoreCase("count")) {
+        continue;
+      }
+      String column = aggregationInfo.getAggregationParams().get("column").trim();
+      if (!isSingleValueColumnWithDictionary(segmentMetadata, column)) {
+        return false;
+      }
+    }
+    long groupKeySpace = 1L;
+    for (final String column : brokerRequest.getGroupBy().getColumns()) {
+      if (!isSingleValueColumnWithDictionary(segmentMetadata, column)) {
+        return false;
+      }
+      int cardinality = columnarSegment.getDictionaryFor(column).length();
+      if (cardinality > Long.MAX_VALUE / groupKeySpace) {
+        return false;
+      }
+      groupKeySpace *= Math.max(1, cardinality);
+    }
+    return true;
+  }
+
+  private boolean isSingleValueColumnWithDictionary(SegmentMetadata segmentMetadata, String column) {
+    if (!(segmentMetadata instanceof SegmentMetadataImpl)) {
+      return false;
+    }
+    ColumnMetadata columnMetadata = ((SegmentMetadataImpl) segmentMetadata).getColumnMetadataFor(column);
+    return columnMetadata != null && columnMetadata.isSingleValue() && columnMetadata.hasDictionary();
+  }
 }
@@ -115,4 +115,11 @@ public interface AggregationFunction<AggregateResult extends Serializable, Reduc
    */
   public Serializable getDefaultValue();
 
+  /**
+   * Return whether smaller final results rank first, eg. when keeping the top groups of a group by.
+   *
+   * @return true if smaller results rank first, false if larger results do
+   */
+  boolean isSmallerResultFirst();
+
 }
@@ -24,10 +24,14 @@ import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationNoDictio
 import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationNoDictionaryFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationNoDictionaryFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationNoDictionaryFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinAggregationNoDictionaryFunction;
+import com.linkedin.pinot.core.query.aggregation.function.PercentileEstAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.PercentileEstAggregationNoDictionaryFunction;
 import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.SumAggregationNoDictionaryFunction;
 import org.slf4j.Logger;
@@ -55,6 +59,11 @@ public class AggregationFunctionRegistry {
     keyToFunctionWithDictionary.put("sum", SumAggregationFunction.class);
     keyToFunctionWithDictionary.put("avg", AvgAggregationFunction.class);
     keyToFunctionWithDictionary.put("distinctcount", DistinctCountAggregationFunction.class);
+    keyToFunctionWithDictionary.put("distinctcounthll", DistinctCountHLLAggregationFunction.class);
+    keyToFunctionWithDictionary.put("percentileest50", PercentileEstAggregationFunction.class);
+    keyToFunctionWithDictionary.put("percentileest90", PercentileEstAggregationFunction.class);
+    keyToFunctionWithDictionary.put("percentileest95", PercentileEstAggregationFunction.class);
+    keyToFunctionWithDictionary.put("percentileest99", PercentileEstAggregationFunction.class);
   }
 
   static {
@@ -63,6 +72,11 @@ public class AggregationFunctionRegistry {
     keyToFunctionWithoutDictionary.put("sum", SumAggregationNoDictionaryFunction.class);
     keyToFunctionWithoutDictionary.put("avg", AvgAggregationNoDictionaryFunction.class);
     keyToFunctionWithoutDictionary.put("distinctcount", DistinctCountAggregationNoDictionaryFunction.class);
+    keyToFunctionWithoutDictionary.put("distinctcounthll", DistinctCountHLLAggregationNoDictionaryFunction.class);
+    keyToFunctionWithoutDictionary.put("percentileest50", PercentileEstAggregationNoDictionaryFunction.class);
+    keyToFunctionWithoutDictionary.put("percentileest90", PercentileEstAggregationNoDictionaryFunction.class);
+    keyToFunctionWithoutDictionary.put("percentileest95", PercentileEstAggregationNoDictionaryFunction.class);
+    keyToFunctionWithoutDictionary.put("percentileest99", PercentileEstAggregationNoDictionaryFunction.class);
   }
 
   public static void register(String aggregationKey, Class<? extends AggregationFunction> aggregationFunction) {
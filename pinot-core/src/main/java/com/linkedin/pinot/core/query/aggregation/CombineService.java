@@ -27,6 +27,7 @@ import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultMap;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
 
@@ -53,6 +54,8 @@ public class CombineService {
     mergedBlock.setNumDocsScanned(mergedBlock.getNumDocsScanned() + blockToMerge.getNumDocsScanned());
     // Combine TotalDocs
     mergedBlock.setTotalDocs(mergedBlock.getTotalDocs() + blockToMerge.getTotalDocs());
+    // Combine PartialResult
+    mergedBlock.setPartialResult(mergedBlock.isPartialResult() || blockToMerge.isPartialResult());
     // Debug mode enable : Combine SegmentStatistics and TraceInfo
     if (brokerRequest.isEnableTrace()) {
       mergedBlock.getSegmentStatistics().addAll(blockToMerge.getSegmentStatistics());
@@ -115,6 +118,14 @@ public class CombineService {
     }
 
     AggregationFunction aggregationFunction = AggregationFunctionFactory.get(aggregationInfo, true);
+    if (map1 instanceof GroupByResultMap) {
+      ((GroupByResultMap) map1).merge(map2, aggregationFunction);
+      return map1;
+    }
+    if (map2 instanceof GroupByResultMap) {
+      ((GroupByResultMap) map2).merge(map1, aggregationFunction);
+      return map2;
+    }
     for (String key : map2.keySet()) {
       if (map1.containsKey(key)) {
         map1.put(key, aggregationFunction.combineTwoValues(map1.get(key), map2.get(key)));
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation;
+
+import java.io.Serializable;
+
+import com.linkedin.pinot.core.common.Block;
+
+
+/**
+ * Implemented by aggregation functions which, for group by, aggregate dictionary ids while a segment is processed and
+ * only translate them to values once per group, when the results of the segment are produced. Group by operators pass
+ * every group result through {@link #toSegmentResult(Serializable, Block[])} before returning it.
+ */
+public interface DictionaryIdAggregationFunction {
+
+  /**
+   * Converts the result of a group built by aggregate(mergedResult, docId, block) into the intermediate result
+   * returned for the segment. Results that are already converted are returned as is.
+   *
+   * @param aggregationResult
+   * @param block
+   * @return intermediate result for the segment
+   */
+  Serializable toSegmentResult(Serializable aggregationResult, Block[] block);
+}
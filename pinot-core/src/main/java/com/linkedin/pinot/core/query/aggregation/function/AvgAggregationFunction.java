@@ -200,4 +200,9 @@ public class AvgAggregationFunction implements AggregationFunction<AvgPair, Doub
   public Serializable getDefaultValue() {
     return new AvgPair(0.0, 0L);
   }
+
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
 }
@@ -122,4 +122,9 @@ public class CountAggregationFunction implements AggregationFunction<Long, Long>
     return Long.valueOf(0);
   }
 
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
+
 }
@@ -19,10 +19,13 @@ import com.linkedin.pinot.common.Utils;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.List;
 
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.request.AggregationInfo;
@@ -30,16 +33,27 @@ import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.DictionaryIdAggregationFunction;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-public class DistinctCountAggregationFunction implements AggregationFunction<IntOpenHashSet, Integer> {
+/**
+ * Exact distinct count. Within a segment the matching dictionary ids are collected first and translated to the hash
+ * codes of their values once, so the per doc work is a single bit set (or int set for group by).
+ */
+public class DistinctCountAggregationFunction
+    implements AggregationFunction<IntOpenHashSet, Integer>, DictionaryIdAggregationFunction {
   private static final Logger LOGGER = LoggerFactory.getLogger(DistinctCountAggregationFunction.class);
 
+  // A BitSet takes a bit per dictionary id of the column whatever the size of the block, so dictionary ids are only
+  // collected in one while the dictionary is at most this many times larger than the block, in a RoaringBitmap else.
+  private static final int MAX_DICTIONARY_IDS_PER_DOC_FOR_BITSET = 32;
+
   private String _distinctCountColumnName;
 
   public DistinctCountAggregationFunction() {
@@ -59,46 +73,63 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
     BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
     BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
 
-    if (block[0].getMetadata().getDataType() == DataType.STRING) {
+    boolean hasNull = false;
+    int numDocs = ((DocIdSetBlock) docIdSetBlock).getSearchableLength();
+    if (dictionaryReader.length() <= (long) numDocs * MAX_DICTIONARY_IDS_PER_DOC_FOR_BITSET) {
+      BitSet dictionaryIds = new BitSet(dictionaryReader.length());
       while ((docId = docIdIterator.next()) != Constants.EOF) {
         if (blockValIterator.skipTo(docId)) {
           int dictionaryIndex = blockValIterator.nextIntVal();
           if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
-            ret.add(dictionaryReader.get(dictionaryIndex).hashCode());
+            dictionaryIds.set(dictionaryIndex);
           } else {
-            ret.add(Integer.MIN_VALUE);
+            hasNull = true;
           }
         }
       }
+      for (int dictionaryIndex = dictionaryIds.nextSetBit(0); dictionaryIndex >= 0;
+          dictionaryIndex = dictionaryIds.nextSetBit(dictionaryIndex + 1)) {
+        ret.add(dictionaryReader.get(dictionaryIndex).hashCode());
+      }
     } else {
+      MutableRoaringBitmap dictionaryIds = new MutableRoaringBitmap();
       while ((docId = docIdIterator.next()) != Constants.EOF) {
         if (blockValIterator.skipTo(docId)) {
           int dictionaryIndex = blockValIterator.nextIntVal();
           if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
-            ret.add(((Number) dictionaryReader.get(dictionaryIndex)).hashCode());
+            dictionaryIds.add(dictionaryIndex);
           } else {
-            ret.add(Integer.MIN_VALUE);
+            hasNull = true;
           }
         }
       }
+      IntIterator iterator = dictionaryIds.getIntIterator();
+      while (iterator.hasNext()) {
+        ret.add(dictionaryReader.get(iterator.next()).hashCode());
+      }
+    }
+    if (hasNull) {
+      ret.add(Integer.MIN_VALUE);
     }
     return ret;
   }
 
+  /**
+   * For group by, the dictionary ids of each group are collected in a {@link DictionaryIdSet}, translated by
+   * {@link #toSegmentResult(Serializable, Block[])}.
+   */
   @Override
   public IntOpenHashSet aggregate(IntOpenHashSet mergedResult, int docId, Block[] block) {
     if (mergedResult == null) {
-      mergedResult = new IntOpenHashSet();
+      mergedResult = new DictionaryIdSet();
     }
     BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
     if (blockValIterator.skipTo(docId)) {
       int dictId = blockValIterator.nextIntVal();
-      if (dictId != Dictionary.NULL_VALUE_INDEX) {
-        if (block[0].getMetadata().getDataType() == DataType.STRING) {
-          mergedResult.add(block[0].getMetadata().getDictionary().get(dictId).hashCode());
-        } else {
-          mergedResult.add(((Number) block[0].getMetadata().getDictionary().get(dictId)).hashCode());
-        }
+      if (mergedResult instanceof DictionaryIdSet) {
+        mergedResult.add(dictId);
+      } else if (dictId != Dictionary.NULL_VALUE_INDEX) {
+        mergedResult.add(block[0].getMetadata().getDictionary().get(dictId).hashCode());
       } else {
         mergedResult.add(Integer.MIN_VALUE);
       }
@@ -106,6 +137,24 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
     return mergedResult;
   }
 
+  @Override
+  public Serializable toSegmentResult(Serializable aggregationResult, Block[] block) {
+    if (!(aggregationResult instanceof DictionaryIdSet)) {
+      return aggregationResult;
+    }
+    DictionaryIdSet dictionaryIds = (DictionaryIdSet) aggregationResult;
+    Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
+    IntOpenHashSet ret = new IntOpenHashSet(dictionaryIds.size());
+    for (int dictId : dictionaryIds.toIntArray()) {
+      if (dictId != Dictionary.NULL_VALUE_INDEX) {
+        ret.add(dictionaryReader.get(dictId).hashCode());
+      } else {
+        ret.add(Integer.MIN_VALUE);
+      }
+    }
+    return ret;
+  }
+
   @Override
   public List<IntOpenHashSet> combine(List<IntOpenHashSet> aggregationResultList, CombineLevel combineLevel) {
     if ((aggregationResultList == null) || aggregationResultList.isEmpty()) {
@@ -170,4 +219,16 @@ public class DistinctCountAggregationFunction implements AggregationFunction<Int
     return new IntOpenHashSet();
   }
 
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
+
+  /**
+   * Dictionary ids of a group within a segment, not to be returned out of the segment.
+   */
+  private static final class DictionaryIdSet extends IntOpenHashSet {
+    private static final long serialVersionUID = 1L;
+  }
+
 }
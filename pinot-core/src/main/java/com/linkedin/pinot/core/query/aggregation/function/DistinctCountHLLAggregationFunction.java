@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * Approximate distinct count, using a fixed size {@link HyperLogLog} sketch per segment and group instead of the set
+ * of values kept by {@link DistinctCountAggregationFunction}.
+ */
+public class DistinctCountHLLAggregationFunction implements AggregationFunction<HyperLogLog, Long> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DistinctCountHLLAggregationFunction.class);
+
+  // Offered dictionary ids are only tracked while the dictionary is at most this many times larger than the block,
+  // as tracking them takes a bit per dictionary id of the column whatever the size of the block.
+  private static final int MAX_DICTIONARY_IDS_PER_DOC_FOR_DEDUP = 32;
+
+  private String _distinctCountHLLColumnName;
+
+  public DistinctCountHLLAggregationFunction() {
+
+  }
+
+  @Override
+  public void init(AggregationInfo aggregationInfo) {
+    _distinctCountHLLColumnName = aggregationInfo.getAggregationParams().get("column");
+  }
+
+  @Override
+  public HyperLogLog aggregate(Block docIdSetBlock, Block[] block) {
+    HyperLogLog ret = new HyperLogLog();
+    int docId = 0;
+    Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+
+    // Offering a value twice does not change the sketch, so each dictionary id is only looked up once when the
+    // dictionary is small enough compared to the block.
+    int numDocs = ((DocIdSetBlock) docIdSetBlock).getSearchableLength();
+    BitSet offered = null;
+    if (dictionaryReader.length() <= (long) numDocs * MAX_DICTIONARY_IDS_PER_DOC_FOR_DEDUP) {
+      offered = new BitSet(dictionaryReader.length());
+    }
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      if (blockValIterator.skipTo(docId)) {
+        int dictionaryIndex = blockValIterator.nextIntVal();
+        if (dictionaryIndex == Dictionary.NULL_VALUE_INDEX) {
+          ret.offer(Integer.MIN_VALUE);
+        } else if (offered == null) {
+          ret.offer(dictionaryReader.get(dictionaryIndex));
+        } else if (!offered.get(dictionaryIndex)) {
+          offered.set(dictionaryIndex);
+          ret.offer(dictionaryReader.get(dictionaryIndex));
+        }
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public HyperLogLog aggregate(HyperLogLog mergedResult, int docId, Block[] block) {
+    if (mergedResult == null) {
+      mergedResult = new HyperLogLog();
+    }
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+    if (blockValIterator.skipTo(docId)) {
+      int dictId = blockValIterator.nextIntVal();
+      if (dictId != Dictionary.NULL_VALUE_INDEX) {
+        mergedResult.offer(block[0].getMetadata().getDictionary().get(dictId));
+      } else {
+        mergedResult.offer(Integer.MIN_VALUE);
+      }
+    }
+    return mergedResult;
+  }
+
+  @Override
+  public List<HyperLogLog> combine(List<HyperLogLog> aggregationResultList, CombineLevel combineLevel) {
+    if ((aggregationResultList == null) || aggregationResultList.isEmpty()) {
+      return null;
+    }
+    HyperLogLog hyperLogLog = aggregationResultList.get(0);
+    for (int i = 1; i < aggregationResultList.size(); ++i) {
+      hyperLogLog.merge(aggregationResultList.get(i));
+    }
+    aggregationResultList.clear();
+    aggregationResultList.add(hyperLogLog);
+    return aggregationResultList;
+  }
+
+  @Override
+  public HyperLogLog combineTwoValues(HyperLogLog aggregationResult0, HyperLogLog aggregationResult1) {
+    if (aggregationResult0 == null) {
+      return aggregationResult1;
+    }
+    if (aggregationResult1 == null) {
+      return aggregationResult0;
+    }
+    return aggregationResult0.merge(aggregationResult1);
+  }
+
+  @Override
+  public Long reduce(List<HyperLogLog> combinedResultList) {
+    if ((combinedResultList == null) || combinedResultList.isEmpty()) {
+      return 0L;
+    }
+    HyperLogLog reducedResult = combinedResultList.get(0);
+    for (int i = 1; i < combinedResultList.size(); ++i) {
+      reducedResult.merge(combinedResultList.get(i));
+    }
+    return reducedResult.cardinality();
+  }
+
+  @Override
+  public JSONObject render(Long finalAggregationResult) {
+    try {
+      return new JSONObject().put("value", finalAggregationResult.toString());
+    } catch (JSONException e) {
+      LOGGER.error("Caught exception while rendering aggregation result", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  @Override
+  public DataType aggregateResultDataType() {
+    return DataType.OBJECT;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return "distinctCountHLL_" + _distinctCountHLLColumnName;
+  }
+
+  @Override
+  public Serializable getDefaultValue() {
+    return new HyperLogLog();
+  }
+
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+
+
+/**
+ * Approximate distinct count of a column without dictionary. The raw values are offered to the sketch the same way
+ * {@link DistinctCountHLLAggregationFunction} offers dictionary values (longs for integral types, doubles for floating
+ * point types), so sketches of segments with and without dictionary merge consistently.
+ */
+public class DistinctCountHLLAggregationNoDictionaryFunction extends DistinctCountHLLAggregationFunction {
+
+  @Override
+  public HyperLogLog aggregate(Block docIdSetBlock, Block[] block) {
+    HyperLogLog ret = new HyperLogLog();
+    int docId = 0;
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+    DataType dataType = block[0].getMetadata().getDataType();
+
+    // Assume dictionary is always there for String data type.
+    // If data type is String, we shouldn't hit here.
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      if (blockValIterator.skipTo(docId)) {
+        offer(ret, blockValIterator, dataType);
+      }
+    }
+
+    return ret;
+  }
+
+  @Override
+  public HyperLogLog aggregate(HyperLogLog mergedResult, int docId, Block[] block) {
+    if (mergedResult == null) {
+      mergedResult = new HyperLogLog();
+    }
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+    if (blockValIterator.skipTo(docId)) {
+      offer(mergedResult, blockValIterator, block[0].getMetadata().getDataType());
+    }
+    return mergedResult;
+  }
+
+  private static void offer(HyperLogLog hll, BlockSingleValIterator blockValIterator, DataType dataType) {
+    switch (dataType) {
+      case FLOAT:
+      case DOUBLE:
+        hll.offer(blockValIterator.nextDoubleVal());
+        break;
+      default:
+        hll.offer(blockValIterator.nextLongVal());
+        break;
+    }
+  }
+
+}
@@ -160,4 +160,9 @@ public class MaxAggregationFunction implements AggregationFunction<Double, Doubl
     return new Double(DEFAULT_VALUE);
   }
 
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
+
 }
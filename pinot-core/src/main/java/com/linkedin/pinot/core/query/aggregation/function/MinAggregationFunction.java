@@ -161,4 +161,9 @@ public class MinAggregationFunction implements AggregationFunction<Double, Doubl
     return new Double(DEFAULT_VALUE);
   }
 
+  @Override
+  public boolean isSmallerResultFirst() {
+    return true;
+  }
+
 }
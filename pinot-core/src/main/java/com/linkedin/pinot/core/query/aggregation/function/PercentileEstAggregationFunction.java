@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.utils.TDigest;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * Estimates a percentile of a column with a {@link TDigest} per segment and group. The percentile is taken from the
+ * aggregation type, e.g. percentileest95 for the 95th percentile.
+ */
+public class PercentileEstAggregationFunction implements AggregationFunction<TDigest, Double> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PercentileEstAggregationFunction.class);
+
+  public static final String AGGREGATION_TYPE_PREFIX = "percentileest";
+
+  private String _percentileEstColumnName;
+  private int _percentile;
+
+  public PercentileEstAggregationFunction() {
+
+  }
+
+  @Override
+  public void init(AggregationInfo aggregationInfo) {
+    _percentileEstColumnName = aggregationInfo.getAggregationParams().get("column");
+    _percentile = getPercentile(aggregationInfo.getAggregationType());
+  }
+
+  public static int getPercentile(String aggregationType) {
+    String lowerCaseType = aggregationType.toLowerCase();
+    if (lowerCaseType.startsWith(AGGREGATION_TYPE_PREFIX)) {
+      try {
+        int percentile = Integer.parseInt(lowerCaseType.substring(AGGREGATION_TYPE_PREFIX.length()));
+        if (percentile >= 0 && percentile <= 100) {
+          return percentile;
+        }
+      } catch (NumberFormatException e) {
+        // Fall through to the exception below.
+      }
+    }
+    throw new IllegalArgumentException("Invalid percentile aggregation type: " + aggregationType
+        + ", expected " + AGGREGATION_TYPE_PREFIX + " followed by a percentile in [0, 100]");
+  }
+
+  @Override
+  public TDigest aggregate(Block docIdSetBlock, Block[] block) {
+    TDigest ret = new TDigest();
+    int docId = 0;
+    Dictionary dictionaryReader = block[0].getMetadata().getDictionary();
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      if (blockValIterator.skipTo(docId)) {
+        int dictionaryIndex = blockValIterator.nextIntVal();
+        if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
+          ret.offer(dictionaryReader.getDoubleValue(dictionaryIndex));
+        }
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public TDigest aggregate(TDigest mergedResult, int docId, Block[] block) {
+    if (mergedResult == null) {
+      mergedResult = new TDigest();
+    }
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+    if (blockValIterator.skipTo(docId)) {
+      int dictionaryIndex = blockValIterator.nextIntVal();
+      if (dictionaryIndex != Dictionary.NULL_VALUE_INDEX) {
+        mergedResult.offer(block[0].getMetadata().getDictionary().getDoubleValue(dictionaryIndex));
+      }
+    }
+    return mergedResult;
+  }
+
+  @Override
+  public List<TDigest> combine(List<TDigest> aggregationResultList, CombineLevel combineLevel) {
+    if ((aggregationResultList == null) || aggregationResultList.isEmpty()) {
+      return null;
+    }
+    TDigest tDigest = aggregationResultList.get(0);
+    for (int i = 1; i < aggregationResultList.size(); ++i) {
+      tDigest.merge(aggregationResultList.get(i));
+    }
+    aggregationResultList.clear();
+    aggregationResultList.add(tDigest);
+    return aggregationResultList;
+  }
+
+  @Override
+  public TDigest combineTwoValues(TDigest aggregationResult0, TDigest aggregationResult1) {
+    if (aggregationResult0 == null) {
+      return aggregationResult1;
+    }
+    if (aggregationResult1 == null) {
+      return aggregationResult0;
+    }
+    return aggregationResult0.merge(aggregationResult1);
+  }
+
+  @Override
+  public Double reduce(List<TDigest> combinedResultList) {
+    if ((combinedResultList == null) || combinedResultList.isEmpty()) {
+      return Double.NaN;
+    }
+    TDigest reducedResult = combinedResultList.get(0);
+    for (int i = 1; i < combinedResultList.size(); ++i) {
+      reducedResult.merge(combinedResultList.get(i));
+    }
+    return reducedResult.quantile(_percentile / 100.0);
+  }
+
+  @Override
+  public JSONObject render(Double finalAggregationResult) {
+    try {
+      if (finalAggregationResult == null) {
+        finalAggregationResult = Double.NaN;
+      }
+      return new JSONObject().put("value", String.format("%.5f", finalAggregationResult));
+    } catch (JSONException e) {
+      LOGGER.error("Caught exception while rendering to JSON", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  @Override
+  public DataType aggregateResultDataType() {
+    return DataType.OBJECT;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return "percentileEst" + _percentile + "_" + _percentileEstColumnName;
+  }
+
+  @Override
+  public Serializable getDefaultValue() {
+    return new TDigest();
+  }
+
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.function;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.query.utils.TDigest;
+
+
+public class PercentileEstAggregationNoDictionaryFunction extends PercentileEstAggregationFunction {
+
+  @Override
+  public TDigest aggregate(Block docIdSetBlock, Block[] block) {
+    TDigest ret = new TDigest();
+    int docId = 0;
+    BlockDocIdIterator docIdIterator = docIdSetBlock.getBlockDocIdSet().iterator();
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+
+    while ((docId = docIdIterator.next()) != Constants.EOF) {
+      if (blockValIterator.skipTo(docId)) {
+        ret.offer(blockValIterator.nextDoubleVal());
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public TDigest aggregate(TDigest mergedResult, int docId, Block[] block) {
+    if (mergedResult == null) {
+      mergedResult = new TDigest();
+    }
+    BlockSingleValIterator blockValIterator = (BlockSingleValIterator) block[0].getBlockValueSet().iterator();
+    if (blockValIterator.skipTo(docId)) {
+      mergedResult.offer(blockValIterator.nextDoubleVal());
+    }
+    return mergedResult;
+  }
+
+}
@@ -152,4 +152,9 @@ public class SumAggregationFunction implements AggregationFunction<Double, Doubl
     return Double.valueOf(0);
   }
 
+  @Override
+  public boolean isSmallerResultFirst() {
+    return false;
+  }
+
 }
@@ -83,45 +83,61 @@ public class AggregationGroupByOperatorService {
     return _aggregationFunctionList;
   }
 
+  /**
+   * Merges the group by results of all the instances into {@link GroupByResultMap}s, so groups are matched on value
+   * ids instead of string keys. Results from instances that still send string keyed maps are converted on the fly.
+   */
   public List<Map<String, Serializable>> reduceGroupByOperators(Map<ServerInstance, DataTable> instanceResponseMap) {
     if ((instanceResponseMap == null) || instanceResponseMap.isEmpty()) {
       return null;
     }
     List<Map<String, Serializable>> reducedResult = null;
     for (DataTable toBeReducedGroupByResults : instanceResponseMap.values()) {
-      if (reducedResult == null) {
-        if (toBeReducedGroupByResults != null) {
-          reducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        }
-      } else {
-        List<Map<String, Serializable>> toBeReducedResult =
-            transformDataTableToGroupByResult(toBeReducedGroupByResults);
-        for (int i = 0; i < reducedResult.size(); ++i) {
-          for (String key : toBeReducedResult.get(i).keySet()) {
-            if (reducedResult.get(i).containsKey(key)) {
-              reducedResult.get(i).put(
-                  key,
-                  _aggregationFunctionList.get(i).combineTwoValues(reducedResult.get(i).get(key),
-                      toBeReducedResult.get(i).get(key)));
-            } else {
-              reducedResult.get(i).put(key, toBeReducedResult.get(i).get(key));
-            }
-          }
-        }
+      reducedResult = mergeGroupByOperatorResults(reducedResult, toBeReducedGroupByResults);
+    }
+    return reduceMergedGroupByResults(reducedResult);
+  }
+
+  /**
+   * Merges the group by results of one instance into the results merged so far, which may be null for the first one.
+   * Once all the instances are merged, {@link #reduceMergedGroupByResults(List)} gives the reduced results.
+   */
+  public List<Map<String, Serializable>> mergeGroupByOperatorResults(List<Map<String, Serializable>> mergedResult,
+      DataTable toBeReducedGroupByResults) {
+    if (toBeReducedGroupByResults == null) {
+      return mergedResult;
+    }
+    List<Map<String, Serializable>> toBeReducedResult = transformDataTableToGroupByResult(toBeReducedGroupByResults);
+    if (toBeReducedResult.isEmpty()) {
+      return mergedResult;
+    }
+    if (mergedResult == null) {
+      mergedResult = new ArrayList<Map<String, Serializable>>(toBeReducedResult.size());
+      for (Map<String, Serializable> groupByResult : toBeReducedResult) {
+        mergedResult.add(GroupByResultMap.fromMap(groupByResult, _groupByColumns.size()));
+      }
+    } else {
+      for (int i = 0; i < mergedResult.size(); ++i) {
+        ((GroupByResultMap) mergedResult.get(i)).merge(toBeReducedResult.get(i), _aggregationFunctionList.get(i));
       }
     }
-    if (reducedResult != null) {
-      for (int i = 0; i < reducedResult.size(); ++i) {
-        Map<String, Serializable> functionLevelReducedResult = reducedResult.get(i);
-        for (String key : functionLevelReducedResult.keySet()) {
-          if (functionLevelReducedResult.get(key) != null) {
-            functionLevelReducedResult.put(key,
-                _aggregationFunctionList.get(i).reduce(Arrays.asList(functionLevelReducedResult.get(key))));
+    return mergedResult;
+  }
+
+  public List<Map<String, Serializable>> reduceMergedGroupByResults(List<Map<String, Serializable>> mergedResult) {
+    if (mergedResult != null) {
+      for (int i = 0; i < mergedResult.size(); ++i) {
+        GroupByResultMap functionLevelReducedResult = (GroupByResultMap) mergedResult.get(i);
+        AggregationFunction aggregationFunction = _aggregationFunctionList.get(i);
+        for (int groupId = 0; groupId < functionLevelReducedResult.getNumGroups(); ++groupId) {
+          Serializable result = functionLevelReducedResult.getResult(groupId);
+          if (result != null && !functionLevelReducedResult.isRemoved(groupId)) {
+            functionLevelReducedResult.setResult(groupId, aggregationFunction.reduce(Arrays.asList(result)));
           }
         }
       }
     }
-    return reducedResult;
+    return mergedResult;
   }
 
   public List<JSONObject> renderGroupByOperators(List<Map<String, Serializable>> finalAggregationResult) {
@@ -135,14 +151,18 @@ public class AggregationGroupByOperatorService {
         JSONArray groupByResultsArray = new JSONArray();
 
         int groupSize = _groupByColumns.size();
-        Map<String, Serializable> reducedGroupByResult = finalAggregationResult.get(i);
+        GroupByResultMap reducedGroupByResult = GroupByResultMap.fromMap(finalAggregationResult.get(i), groupSize);
         if (!reducedGroupByResult.isEmpty()) {
 
           PriorityQueue priorityQueue =
-              getPriorityQueue(_aggregationFunctionList.get(i), reducedGroupByResult.values().iterator().next());
+              getPriorityQueue(_aggregationFunctionList.get(i), getSampleResult(reducedGroupByResult));
           if (priorityQueue != null) {
-            for (String groupedKey : reducedGroupByResult.keySet()) {
-              priorityQueue.enqueue(new Pair(reducedGroupByResult.get(groupedKey), groupedKey));
+            for (int groupId = 0; groupId < reducedGroupByResult.getNumGroups(); ++groupId) {
+              Serializable result = reducedGroupByResult.getResult(groupId);
+              if (result == null || reducedGroupByResult.isRemoved(groupId)) {
+                continue;
+              }
+              priorityQueue.enqueue(new Pair(result, groupId));
               if (priorityQueue.size() == (_groupByTopN + 1)) {
                 priorityQueue.dequeue();
               }
@@ -155,10 +175,8 @@ public class AggregationGroupByOperatorService {
             for (int j = 0; j < realGroupSize; ++j) {
               JSONObject groupByResultObject = new JSONObject();
               Pair res = (Pair) priorityQueue.dequeue();
-              groupByResultObject.put(
-                  "group",
-                  new JSONArray(((String) res.getSecond()).split(
-                      GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString(), groupSize)));
+              groupByResultObject.put("group",
+                  new JSONArray(reducedGroupByResult.getGroupValues((Integer) res.getSecond())));
               //          if (res.getFirst() instanceof Number) {
               //            groupByResultObject.put("value", df.format(res.getFirst()));
               //          } else {
@@ -186,41 +204,19 @@ public class AggregationGroupByOperatorService {
     }
   }
 
-  public void trimToSize(List<Map<String, Serializable>> aggregationGroupByResultList) {
-    if (aggregationGroupByResultList == null) {
-      return;
-    }
-
-    for (int i = 0; i < aggregationGroupByResultList.size(); ++i) {
-      if (aggregationGroupByResultList.get(i).size() > (_groupByTopN * 20)) {
-        trimToSize(_aggregationFunctionList.get(i), aggregationGroupByResultList.get(i), _groupByTopN * 5);
-      }
-    }
-  }
-
-  private void trimToSize(AggregationFunction aggregationFunction, Map<String, Serializable> aggregationGroupByResult,
-      int trimSize) {
-    PriorityQueue priorityQueue =
-        getPriorityQueue(aggregationFunction, aggregationGroupByResult.values().iterator().next());
-    if (priorityQueue == null) {
-      return;
-    }
-    for (String groupedKey : aggregationGroupByResult.keySet()) {
-      priorityQueue.enqueue(new Pair(aggregationGroupByResult.get(groupedKey), groupedKey));
-      if (priorityQueue.size() == (_groupByTopN + 1)) {
-        priorityQueue.dequeue();
+  private static Serializable getSampleResult(GroupByResultMap groupByResult) {
+    for (int groupId = 0; groupId < groupByResult.getNumGroups(); ++groupId) {
+      Serializable result = groupByResult.getResult(groupId);
+      if (result != null && !groupByResult.isRemoved(groupId)) {
+        return result;
       }
     }
-
-    for (int i = 0; i < (priorityQueue.size() - trimSize); ++i) {
-      Pair res = (Pair) priorityQueue.dequeue();
-      aggregationGroupByResult.remove(res.getSecond());
-    }
+    return null;
   }
 
   private PriorityQueue getPriorityQueue(AggregationFunction aggregationFunction, Serializable sampleValue) {
     if (sampleValue instanceof Comparable) {
-      if (aggregationFunction.getFunctionName().startsWith("min_")) {
+      if (aggregationFunction.isSmallerResultFirst()) {
         return new customPriorityQueue().getGroupedValuePairPriorityQueue((Comparable) sampleValue, true);
       } else {
         return new customPriorityQueue().getGroupedValuePairPriorityQueue((Comparable) sampleValue, false);
@@ -232,13 +228,13 @@ public class AggregationGroupByOperatorService {
   class customPriorityQueue<T extends Comparable> {
     private PriorityQueue getGroupedValuePairPriorityQueue(T object, boolean isMinPriorityQueue) {
       if (isMinPriorityQueue) {
-        return new ObjectArrayPriorityQueue<Pair<T, String>>(_groupByTopN + 1, new Comparator() {
+        return new ObjectArrayPriorityQueue<Pair<T, Object>>(_groupByTopN + 1, new Comparator() {
           @Override
           public int compare(Object o1, Object o2) {
-            if (((Pair<T, String>) o1).getFirst().compareTo(((Pair<T, String>) o2).getFirst()) < 0) {
+            if (((Pair<T, Object>) o1).getFirst().compareTo(((Pair<T, Object>) o2).getFirst()) < 0) {
               return 1;
             } else {
-              if (((Pair<T, String>) o1).getFirst().compareTo(((Pair<T, String>) o2).getFirst()) > 0) {
+              if (((Pair<T, Object>) o1).getFirst().compareTo(((Pair<T, Object>) o2).getFirst()) > 0) {
                 return -1;
               }
             }
@@ -246,13 +242,13 @@ public class AggregationGroupByOperatorService {
           }
         });
       } else {
-        return new ObjectArrayPriorityQueue<Pair<T, String>>(_groupByTopN + 1, new Comparator() {
+        return new ObjectArrayPriorityQueue<Pair<T, Object>>(_groupByTopN + 1, new Comparator() {
           @Override
           public int compare(Object o1, Object o2) {
-            if (((Pair<T, String>) o1).getFirst().compareTo(((Pair<T, String>) o2).getFirst()) < 0) {
+            if (((Pair<T, Object>) o1).getFirst().compareTo(((Pair<T, Object>) o2).getFirst()) < 0) {
               return -1;
             } else {
-              if (((Pair<T, String>) o1).getFirst().compareTo(((Pair<T, String>) o2).getFirst()) > 0) {
+              if (((Pair<T, Object>) o1).getFirst().compareTo(((Pair<T, Object>) o2).getFirst()) > 0) {
                 return 1;
               }
             }
@@ -0,0 +1,599 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.groupby;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+
+
+/**
+ * Group by results of one aggregation function, keyed by typed group keys instead of delimiter joined strings.
+ *
+ * Every group by column has its own dictionary of values, and a group is the tuple of value ids of its columns.
+ * Groups are indexed by an open addressing hash table over the int tuples, so merging two results only looks up each
+ * distinct column value once instead of hashing a string per group. String keys are only built when the map is
+ * accessed through the {@link Map} interface, which keeps the class usable wherever a
+ * <code>Map&lt;String, Serializable&gt;</code> group by result is expected.
+ *
+ * Not thread safe.
+ */
+public class GroupByResultMap extends AbstractMap<String, Serializable> implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private static final String DELIMITER = GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString();
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int _numGroupByColumns;
+  private final GroupValueDictionary[] _dictionaries;
+
+  // Value ids of group g are stored at [g * _numGroupByColumns, (g + 1) * _numGroupByColumns).
+  private int[] _groupValueIds;
+  private Serializable[] _results;
+  private int _numGroups = 0;
+  private int _size = 0;
+  // Removed groups stay in the hash table and are revived when put again, null until the first removal.
+  private BitSet _removedGroups;
+
+  // Slots hold group id + 1, 0 means empty. Built lazily, decoded results that are only read never need it.
+  private transient int[] _hashTable;
+  private transient int[] _lookupKey;
+
+  public GroupByResultMap(int numGroupByColumns) {
+    this(numGroupByColumns, INITIAL_CAPACITY);
+  }
+
+  public GroupByResultMap(int numGroupByColumns, int expectedNumGroups) {
+    if (numGroupByColumns <= 0) {
+      throw new IllegalArgumentException("Number of group by columns must be positive: " + numGroupByColumns);
+    }
+    int capacity = Math.max(expectedNumGroups, 1);
+    _numGroupByColumns = numGroupByColumns;
+    _dictionaries = new GroupValueDictionary[numGroupByColumns];
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      _dictionaries[i] = new GroupValueDictionary();
+    }
+    _groupValueIds = new int[capacity * numGroupByColumns];
+    _results = new Serializable[capacity];
+  }
+
+  /**
+   * Wraps a string keyed group by result, returns the given map if it already is a GroupByResultMap.
+   */
+  public static GroupByResultMap fromMap(Map<String, Serializable> map, int numGroupByColumns) {
+    if (map instanceof GroupByResultMap) {
+      return (GroupByResultMap) map;
+    }
+    GroupByResultMap groupByResultMap = new GroupByResultMap(numGroupByColumns, map.size());
+    groupByResultMap.putAll(map);
+    return groupByResultMap;
+  }
+
+  public int getNumGroupByColumns() {
+    return _numGroupByColumns;
+  }
+
+  /**
+   * Returns the id of the given value of a group by column, adding it to the column dictionary if needed.
+   */
+  public int getGroupValueId(int column, String value) {
+    return _dictionaries[column].getOrAdd(value);
+  }
+
+  public String getGroupValue(int column, int valueId) {
+    return _dictionaries[column].get(valueId);
+  }
+
+  public int getGroupValueDictionarySize(int column) {
+    return _dictionaries[column].size();
+  }
+
+  /**
+   * Appends a value to the dictionary of a group by column without checking for duplicates, used when decoding.
+   */
+  public int appendGroupValue(int column, String value) {
+    return _dictionaries[column].append(value);
+  }
+
+  /**
+   * Number of group ids handed out so far, including removed groups. Valid group ids are [0, getNumGroups()).
+   */
+  public int getNumGroups() {
+    return _numGroups;
+  }
+
+  public boolean isRemoved(int groupId) {
+    return _removedGroups != null && _removedGroups.get(groupId);
+  }
+
+  public int getGroupValueId(int groupId, int column) {
+    return _groupValueIds[groupId * _numGroupByColumns + column];
+  }
+
+  public String[] getGroupValues(int groupId) {
+    String[] values = new String[_numGroupByColumns];
+    int offset = groupId * _numGroupByColumns;
+    for (int i = 0; i < _numGroupByColumns; ++i) {
+      values[i] = _dictionaries[i].get(_groupValueIds[offset + i]);
+    }
+    return values;
+  }
+
+  /**
+   * Builds the delimiter joined string key of a group.
+   */
+  public String getGroupKey(int groupId) {
+    int offset = groupId * _numGroupByColumns;
+    StringBuilder builder = new StringBuilder(_dictionaries[0].get(_groupValueIds[offset]));
+    for (int i = 1; i < _numGroupByColumns; ++i) {
+      builder.append(DELIMITER).append(_dictionaries[i].get(_groupValueIds[offset + i]));
+    }
+    return builder.toString();
+  }
+
+  public Serializable getResult(int groupId) {
+    return _results[groupId];
+  }
+
+  public void setResult(int groupId, Serializable result) {
+    _results[groupId] = result;
+  }
+
+  /**
+   * Returns the group id of the given value ids, or -1 if there is no such group.
+   */
+  public int getGroupId(int[] valueIds) {
+    int slot = findSlot(valueIds);
+    int groupId = _hashTable[slot] - 1;
+    if (groupId < 0 || isRemoved(groupId)) {
+      return -1;
+    }
+    return groupId;
+  }
+
+  /**
+   * Returns the group id of the given value ids, creating an empty group if there is no such group.
+   */
+  public int getOrCreateGroupId(int[] valueIds) {
+    int slot = findSlot(valueIds);
+    int groupId = _hashTable[slot] - 1;
+    if (groupId < 0) {
+      return addGroup(valueIds, null, slot);
+    }
+    if (isRemoved(groupId)) {
+      _removedGroups.clear(groupId);
+      _results[groupId] = null;
+      _size++;
+    }
+    return groupId;
+  }
+
+  /**
+   * Appends a group without checking whether it already exists, used when decoding.
+   */
+  public int appendGroup(int[] valueIds, Serializable result) {
+    if (_hashTable != null) {
+      return addGroup(valueIds, result, findSlot(valueIds));
+    }
+    return addGroup(valueIds, result, -1);
+  }
+
+  public void removeGroup(int groupId) {
+    if (isRemoved(groupId)) {
+      return;
+    }
+    if (_removedGroups == null) {
+      _removedGroups = new BitSet();
+    }
+    _removedGroups.set(groupId);
+    _results[groupId] = null;
+    _size--;
+  }
+
+  /**
+   * Merges another group by result into this one, combining the results of common groups with the given function.
+   * Typed results are merged through value id remapping, other maps through their string keys.
+   */
+  @SuppressWarnings("unchecked")
+  public void merge(Map<String, Serializable> other, AggregationFunction aggregationFunction) {
+    if (!(other instanceof GroupByResultMap)) {
+      for (Entry<String, Serializable> entry : other.entrySet()) {
+        int groupId = getOrCreateGroupId(toValueIds(entry.getKey(), true));
+        _results[groupId] = (Serializable) aggregationFunction.combineTwoValues(_results[groupId], entry.getValue());
+      }
+      return;
+    }
+    GroupByResultMap otherMap = (GroupByResultMap) other;
+    if (otherMap._numGroupByColumns != _numGroupByColumns) {
+      throw new IllegalArgumentException("Cannot merge group by results with " + otherMap._numGroupByColumns
+          + " group by columns into results with " + _numGroupByColumns + " group by columns");
+    }
+    int[][] valueIdMappings = new int[_numGroupByColumns][];
+    for (int i = 0; i < _numGroupByColumns; ++i) {
+      GroupValueDictionary otherDictionary = otherMap._dictionaries[i];
+      valueIdMappings[i] = new int[otherDictionary.size()];
+      for (int valueId = 0; valueId < otherDictionary.size(); ++valueId) {
+        valueIdMappings[i][valueId] = _dictionaries[i].getOrAdd(otherDictionary.get(valueId));
+      }
+    }
+    int[] valueIds = new int[_numGroupByColumns];
+    for (int otherGroupId = 0; otherGroupId < otherMap._numGroups; ++otherGroupId) {
+      if (otherMap.isRemoved(otherGroupId)) {
+        continue;
+      }
+      int offset = otherGroupId * _numGroupByColumns;
+      for (int i = 0; i < _numGroupByColumns; ++i) {
+        valueIds[i] = valueIdMappings[i][otherMap._groupValueIds[offset + i]];
+      }
+      int groupId = getOrCreateGroupId(valueIds);
+      _results[groupId] =
+          (Serializable) aggregationFunction.combineTwoValues(_results[groupId], otherMap._results[otherGroupId]);
+    }
+  }
+
+  @Override
+  public int size() {
+    return _size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return getGroupId(key) >= 0;
+  }
+
+  @Override
+  public Serializable get(Object key) {
+    int groupId = getGroupId(key);
+    return (groupId < 0) ? null : _results[groupId];
+  }
+
+  @Override
+  public Serializable put(String key, Serializable value) {
+    int[] valueIds = toValueIds(key, true);
+    int slot = findSlot(valueIds);
+    int groupId = _hashTable[slot] - 1;
+    if (groupId < 0) {
+      addGroup(valueIds, value, slot);
+      return null;
+    }
+    if (isRemoved(groupId)) {
+      _removedGroups.clear(groupId);
+      _results[groupId] = value;
+      _size++;
+      return null;
+    }
+    Serializable previous = _results[groupId];
+    _results[groupId] = value;
+    return previous;
+  }
+
+  @Override
+  public Serializable remove(Object key) {
+    int groupId = getGroupId(key);
+    if (groupId < 0) {
+      return null;
+    }
+    Serializable previous = _results[groupId];
+    removeGroup(groupId);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    for (GroupValueDictionary dictionary : _dictionaries) {
+      dictionary.clear();
+    }
+    Arrays.fill(_results, 0, _numGroups, null);
+    _numGroups = 0;
+    _size = 0;
+    _removedGroups = null;
+    _hashTable = null;
+  }
+
+  @Override
+  public Set<Entry<String, Serializable>> entrySet() {
+    return new AbstractSet<Entry<String, Serializable>>() {
+      @Override
+      public Iterator<Entry<String, Serializable>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return _size;
+      }
+    };
+  }
+
+  private int getGroupId(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    int[] valueIds = toValueIds((String) key, false);
+    if (valueIds == null) {
+      return -1;
+    }
+    return getGroupId(valueIds);
+  }
+
+  /**
+   * Splits a string key into value ids. Returns null if a value is unknown and addMissingValues is false.
+   */
+  private int[] toValueIds(String key, boolean addMissingValues) {
+    String[] values = key.split(DELIMITER, _numGroupByColumns);
+    if (values.length != _numGroupByColumns) {
+      if (addMissingValues) {
+        throw new IllegalArgumentException("Group key '" + key + "' does not have " + _numGroupByColumns + " values");
+      }
+      return null;
+    }
+    if (_lookupKey == null) {
+      _lookupKey = new int[_numGroupByColumns];
+    }
+    for (int i = 0; i < _numGroupByColumns; ++i) {
+      if (addMissingValues) {
+        _lookupKey[i] = _dictionaries[i].getOrAdd(values[i]);
+      } else {
+        _lookupKey[i] = _dictionaries[i].indexOf(values[i]);
+        if (_lookupKey[i] < 0) {
+          return null;
+        }
+      }
+    }
+    return _lookupKey;
+  }
+
+  private int addGroup(int[] valueIds, Serializable result, int slot) {
+    int groupId = _numGroups;
+    if (groupId == _results.length) {
+      int newCapacity = _results.length * 2;
+      _results = Arrays.copyOf(_results, newCapacity);
+      _groupValueIds = Arrays.copyOf(_groupValueIds, newCapacity * _numGroupByColumns);
+    }
+    System.arraycopy(valueIds, 0, _groupValueIds, groupId * _numGroupByColumns, _numGroupByColumns);
+    _results[groupId] = result;
+    _numGroups++;
+    _size++;
+    if (slot >= 0) {
+      _hashTable[slot] = groupId + 1;
+      // Keep the load factor under 0.5.
+      if (_numGroups * 2 > _hashTable.length) {
+        rehash(_hashTable.length * 2);
+      }
+    }
+    return groupId;
+  }
+
+  /**
+   * Returns the slot holding the group with the given value ids, or the empty slot where it should be inserted.
+   */
+  private int findSlot(int[] valueIds) {
+    if (_hashTable == null) {
+      int capacity = INITIAL_CAPACITY;
+      while (capacity < _numGroups * 2 + 2) {
+        capacity <<= 1;
+      }
+      rehash(capacity);
+    }
+    int mask = _hashTable.length - 1;
+    int slot = hash(valueIds, 0) & mask;
+    while (true) {
+      int groupId = _hashTable[slot] - 1;
+      if (groupId < 0 || isSameGroup(groupId, valueIds)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean isSameGroup(int groupId, int[] valueIds) {
+    int offset = groupId * _numGroupByColumns;
+    for (int i = 0; i < _numGroupByColumns; ++i) {
+      if (_groupValueIds[offset + i] != valueIds[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash(int capacity) {
+    int[] hashTable = new int[capacity];
+    int mask = capacity - 1;
+    for (int groupId = 0; groupId < _numGroups; ++groupId) {
+      int slot = hash(_groupValueIds, groupId * _numGroupByColumns) & mask;
+      while (hashTable[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      hashTable[slot] = groupId + 1;
+    }
+    _hashTable = hashTable;
+  }
+
+  private int hash(int[] valueIds, int offset) {
+    int hash = 0;
+    for (int i = 0; i < _numGroupByColumns; ++i) {
+      hash = hash * 31 + valueIds[offset + i];
+    }
+    // Spread the bits, value ids are small dense integers.
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private class EntryIterator implements Iterator<Entry<String, Serializable>> {
+    private int _nextGroupId = -1;
+    private int _lastGroupId = -1;
+
+    EntryIterator() {
+      advance();
+    }
+
+    private void advance() {
+      do {
+        _nextGroupId++;
+      } while (_nextGroupId < _numGroups && isRemoved(_nextGroupId));
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _nextGroupId < _numGroups;
+    }
+
+    @Override
+    public Entry<String, Serializable> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      _lastGroupId = _nextGroupId;
+      advance();
+      return new GroupEntry(_lastGroupId);
+    }
+
+    @Override
+    public void remove() {
+      if (_lastGroupId < 0) {
+        throw new IllegalStateException();
+      }
+      removeGroup(_lastGroupId);
+      _lastGroupId = -1;
+    }
+  }
+
+  private class GroupEntry implements Entry<String, Serializable> {
+    private final int _groupId;
+    private String _key;
+
+    GroupEntry(int groupId) {
+      _groupId = groupId;
+    }
+
+    @Override
+    public String getKey() {
+      if (_key == null) {
+        _key = getGroupKey(_groupId);
+      }
+      return _key;
+    }
+
+    @Override
+    public Serializable getValue() {
+      return _results[_groupId];
+    }
+
+    @Override
+    public Serializable setValue(Serializable value) {
+      Serializable previous = _results[_groupId];
+      _results[_groupId] = value;
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry<?, ?> entry = (Entry<?, ?>) o;
+      Object value = getValue();
+      return getKey().equals(entry.getKey())
+          && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      Object value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  /**
+   * Values of one group by column, ids are assigned in insertion order.
+   */
+  private static class GroupValueDictionary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> _values = new ArrayList<String>();
+    // Built lazily, dictionaries of decoded results are often only iterated.
+    private transient Object2IntOpenHashMap<String> _valueToId;
+
+    int size() {
+      return _values.size();
+    }
+
+    String get(int valueId) {
+      return _values.get(valueId);
+    }
+
+    int indexOf(String value) {
+      return getValueToId().getInt(value);
+    }
+
+    int getOrAdd(String value) {
+      Object2IntOpenHashMap<String> valueToId = getValueToId();
+      int valueId = valueToId.getInt(value);
+      if (valueId < 0) {
+        valueId = _values.size();
+        _values.add(value);
+        valueToId.put(value, valueId);
+      }
+      return valueId;
+    }
+
+    int append(String value) {
+      int valueId = _values.size();
+      _values.add(value);
+      if (_valueToId != null) {
+        _valueToId.put(value, valueId);
+      }
+      return valueId;
+    }
+
+    void clear() {
+      _values.clear();
+      _valueToId = null;
+    }
+
+    private Object2IntOpenHashMap<String> getValueToId() {
+      if (_valueToId == null) {
+        _valueToId = new Object2IntOpenHashMap<String>(Math.max(_values.size(), 16));
+        _valueToId.defaultReturnValue(-1);
+        for (int i = 0; i < _values.size(); ++i) {
+          _valueToId.put(_values.get(i), i);
+        }
+      }
+      return _valueToId;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.groupby;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.config.GroupByTrimmingConfig;
+
+
+/**
+ * Trims group by results on the server according to a {@link GroupByTrimmingConfig}.
+ *
+ * Groups are ranked on the reduced value of their result, the same value the broker orders the final groups on.
+ * The best groups are picked with a bounded heap over primitive values and group indices, the other ones are removed
+ * from the result in place. Results whose reduced values are not numbers are never trimmed.
+ */
+public class GroupByTrimmer {
+  private final GroupByTrimmingConfig _config;
+  private final ServerMetrics _serverMetrics;
+
+  public GroupByTrimmer(GroupByTrimmingConfig config, ServerMetrics serverMetrics) {
+    _config = config;
+    _serverMetrics = serverMetrics;
+  }
+
+  public GroupByTrimmer() {
+    this(new GroupByTrimmingConfig(), null);
+  }
+
+  /**
+   * Trims the group by results of a single segment, returns the number of groups removed.
+   */
+  public int trimSegmentResult(BrokerRequest brokerRequest, List<Map<String, Serializable>> groupByResults) {
+    return trim(brokerRequest, groupByResults, _config.getSegmentThreshold());
+  }
+
+  /**
+   * Trims the group by results combined from all the segments of the server, returns the number of groups removed.
+   */
+  public int trimServerResult(BrokerRequest brokerRequest, List<Map<String, Serializable>> groupByResults) {
+    return trim(brokerRequest, groupByResults, _config.getServerThreshold());
+  }
+
+  private int trim(BrokerRequest brokerRequest, List<Map<String, Serializable>> groupByResults, int threshold) {
+    if (_config.isExact() || threshold <= 0 || groupByResults == null) {
+      return 0;
+    }
+    int trimSize = _config.getTrimSize((int) brokerRequest.getGroupBy().getTopN());
+    List<AggregationFunction> aggregationFunctions = null;
+    int numGroupsTrimmed = 0;
+    for (int i = 0; i < groupByResults.size(); ++i) {
+      Map<String, Serializable> groupByResult = groupByResults.get(i);
+      if (groupByResult == null || groupByResult.size() <= threshold || groupByResult.size() <= trimSize) {
+        continue;
+      }
+      if (aggregationFunctions == null) {
+        aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(brokerRequest.getAggregationsInfo());
+      }
+      numGroupsTrimmed += trimToSize(aggregationFunctions.get(i), groupByResult, trimSize);
+    }
+    if (numGroupsTrimmed > 0 && _serverMetrics != null) {
+      _serverMetrics.addMeteredValue(brokerRequest, ServerMeter.NUM_GROUPS_TRIMMED, numGroupsTrimmed);
+    }
+    return numGroupsTrimmed;
+  }
+
+  /**
+   * Keeps the best trimSize groups of the result, returns the number of groups removed.
+   */
+  public static int trimToSize(AggregationFunction aggregationFunction, Map<String, Serializable> groupByResult,
+      int trimSize) {
+    if (groupByResult.size() <= trimSize) {
+      return 0;
+    }
+    // Smallest values are negated to always keep the largest ones.
+    boolean keepSmallest = aggregationFunction.isSmallerResultFirst();
+    if (groupByResult instanceof GroupByResultMap) {
+      return trimToSize(aggregationFunction, (GroupByResultMap) groupByResult, trimSize, keepSmallest);
+    }
+    List<String> groupKeys = new ArrayList<String>(groupByResult.size());
+    double[] values = new double[groupByResult.size()];
+    for (Map.Entry<String, Serializable> entry : groupByResult.entrySet()) {
+      Double value = getRankValue(aggregationFunction, entry.getValue(), keepSmallest);
+      if (value == null) {
+        return 0;
+      }
+      values[groupKeys.size()] = value;
+      groupKeys.add(entry.getKey());
+    }
+    boolean[] kept = selectTopK(values, groupKeys.size(), trimSize);
+    int numGroupsTrimmed = 0;
+    for (int i = 0; i < groupKeys.size(); ++i) {
+      if (!kept[i]) {
+        groupByResult.remove(groupKeys.get(i));
+        numGroupsTrimmed++;
+      }
+    }
+    return numGroupsTrimmed;
+  }
+
+  private static int trimToSize(AggregationFunction aggregationFunction, GroupByResultMap groupByResult, int trimSize,
+      boolean keepSmallest) {
+    int numGroups = groupByResult.getNumGroups();
+    int[] groupIds = new int[numGroups];
+    double[] values = new double[numGroups];
+    int numLiveGroups = 0;
+    for (int groupId = 0; groupId < numGroups; ++groupId) {
+      Serializable result = groupByResult.getResult(groupId);
+      if (result == null || groupByResult.isRemoved(groupId)) {
+        continue;
+      }
+      Double value = getRankValue(aggregationFunction, result, keepSmallest);
+      if (value == null) {
+        return 0;
+      }
+      groupIds[numLiveGroups] = groupId;
+      values[numLiveGroups++] = value;
+    }
+    boolean[] kept = selectTopK(values, numLiveGroups, trimSize);
+    int numGroupsTrimmed = 0;
+    for (int i = 0; i < numLiveGroups; ++i) {
+      if (!kept[i]) {
+        groupByResult.removeGroup(groupIds[i]);
+        numGroupsTrimmed++;
+      }
+    }
+    return numGroupsTrimmed;
+  }
+
+  private static Double getRankValue(AggregationFunction aggregationFunction, Serializable result,
+      boolean keepSmallest) {
+    Serializable reducedResult = aggregationFunction.reduce(Arrays.asList(result));
+    if (!(reducedResult instanceof Number)) {
+      return null;
+    }
+    double value = ((Number) reducedResult).doubleValue();
+    return keepSmallest ? -value : value;
+  }
+
+  /**
+   * Marks the k largest of the first numValues values. The heap holds the indices of the values kept so far, with
+   * the smallest of them at its root.
+   */
+  static boolean[] selectTopK(double[] values, int numValues, int k) {
+    boolean[] kept = new boolean[numValues];
+    if (numValues <= k) {
+      Arrays.fill(kept, true);
+      return kept;
+    }
+    int[] heap = new int[k];
+    int size = 0;
+    for (int i = 0; i < numValues; ++i) {
+      if (size < k) {
+        heap[size] = i;
+        siftUp(heap, size++, values);
+      } else if (k > 0 && compare(values, i, heap[0]) > 0) {
+        heap[0] = i;
+        siftDown(heap, 0, size, values);
+      }
+    }
+    for (int i = 0; i < size; ++i) {
+      kept[heap[i]] = true;
+    }
+    return kept;
+  }
+
+  // NaN ranks below every number, so groups without a value are the first to go.
+  private static int compare(double[] values, int index1, int index2) {
+    double value1 = values[index1];
+    double value2 = values[index2];
+    if (Double.isNaN(value1) || Double.isNaN(value2)) {
+      return Double.isNaN(value1) ? (Double.isNaN(value2) ? 0 : -1) : 1;
+    }
+    return Double.compare(value1, value2);
+  }
+
+  private static void siftUp(int[] heap, int slot, double[] values) {
+    int index = heap[slot];
+    while (slot > 0) {
+      int parent = (slot - 1) >>> 1;
+      if (compare(values, index, heap[parent]) >= 0) {
+        break;
+      }
+      heap[slot] = heap[parent];
+      slot = parent;
+    }
+    heap[slot] = index;
+  }
+
+  private static void siftDown(int[] heap, int slot, int size, double[] values) {
+    int index = heap[slot];
+    while (true) {
+      int child = 2 * slot + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && compare(values, heap[child + 1], heap[child]) < 0) {
+        child++;
+      }
+      if (compare(values, heap[child], index) >= 0) {
+        break;
+      }
+      heap[slot] = heap[child];
+      slot = child;
+    }
+    heap[slot] = index;
+  }
+}
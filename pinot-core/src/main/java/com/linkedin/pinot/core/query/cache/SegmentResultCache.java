@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+
+
+/**
+ * Caches the per segment results of aggregation and aggregation group by queries on immutable offline segments, in
+ * least recently used order and bounded by the serialized size of the results.
+ *
+ * Results are keyed on the table, the segment name and CRC, and the parts of the request that affect the result of a
+ * single segment (filter, aggregations and group by), so a replaced segment never serves the results of the segment it
+ * replaced. Results are kept serialized, as the combine phase merges the results of the segments in place, and each
+ * hit hands out its own copy.
+ *
+ * The cache is shared by all the tables of the server, and disabled until it is given a size, see
+ * {@link #setMaxSizeInBytes(long)}.
+ */
+public class SegmentResultCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentResultCache.class);
+  private static final SegmentResultCache INSTANCE = new SegmentResultCache(0);
+
+  // Access ordered, so that the eldest entry is the least recently used one
+  private final LinkedHashMap<String, CacheEntry> _cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+  private long _maxSizeInBytes;
+  private long _sizeInBytes = 0;
+  private long _numHits = 0;
+  private long _numMisses = 0;
+
+  public SegmentResultCache(long maxSizeInBytes) {
+    _maxSizeInBytes = maxSizeInBytes;
+  }
+
+  public static SegmentResultCache getInstance() {
+    return INSTANCE;
+  }
+
+  public synchronized void setMaxSizeInBytes(long maxSizeInBytes) {
+    _maxSizeInBytes = maxSizeInBytes;
+    evict();
+  }
+
+  public synchronized boolean isEnabled() {
+    return _maxSizeInBytes > 0;
+  }
+
+  /**
+   * Returns the key to cache the result of the request on the segment under, or null if it cannot be cached.
+   *
+   * @param indexSegment Segment the request is executed on
+   * @param brokerRequest Request, as received by the server
+   */
+  public String getKey(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    if (!isEnabled() || !brokerRequest.isSetAggregationsInfo() || brokerRequest.isEnableTrace()) {
+      return null;
+    }
+    if (!(indexSegment instanceof IndexSegmentImpl) || indexSegment.getSegmentMetadata() == null) {
+      // Realtime segments keep changing while consuming
+      return null;
+    }
+    String tableName = brokerRequest.getQuerySource().getTableName();
+    String crc = indexSegment.getSegmentMetadata().getCrc();
+    if (crc == null || TableNameBuilder.getTableTypeFromTableName(tableName) != TableType.OFFLINE) {
+      return null;
+    }
+    BrokerRequest segmentRequest = new BrokerRequest();
+    if (brokerRequest.isSetFilterQuery()) {
+      segmentRequest.setFilterQuery(brokerRequest.getFilterQuery());
+      segmentRequest.setFilterSubQueryMap(brokerRequest.getFilterSubQueryMap());
+    }
+    segmentRequest.setAggregationsInfo(brokerRequest.getAggregationsInfo());
+    if (brokerRequest.isSetGroupBy()) {
+      segmentRequest.setGroupBy(brokerRequest.getGroupBy());
+    }
+    return tableName + ':' + indexSegment.getSegmentName() + ':' + crc + ':' + segmentRequest.toString();
+  }
+
+  /**
+   * Returns a copy of the cached result of a segment, or null if there is none.
+   */
+  public IntermediateResultsBlock get(String key, BrokerRequest brokerRequest) {
+    CacheEntry entry;
+    synchronized (this) {
+      entry = _cache.get(key);
+      if (entry == null) {
+        _numMisses++;
+        return null;
+      }
+      _numHits++;
+    }
+    try {
+      ObjectInputStream inputStream = new ObjectInputStream(new ByteArrayInputStream(entry.getSerializedResult()));
+      SegmentResult result = (SegmentResult) inputStream.readObject();
+      IntermediateResultsBlock block;
+      if (result._aggregationGroupByResults != null) {
+        block = new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+            result._aggregationGroupByResults, true);
+      } else {
+        block = new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+            result._aggregationResults);
+      }
+      block.setNumDocsScanned(result._numDocsScanned);
+      block.setTotalDocs(result._totalDocs);
+      return block;
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while reading cached segment result, dropping it", e);
+      invalidate(key);
+      return null;
+    }
+  }
+
+  /**
+   * Caches the result of a segment. Results with exceptions, partial results, and results larger than the cache, are
+   * not cached.
+   */
+  public void put(String key, String tableName, String segmentName, IntermediateResultsBlock block) {
+    if (block == null || block.isPartialResult()
+        || (block.getExceptions() != null && !block.getExceptions().isEmpty())) {
+      return;
+    }
+    byte[] serializedResult;
+    try {
+      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      ObjectOutputStream outputStream = new ObjectOutputStream(byteArrayOutputStream);
+      outputStream.writeObject(new SegmentResult(block));
+      outputStream.close();
+      serializedResult = byteArrayOutputStream.toByteArray();
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while serializing result of segment : {}, not caching it", segmentName, e);
+      return;
+    }
+    synchronized (this) {
+      if (serializedResult.length > _maxSizeInBytes) {
+        return;
+      }
+      CacheEntry previousEntry = _cache.put(key, new CacheEntry(tableName, segmentName, serializedResult));
+      if (previousEntry != null) {
+        _sizeInBytes -= previousEntry.getSerializedResult().length;
+      }
+      _sizeInBytes += serializedResult.length;
+      evict();
+    }
+  }
+
+  /**
+   * Drops the cached results of a segment, called when the segment is replaced or unloaded.
+   */
+  public void invalidate(String tableName, String segmentName) {
+    int numInvalidated = 0;
+    synchronized (this) {
+      Iterator<CacheEntry> iterator = _cache.values().iterator();
+      while (iterator.hasNext()) {
+        CacheEntry entry = iterator.next();
+        if (entry.getSegmentName().equals(segmentName) && entry.getTableName().equals(tableName)) {
+          _sizeInBytes -= entry.getSerializedResult().length;
+          iterator.remove();
+          numInvalidated++;
+        }
+      }
+    }
+    if (numInvalidated > 0) {
+      LOGGER.info("Invalidated {} cached results for segment : {} of table : {}", numInvalidated, segmentName,
+          tableName);
+    }
+  }
+
+  private synchronized void invalidate(String key) {
+    CacheEntry entry = _cache.remove(key);
+    if (entry != null) {
+      _sizeInBytes -= entry.getSerializedResult().length;
+    }
+  }
+
+  private void evict() {
+    Iterator<CacheEntry> iterator = _cache.values().iterator();
+    while (_sizeInBytes > _maxSizeInBytes && iterator.hasNext()) {
+      _sizeInBytes -= iterator.next().getSerializedResult().length;
+      iterator.remove();
+    }
+  }
+
+  public synchronized int size() {
+    return _cache.size();
+  }
+
+  public synchronized long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  public synchronized long getNumHits() {
+    return _numHits;
+  }
+
+  public synchronized long getNumMisses() {
+    return _numMisses;
+  }
+
+  private static class CacheEntry {
+    private final String _tableName;
+    private final String _segmentName;
+    private final byte[] _serializedResult;
+
+    public CacheEntry(String tableName, String segmentName, byte[] serializedResult) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+      _serializedResult = serializedResult;
+    }
+
+    public String getTableName() {
+      return _tableName;
+    }
+
+    public String getSegmentName() {
+      return _segmentName;
+    }
+
+    public byte[] getSerializedResult() {
+      return _serializedResult;
+    }
+  }
+
+  private static class SegmentResult implements Serializable {
+    private final List<Serializable> _aggregationResults;
+    private final List<Map<String, Serializable>> _aggregationGroupByResults;
+    private final long _numDocsScanned;
+    private final long _totalDocs;
+
+    public SegmentResult(IntermediateResultsBlock block) {
+      _aggregationResults = block.getAggregationResult();
+      _aggregationGroupByResults = block.getAggregationGroupByOperatorResult();
+      _numDocsScanned = block.getNumDocsScanned();
+      _totalDocs = block.getTotalDocs();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.config;
+
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * Config for trimming group by results on the server.
+ *
+ * A result with more groups than the threshold of its level (a single segment, or the whole server) keeps only its
+ * best max(topN * 5, minTrimSize) groups. Trimming trades exactness for bounded memory, so it can be turned off with
+ * the exact flag.
+ */
+public class GroupByTrimmingConfig {
+
+  // Number of groups above which the result of a single segment is trimmed, non positive to never trim
+  public static final String SEGMENT_THRESHOLD = "segmentThreshold";
+  // Number of groups above which the combined result of the server is trimmed, non positive to never trim
+  public static final String SERVER_THRESHOLD = "serverThreshold";
+  // Lower bound on the number of groups kept by a trimmed result
+  public static final String MIN_TRIM_SIZE = "minTrimSize";
+  // Never trim, results are exact at the cost of unbounded memory
+  public static final String EXACT = "exact";
+
+  public static final int DEFAULT_SEGMENT_THRESHOLD = 1000000;
+  public static final int DEFAULT_SERVER_THRESHOLD = 100000;
+  public static final int DEFAULT_MIN_TRIM_SIZE = 5000;
+
+  private final int _segmentThreshold;
+  private final int _serverThreshold;
+  private final int _minTrimSize;
+  private final boolean _exact;
+
+  public GroupByTrimmingConfig() {
+    this(DEFAULT_SEGMENT_THRESHOLD, DEFAULT_SERVER_THRESHOLD, DEFAULT_MIN_TRIM_SIZE, false);
+  }
+
+  public GroupByTrimmingConfig(Configuration groupByTrimmingConfig) {
+    this(groupByTrimmingConfig.getInt(SEGMENT_THRESHOLD, DEFAULT_SEGMENT_THRESHOLD),
+        groupByTrimmingConfig.getInt(SERVER_THRESHOLD, DEFAULT_SERVER_THRESHOLD),
+        groupByTrimmingConfig.getInt(MIN_TRIM_SIZE, DEFAULT_MIN_TRIM_SIZE),
+        groupByTrimmingConfig.getBoolean(EXACT, false));
+  }
+
+  public GroupByTrimmingConfig(int segmentThreshold, int serverThreshold, int minTrimSize, boolean exact) {
+    _segmentThreshold = segmentThreshold;
+    _serverThreshold = serverThreshold;
+    _minTrimSize = minTrimSize;
+    _exact = exact;
+  }
+
+  public int getSegmentThreshold() {
+    return _segmentThreshold;
+  }
+
+  public int getServerThreshold() {
+    return _serverThreshold;
+  }
+
+  public int getMinTrimSize() {
+    return _minTrimSize;
+  }
+
+  public boolean isExact() {
+    return _exact;
+  }
+
+  /**
+   * Returns the number of groups a trimmed result keeps for a query asking for the given top N.
+   */
+  public int getTrimSize(int topN) {
+    return Math.max(topN * 5, _minTrimSize);
+  }
+}
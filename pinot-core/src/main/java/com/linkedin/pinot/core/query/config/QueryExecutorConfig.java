@@ -32,20 +32,30 @@ public class QueryExecutorConfig {
   public static final String QUERY_PLANNER = "queryPlanner";
   // Prefix key of TimeOut
   public static final String TIME_OUT = "timeout";
+  // Memory budget of the per segment result cache, the cache is disabled unless set
+  public static final String SEGMENT_RESULT_CACHE_MAX_SIZE_IN_BYTES = "segmentResultCache.maxSizeInBytes";
+  // Prefix key of group by trimming
+  public static final String GROUP_BY_TRIM = "groupBy.trim";
+  // Prefix key of the server wide query resources
+  public static final String RESOURCES = "resources";
 
   private static final String[] REQUIRED_KEYS = {};
 
   private Configuration _queryExecutorConfig = null;
   private SegmentPrunerConfig _segmentPrunerConfig;
   private QueryPlannerConfig _queryPlannerConfig;
+  private GroupByTrimmingConfig _groupByTrimmingConfig;
   private final long _timeOutMs;
+  private final long _segmentResultCacheMaxSizeInBytes;
 
   public QueryExecutorConfig(Configuration config) throws ConfigurationException {
     _queryExecutorConfig = config;
     checkRequiredKeys();
     _segmentPrunerConfig = new SegmentPrunerConfig(_queryExecutorConfig.subset(QUERY_PRUNER));
     _queryPlannerConfig = new QueryPlannerConfig(_queryExecutorConfig.subset(QUERY_PLANNER));
+    _groupByTrimmingConfig = new GroupByTrimmingConfig(_queryExecutorConfig.subset(GROUP_BY_TRIM));
     _timeOutMs = _queryExecutorConfig.getLong(TIME_OUT, -1);
+    _segmentResultCacheMaxSizeInBytes = _queryExecutorConfig.getLong(SEGMENT_RESULT_CACHE_MAX_SIZE_IN_BYTES, 0);
   }
 
   private void checkRequiredKeys() throws ConfigurationException {
@@ -68,7 +78,19 @@ public class QueryExecutorConfig {
     return _queryPlannerConfig;
   }
 
+  public GroupByTrimmingConfig getGroupByTrimmingConfig() {
+    return _groupByTrimmingConfig;
+  }
+
+  public Configuration getResourceManagerConfig() {
+    return _queryExecutorConfig.subset(RESOURCES);
+  }
+
   public long getTimeOut() {
     return _timeOutMs;
   }
+
+  public long getSegmentResultCacheMaxSizeInBytes() {
+    return _segmentResultCacheMaxSizeInBytes;
+  }
 }
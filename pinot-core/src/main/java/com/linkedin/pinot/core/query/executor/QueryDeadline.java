@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.executor;
+
+/**
+ * Deadline of the query the current thread works on. Segment operators check it between blocks and stop scanning
+ * once it passed, so a query the broker already gave up on does not keep its threads busy.
+ *
+ * The thread running the segment operators sets the deadline before calling into them and clears it afterwards,
+ * threads without a deadline never expire.
+ */
+public class QueryDeadline {
+  private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<QueryDeadline>();
+
+  private final long _deadlineMs;
+  private boolean _isExpired = false;
+
+  private QueryDeadline(long deadlineMs) {
+    _deadlineMs = deadlineMs;
+  }
+
+  public static void set(long deadlineMs) {
+    CURRENT.set(new QueryDeadline(deadlineMs));
+  }
+
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  public static boolean isSet() {
+    return CURRENT.get() != null;
+  }
+
+  /**
+   * Returns true once the deadline passed or the thread got interrupted. Cheap enough to call once per block.
+   */
+  public static boolean isExpired() {
+    QueryDeadline deadline = CURRENT.get();
+    if (deadline == null) {
+      return false;
+    }
+    if (!deadline._isExpired
+        && (System.currentTimeMillis() > deadline._deadlineMs || Thread.currentThread().isInterrupted())) {
+      deadline._isExpired = true;
+    }
+    return deadline._isExpired;
+  }
+
+  /**
+   * Returns whether an operator found the deadline expired since it was set, meaning its results are partial.
+   */
+  public static boolean hasExpired() {
+    QueryDeadline deadline = CURRENT.get();
+    return deadline != null && deadline._isExpired;
+  }
+}
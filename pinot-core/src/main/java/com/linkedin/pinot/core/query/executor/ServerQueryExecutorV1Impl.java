@@ -20,7 +20,9 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
@@ -35,7 +37,9 @@ import com.linkedin.pinot.common.metrics.ServerQueryPhase;
 import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
 import com.linkedin.pinot.core.data.manager.offline.InstanceDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
@@ -43,9 +47,13 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByTrimmer;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerService;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerServiceImpl;
+import com.linkedin.pinot.core.query.scheduler.ResourceManager;
+import com.linkedin.pinot.core.query.utils.DataTableCustomSerDe;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.Timer;
@@ -66,6 +74,11 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
   private boolean _printQueryPlan = true;
   private final Map<String, Long> _resourceTimeOutMsMap = new ConcurrentHashMap<String, Long>();
   private ServerMetrics _serverMetrics;
+  private ResourceManager _resourceManager = null;
+
+  static {
+    DataTableCustomSerDe.register();
+  }
 
   public ServerQueryExecutorV1Impl() {
   }
@@ -89,7 +102,15 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _segmentPrunerService = new SegmentPrunerServiceImpl(_queryExecutorConfig.getPrunerConfig());
     }
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2();
+    SegmentResultCache segmentResultCache = SegmentResultCache.getInstance();
+    segmentResultCache.setMaxSizeInBytes(_queryExecutorConfig.getSegmentResultCacheMaxSizeInBytes());
+    LOGGER.info("Segment result cache size in bytes : {}", _queryExecutorConfig.getSegmentResultCacheMaxSizeInBytes());
+    _planMaker = new InstancePlanMakerImplV2(segmentResultCache,
+        new GroupByTrimmer(_queryExecutorConfig.getGroupByTrimmingConfig(), _serverMetrics));
+    LOGGER.info("Trying to build ResourceManager");
+    if (_resourceManager == null) {
+      _resourceManager = new ResourceManager(_queryExecutorConfig.getResourceManagerConfig());
+    }
     LOGGER.info("Trying to build QueryExecutorTimer");
     if (_queryExecutorTimer == null) {
       _queryExecutorTimer =
@@ -105,6 +126,10 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     try {
       final BrokerRequest brokerRequest = instanceRequest.getQuery();
       LOGGER.info("Incoming query is : {}", brokerRequest);
+      final long queryTimeOutMs = getQueryTimeOut(instanceRequest);
+      if (queryTimeOutMs <= 0) {
+        throw new TimeoutException("Query " + instanceRequest.getRequestId() + " ran out of time before execution");
+      }
       long startPruningTime = System.nanoTime();
       final List<IndexSegment> queryableSegmentDataManagerList = getPrunedQueryableSegments(instanceRequest);
       long pruningTime = System.nanoTime() - startPruningTime;
@@ -117,9 +142,9 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       final Plan globalQueryPlan = _planMaker.makeInterSegmentPlan(
           queryableSegmentDataManagerList,
           brokerRequest,
-          _instanceDataManager.getTableDataManager(brokerRequest.getQuerySource().getTableName())
-              .getExecutorService(),
-          getResourceTimeOut(instanceRequest.getQuery()));
+          getExecutorService(brokerRequest.getQuerySource().getTableName()),
+          queryTimeOutMs - (System.currentTimeMillis() - start));
+      globalQueryPlan.setDataTableVersion(getDataTableVersion(instanceRequest));
       long planTime = System.nanoTime() - startPlanTime;
       _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.BUILD_QUERY_PLAN, planTime);
 
@@ -144,7 +169,13 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _serverMetrics.addMeteredValue(instanceRequest.getQuery(), ServerMeter.QUERY_EXECUTION_EXCEPTIONS, 1);
       LOGGER.error(e.getMessage(), e);
       instanceResponse = new DataTable();
-      instanceResponse.addException(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
+      if (e instanceof TimeoutException) {
+        ProcessingException exception = QueryException.EXECUTION_TIMEOUT_ERROR.deepCopy();
+        exception.setMessage(e.getMessage());
+        instanceResponse.addException(exception);
+      } else {
+        instanceResponse.addException(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
+      }
       long end = System.currentTimeMillis();
       LOGGER.info("Searching Instance for Request Id - {}, browse took: {}", instanceRequest.getRequestId(), (end - start));
       LOGGER.debug("InstanceResponse for Request Id - {} : {}", instanceRequest.getRequestId(), instanceResponse.toString());
@@ -159,6 +190,24 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     }
   }
 
+  /**
+   * Brokers that do not set the data table version only understand version 1.
+   */
+  private static int getDataTableVersion(InstanceRequest instanceRequest) {
+    if (!instanceRequest.isSetDataTableVersion()) {
+      return DataTable.VERSION_1;
+    }
+    return Math.max(DataTable.VERSION_1, Math.min(instanceRequest.getDataTableVersion(),
+        DataTableSerDeRegistry.getInstance().getMaxSupportedDataTableVersion()));
+  }
+
+  private ExecutorService getExecutorService(String tableName) {
+    if (_resourceManager.isEnabled()) {
+      return _resourceManager.getTableExecutorService(tableName);
+    }
+    return _instanceDataManager.getTableDataManager(tableName).getExecutorService();
+  }
+
   private List<IndexSegment> getPrunedQueryableSegments(final InstanceRequest instanceRequest) {
     LOGGER
         .info("InstanceRequest request {} segments", instanceRequest.getSearchSegments().size());
@@ -184,6 +233,7 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
   public synchronized void shutDown() {
     if (isStarted()) {
       _isStarted = false;
+      _resourceManager.shutDown();
       LOGGER.info("QueryExecutor is shutDown!");
     } else {
       LOGGER.warn("QueryExecutor is already shutDown, won't do anything!");
@@ -206,11 +256,24 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     _resourceTimeOutMsMap.put(resource, timeOutMs);
   }
 
+  /**
+   * The query gets the timeout of its table, cut down to the time the broker still waits for it when the broker
+   * sent it.
+   */
+  private long getQueryTimeOut(InstanceRequest instanceRequest) {
+    long timeOutMs = getResourceTimeOut(instanceRequest.getQuery());
+    if (instanceRequest.isSetTimeoutMs()) {
+      timeOutMs = Math.min(timeOutMs, instanceRequest.getTimeoutMs());
+    }
+    return timeOutMs;
+  }
+
   private long getResourceTimeOut(BrokerRequest brokerRequest) {
     try {
       String resourceName = brokerRequest.getQuerySource().getTableName();
-      if (_resourceTimeOutMsMap.containsKey(resourceName)) {
-        return _resourceTimeOutMsMap.get(brokerRequest);
+      Long resourceTimeOutMs = _resourceTimeOutMsMap.get(resourceName);
+      if (resourceTimeOutMs != null) {
+        return resourceTimeOutMs;
       }
     } catch (Exception e) {
       // Return the default timeout value
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import java.util.List;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Segments where no value of a column can match an EQUALITY, IN or RANGE predicate of the filter will be pruned.
+ *
+ * Dictionaries of offline segments are sorted, so the first and last entries are the min and max values of the
+ * column, and a binary search in the dictionary tells whether a value exists in the segment at all.
+ *
+ *
+ */
+public class ColumnValueSegmentPruner implements SegmentPruner {
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+    if (!(segment instanceof IndexSegmentImpl) || brokerRequest.getFilterQuery() == null) {
+      // Dictionaries of realtime segments are not sorted
+      return false;
+    }
+    return pruneFilterQueryTree((IndexSegmentImpl) segment, RequestUtils.generateFilterQueryTree(brokerRequest));
+  }
+
+  private boolean pruneFilterQueryTree(IndexSegmentImpl segment, FilterQueryTree filterQueryTree) {
+    if (filterQueryTree == null) {
+      return false;
+    }
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    switch (filterQueryTree.getOperator()) {
+      case AND:
+        for (FilterQueryTree child : children) {
+          if (pruneFilterQueryTree(segment, child)) {
+            return true;
+          }
+        }
+        return false;
+      case OR:
+        for (FilterQueryTree child : children) {
+          if (!pruneFilterQueryTree(segment, child)) {
+            return false;
+          }
+        }
+        return true;
+      case EQUALITY:
+      case IN:
+      case RANGE:
+        break;
+      default:
+        return false;
+    }
+
+    String column = filterQueryTree.getColumn();
+    if (!segment.getSegmentMetadata().getSchema().isExisted(column)
+        || !segment.getSegmentMetadata().hasDictionary(column)) {
+      return false;
+    }
+    Dictionary dictionary = segment.getDictionaryFor(column);
+    try {
+      switch (filterQueryTree.getOperator()) {
+        case EQUALITY:
+          return dictionary.indexOf(filterQueryTree.getValue().get(0)) < 0;
+        case IN:
+          for (String value : filterQueryTree.getValue().get(0).split("\t\t")) {
+            if (dictionary.indexOf(value) >= 0) {
+              return false;
+            }
+          }
+          return true;
+        case RANGE:
+          return isRangeEmpty(dictionary, new RangePredicate(column, filterQueryTree.getValue()));
+        default:
+          return false;
+      }
+    } catch (Exception e) {
+      // Values that cannot be converted to the type of the column, never prune on them
+      return false;
+    }
+  }
+
+  /**
+   * Same bounds as {@link com.linkedin.pinot.core.operator.filter.predicate.RangeOfflineDictionaryPredicateEvaluator},
+   * without materializing the matching dictionary ids.
+   */
+  private static boolean isRangeEmpty(Dictionary dictionary, RangePredicate predicate) {
+    final String lower = predicate.getLowerBoundary();
+    final String upper = predicate.getUpperBoundary();
+
+    int rangeStartIndex = 0;
+    if (!lower.equals("*")) {
+      rangeStartIndex = dictionary.indexOf(lower);
+      if (rangeStartIndex < 0) {
+        rangeStartIndex = -(rangeStartIndex + 1);
+      } else if (!predicate.includeLowerBoundary()) {
+        rangeStartIndex += 1;
+      }
+    }
+    int rangeEndIndex = dictionary.length() - 1;
+    if (!upper.equals("*")) {
+      rangeEndIndex = dictionary.indexOf(upper);
+      if (rangeEndIndex < 0) {
+        rangeEndIndex = -(rangeEndIndex + 1) - 1;
+      } else if (!predicate.includeUpperBoundary()) {
+        rangeEndIndex -= 1;
+      }
+    }
+    return rangeStartIndex > rangeEndIndex;
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueSegmentPruner";
+  }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.reduce;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.query.StreamingReducer;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+
+
+/**
+ * DefaultStreamingReducer folds DataTables into a running merged state as they arrive:
+ *  - selection rows go into the bounded (and ordered if needed) row set of the query,
+ *  - aggregation results are combined into one intermediate result per aggregation function,
+ *  - group by results are merged into typed group by result maps.
+ * The final reduce and rendering happen in {@link #getBrokerResponse()}.
+ *
+ *
+ */
+public class DefaultStreamingReducer implements StreamingReducer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DefaultStreamingReducer.class);
+
+  private static String NUM_DOCS_SCANNED = "numDocsScanned";
+  private static String TIME_USED_MS = "timeUsedMs";
+  private static String TOTAL_DOCS = "totalDocs";
+  private static String PARTIAL_RESULT = "partialResult";
+
+  private final BrokerRequest _brokerRequest;
+  private final BrokerResponse _brokerResponse = new BrokerResponse();
+  private int _numReducedDataTables = 0;
+  private Exception _reduceException = null;
+
+  // Selection state
+  private DataSchema _selectionDataSchema = null;
+  private SelectionOperatorService _selectionService = null;
+  private Collection<Serializable[]> _selectionRows = null;
+
+  // Aggregation state
+  private List<AggregationFunction> _aggregationFunctions = null;
+  private Serializable[] _combinedAggregationResults = null;
+
+  // Aggregation group by state
+  private AggregationGroupByOperatorService _aggregationGroupByOperatorService = null;
+  private List<Map<String, Serializable>> _mergedGroupByResults = null;
+
+  public DefaultStreamingReducer(BrokerRequest brokerRequest) {
+    _brokerRequest = brokerRequest;
+  }
+
+  @Override
+  public void reduce(ServerInstance serverInstance, DataTable instanceResponse) {
+    if (instanceResponse == null) {
+      return;
+    }
+    _numReducedDataTables++;
+    if (instanceResponse.getMetadata() != null
+        && Boolean.parseBoolean(instanceResponse.getMetadata().get(PARTIAL_RESULT))) {
+      // The server ran out of time before it processed all of its segments
+      _brokerResponse.setPartialResult(true);
+    }
+    if (instanceResponse.getDataSchema() == null && instanceResponse.getMetadata() != null) {
+      for (String key : instanceResponse.getMetadata().keySet()) {
+        if (key.startsWith("Exception")) {
+          ProcessingException processingException = new ProcessingException();
+          processingException.setErrorCode(Integer.parseInt(key.substring(9)));
+          processingException.setMessage(instanceResponse.getMetadata().get(key));
+          _brokerResponse.addToExceptions(processingException);
+        }
+      }
+      return;
+    }
+
+    // reduceOnNumDocsScanned
+    _brokerResponse.setNumDocsScanned(_brokerResponse.getNumDocsScanned()
+        + Long.parseLong(instanceResponse.getMetadata().get(NUM_DOCS_SCANNED)));
+    // reduceOnTotalDocs
+    _brokerResponse.setTotalDocs(_brokerResponse.getTotalDocs()
+        + Long.parseLong(instanceResponse.getMetadata().get(TOTAL_DOCS)));
+    if (Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)) > _brokerResponse.getTimeUsedMs()) {
+      _brokerResponse.setTimeUsedMs(Long.parseLong(instanceResponse.getMetadata().get(TIME_USED_MS)));
+    }
+
+    if (_reduceException != null) {
+      return;
+    }
+    try {
+      if (isSelectionQuery()) {
+        reduceOnSelectionResults(instanceResponse);
+      } else if (_brokerRequest.isSetAggregationsInfo()) {
+        if (!_brokerRequest.isSetGroupBy()) {
+          reduceOnAggregationResults(instanceResponse);
+        } else {
+          reduceOnAggregationGroupByOperatorResults(instanceResponse);
+        }
+      }
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while reducing results from server instance " + serverInstance, e);
+      _reduceException = e;
+    }
+  }
+
+  @Override
+  public BrokerResponse getBrokerResponse() {
+    if (_numReducedDataTables == 0) {
+      return BrokerResponse.EMPTY_RESULT;
+    }
+    if (_reduceException != null) {
+      _brokerResponse.addToExceptions(QueryException.getException(QueryException.BROKER_GATHER_ERROR,
+          _reduceException));
+      return _brokerResponse;
+    }
+    try {
+      if (isSelectionQuery()) {
+        _brokerResponse.setSelectionResults(renderSelectionResults());
+        return _brokerResponse;
+      }
+      if (_brokerRequest.isSetAggregationsInfo()) {
+        if (!_brokerRequest.isSetGroupBy()) {
+          _brokerResponse.setAggregationResults(renderAggregationResults());
+        } else {
+          AggregationGroupByOperatorService aggregationGroupByOperatorService = getAggregationGroupByOperatorService();
+          _brokerResponse.setAggregationResults(aggregationGroupByOperatorService
+              .renderGroupByOperators(aggregationGroupByOperatorService.reduceMergedGroupByResults(_mergedGroupByResults)));
+        }
+        return _brokerResponse;
+      }
+    } catch (Exception e) {
+      _brokerResponse.addToExceptions(QueryException.getException(QueryException.BROKER_GATHER_ERROR, e));
+      return _brokerResponse;
+    }
+    throw new UnsupportedOperationException(
+        "Should not reach here, the query has no attributes of selection or aggregation!");
+  }
+
+  private boolean isSelectionQuery() {
+    return _brokerRequest.isSetSelections() && (_brokerRequest.getSelections().getSelectionColumns() != null);
+  }
+
+  private void reduceOnSelectionResults(DataTable instanceResponse) {
+    if (_selectionDataSchema == null) {
+      _selectionDataSchema = instanceResponse.getDataSchema();
+      if (_brokerRequest.getSelections().isSetSelectionSortSequence()) {
+        _selectionService = new SelectionOperatorService(_brokerRequest.getSelections(), _selectionDataSchema);
+      } else {
+        _selectionRows = new ArrayList<Serializable[]>(_brokerRequest.getSelections().getSize());
+      }
+    }
+    if (_selectionService != null) {
+      _selectionService.reduce(instanceResponse);
+    } else {
+      SelectionOperatorUtils.reduce(_selectionRows, instanceResponse, _brokerRequest.getSelections().getSize());
+    }
+  }
+
+  private JSONObject renderSelectionResults() {
+    if (_selectionDataSchema == null) {
+      return null;
+    }
+    try {
+      if (_selectionService != null) {
+        return _selectionService.render(_selectionService.getRowEventsSet());
+      } else {
+        return SelectionOperatorUtils.render(_selectionRows, _brokerRequest.getSelections().getSelectionColumns(),
+            _selectionDataSchema);
+      }
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while reducing results", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  private List<AggregationFunction> getAggregationFunctions() {
+    if (_aggregationFunctions == null) {
+      _aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
+      _combinedAggregationResults = new Serializable[_aggregationFunctions.size()];
+    }
+    return _aggregationFunctions;
+  }
+
+  private void reduceOnAggregationResults(DataTable instanceResponse) {
+    List<AggregationFunction> aggregationFunctions = getAggregationFunctions();
+    DataSchema aggregationResultSchema = instanceResponse.getDataSchema();
+    for (int rowId = 0; rowId < instanceResponse.getNumberOfRows(); ++rowId) {
+      for (int colId = 0; colId < _brokerRequest.getAggregationsInfoSize(); ++colId) {
+        Serializable value;
+        switch (aggregationResultSchema.getColumnType(colId)) {
+          case INT:
+            value = instanceResponse.getInt(rowId, colId);
+            break;
+          case SHORT:
+            value = instanceResponse.getShort(rowId, colId);
+            break;
+          case FLOAT:
+            value = instanceResponse.getFloat(rowId, colId);
+            break;
+          case LONG:
+            value = instanceResponse.getLong(rowId, colId);
+            break;
+          case DOUBLE:
+            value = instanceResponse.getDouble(rowId, colId);
+            break;
+          case STRING:
+            value = instanceResponse.getString(rowId, colId);
+            break;
+          default:
+            value = instanceResponse.getObject(rowId, colId);
+            break;
+        }
+        _combinedAggregationResults[colId] =
+            aggregationFunctions.get(colId).combineTwoValues(_combinedAggregationResults[colId], value);
+      }
+    }
+  }
+
+  private List<JSONObject> renderAggregationResults() {
+    List<JSONObject> retAggregationResults = new ArrayList<JSONObject>();
+    List<AggregationFunction> aggregationFunctions = getAggregationFunctions();
+    for (int i = 0; i < aggregationFunctions.size(); ++i) {
+      List<Serializable> combinedResults;
+      if (_combinedAggregationResults[i] == null) {
+        combinedResults = Collections.emptyList();
+      } else {
+        combinedResults = Collections.singletonList(_combinedAggregationResults[i]);
+      }
+      Serializable retResult = aggregationFunctions.get(i).reduce(combinedResults);
+      try {
+        retAggregationResults.add(aggregationFunctions.get(i).render(retResult)
+            .put("function", aggregationFunctions.get(i).getFunctionName()));
+      } catch (JSONException e) {
+        LOGGER.error("Caught exception while reducing aggregation results", e);
+        Utils.rethrowException(e);
+        throw new AssertionError("Should not reach this");
+      }
+    }
+    return retAggregationResults;
+  }
+
+  private AggregationGroupByOperatorService getAggregationGroupByOperatorService() {
+    if (_aggregationGroupByOperatorService == null) {
+      _aggregationGroupByOperatorService =
+          new AggregationGroupByOperatorService(_brokerRequest.getAggregationsInfo(), _brokerRequest.getGroupBy());
+    }
+    return _aggregationGroupByOperatorService;
+  }
+
+  private void reduceOnAggregationGroupByOperatorResults(DataTable instanceResponse) {
+    _mergedGroupByResults =
+        getAggregationGroupByOperatorService().mergeGroupByOperatorResults(_mergedGroupByResults, instanceResponse);
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A view on a shared thread pool that runs at most a fixed number of its tasks at the same time. Tasks over the
+ * limit wait in the view and are handed to the pool as the running ones finish, so they queue behind the tasks the
+ * other views submitted in the meantime.
+ *
+ * Shutting the view down does not shut the shared pool down.
+ */
+public class BoundedExecutorService extends AbstractExecutorService {
+  private final ThreadPoolExecutor _threadPool;
+  private final int _maxRunningTasks;
+  private final Queue<Runnable> _pendingTasks = new ArrayDeque<Runnable>();
+  private int _numRunningTasks = 0;
+  private boolean _isShutDown = false;
+
+  public BoundedExecutorService(ThreadPoolExecutor threadPool, int maxRunningTasks) {
+    _threadPool = threadPool;
+    _maxRunningTasks = Math.max(1, maxRunningTasks);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    synchronized (this) {
+      if (_isShutDown) {
+        throw new RejectedExecutionException("Executor is shut down");
+      }
+      if (_numRunningTasks >= _maxRunningTasks) {
+        _pendingTasks.add(command);
+        return;
+      }
+      _numRunningTasks++;
+    }
+    try {
+      submitToThreadPool(command);
+    } catch (RejectedExecutionException e) {
+      onTaskDone();
+      throw e;
+    }
+  }
+
+  private void submitToThreadPool(final Runnable command) {
+    _threadPool.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          command.run();
+        } finally {
+          onTaskDone();
+        }
+      }
+    });
+  }
+
+  private void onTaskDone() {
+    while (true) {
+      Runnable nextTask;
+      synchronized (this) {
+        nextTask = _pendingTasks.poll();
+        if (nextTask == null) {
+          _numRunningTasks--;
+          notifyAll();
+          return;
+        }
+      }
+      try {
+        submitToThreadPool(nextTask);
+        return;
+      } catch (RejectedExecutionException e) {
+        // The shared pool is shut down, nothing will ever run this task
+        if (nextTask instanceof Future) {
+          ((Future<?>) nextTask).cancel(false);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns how many more tasks would start right away, bounded by both this view and the idle threads of the shared
+   * pool.
+   */
+  public int getNumAvailableThreads() {
+    int numAvailableThreads;
+    synchronized (this) {
+      numAvailableThreads = _maxRunningTasks - _numRunningTasks - _pendingTasks.size();
+    }
+    int numIdlePoolThreads =
+        _threadPool.getMaximumPoolSize() - _threadPool.getActiveCount() - _threadPool.getQueue().size();
+    return Math.max(0, Math.min(numAvailableThreads, numIdlePoolThreads));
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    _isShutDown = true;
+    notifyAll();
+  }
+
+  @Override
+  public synchronized List<Runnable> shutdownNow() {
+    _isShutDown = true;
+    List<Runnable> pendingTasks = new ArrayList<Runnable>(_pendingTasks);
+    _pendingTasks.clear();
+    notifyAll();
+    return pendingTasks;
+  }
+
+  @Override
+  public synchronized boolean isShutdown() {
+    return _isShutDown;
+  }
+
+  @Override
+  public synchronized boolean isTerminated() {
+    return _isShutDown && _numRunningTasks == 0;
+  }
+
+  @Override
+  public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long endTimeNs = System.nanoTime() + unit.toNanos(timeout);
+    while (!isTerminated()) {
+      long remainingMs = TimeUnit.NANOSECONDS.toMillis(endTimeNs - System.nanoTime());
+      if (remainingMs <= 0) {
+        return false;
+      }
+      wait(remainingMs);
+    }
+    return true;
+  }
+}
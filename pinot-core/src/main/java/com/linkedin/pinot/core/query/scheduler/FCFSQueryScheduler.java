@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * Runs queries in their order of arrival, regardless of their table. Queries of a table at its running queries
+ * limit are passed over until one of its queries finishes.
+ */
+public class FCFSQueryScheduler extends QueueingQueryScheduler {
+  private final Deque<SchedulerQueryContext> _pendingQueries = new ArrayDeque<SchedulerQueryContext>();
+
+  public FCFSQueryScheduler(QueryExecutor queryExecutor, Configuration config, ServerMetrics serverMetrics) {
+    super(queryExecutor, config, serverMetrics);
+  }
+
+  @Override
+  protected void addPendingQuery(SchedulerQueryContext queryContext) {
+    _pendingQueries.addLast(queryContext);
+  }
+
+  @Override
+  protected SchedulerQueryContext pollPendingQuery() {
+    Iterator<SchedulerQueryContext> iterator = _pendingQueries.iterator();
+    while (iterator.hasNext()) {
+      SchedulerQueryContext queryContext = iterator.next();
+      if (canRun(queryContext.getTableName())) {
+        iterator.remove();
+        return queryContext;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * Shares the worker threads between tables. The next query comes from the table with the fewest running queries,
+ * ties going to the table whose oldest pending query arrived first, so a burst of queries on one table cannot hold
+ * back the queries of the others.
+ */
+public class FairShareQueryScheduler extends QueueingQueryScheduler {
+  private final Map<String, Deque<SchedulerQueryContext>> _pendingQueriesPerTable =
+      new HashMap<String, Deque<SchedulerQueryContext>>();
+
+  public FairShareQueryScheduler(QueryExecutor queryExecutor, Configuration config, ServerMetrics serverMetrics) {
+    super(queryExecutor, config, serverMetrics);
+  }
+
+  @Override
+  protected void addPendingQuery(SchedulerQueryContext queryContext) {
+    Deque<SchedulerQueryContext> pendingQueries = _pendingQueriesPerTable.get(queryContext.getTableName());
+    if (pendingQueries == null) {
+      pendingQueries = new ArrayDeque<SchedulerQueryContext>();
+      _pendingQueriesPerTable.put(queryContext.getTableName(), pendingQueries);
+    }
+    pendingQueries.addLast(queryContext);
+  }
+
+  @Override
+  protected SchedulerQueryContext pollPendingQuery() {
+    Deque<SchedulerQueryContext> selectedQueries = null;
+    int selectedNumRunningQueries = Integer.MAX_VALUE;
+    for (Map.Entry<String, Deque<SchedulerQueryContext>> entry : _pendingQueriesPerTable.entrySet()) {
+      if (!canRun(entry.getKey())) {
+        continue;
+      }
+      int numRunningQueries = getNumRunningQueries(entry.getKey());
+      Deque<SchedulerQueryContext> pendingQueries = entry.getValue();
+      if (numRunningQueries < selectedNumRunningQueries
+          || (numRunningQueries == selectedNumRunningQueries
+              && pendingQueries.peekFirst().getSequenceId() < selectedQueries.peekFirst().getSequenceId())) {
+        selectedQueries = pendingQueries;
+        selectedNumRunningQueries = numRunningQueries;
+      }
+    }
+    if (selectedQueries == null) {
+      return null;
+    }
+    SchedulerQueryContext queryContext = selectedQueries.pollFirst();
+    if (selectedQueries.isEmpty()) {
+      _pendingQueriesPerTable.remove(queryContext.getTableName());
+    }
+    return queryContext;
+  }
+}
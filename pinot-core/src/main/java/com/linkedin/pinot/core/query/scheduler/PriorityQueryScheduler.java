@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * Runs the pending queries of the tables with the highest priority first, in their order of arrival within a
+ * priority. Priorities are configured per table as priority.&lt;tableName&gt;, tables without one get priority 0.
+ */
+public class PriorityQueryScheduler extends QueueingQueryScheduler {
+  // Prefix key of the table priorities, higher priorities run first
+  public static final String PRIORITY = "priority";
+
+  private final Map<String, Integer> _tablePriorities = new HashMap<String, Integer>();
+  // Sequence ids are unique, so the ordering is total and the set never drops a query
+  private final NavigableSet<SchedulerQueryContext> _pendingQueries;
+
+  public PriorityQueryScheduler(QueryExecutor queryExecutor, Configuration config, ServerMetrics serverMetrics) {
+    super(queryExecutor, config, serverMetrics);
+    Configuration priorityConfig = config.subset(PRIORITY);
+    Iterator<String> tableNames = priorityConfig.getKeys();
+    while (tableNames.hasNext()) {
+      String tableName = tableNames.next();
+      _tablePriorities.put(tableName, priorityConfig.getInt(tableName));
+    }
+    _pendingQueries = new TreeSet<SchedulerQueryContext>(new Comparator<SchedulerQueryContext>() {
+      @Override
+      public int compare(SchedulerQueryContext o1, SchedulerQueryContext o2) {
+        int result = Integer.compare(getPriority(o2.getTableName()), getPriority(o1.getTableName()));
+        if (result != 0) {
+          return result;
+        }
+        return Long.compare(o1.getSequenceId(), o2.getSequenceId());
+      }
+    });
+  }
+
+  int getPriority(String tableName) {
+    Integer priority = _tablePriorities.get(tableName);
+    return (priority == null) ? 0 : priority;
+  }
+
+  @Override
+  protected void addPendingQuery(SchedulerQueryContext queryContext) {
+    _pendingQueries.add(queryContext);
+  }
+
+  @Override
+  protected SchedulerQueryContext pollPendingQuery() {
+    Iterator<SchedulerQueryContext> iterator = _pendingQueries.iterator();
+    while (iterator.hasNext()) {
+      SchedulerQueryContext queryContext = iterator.next();
+      if (canRun(queryContext.getTableName())) {
+        iterator.remove();
+        return queryContext;
+      }
+    }
+    return null;
+  }
+}
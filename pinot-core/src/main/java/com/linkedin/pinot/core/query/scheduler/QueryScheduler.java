@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Decides when and in which order the queries received by the server are executed.
+ *
+ * Queries are executed on the scheduler's own worker threads, so the network threads only hand them off. The
+ * returned futures never fail: errors are reported as exceptions in the response.
+ */
+public abstract class QueryScheduler {
+  protected final QueryExecutor _queryExecutor;
+
+  public QueryScheduler(QueryExecutor queryExecutor) {
+    _queryExecutor = queryExecutor;
+  }
+
+  /**
+   * Schedules a query, the returned future completes with its response.
+   */
+  public abstract ListenableFuture<DataTable> submit(InstanceRequest instanceRequest);
+
+  /**
+   * Stops the worker threads. Queries still waiting are answered with an error.
+   */
+  public abstract void shutDown();
+
+  public QueryExecutor getQueryExecutor() {
+    return _queryExecutor;
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+
+
+/**
+ * Builds the query scheduler named by the type key of its config, first come first served by default.
+ */
+public class QuerySchedulerFactory {
+  public static final String TYPE = "type";
+  public static final String FCFS = "fcfs";
+  public static final String FAIR_SHARE = "fairshare";
+  public static final String PRIORITY = "priority";
+
+  private QuerySchedulerFactory() {
+  }
+
+  public static QueryScheduler create(QueryExecutor queryExecutor, Configuration config, ServerMetrics serverMetrics) {
+    String type = config.getString(TYPE, FCFS).trim().toLowerCase();
+    if (type.equals(FCFS)) {
+      return new FCFSQueryScheduler(queryExecutor, config, serverMetrics);
+    }
+    if (type.equals(FAIR_SHARE)) {
+      return new FairShareQueryScheduler(queryExecutor, config, serverMetrics);
+    }
+    if (type.equals(PRIORITY)) {
+      return new PriorityQueryScheduler(queryExecutor, config, serverMetrics);
+    }
+    throw new IllegalArgumentException("Unsupported query scheduler type: " + type);
+  }
+}
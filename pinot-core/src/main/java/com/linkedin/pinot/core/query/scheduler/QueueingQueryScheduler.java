@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * Base class of the schedulers that keep pending queries in a queue drained by a fixed number of worker threads.
+ * Subclasses only decide which pending query runs next. Both {@link #addPendingQuery(SchedulerQueryContext)} and
+ * {@link #pollPendingQuery()} are called with the scheduler lock held.
+ *
+ * Queries arriving while the server already has too many pending queries, overall or for their table, are answered
+ * right away with a {@link QueryException#SERVER_BUSY_ERROR} so the broker does not wait for them to time out.
+ */
+public abstract class QueueingQueryScheduler extends QueryScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueueingQueryScheduler.class);
+
+  // Number of queries executed concurrently
+  public static final String NUM_WORKER_THREADS = "numWorkerThreads";
+  public static final int DEFAULT_NUM_WORKER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+  // Queries waiting for a worker beyond which new queries are rejected
+  public static final String MAX_PENDING_QUERIES = "maxPendingQueries";
+  public static final int DEFAULT_MAX_PENDING_QUERIES = 1000;
+  // Same as above for the queries of a single table, defaults to the server wide limit
+  public static final String MAX_PENDING_QUERIES_PER_TABLE = "maxPendingQueriesPerTable";
+  // Queries of a single table executed concurrently, defaults to the number of worker threads
+  public static final String MAX_RUNNING_QUERIES_PER_TABLE = "maxRunningQueriesPerTable";
+
+  private final Object _lock = new Object();
+  private final ServerMetrics _serverMetrics;
+  private final int _numWorkerThreads;
+  private final int _maxPendingQueries;
+  private final int _maxPendingQueriesPerTable;
+  private final int _maxRunningQueriesPerTable;
+  private final Map<String, Integer> _numRunningQueriesPerTable = new HashMap<String, Integer>();
+  private final Map<String, Integer> _numPendingQueriesPerTable = new HashMap<String, Integer>();
+  private int _numPendingQueries = 0;
+  private long _nextSequenceId = 0;
+  private boolean _isStarted = false;
+  private boolean _isShutDown = false;
+
+  public QueueingQueryScheduler(QueryExecutor queryExecutor, Configuration config, ServerMetrics serverMetrics) {
+    super(queryExecutor);
+    _serverMetrics = serverMetrics;
+    _numWorkerThreads = Math.max(1, config.getInt(NUM_WORKER_THREADS, DEFAULT_NUM_WORKER_THREADS));
+    _maxPendingQueries = Math.max(0, config.getInt(MAX_PENDING_QUERIES, DEFAULT_MAX_PENDING_QUERIES));
+    _maxPendingQueriesPerTable = Math.max(0, config.getInt(MAX_PENDING_QUERIES_PER_TABLE, _maxPendingQueries));
+    _maxRunningQueriesPerTable = Math.max(1, config.getInt(MAX_RUNNING_QUERIES_PER_TABLE, _numWorkerThreads));
+  }
+
+  // Workers are started on the first query rather than in the constructor, as they call into subclass state that
+  // is only initialized once the subclass constructor has run.
+  private void startWorkers() {
+    for (int i = 0; i < _numWorkerThreads; i++) {
+      Thread workerThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          runWorker();
+        }
+      }, getClass().getSimpleName() + "-worker-" + i);
+      workerThread.setDaemon(true);
+      workerThread.start();
+    }
+    _isStarted = true;
+    LOGGER.info("Started {} with {} worker threads", getClass().getSimpleName(), _numWorkerThreads);
+  }
+
+  @Override
+  public ListenableFuture<DataTable> submit(InstanceRequest instanceRequest) {
+    SchedulerQueryContext queryContext;
+    synchronized (_lock) {
+      queryContext = new SchedulerQueryContext(instanceRequest, _nextSequenceId++);
+      if (!_isShutDown) {
+        String tableName = queryContext.getTableName();
+        int numPendingQueriesForTable = getCount(_numPendingQueriesPerTable, tableName);
+        if (_numPendingQueries < _maxPendingQueries && numPendingQueriesForTable < _maxPendingQueriesPerTable) {
+          if (!_isStarted) {
+            startWorkers();
+          }
+          _numPendingQueries++;
+          _numPendingQueriesPerTable.put(tableName, numPendingQueriesForTable + 1);
+          addPendingQuery(queryContext);
+          _lock.notify();
+          return queryContext.getResultFuture();
+        }
+        LOGGER.warn("Rejecting query {} on table {} with {} pending queries and {} pending queries for the table",
+            instanceRequest.getRequestId(), tableName, _numPendingQueries, numPendingQueriesForTable);
+        _serverMetrics.addMeteredValue(instanceRequest.getQuery(), ServerMeter.QUERIES_REJECTED, 1);
+        queryContext.getResultFuture().set(getErrorResponse(QueryException.SERVER_BUSY_ERROR,
+            "Too many pending queries on the server, try again later"));
+        return queryContext.getResultFuture();
+      }
+    }
+    queryContext.getResultFuture().set(getErrorResponse(QueryException.SERVER_BUSY_ERROR,
+        "Query scheduler is shut down"));
+    return queryContext.getResultFuture();
+  }
+
+  @Override
+  public void shutDown() {
+    synchronized (_lock) {
+      _isShutDown = true;
+      _lock.notifyAll();
+      SchedulerQueryContext queryContext;
+      while ((queryContext = pollQuery()) != null) {
+        queryContext.getResultFuture().set(getErrorResponse(QueryException.SERVER_BUSY_ERROR,
+            "Query scheduler is shut down"));
+      }
+    }
+  }
+
+  /**
+   * Adds a query to the pending queries.
+   */
+  protected abstract void addPendingQuery(SchedulerQueryContext queryContext);
+
+  /**
+   * Removes and returns the pending query to run next, or null if no pending query can run. Queries of the tables
+   * for which {@link #canRun(String)} returns false must stay pending.
+   */
+  protected abstract SchedulerQueryContext pollPendingQuery();
+
+  /**
+   * Returns the number of queries of the table being executed, to be called with the scheduler lock held.
+   */
+  protected int getNumRunningQueries(String tableName) {
+    return getCount(_numRunningQueriesPerTable, tableName);
+  }
+
+  /**
+   * Returns whether a query of the table can start without going over the running queries limit of the table, to be
+   * called with the scheduler lock held. Always true once shut down so that all pending queries get drained.
+   */
+  protected boolean canRun(String tableName) {
+    return _isShutDown || getNumRunningQueries(tableName) < _maxRunningQueriesPerTable;
+  }
+
+  private SchedulerQueryContext pollQuery() {
+    SchedulerQueryContext queryContext = pollPendingQuery();
+    if (queryContext != null) {
+      _numPendingQueries--;
+      updateCount(_numPendingQueriesPerTable, queryContext.getTableName(), -1);
+    }
+    return queryContext;
+  }
+
+  private static int getCount(Map<String, Integer> counts, String tableName) {
+    Integer count = counts.get(tableName);
+    return (count == null) ? 0 : count;
+  }
+
+  private static void updateCount(Map<String, Integer> counts, String tableName, int delta) {
+    int count = getCount(counts, tableName) + delta;
+    if (count == 0) {
+      counts.remove(tableName);
+    } else {
+      counts.put(tableName, count);
+    }
+  }
+
+  private void runWorker() {
+    while (true) {
+      SchedulerQueryContext queryContext;
+      synchronized (_lock) {
+        queryContext = pollQuery();
+        while (queryContext == null) {
+          if (_isShutDown) {
+            return;
+          }
+          try {
+            _lock.wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          queryContext = pollQuery();
+        }
+        updateCount(_numRunningQueriesPerTable, queryContext.getTableName(), 1);
+      }
+      try {
+        queryContext.getResultFuture().set(execute(queryContext));
+      } finally {
+        synchronized (_lock) {
+          updateCount(_numRunningQueriesPerTable, queryContext.getTableName(), -1);
+          // Queries held back by the running queries limit of this table may run now
+          _lock.notify();
+        }
+      }
+    }
+  }
+
+  /**
+   * Executes the query, never throws so that the result future is always set and the worker keeps running, even when
+   * the query fails with an error rather than an exception.
+   */
+  private DataTable execute(SchedulerQueryContext queryContext) {
+    InstanceRequest instanceRequest = queryContext.getInstanceRequest();
+    try {
+      long waitTimeNs = System.nanoTime() - queryContext.getArrivalTimeNs();
+      _serverMetrics.addPhaseTiming(instanceRequest.getQuery(), ServerQueryPhase.SCHEDULER_WAIT, waitTimeNs);
+      // The time spent waiting for a worker comes out of the time budget the broker gave the query
+      if (instanceRequest.isSetTimeoutMs()) {
+        long waitTimeMs = TimeUnit.NANOSECONDS.toMillis(waitTimeNs);
+        long remainingTimeMs = instanceRequest.getTimeoutMs() - waitTimeMs;
+        if (remainingTimeMs <= 0) {
+          LOGGER.warn("Query {} on table {} timed out after waiting {}ms for a worker",
+              instanceRequest.getRequestId(), queryContext.getTableName(), waitTimeMs);
+          _serverMetrics.addMeteredValue(instanceRequest.getQuery(), ServerMeter.SCHEDULING_TIMEOUT_EXCEPTIONS, 1);
+          return getErrorResponse(QueryException.EXECUTION_TIMEOUT_ERROR,
+              "Query timed out after waiting " + waitTimeMs + "ms for a worker");
+        }
+        instanceRequest.setTimeoutMs(remainingTimeMs);
+      }
+      return _queryExecutor.processQuery(instanceRequest);
+    } catch (Throwable t) {
+      LOGGER.error("Caught exception while executing query", t);
+      return getErrorResponse(QueryException.INTERNAL_ERROR, t.toString());
+    }
+  }
+
+  protected static DataTable getErrorResponse(ProcessingException processingException, String message) {
+    ProcessingException exception = processingException.deepCopy();
+    exception.setMessage(message);
+    DataTable errorResponse = new DataTable();
+    errorResponse.addException(exception);
+    return errorResponse;
+  }
+}
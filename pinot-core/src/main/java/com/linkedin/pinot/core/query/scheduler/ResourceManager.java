@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+
+
+/**
+ * Owns the threads that process segments for all the queries of the server. Each table gets a
+ * {@link BoundedExecutorService} on one shared pool, so the server never runs more than numRunnerThreads segment
+ * tasks at a time and a single table never takes more than maxRunnerThreadsPerTable of them.
+ */
+public class ResourceManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResourceManager.class);
+
+  // Threads processing segments for all the tables, the table thread pools are used instead when not positive
+  public static final String NUM_RUNNER_THREADS = "numRunnerThreads";
+  public static final int DEFAULT_NUM_RUNNER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+  // Threads a single table can use at the same time, defaults to half of the runner threads
+  public static final String MAX_RUNNER_THREADS_PER_TABLE = "maxRunnerThreadsPerTable";
+
+  private final ThreadPoolExecutor _runnerThreadPool;
+  private final int _maxRunnerThreadsPerTable;
+  private final ConcurrentMap<String, BoundedExecutorService> _tableExecutorServices =
+      new ConcurrentHashMap<String, BoundedExecutorService>();
+
+  public ResourceManager(Configuration config) {
+    int numRunnerThreads = config.getInt(NUM_RUNNER_THREADS, DEFAULT_NUM_RUNNER_THREADS);
+    if (numRunnerThreads > 0) {
+      _runnerThreadPool = new ThreadPoolExecutor(numRunnerThreads, numRunnerThreads, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("query-runner"));
+      _maxRunnerThreadsPerTable = Math.min(numRunnerThreads,
+          Math.max(1, config.getInt(MAX_RUNNER_THREADS_PER_TABLE, Math.max(1, numRunnerThreads / 2))));
+      LOGGER.info("Processing segments on {} runner threads, at most {} per table", numRunnerThreads,
+          _maxRunnerThreadsPerTable);
+    } else {
+      _runnerThreadPool = null;
+      _maxRunnerThreadsPerTable = 0;
+      LOGGER.info("Processing segments on the table thread pools");
+    }
+  }
+
+  public boolean isEnabled() {
+    return _runnerThreadPool != null;
+  }
+
+  /**
+   * Returns the executor the segments of the table get processed on, null when disabled.
+   */
+  public ExecutorService getTableExecutorService(String tableName) {
+    if (_runnerThreadPool == null) {
+      return null;
+    }
+    BoundedExecutorService executorService = _tableExecutorServices.get(tableName);
+    if (executorService == null) {
+      executorService = new BoundedExecutorService(_runnerThreadPool, _maxRunnerThreadsPerTable);
+      BoundedExecutorService existingExecutorService = _tableExecutorServices.putIfAbsent(tableName, executorService);
+      if (existingExecutorService != null) {
+        executorService = existingExecutorService;
+      }
+    }
+    return executorService;
+  }
+
+  public void shutDown() {
+    if (_runnerThreadPool != null) {
+      _runnerThreadPool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.utils.DataTable;
+
+
+/**
+ * A query waiting in or running from a {@link QueueingQueryScheduler}, along with the future its response is set on.
+ */
+public class SchedulerQueryContext {
+  private final InstanceRequest _instanceRequest;
+  private final String _tableName;
+  private final long _sequenceId;
+  private final long _arrivalTimeNs;
+  private final SettableFuture<DataTable> _resultFuture = SettableFuture.create();
+
+  SchedulerQueryContext(InstanceRequest instanceRequest, long sequenceId) {
+    _instanceRequest = instanceRequest;
+    _tableName = instanceRequest.getQuery().getQuerySource().getTableName();
+    _sequenceId = sequenceId;
+    _arrivalTimeNs = System.nanoTime();
+  }
+
+  public InstanceRequest getInstanceRequest() {
+    return _instanceRequest;
+  }
+
+  public String getTableName() {
+    return _tableName;
+  }
+
+  /**
+   * Returns the rank of the query in the arrival order of the scheduler.
+   */
+  public long getSequenceId() {
+    return _sequenceId;
+  }
+
+  public long getArrivalTimeNs() {
+    return _arrivalTimeNs;
+  }
+
+  SettableFuture<DataTable> getResultFuture() {
+    return _resultFuture;
+  }
+}
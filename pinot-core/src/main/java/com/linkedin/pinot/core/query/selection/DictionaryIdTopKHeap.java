@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.selection;
+
+/**
+ * Bounded heap of doc ids ordered on the dictionary ids of their sort columns.
+ *
+ * Immutable segment dictionaries are sorted, so comparing dictionary ids orders rows the same way as comparing
+ * their values. This lets a segment pick its top rows on primitive ints and materialize only the rows that are
+ * kept. The root of the heap is the row that would be evicted first.
+ */
+public class DictionaryIdTopKHeap {
+  private final int _maxSize;
+  private final int _numSortColumns;
+  private final boolean[] _isAsc;
+  private final int[] _docIds;
+  // _numSortColumns dictionary ids per heap slot.
+  private final int[] _dictIds;
+  private int _size = 0;
+
+  public DictionaryIdTopKHeap(int maxSize, boolean[] isAsc) {
+    _maxSize = maxSize;
+    _numSortColumns = isAsc.length;
+    _isAsc = isAsc;
+    _docIds = new int[maxSize];
+    _dictIds = new int[maxSize * _numSortColumns];
+  }
+
+  /**
+   * Offers a row to the heap, returns true if the row was kept.
+   */
+  public boolean offer(int docId, int[] dictIds) {
+    if (_size < _maxSize) {
+      set(_size, docId, dictIds);
+      siftUp(_size++);
+      return true;
+    }
+    if (_maxSize == 0 || compare(dictIds, 0, _dictIds, 0) <= 0) {
+      return false;
+    }
+    set(0, docId, dictIds);
+    siftDown(0);
+    return true;
+  }
+
+  /**
+   * Returns the dictionary id of the given sort column for the row that would be evicted first.
+   */
+  public int getRootDictId(int sortColumn) {
+    return _dictIds[sortColumn];
+  }
+
+  public boolean isFull() {
+    return _size == _maxSize;
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Returns the doc ids kept in the heap, in no particular order.
+   */
+  public int[] getDocIds() {
+    int[] docIds = new int[_size];
+    System.arraycopy(_docIds, 0, docIds, 0, _size);
+    return docIds;
+  }
+
+  /**
+   * Returns a positive value when the first row ranks above the second one.
+   */
+  private int compare(int[] dictIds1, int offset1, int[] dictIds2, int offset2) {
+    for (int i = 0; i < _numSortColumns; ++i) {
+      int result = Integer.compare(dictIds1[offset1 + i], dictIds2[offset2 + i]);
+      if (result != 0) {
+        return _isAsc[i] ? -result : result;
+      }
+    }
+    return 0;
+  }
+
+  private void set(int slot, int docId, int[] dictIds) {
+    _docIds[slot] = docId;
+    System.arraycopy(dictIds, 0, _dictIds, slot * _numSortColumns, _numSortColumns);
+  }
+
+  private void siftUp(int slot) {
+    while (slot > 0) {
+      int parent = (slot - 1) >>> 1;
+      if (compare(_dictIds, slot * _numSortColumns, _dictIds, parent * _numSortColumns) >= 0) {
+        return;
+      }
+      swap(slot, parent);
+      slot = parent;
+    }
+  }
+
+  private void siftDown(int slot) {
+    while (true) {
+      int smallest = slot;
+      int left = 2 * slot + 1;
+      int right = left + 1;
+      if (left < _size && compare(_dictIds, left * _numSortColumns, _dictIds, smallest * _numSortColumns) < 0) {
+        smallest = left;
+      }
+      if (right < _size && compare(_dictIds, right * _numSortColumns, _dictIds, smallest * _numSortColumns) < 0) {
+        smallest = right;
+      }
+      if (smallest == slot) {
+        return;
+      }
+      swap(slot, smallest);
+      slot = smallest;
+    }
+  }
+
+  private void swap(int slot1, int slot2) {
+    int docId = _docIds[slot1];
+    _docIds[slot1] = _docIds[slot2];
+    _docIds[slot2] = docId;
+    int offset1 = slot1 * _numSortColumns;
+    int offset2 = slot2 * _numSortColumns;
+    for (int i = 0; i < _numSortColumns; ++i) {
+      int dictId = _dictIds[offset1 + i];
+      _dictIds[offset1 + i] = _dictIds[offset2 + i];
+      _dictIds[offset2 + i] = dictId;
+    }
+  }
+}
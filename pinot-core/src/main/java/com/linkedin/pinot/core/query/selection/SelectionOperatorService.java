@@ -43,6 +43,7 @@ import com.linkedin.pinot.common.utils.DataTableBuilder;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockMetadata;
 import com.linkedin.pinot.core.common.BlockMultiValIterator;
 import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.Constants;
@@ -62,6 +63,7 @@ import com.linkedin.pinot.core.segment.index.data.source.sv.block.SortedSingleVa
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import com.linkedin.pinot.core.segment.index.readers.DoubleDictionary;
 import com.linkedin.pinot.core.segment.index.readers.FloatDictionary;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.readers.IntDictionary;
 import com.linkedin.pinot.core.segment.index.readers.LongDictionary;
 import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
@@ -86,6 +88,8 @@ public class SelectionOperatorService {
 
   private Comparator<Integer> _rowDocIdComparator;
   private Collection<Integer> _rowDocIdSet;
+  private DictionaryIdTopKHeap _dictionaryIdHeap;
+  private boolean _allDocsAfterAreWorse = false;
 
   private final IndexSegment _indexSegment;
   private final boolean _doOrdering;
@@ -205,30 +209,36 @@ public class SelectionOperatorService {
 
   public Collection<Serializable[]> reduce(Map<ServerInstance, DataTable> selectionResults) {
     _rowEventsSet.clear();
+    for (final DataTable dt : selectionResults.values()) {
+      reduce(dt);
+    }
+    return _rowEventsSet;
+  }
+
+  /**
+   * Folds the rows of one more DataTable into the rows reduced so far.
+   */
+  public Collection<Serializable[]> reduce(DataTable dt) {
     if (_doOrdering) {
       PriorityQueue<Serializable[]> queue = (PriorityQueue<Serializable[]>) _rowEventsSet;
-      for (final DataTable dt : selectionResults.values()) {
-        for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-          final Serializable[] row = getRowFromDataTable(dt, rowId);
-          if (queue.size() < _maxRowSize) {
+      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+        final Serializable[] row = getRowFromDataTable(dt, rowId);
+        if (queue.size() < _maxRowSize) {
+          queue.add(row);
+        } else {
+          if (_rowComparator.compare(queue.peek(), row) < 0) {
             queue.add(row);
-          } else {
-            if (_rowComparator.compare(queue.peek(), row) < 0) {
-              queue.add(row);
-              queue.poll();
-            }
+            queue.poll();
           }
         }
       }
     } else {
-      for (final DataTable dt : selectionResults.values()) {
-        for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-          final Serializable[] row = getRowFromDataTable(dt, rowId);
-          if (_rowEventsSet.size() < _maxRowSize) {
-            _rowEventsSet.add(row);
-          } else {
-            break;
-          }
+      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+        final Serializable[] row = getRowFromDataTable(dt, rowId);
+        if (_rowEventsSet.size() < _maxRowSize) {
+          _rowEventsSet.add(row);
+        } else {
+          break;
         }
       }
     }
@@ -285,46 +295,34 @@ public class SelectionOperatorService {
       @Override
       public int compare(Serializable[] o1, Serializable[] o2) {
         for (int i = 0; i < sortSequence.size(); ++i) {
+          int result;
           switch (dataSchema.getColumnType(i)) {
             case INT:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Integer) o1[i]).compareTo((Integer) o2[i]);
-              } else {
-                return ((Integer) o2[i]).compareTo((Integer) o1[i]);
-              }
+              result = ((Integer) o1[i]).compareTo((Integer) o2[i]);
+              break;
             case SHORT:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Short) o1[i]).compareTo((Short) o2[i]);
-              } else {
-                return ((Short) o2[i]).compareTo((Short) o1[i]);
-              }
+              result = ((Short) o1[i]).compareTo((Short) o2[i]);
+              break;
             case LONG:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Long) o1[i]).compareTo((Long) o2[i]);
-              } else {
-                return ((Long) o2[i]).compareTo((Long) o1[i]);
-              }
+              result = ((Long) o1[i]).compareTo((Long) o2[i]);
+              break;
             case FLOAT:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Float) o1[i]).compareTo((Float) o2[i]);
-              } else {
-                return ((Float) o2[i]).compareTo((Float) o1[i]);
-              }
+              result = ((Float) o1[i]).compareTo((Float) o2[i]);
+              break;
             case DOUBLE:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Double) o1[i]).compareTo((Double) o2[i]);
-              } else {
-                return ((Double) o2[i]).compareTo((Double) o1[i]);
-              }
+              result = ((Double) o1[i]).compareTo((Double) o2[i]);
+              break;
             case STRING:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((String) o1[i]).compareTo((String) o2[i]);
-              } else {
-                return ((String) o2[i]).compareTo((String) o1[i]);
-              }
+              result = ((String) o1[i]).compareTo((String) o2[i]);
+              break;
             default:
+              result = 0;
               break;
           }
+          // Only fall through to the next sort column on ties.
+          if (result != 0) {
+            return sortSequence.get(i).isIsAsc() ? -result : result;
+          }
         }
         return 0;
       };
@@ -364,13 +362,23 @@ public class SelectionOperatorService {
     return new DataSchema(columns.toArray(new String[0]), dataTypes);
   }
 
+  /**
+   * Collects the doc ids of one projection block. Doc ids are kept across calls, so the rows of a segment are
+   * materialized only once through {@link #mergeToRowEventsSet(Block[])}.
+   */
   public void iterateOnBlock(BlockDocIdIterator blockDocIdIterator, Block[] blocks) throws Exception {
+    if (_doOrdering && (_dictionaryIdHeap != null || canOrderOnDictionaryIds(blocks))) {
+      iterateOnBlockWithDictionaryIds(blockDocIdIterator, blocks);
+      return;
+    }
     int docId = 0;
-    _rowDocIdComparator = getDocIdComparator(_sortSequence, _dataSchema, blocks);
-    if (_doOrdering) {
-      _rowDocIdSet = new PriorityQueue<Integer>(_maxRowSize, _rowDocIdComparator);
-    } else {
-      _rowDocIdSet = new ArrayList<Integer>(_maxRowSize);
+    if (_rowDocIdSet == null) {
+      _rowDocIdComparator = getDocIdComparator(_sortSequence, _dataSchema, blocks);
+      if (_doOrdering) {
+        _rowDocIdSet = new PriorityQueue<Integer>(_maxRowSize, _rowDocIdComparator);
+      } else {
+        _rowDocIdSet = new ArrayList<Integer>(_maxRowSize);
+      }
     }
     while ((docId = blockDocIdIterator.next()) != Constants.EOF) {
       _numDocsScanned++;
@@ -387,11 +395,69 @@ public class SelectionOperatorService {
         }
       }
     }
-    mergeToRowEventsSet(blocks);
+  }
+
+  /**
+   * Ordering on dictionary ids is only valid when every sort column is single valued with a sorted (immutable)
+   * dictionary. Realtime dictionaries hand out ids in arrival order.
+   */
+  private boolean canOrderOnDictionaryIds(Block[] blocks) {
+    for (int i = 0; i < _sortSequence.size(); ++i) {
+      BlockMetadata metadata = blocks[i].getMetadata();
+      if (!metadata.isSingleValue() || !metadata.hasDictionary()
+          || !(metadata.getDictionary() instanceof ImmutableDictionaryReader)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void iterateOnBlockWithDictionaryIds(BlockDocIdIterator blockDocIdIterator, Block[] blocks) {
+    final int numSortColumns = _sortSequence.size();
+    if (_dictionaryIdHeap == null) {
+      boolean[] isAsc = new boolean[numSortColumns];
+      for (int i = 0; i < numSortColumns; ++i) {
+        isAsc[i] = _sortSequence.get(i).isIsAsc();
+      }
+      _dictionaryIdHeap = new DictionaryIdTopKHeap(_maxRowSize, isAsc);
+    }
+    if (_allDocsAfterAreWorse) {
+      return;
+    }
+    final BlockSingleValIterator[] iterators = new BlockSingleValIterator[numSortColumns];
+    for (int i = 0; i < numSortColumns; ++i) {
+      iterators[i] = (BlockSingleValIterator) blocks[i].getBlockValueSet().iterator();
+    }
+    // Doc ids come in increasing order, so once the heap is full a row that is strictly worse on an ascending
+    // sorted first column means every row after it is worse as well.
+    final boolean canTerminateEarly = _sortSequence.get(0).isIsAsc() && blocks[0].getMetadata().isSorted();
+    final int[] dictIds = new int[numSortColumns];
+    int docId;
+    while ((docId = blockDocIdIterator.next()) != Constants.EOF) {
+      _numDocsScanned++;
+      for (int i = 0; i < numSortColumns; ++i) {
+        iterators[i].skipTo(docId);
+        dictIds[i] = iterators[i].nextIntVal();
+      }
+      if (canTerminateEarly && _dictionaryIdHeap.isFull() && dictIds[0] > _dictionaryIdHeap.getRootDictId(0)) {
+        _allDocsAfterAreWorse = true;
+        return;
+      }
+      _dictionaryIdHeap.offer(docId, dictIds);
+    }
   }
 
   public Collection<Serializable[]> mergeToRowEventsSet(Block[] blocks) throws Exception {
-    if (_doOrdering) {
+    if (_dictionaryIdHeap != null) {
+      final PriorityQueue<Serializable[]> rowEventsPriorityQueue =
+          new PriorityQueue<Serializable[]>(_maxRowSize, _rowComparator);
+      for (int docId : _dictionaryIdHeap.getDocIds()) {
+        rowEventsPriorityQueue.add(getRowFromBlockValSets(docId, blocks));
+      }
+      merge(_rowEventsSet, rowEventsPriorityQueue);
+    } else if (_rowDocIdSet == null) {
+      return _rowEventsSet;
+    } else if (_doOrdering) {
       final PriorityQueue<Serializable[]> rowEventsPriorityQueue =
           new PriorityQueue<Serializable[]>(_maxRowSize, _rowComparator);
       PriorityQueue<Integer> queue = (PriorityQueue<Integer>) _rowDocIdSet;
@@ -409,7 +475,8 @@ public class SelectionOperatorService {
       }
       merge(_rowEventsSet, rowEventsList);
     }
-
+    _dictionaryIdHeap = null;
+    _rowDocIdSet = null;
     return _rowEventsSet;
   }
 
@@ -1070,8 +1137,9 @@ public class SelectionOperatorService {
 
   public boolean canTerminate() {
     if (!_doOrdering) {
-      return getRowEventsSet().size() >= _maxRowSize;
+      return getRowEventsSet().size() >= _maxRowSize
+          || (_rowDocIdSet != null && _rowDocIdSet.size() >= _maxRowSize);
     }
-    return false;
+    return _allDocsAfterAreWorse;
   }
 }
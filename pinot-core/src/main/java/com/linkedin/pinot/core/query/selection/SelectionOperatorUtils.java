@@ -136,17 +136,32 @@ public class SelectionOperatorUtils {
   public static Collection<Serializable[]> reduce(Map<ServerInstance, DataTable> selectionResults, int maxRowSize) {
     Collection<Serializable[]> rowEventsSet = new ArrayList<Serializable[]>(maxRowSize);
     for (final DataTable dt : selectionResults.values()) {
-      for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
-        final Serializable[] row = extractRowFromDataTable(dt, rowId);
-        rowEventsSet.add(row);
-        if (rowEventsSet.size() == maxRowSize) {
-          return rowEventsSet;
-        }
+      if (reduce(rowEventsSet, dt, maxRowSize)) {
+        return rowEventsSet;
       }
     }
     return rowEventsSet;
   }
 
+  /**
+   * Appends the rows of the DataTable to rowEventsSet until it holds maxRowSize rows.
+   *
+   * @return true if rowEventsSet is full, so no more DataTables need to be reduced
+   */
+  public static boolean reduce(Collection<Serializable[]> rowEventsSet, DataTable dt, int maxRowSize) {
+    if (rowEventsSet.size() >= maxRowSize) {
+      return true;
+    }
+    for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
+      final Serializable[] row = extractRowFromDataTable(dt, rowId);
+      rowEventsSet.add(row);
+      if (rowEventsSet.size() == maxRowSize) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public static JSONObject render(Collection<Serializable[]> finalResults, List<String> selectionColumns, DataSchema dataSchema) throws Exception {
     final LinkedList<JSONArray> rowEventsJSonList = new LinkedList<JSONArray>();
     List<Serializable[]> list = (List<Serializable[]>) finalResults;
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.utils;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.linkedin.pinot.common.Utils;
+import com.linkedin.pinot.common.utils.DataTableJavaSerDe;
+import com.linkedin.pinot.common.utils.DataTableSerDe;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultMap;
+
+
+/**
+ * DataTableSerDe for version 2 data tables. Every value is written as a one byte type tag followed by a fixed or
+ * length prefixed payload, so aggregation and group by intermediate results can be decoded straight from the response
+ * buffer without going through java serialization. {@link GroupByResultMap} keeps its typed group keys on the wire,
+ * and {@link HyperLogLog} sketches are written in their own compact format.
+ *
+ * Types without a dedicated encoding fall back to java serialization, prefixed with their length.
+ */
+public class DataTableCustomSerDe implements DataTableSerDe {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  static final byte NULL = 0;
+  static final byte STRING = 1;
+  static final byte INTEGER = 2;
+  static final byte LONG = 3;
+  static final byte DOUBLE = 4;
+  static final byte AVG_PAIR = 5;
+  static final byte INT_OPEN_HASH_SET = 6;
+  static final byte MAP = 7;
+  static final byte GROUP_BY_RESULT_MAP = 8;
+  static final byte HYPER_LOG_LOG = 9;
+  static final byte JAVA_SERIALIZED = 127;
+
+  private static final DataTableCustomSerDe INSTANCE = new DataTableCustomSerDe();
+
+  // AvgPair is an inner class, it needs an enclosing instance to be created.
+  private static final AvgAggregationFunction AVG_PAIR_FACTORY = new AvgAggregationFunction();
+
+  private final DataTableJavaSerDe _javaSerDe = new DataTableJavaSerDe();
+
+  /**
+   * Register the custom SerDe for version 2 data tables, safe to call more than once.
+   */
+  public static void register() {
+    DataTableSerDeRegistry registry = DataTableSerDeRegistry.getInstance();
+    if (!registry.isRegistered()) {
+      registry.register(INSTANCE);
+    }
+  }
+
+  @Override
+  public byte[] serialize(Object value) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    try {
+      writeValue(out, value);
+      out.flush();
+    } catch (IOException e) {
+      Utils.rethrowException(e);
+    }
+    return baos.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends Serializable> T deserialize(ByteBuffer buffer) {
+    return (T) readValue(buffer);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof AvgPair) {
+      AvgPair avgPair = (AvgPair) value;
+      out.writeByte(AVG_PAIR);
+      out.writeDouble(avgPair.getFirst());
+      out.writeLong(avgPair.getSecond());
+    } else if (value instanceof IntOpenHashSet) {
+      IntOpenHashSet set = (IntOpenHashSet) value;
+      out.writeByte(INT_OPEN_HASH_SET);
+      out.writeInt(set.size());
+      IntIterator iterator = set.iterator();
+      while (iterator.hasNext()) {
+        out.writeInt(iterator.nextInt());
+      }
+    } else if (value instanceof HyperLogLog) {
+      out.writeByte(HYPER_LOG_LOG);
+      out.write(((HyperLogLog) value).toBytes());
+    } else if (value instanceof GroupByResultMap) {
+      out.writeByte(GROUP_BY_RESULT_MAP);
+      writeGroupByResultMap(out, (GroupByResultMap) value);
+    } else if (value.getClass() == HashMap.class && isStringKeyed((Map<Object, Object>) value)) {
+      Map<String, Object> map = (Map<String, Object>) value;
+      out.writeByte(MAP);
+      out.writeInt(map.size());
+      for (Entry<String, Object> entry : map.entrySet()) {
+        writeString(out, entry.getKey());
+        writeValue(out, entry.getValue());
+      }
+    } else {
+      byte[] bytes = _javaSerDe.serialize(value);
+      out.writeByte(JAVA_SERIALIZED);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private Serializable readValue(ByteBuffer buffer) {
+    byte type = buffer.get();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString(buffer);
+      case INTEGER:
+        return buffer.getInt();
+      case LONG:
+        return buffer.getLong();
+      case DOUBLE:
+        return buffer.getDouble();
+      case AVG_PAIR:
+        double sum = buffer.getDouble();
+        long count = buffer.getLong();
+        return AVG_PAIR_FACTORY.getAvgPair(sum, count);
+      case INT_OPEN_HASH_SET:
+        int setSize = buffer.getInt();
+        IntOpenHashSet set = new IntOpenHashSet(setSize);
+        for (int i = 0; i < setSize; i++) {
+          set.add(buffer.getInt());
+        }
+        return set;
+      case MAP:
+        int mapSize = buffer.getInt();
+        HashMap<String, Serializable> map = new HashMap<String, Serializable>(Math.max(16, (int) (mapSize / 0.75f) + 1));
+        for (int i = 0; i < mapSize; i++) {
+          String key = readString(buffer);
+          map.put(key, readValue(buffer));
+        }
+        return map;
+      case GROUP_BY_RESULT_MAP:
+        return readGroupByResultMap(buffer);
+      case HYPER_LOG_LOG:
+        return HyperLogLog.fromBytes(buffer);
+      case JAVA_SERIALIZED:
+        int length = buffer.getInt();
+        ByteBuffer serialized = buffer.slice();
+        serialized.limit(length);
+        buffer.position(buffer.position() + length);
+        return _javaSerDe.deserialize(serialized);
+      default:
+        throw new IllegalArgumentException("Unknown type tag in DataTable object column: " + type);
+    }
+  }
+
+  /**
+   * Column dictionaries first, then the value ids and result of every group, so each distinct group by value is
+   * written once no matter how many groups it appears in.
+   */
+  private void writeGroupByResultMap(DataOutputStream out, GroupByResultMap map) throws IOException {
+    int numGroupByColumns = map.getNumGroupByColumns();
+    out.writeInt(numGroupByColumns);
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      int dictionarySize = map.getGroupValueDictionarySize(i);
+      out.writeInt(dictionarySize);
+      for (int valueId = 0; valueId < dictionarySize; ++valueId) {
+        writeString(out, map.getGroupValue(i, valueId));
+      }
+    }
+    out.writeInt(map.size());
+    for (int groupId = 0; groupId < map.getNumGroups(); ++groupId) {
+      if (map.isRemoved(groupId)) {
+        continue;
+      }
+      for (int i = 0; i < numGroupByColumns; ++i) {
+        out.writeInt(map.getGroupValueId(groupId, i));
+      }
+      writeValue(out, map.getResult(groupId));
+    }
+  }
+
+  private GroupByResultMap readGroupByResultMap(ByteBuffer buffer) {
+    int numGroupByColumns = buffer.getInt();
+    String[][] dictionaries = new String[numGroupByColumns][];
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      dictionaries[i] = new String[buffer.getInt()];
+      for (int valueId = 0; valueId < dictionaries[i].length; ++valueId) {
+        dictionaries[i][valueId] = readString(buffer);
+      }
+    }
+    int numGroups = buffer.getInt();
+    GroupByResultMap map = new GroupByResultMap(numGroupByColumns, numGroups);
+    for (int i = 0; i < numGroupByColumns; ++i) {
+      for (String value : dictionaries[i]) {
+        map.appendGroupValue(i, value);
+      }
+    }
+    int[] valueIds = new int[numGroupByColumns];
+    for (int groupId = 0; groupId < numGroups; ++groupId) {
+      for (int i = 0; i < numGroupByColumns; ++i) {
+        valueIds[i] = buffer.getInt();
+      }
+      map.appendGroup(valueIds, readValue(buffer));
+    }
+    return map;
+  }
+
+  private static boolean isStringKeyed(Map<Object, Object> map) {
+    for (Object key : map.keySet()) {
+      if (!(key instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    String value;
+    if (buffer.hasArray()) {
+      value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      value = new String(bytes, UTF8);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.utils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+
+/**
+ * HyperLogLog cardinality estimator with 2^log2m one byte registers, fed with 64 bit hashes.
+ * The default of 4096 registers gives a standard error of about 1.6%.
+ * <p>
+ * Sketches with the same log2m can be merged, which is what makes them usable as intermediate aggregation results:
+ * the size of a sketch does not depend on the number of distinct values it has seen. On the wire, a sketch with few
+ * non zero registers is written as (index, value) pairs, otherwise as 6 bit packed registers.
+ */
+public class HyperLogLog implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_LOG2M = 12;
+
+  private static final byte SPARSE = 0;
+  private static final byte DENSE = 1;
+  private static final int BITS_PER_REGISTER = 6;
+
+  private transient int _log2m;
+  private transient byte[] _registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_LOG2M);
+  }
+
+  public HyperLogLog(int log2m) {
+    if (log2m < 4 || log2m > 16) {
+      throw new IllegalArgumentException("log2m must be in [4, 16], got: " + log2m);
+    }
+    _log2m = log2m;
+    _registers = new byte[1 << log2m];
+  }
+
+  public int getLog2m() {
+    return _log2m;
+  }
+
+  public void offer(long value) {
+    offerHash(hash64(value));
+  }
+
+  public void offer(double value) {
+    offerHash(hash64(Double.doubleToLongBits(value)));
+  }
+
+  public void offer(String value) {
+    // FNV-1a over the chars, then mixed, so that strings do not go through their 32 bit hashCode.
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    offerHash(hash64(hash));
+  }
+
+  /**
+   * Offers a value read from a column: integral numbers by their long value, floating point numbers by their bits
+   * and anything else by its string representation.
+   */
+  public void offer(Object value) {
+    if (value instanceof Double || value instanceof Float) {
+      offer(((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      offer(((Number) value).longValue());
+    } else {
+      offer(value.toString());
+    }
+  }
+
+  private void offerHash(long hash) {
+    int index = (int) (hash >>> (64 - _log2m));
+    // Position of the first 1 bit in the remaining bits, capped so that it always fits in a register.
+    long remaining = (hash << _log2m) | (1L << (_log2m - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > _registers[index]) {
+      _registers[index] = rank;
+    }
+  }
+
+  /**
+   * Merges another sketch into this one.
+   */
+  public HyperLogLog merge(HyperLogLog other) {
+    if (other._log2m != _log2m) {
+      throw new IllegalArgumentException("Cannot merge HyperLogLog with log2m " + other._log2m + " into log2m " + _log2m);
+    }
+    byte[] otherRegisters = other._registers;
+    for (int i = 0; i < _registers.length; i++) {
+      if (otherRegisters[i] > _registers[i]) {
+        _registers[i] = otherRegisters[i];
+      }
+    }
+    return this;
+  }
+
+  public long cardinality() {
+    int numRegisters = _registers.length;
+    double sum = 0;
+    int numZeroRegisters = 0;
+    for (byte register : _registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        numZeroRegisters++;
+      }
+    }
+    double estimate = getAlpha(numRegisters) * numRegisters * numRegisters / sum;
+    if (estimate <= 2.5 * numRegisters && numZeroRegisters > 0) {
+      // Small range correction: linear counting.
+      estimate = numRegisters * Math.log((double) numRegisters / numZeroRegisters);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double getAlpha(int numRegisters) {
+    switch (numRegisters) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / numRegisters);
+    }
+  }
+
+  /**
+   * 64 bit finalizer of MurmurHash3, spreads the bits of the value over the whole hash.
+   */
+  private static long hash64(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Returns the wire format of the sketch, which is also what its java serialization writes.
+   */
+  public byte[] toBytes() {
+    int numNonZeroRegisters = 0;
+    for (byte register : _registers) {
+      if (register != 0) {
+        numNonZeroRegisters++;
+      }
+    }
+    int denseSizeInBytes = (_registers.length * BITS_PER_REGISTER + 7) / 8;
+    ByteBuffer buffer;
+    if (numNonZeroRegisters * 3 < denseSizeInBytes) {
+      buffer = ByteBuffer.allocate(4 + numNonZeroRegisters * 3);
+      buffer.put((byte) _log2m);
+      buffer.put(SPARSE);
+      buffer.putShort((short) numNonZeroRegisters);
+      for (int i = 0; i < _registers.length; i++) {
+        if (_registers[i] != 0) {
+          buffer.putShort((short) i);
+          buffer.put(_registers[i]);
+        }
+      }
+    } else {
+      buffer = ByteBuffer.allocate(2 + denseSizeInBytes);
+      buffer.put((byte) _log2m);
+      buffer.put(DENSE);
+      byte[] packed = new byte[denseSizeInBytes];
+      for (int i = 0; i < _registers.length; i++) {
+        int bitOffset = i * BITS_PER_REGISTER;
+        int value = _registers[i] << (bitOffset & 7);
+        packed[bitOffset >>> 3] |= (byte) value;
+        if ((bitOffset & 7) + BITS_PER_REGISTER > 8) {
+          packed[(bitOffset >>> 3) + 1] |= (byte) (value >>> 8);
+        }
+      }
+      buffer.put(packed);
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Reads a sketch written by {@link #toBytes()}, leaving the buffer positioned right after it.
+   */
+  public static HyperLogLog fromBytes(ByteBuffer buffer) {
+    HyperLogLog hll = new HyperLogLog(buffer.get());
+    byte[] registers = hll._registers;
+    byte format = buffer.get();
+    if (format == SPARSE) {
+      int numNonZeroRegisters = buffer.getShort() & 0xFFFF;
+      for (int i = 0; i < numNonZeroRegisters; i++) {
+        int index = buffer.getShort() & 0xFFFF;
+        registers[index] = buffer.get();
+      }
+    } else {
+      byte[] packed = new byte[(registers.length * BITS_PER_REGISTER + 7) / 8];
+      buffer.get(packed);
+      for (int i = 0; i < registers.length; i++) {
+        int bitOffset = i * BITS_PER_REGISTER;
+        int value = (packed[bitOffset >>> 3] & 0xFF) >>> (bitOffset & 7);
+        if ((bitOffset & 7) + BITS_PER_REGISTER > 8) {
+          value |= (packed[(bitOffset >>> 3) + 1] & 0xFF) << (8 - (bitOffset & 7));
+        }
+        registers[i] = (byte) (value & ((1 << BITS_PER_REGISTER) - 1));
+      }
+    }
+    return hll;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    byte[] bytes = toBytes();
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    HyperLogLog hll = fromBytes(ByteBuffer.wrap(bytes));
+    _log2m = hll._log2m;
+    _registers = hll._registers;
+  }
+}
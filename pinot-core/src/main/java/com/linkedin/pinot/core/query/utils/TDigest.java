@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.utils;
+
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+
+/**
+ * Mergeable quantile sketch (t-digest). Values are summarized into weighted centroids, kept small near the tails so
+ * that extreme quantiles stay accurate. The number of centroids is proportional to the compression and only grows
+ * logarithmically with the number of values (about 700 centroids for a million values at the default compression),
+ * so a digest is a small intermediate aggregation result however many values or digests are merged into it.
+ * <p>
+ * Incoming values are buffered and folded into the centroids in batches. The buffer starts empty and grows with the
+ * number of values offered, so digests that only see a few values (eg: per group) stay small.
+ */
+public class TDigest implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final double DEFAULT_COMPRESSION = 100;
+
+  private static final int MIN_BUFFER_SIZE = 16;
+  private static final double[] EMPTY_BUFFER = new double[0];
+
+  private transient double _compression;
+  private transient double[] _means;
+  private transient long[] _weights;
+  private transient int _numCentroids;
+  private transient double[] _buffer;
+  private transient int _bufferSize;
+  private transient int _maxBufferSize;
+  private transient long _totalWeight;
+  private transient double _min;
+  private transient double _max;
+
+  public TDigest() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  public TDigest(double compression) {
+    init(compression, 0);
+  }
+
+  private void init(double compression, int numCentroids) {
+    _compression = compression;
+    _means = new double[Math.max(numCentroids, 16)];
+    _weights = new long[_means.length];
+    _numCentroids = 0;
+    _buffer = EMPTY_BUFFER;
+    _bufferSize = 0;
+    _maxBufferSize = Math.max((int) (5 * compression), 1);
+    _totalWeight = 0;
+    _min = Double.POSITIVE_INFINITY;
+    _max = Double.NEGATIVE_INFINITY;
+  }
+
+  public void offer(double value) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (_bufferSize == _buffer.length) {
+      growBuffer();
+    }
+    _buffer[_bufferSize++] = value;
+    _totalWeight++;
+    _min = Math.min(_min, value);
+    _max = Math.max(_max, value);
+    if (_bufferSize == _maxBufferSize) {
+      compress(null);
+    }
+  }
+
+  private void growBuffer() {
+    double[] buffer = new double[Math.min(Math.max(2 * _buffer.length, MIN_BUFFER_SIZE), _maxBufferSize)];
+    System.arraycopy(_buffer, 0, buffer, 0, _bufferSize);
+    _buffer = buffer;
+  }
+
+  /**
+   * Merges another digest into this one.
+   */
+  public TDigest merge(TDigest other) {
+    if (other._totalWeight == 0) {
+      return this;
+    }
+    _totalWeight += other._totalWeight;
+    _min = Math.min(_min, other._min);
+    _max = Math.max(_max, other._max);
+    compress(other);
+    return this;
+  }
+
+  public long size() {
+    return _totalWeight;
+  }
+
+  /**
+   * Returns the estimated value at quantile q in [0, 1], or NaN if the digest is empty.
+   */
+  public double quantile(double q) {
+    if (q < 0 || q > 1) {
+      throw new IllegalArgumentException("Quantile must be in [0, 1], got: " + q);
+    }
+    compress(null);
+    if (_numCentroids == 0) {
+      return Double.NaN;
+    }
+    if (_numCentroids == 1) {
+      return _means[0];
+    }
+
+    // Each centroid is assumed to be centered on its cumulative weight, values interpolate linearly in between.
+    double index = q * _totalWeight;
+    double firstCenter = _weights[0] / 2.0;
+    if (index <= firstCenter) {
+      return _min + (_means[0] - _min) * (firstCenter == 0 ? 0 : index / firstCenter);
+    }
+    double center = firstCenter;
+    for (int i = 0; i < _numCentroids - 1; i++) {
+      double nextCenter = center + (_weights[i] + _weights[i + 1]) / 2.0;
+      if (index <= nextCenter) {
+        double fraction = (index - center) / (nextCenter - center);
+        return _means[i] + (_means[i + 1] - _means[i]) * fraction;
+      }
+      center = nextCenter;
+    }
+    double lastWeight = _weights[_numCentroids - 1] / 2.0;
+    double fraction = Math.min(1.0, (index - center) / lastWeight);
+    return _means[_numCentroids - 1] + (_max - _means[_numCentroids - 1]) * fraction;
+  }
+
+  /**
+   * Folds the buffered values, and the centroids and buffered values of other if not null, into the centroids.
+   */
+  private void compress(TDigest other) {
+    int numPoints = _numCentroids + _bufferSize;
+    if (other != null) {
+      numPoints += other._numCentroids + other._bufferSize;
+    }
+    if (numPoints == _numCentroids && other == null) {
+      return;
+    }
+
+    double[] means = new double[numPoints];
+    long[] weights = new long[numPoints];
+    int count = 0;
+    System.arraycopy(_means, 0, means, count, _numCentroids);
+    System.arraycopy(_weights, 0, weights, count, _numCentroids);
+    count += _numCentroids;
+    for (int i = 0; i < _bufferSize; i++) {
+      means[count] = _buffer[i];
+      weights[count++] = 1;
+    }
+    if (other != null) {
+      System.arraycopy(other._means, 0, means, count, other._numCentroids);
+      System.arraycopy(other._weights, 0, weights, count, other._numCentroids);
+      count += other._numCentroids;
+      for (int i = 0; i < other._bufferSize; i++) {
+        means[count] = other._buffer[i];
+        weights[count++] = 1;
+      }
+    }
+    sort(means, weights, count);
+
+    // Greedily merge neighbours while the merged centroid stays under the size limit for its quantile.
+    double totalWeight = _totalWeight;
+    int numCentroids = 0;
+    double weightSoFar = 0;
+    double mean = means[0];
+    long weight = weights[0];
+    for (int i = 1; i < count; i++) {
+      long proposedWeight = weight + weights[i];
+      double q = (weightSoFar + proposedWeight / 2.0) / totalWeight;
+      double limit = 4 * totalWeight * q * (1 - q) / _compression;
+      if (proposedWeight <= limit) {
+        mean += (means[i] - mean) * weights[i] / proposedWeight;
+        weight = proposedWeight;
+      } else {
+        means[numCentroids] = mean;
+        weights[numCentroids++] = weight;
+        weightSoFar += weight;
+        mean = means[i];
+        weight = weights[i];
+      }
+    }
+    means[numCentroids] = mean;
+    weights[numCentroids++] = weight;
+
+    _means = means;
+    _weights = weights;
+    _numCentroids = numCentroids;
+    _bufferSize = 0;
+  }
+
+  /**
+   * Sorts the centroids by mean, swapping means and weights in place instead of going through boxed indexes.
+   */
+  private static void sort(final double[] means, final long[] weights, int count) {
+    Arrays.quickSort(0, count, new AbstractIntComparator() {
+      @Override
+      public int compare(int i, int j) {
+        return Double.compare(means[i], means[j]);
+      }
+    }, new Swapper() {
+      @Override
+      public void swap(int i, int j) {
+        double mean = means[i];
+        means[i] = means[j];
+        means[j] = mean;
+        long weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+      }
+    });
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    compress(null);
+    out.writeDouble(_compression);
+    out.writeDouble(_min);
+    out.writeDouble(_max);
+    out.writeInt(_numCentroids);
+    for (int i = 0; i < _numCentroids; i++) {
+      out.writeDouble(_means[i]);
+      out.writeLong(_weights[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException {
+    double compression = in.readDouble();
+    double min = in.readDouble();
+    double max = in.readDouble();
+    int numCentroids = in.readInt();
+    init(compression, numCentroids);
+    _min = min;
+    _max = max;
+    for (int i = 0; i < numCentroids; i++) {
+      _means[i] = in.readDouble();
+      _weights[i] = in.readLong();
+      _totalWeight += _weights[i];
+    }
+    _numCentroids = numCentroids;
+  }
+}
@@ -101,6 +101,17 @@ public class UnSortedSingleValueBlock implements Block {
             return sVReader.getInt(counter++);
           }
 
+          @Override
+          public int nextIntVals(int[] values, int maxLength) {
+            int length = Math.min(maxLength, sVReader.getLength() - counter);
+            if (length <= 0) {
+              return 0;
+            }
+            sVReader.readValues(counter, length, values);
+            counter += length;
+            return length;
+          }
+
           @Override
           public boolean reset() {
             counter = 0;
@@ -73,6 +73,13 @@ public class FixedBitCompressedSVForwardIndexReader implements SingleColumnSingl
     return dataFileReader.getInt(row, 0);
   }
 
+  /**
+   * Decodes the dictionary ids of rows [startRow, startRow + length) into dictIds.
+   */
+  public void readValues(int startRow, int length, int[] dictIds) {
+    dataFileReader.readInts(startRow, 0, length, dictIds);
+  }
+
   @Override
   public long getLong(int row) {
     throw new UnsupportedOperationException();
@@ -0,0 +1,375 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.common.request.SelectionSort;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.operator.query.MSegmentResultCacheOperator;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.executor.QueryDeadline;
+
+
+public class MCombineOperatorTest {
+
+  @Test
+  public void testNumWorkers() {
+    // Bounded by the number of segments.
+    Assert.assertEquals(MCombineOperator.getNumWorkers(1, 16, 100), 1);
+    Assert.assertEquals(MCombineOperator.getNumWorkers(5, 16, 100), 3);
+    // Bounded by the number of cores.
+    Assert.assertEquals(MCombineOperator.getNumWorkers(500, 16, 100), 16);
+    // Bounded by the idle threads of the executor, but always at least one worker.
+    Assert.assertEquals(MCombineOperator.getNumWorkers(500, 16, 4), 4);
+    Assert.assertEquals(MCombineOperator.getNumWorkers(500, 16, -3), 1);
+  }
+
+  @Test
+  public void testWorkStealingCombine() {
+    BrokerRequest brokerRequest = getCountBrokerRequest();
+    int numSegments = 137;
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numSegments; i++) {
+      // Make a few segments much slower than the others.
+      operators.add(new CountOperator(brokerRequest, i, (i % 20 == 0) ? 50 : 0));
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      MCombineOperator combineOperator = new MCombineOperator(operators, executorService, 10000, brokerRequest);
+      combineOperator.open();
+      IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+      combineOperator.close();
+      Assert.assertEquals(block.getAggregationResult().get(0), (Serializable) Long.valueOf(numSegments));
+      Assert.assertEquals(block.getNumDocsScanned(), numSegments * (numSegments - 1) / 2);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testSelectionOnlyRowLimit() {
+    BrokerRequest brokerRequest = getSelectionBrokerRequest(10);
+    Assert.assertEquals(MCombineOperator.getSelectionOnlyRowLimit(brokerRequest), 10);
+    List<SelectionSort> sortSequence = new ArrayList<SelectionSort>();
+    SelectionSort selectionSort = new SelectionSort();
+    selectionSort.setColumn("column");
+    selectionSort.setIsAsc(true);
+    sortSequence.add(selectionSort);
+    brokerRequest.getSelections().setSelectionSortSequence(sortSequence);
+    Assert.assertEquals(MCombineOperator.getSelectionOnlyRowLimit(brokerRequest), -1);
+    Assert.assertEquals(MCombineOperator.getSelectionOnlyRowLimit(getCountBrokerRequest()), -1);
+  }
+
+  @Test
+  public void testSelectionOnlyCombineStopsAtLimit() {
+    BrokerRequest brokerRequest = getSelectionBrokerRequest(10);
+    int numSegments = 200;
+    AtomicInteger numSegmentsProcessed = new AtomicInteger(0);
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numSegments; i++) {
+      operators.add(new SelectionOperator(5, numSegmentsProcessed));
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      MCombineOperator combineOperator = new MCombineOperator(operators, executorService, 10000, brokerRequest);
+      combineOperator.open();
+      IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+      combineOperator.close();
+      Assert.assertEquals(block.getSelectionResult().size(), 10);
+      // Each worker finishes at most the segment it was on when the limit was reached.
+      Assert.assertTrue(numSegmentsProcessed.get() < numSegments);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testDeadlineReachesSegmentOperators() {
+    BrokerRequest brokerRequest = getCountBrokerRequest();
+    int numSegments = 20;
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numSegments; i++) {
+      operators.add(new ScanUntilDeadlineOperator(brokerRequest));
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      MCombineOperator combineOperator = new MCombineOperator(operators, executorService, 200, brokerRequest);
+      combineOperator.open();
+      long startTime = System.currentTimeMillis();
+      IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+      combineOperator.close();
+      // The segment operators give up on their own instead of running until the future times out
+      Assert.assertTrue(System.currentTimeMillis() - startTime < 5000L);
+      Assert.assertTrue(block.isPartialResult());
+      Assert.assertTrue(((Long) block.getAggregationResult().get(0)) < numSegments);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testTimeoutKeepsSegmentsMergedSoFar() {
+    BrokerRequest brokerRequest = getCountBrokerRequest();
+    int numFastSegments = 5;
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numFastSegments; i++) {
+      operators.add(new CountOperator(brokerRequest, 1, 0));
+    }
+    // Ignores the deadline and runs well past the query timeout
+    operators.add(new CountOperator(brokerRequest, 1, 2000));
+    // A single thread makes a single worker process all the segments in order
+    ExecutorService executorService = Executors.newFixedThreadPool(1);
+    try {
+      MCombineOperator combineOperator = new MCombineOperator(operators, executorService, 300, brokerRequest);
+      combineOperator.open();
+      long startTime = System.currentTimeMillis();
+      IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+      combineOperator.close();
+      Assert.assertTrue(System.currentTimeMillis() - startTime < 1500L);
+      Assert.assertTrue(block.isPartialResult());
+      Assert.assertNull(block.getExceptions());
+      Assert.assertEquals(block.getAggregationResult().get(0), (Serializable) Long.valueOf(numFastSegments));
+      Assert.assertEquals(block.getNumDocsScanned(), numFastSegments);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testTimeoutOfSeveralWorkersKeepsSegmentsMergedSoFar() {
+    BrokerRequest brokerRequest = getCountBrokerRequest();
+    int numWorkers = 4;
+    int numFastSegments = 8;
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numFastSegments; i++) {
+      operators.add(new CountOperator(brokerRequest, 1, 0));
+    }
+    // Each worker ends up on one of these, which ignore the deadline and keep all the executor threads busy
+    for (int i = 0; i < numWorkers; i++) {
+      operators.add(new CountOperator(brokerRequest, 1, 2000));
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(numWorkers);
+    try {
+      MCombineOperator combineOperator = new MCombineOperator(operators, executorService, 300, brokerRequest);
+      combineOperator.setNumCores(numWorkers);
+      combineOperator.open();
+      long startTime = System.currentTimeMillis();
+      IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+      combineOperator.close();
+      // The merges of the taken over blocks do not wait for the executor
+      Assert.assertTrue(System.currentTimeMillis() - startTime < 1500L);
+      Assert.assertTrue(block.isPartialResult());
+      Assert.assertEquals(block.getAggregationResult().get(0), (Serializable) Long.valueOf(numFastSegments));
+      Assert.assertEquals(block.getNumDocsScanned(), numFastSegments);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testSerialCombineStopsAtDeadline() {
+    BrokerRequest brokerRequest = getCountBrokerRequest();
+    int numSegments = 100;
+    // The serial combine only takes the operators of the segment plans, the segment result cache one wraps any
+    SegmentResultCache disabledCache = new SegmentResultCache(0);
+    List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numSegments; i++) {
+      operators.add(new MSegmentResultCacheOperator(new CountOperator(brokerRequest, 1, 10), disabledCache, "key",
+          "table", "segment" + i));
+    }
+    MCombineOperator combineOperator = new MCombineOperator(operators, null, 100, brokerRequest);
+    combineOperator.open();
+    IntermediateResultsBlock block = (IntermediateResultsBlock) combineOperator.nextBlock();
+    combineOperator.close();
+    Assert.assertTrue(block.isPartialResult());
+    Assert.assertTrue(block.getNumDocsScanned() < numSegments);
+
+    combineOperator = new MCombineOperator(operators.subList(0, 5), null, 10000, brokerRequest);
+    combineOperator.open();
+    block = (IntermediateResultsBlock) combineOperator.nextBlock();
+    combineOperator.close();
+    Assert.assertFalse(block.isPartialResult());
+    Assert.assertEquals(block.getNumDocsScanned(), 5);
+  }
+
+  private static BrokerRequest getSelectionBrokerRequest(int size) {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    Selection selection = new Selection();
+    List<String> columns = new ArrayList<String>();
+    columns.add("column");
+    selection.setSelectionColumns(columns);
+    selection.setSize(size);
+    brokerRequest.setSelections(selection);
+    return brokerRequest;
+  }
+
+  private static BrokerRequest getCountBrokerRequest() {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType("count");
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", "*");
+    aggregationInfo.setAggregationParams(params);
+    List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    aggregationsInfo.add(aggregationInfo);
+    brokerRequest.setAggregationsInfo(aggregationsInfo);
+    return brokerRequest;
+  }
+
+  private static class CountOperator implements Operator {
+    private final BrokerRequest _brokerRequest;
+    private final int _numDocsScanned;
+    private final long _sleepMs;
+
+    CountOperator(BrokerRequest brokerRequest, int numDocsScanned, long sleepMs) {
+      _brokerRequest = brokerRequest;
+      _numDocsScanned = numDocsScanned;
+      _sleepMs = sleepMs;
+    }
+
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public Block nextBlock() {
+      try {
+        Thread.sleep(_sleepMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      List<AggregationFunction> aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
+      List<Serializable> aggregationResults = new ArrayList<Serializable>();
+      aggregationResults.add(Long.valueOf(1));
+      IntermediateResultsBlock block = new IntermediateResultsBlock(aggregationFunctions, aggregationResults);
+      block.setNumDocsScanned(_numDocsScanned);
+      return block;
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+  }
+
+  /**
+   * Scans until the query deadline passes, like the segment operators checking it between projection blocks.
+   */
+  private static class ScanUntilDeadlineOperator implements Operator {
+    private final BrokerRequest _brokerRequest;
+
+    ScanUntilDeadlineOperator(BrokerRequest brokerRequest) {
+      _brokerRequest = brokerRequest;
+    }
+
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public Block nextBlock() {
+      long numDocsScanned = 0;
+      while (!QueryDeadline.isExpired()) {
+        numDocsScanned++;
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      List<AggregationFunction> aggregationFunctions = AggregationFunctionFactory.getAggregationFunction(_brokerRequest);
+      List<Serializable> aggregationResults = new ArrayList<Serializable>();
+      aggregationResults.add(Long.valueOf(1));
+      IntermediateResultsBlock block = new IntermediateResultsBlock(aggregationFunctions, aggregationResults);
+      block.setNumDocsScanned(numDocsScanned);
+      return block;
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+  }
+
+  private static class SelectionOperator implements Operator {
+    private final int _numRows;
+    private final AtomicInteger _numSegmentsProcessed;
+
+    SelectionOperator(int numRows, AtomicInteger numSegmentsProcessed) {
+      _numRows = numRows;
+      _numSegmentsProcessed = numSegmentsProcessed;
+    }
+
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public Block nextBlock() {
+      _numSegmentsProcessed.incrementAndGet();
+      List<Serializable[]> rows = new ArrayList<Serializable[]>();
+      for (int i = 0; i < _numRows; i++) {
+        rows.add(new Serializable[] { i });
+      }
+      IntermediateResultsBlock block = new IntermediateResultsBlock();
+      block.setSelectionResult(rows);
+      block.setNumDocsScanned(_numRows);
+      return block;
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.docidsets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.FilterBlockDocIdSet;
+import com.linkedin.pinot.util.datasource.SingleValueBlock;
+
+
+public class AndOrBlockDocIdSetTest {
+  private static final int NUM_DOCS = 3000;
+
+  @Test
+  public void testAnd() {
+    // Docs multiple of 2 (as two posting lists), docs multiple of 3, and docs whose value matches the scan.
+    List<FilterBlockDocIdSet> docIdSets = new ArrayList<FilterBlockDocIdSet>();
+    docIdSets.add(getScanDocIdSet());
+    docIdSets.add(new BitmapDocIdSet(0, NUM_DOCS - 1, getBitmap(0, 4), getBitmap(2, 4)));
+    docIdSets.add(new BitmapDocIdSet(0, NUM_DOCS - 1, getBitmap(0, 3)));
+
+    List<FilterBlockDocIdSet> intersected = AndBlockDocIdSet.intersectBitmaps(docIdSets);
+    Assert.assertEquals(intersected.size(), 2);
+    Assert.assertTrue(intersected.get(0) instanceof BitmapDocIdSet);
+
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      if (docId % 6 == 0 && scanMatches(docId)) {
+        expected.add(docId);
+      }
+    }
+    Assert.assertEquals(getDocIds(new AndBlockDocIdSet(docIdSets)), expected);
+  }
+
+  @Test
+  public void testOr() {
+    List<FilterBlockDocIdSet> docIdSets = new ArrayList<FilterBlockDocIdSet>();
+    docIdSets.add(new BitmapDocIdSet(0, NUM_DOCS - 1, getBitmap(0, 5)));
+    docIdSets.add(new BitmapDocIdSet(0, NUM_DOCS - 1, getBitmap(1, 7), getBitmap(2, 11)));
+
+    List<FilterBlockDocIdSet> unioned = OrBlockDocIdSet.unionBitmaps(docIdSets);
+    Assert.assertEquals(unioned.size(), 1);
+
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      if (docId % 5 == 0 || docId % 7 == 1 || docId % 11 == 2) {
+        expected.add(docId);
+      }
+    }
+    Assert.assertEquals(getDocIds(new OrBlockDocIdSet(docIdSets)), expected);
+
+    docIdSets = new ArrayList<FilterBlockDocIdSet>();
+    docIdSets.add(new BitmapDocIdSet(0, NUM_DOCS - 1, getBitmap(0, 5)));
+    docIdSets.add(getScanDocIdSet());
+    docIdSets.add(new BitmapDocIdSet(0, NUM_DOCS - 1, getBitmap(1, 7)));
+    expected = new ArrayList<Integer>();
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      if (docId % 5 == 0 || docId % 7 == 1 || scanMatches(docId)) {
+        expected.add(docId);
+      }
+    }
+    Assert.assertEquals(getDocIds(new OrBlockDocIdSet(docIdSets)), expected);
+  }
+
+  private static boolean scanMatches(int docId) {
+    return docId % 13 == 0 || docId % 13 == 4;
+  }
+
+  private static FilterBlockDocIdSet getScanDocIdSet() {
+    int[] values = new int[NUM_DOCS];
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      values[docId] = docId % 13;
+    }
+    Block block = new SingleValueBlock(null, values);
+    return new ScanBasedSingleValueDocIdSet(block.getBlockValueSet(), block.getMetadata(), 0, 4);
+  }
+
+  private static ImmutableRoaringBitmap getBitmap(int remainder, int divisor) {
+    MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+    for (int docId = remainder; docId < NUM_DOCS; docId += divisor) {
+      bitmap.add(docId);
+    }
+    return bitmap;
+  }
+
+  private static List<Integer> getDocIds(FilterBlockDocIdSet docIdSet) {
+    BlockDocIdIterator iterator = docIdSet.iterator();
+    List<Integer> docIds = new ArrayList<Integer>();
+    int docId;
+    while ((docId = iterator.next()) != Constants.EOF) {
+      docIds.add(docId);
+    }
+    return docIds;
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator.docidsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.operator.filter.utils.DictionaryIdMatcher;
+import com.linkedin.pinot.util.datasource.SingleValueBlock;
+
+
+public class ScanBasedSingleValueDocIdSetTest {
+  private static final int NUM_DOCS = 5000;
+  private static final int CARDINALITY = 200;
+
+  @Test
+  public void testDictionaryIdMatcher() {
+    DictionaryIdMatcher range = new DictionaryIdMatcher(new int[] { 7, 5, 6 });
+    Assert.assertFalse(range.matches(4));
+    Assert.assertTrue(range.matches(5));
+    Assert.assertTrue(range.matches(7));
+    Assert.assertFalse(range.matches(8));
+
+    DictionaryIdMatcher in = new DictionaryIdMatcher(new int[] { 130, 3, 64 });
+    Assert.assertTrue(in.matches(3));
+    Assert.assertTrue(in.matches(64));
+    Assert.assertTrue(in.matches(130));
+    Assert.assertFalse(in.matches(4));
+    Assert.assertFalse(in.matches(67));
+    Assert.assertFalse(in.matches(-1));
+    Assert.assertEquals(in.firstMatch(new int[] { 1, 2, 64, 130 }, 0, 4), 2);
+    Assert.assertEquals(in.firstMatch(new int[] { 1, 2, 64, 130 }, 3, 4), 3);
+    Assert.assertEquals(in.firstMatch(new int[] { 1, 2, 65, 131 }, 0, 4), -1);
+
+    Assert.assertTrue(new DictionaryIdMatcher(new int[0]).isEmpty());
+  }
+
+  @Test
+  public void testNext() {
+    int[] values = getValues();
+    assertMatches(values, new int[] { 10, 11, 12, 13 });
+    assertMatches(values, new int[] { 3, 99, 150 });
+    assertMatches(values, new int[] { CARDINALITY + 1 });
+  }
+
+  @Test
+  public void testAdvance() {
+    int[] values = getValues();
+    int[] dictIds = new int[] { 17, 42, 180 };
+    DictionaryIdMatcher matcher = new DictionaryIdMatcher(dictIds);
+    Block block = new SingleValueBlock(null, values);
+    BlockDocIdIterator iterator =
+        new ScanBasedSingleValueDocIdSet(block.getBlockValueSet(), block.getMetadata(), dictIds).iterator();
+    for (int target = 0; target < NUM_DOCS; target += 337) {
+      int expected = Constants.EOF;
+      for (int docId = target; docId < NUM_DOCS; docId++) {
+        if (matcher.matches(values[docId])) {
+          expected = docId;
+          break;
+        }
+      }
+      int docId = iterator.advance(target);
+      Assert.assertEquals(docId, expected);
+      if (docId == Constants.EOF) {
+        break;
+      }
+    }
+    Assert.assertEquals(iterator.advance(NUM_DOCS), Constants.EOF);
+  }
+
+  private static int[] getValues() {
+    Random random = new Random(42);
+    int[] values = new int[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      values[i] = random.nextInt(CARDINALITY);
+    }
+    return values;
+  }
+
+  private static void assertMatches(int[] values, int[] dictIds) {
+    DictionaryIdMatcher matcher = new DictionaryIdMatcher(dictIds);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int docId = 0; docId < values.length; docId++) {
+      if (matcher.matches(values[docId])) {
+        expected.add(docId);
+      }
+    }
+
+    Block block = new SingleValueBlock(null, values);
+    BlockDocIdIterator iterator =
+        new ScanBasedSingleValueDocIdSet(block.getBlockValueSet(), block.getMetadata(), dictIds).iterator();
+    List<Integer> actual = new ArrayList<Integer>();
+    int docId;
+    while ((docId = iterator.next()) != Constants.EOF) {
+      actual.add(docId);
+    }
+    Assert.assertEquals(actual, expected);
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.groupby;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.core.query.config.GroupByTrimmingConfig;
+
+
+public class GroupByTrimmerTest {
+  private static final int NUM_GROUPS = 1000;
+
+  @Test
+  public void testTrimKeepsLargestSums() {
+    BrokerRequest brokerRequest = getBrokerRequest("sum", 10);
+    List<Map<String, Serializable>> results = getResults(false);
+    GroupByTrimmer trimmer = new GroupByTrimmer(new GroupByTrimmingConfig(100, 100, 20, false), null);
+    Assert.assertEquals(trimmer.trimSegmentResult(brokerRequest, results), NUM_GROUPS - 50);
+    Map<String, Serializable> result = results.get(0);
+    Assert.assertEquals(result.size(), 50);
+    for (int i = NUM_GROUPS - 50; i < NUM_GROUPS; i++) {
+      Assert.assertTrue(result.containsKey(Integer.toString(i)));
+    }
+  }
+
+  @Test
+  public void testTrimKeepsSmallestMins() {
+    BrokerRequest brokerRequest = getBrokerRequest("min", 10);
+    List<Map<String, Serializable>> results = getResults(true);
+    GroupByTrimmer trimmer = new GroupByTrimmer(new GroupByTrimmingConfig(100, 100, 20, false), null);
+    Assert.assertEquals(trimmer.trimServerResult(brokerRequest, results), NUM_GROUPS - 50);
+    GroupByResultMap result = (GroupByResultMap) results.get(0);
+    Assert.assertEquals(result.size(), 50);
+    for (int i = 0; i < 50; i++) {
+      Assert.assertTrue(result.containsKey(Integer.toString(i)));
+    }
+  }
+
+  @Test
+  public void testNoTrim() {
+    BrokerRequest brokerRequest = getBrokerRequest("sum", 10);
+    // Below the threshold.
+    List<Map<String, Serializable>> results = getResults(false);
+    GroupByTrimmer trimmer = new GroupByTrimmer(new GroupByTrimmingConfig(NUM_GROUPS, NUM_GROUPS, 20, false), null);
+    Assert.assertEquals(trimmer.trimSegmentResult(brokerRequest, results), 0);
+    Assert.assertEquals(results.get(0).size(), NUM_GROUPS);
+    // Exact mode.
+    trimmer = new GroupByTrimmer(new GroupByTrimmingConfig(100, 100, 20, true), null);
+    Assert.assertEquals(trimmer.trimSegmentResult(brokerRequest, results), 0);
+    Assert.assertEquals(results.get(0).size(), NUM_GROUPS);
+  }
+
+  private static BrokerRequest getBrokerRequest(String aggregationType, int topN) {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(aggregationType);
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", "met");
+    aggregationInfo.setAggregationParams(params);
+    List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    aggregationsInfo.add(aggregationInfo);
+    brokerRequest.setAggregationsInfo(aggregationsInfo);
+    GroupBy groupBy = new GroupBy();
+    List<String> columns = new ArrayList<String>();
+    columns.add("dim");
+    groupBy.setColumns(columns);
+    groupBy.setTopN(topN);
+    brokerRequest.setGroupBy(groupBy);
+    return brokerRequest;
+  }
+
+  // Group i has the value i.
+  private static List<Map<String, Serializable>> getResults(boolean asGroupByResultMap) {
+    Map<String, Serializable> result =
+        asGroupByResultMap ? new GroupByResultMap(1) : new HashMap<String, Serializable>();
+    for (int i = 0; i < NUM_GROUPS; i++) {
+      result.put(Integer.toString(i), Double.valueOf(i));
+    }
+    List<Map<String, Serializable>> results = new ArrayList<Map<String, Serializable>>();
+    results.add(result);
+    return results;
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.reduce;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.common.request.SelectionSort;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+
+
+/**
+ * Feeds the DataTables of several servers to the reducer one at a time, as the broker does when they arrive, including
+ * servers answering with exceptions only and servers which ran out of time before processing all of their segments.
+ */
+public class DefaultStreamingReducerTest {
+  private static final DataSchema SELECTION_DATA_SCHEMA =
+      new DataSchema(new String[] { "dim", "metric" }, new DataType[] { DataType.STRING, DataType.INT });
+  // Servers put the sort columns first
+  private static final DataSchema ORDERED_SELECTION_DATA_SCHEMA =
+      new DataSchema(new String[] { "metric", "dim" }, new DataType[] { DataType.INT, DataType.STRING });
+
+  @Test
+  public void testSelection() throws Exception {
+    BrokerRequest brokerRequest = getSelectionBrokerRequest(3, null);
+    DefaultStreamingReducer reducer = new DefaultStreamingReducer(brokerRequest);
+    reducer.reduce(new ServerInstance("localhost:0"), getSelectionDataTable(SELECTION_DATA_SCHEMA, 10, 100, 5,
+        row("a", 1), row("b", 2)));
+    reducer.reduce(new ServerInstance("localhost:1"), getExceptionsDataTable(QueryException.EXECUTION_TIMEOUT_ERROR));
+    reducer.reduce(new ServerInstance("localhost:2"), getSelectionDataTable(SELECTION_DATA_SCHEMA, 20, 200, 7,
+        row("c", 3), row("d", 4)));
+    reducer.reduce(new ServerInstance("localhost:3"), null);
+    BrokerResponse brokerResponse = reducer.getBrokerResponse();
+
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 30);
+    Assert.assertEquals(brokerResponse.getTotalDocs(), 300);
+    Assert.assertEquals(brokerResponse.getTimeUsedMs(), 7);
+    Assert.assertFalse(brokerResponse.isPartialResult());
+    assertExceptions(brokerResponse, QueryException.EXECUTION_TIMEOUT_ERROR);
+    JSONObject selectionResults = brokerResponse.getSelectionResults();
+    Assert.assertEquals(selectionResults.getJSONArray("columns").toString(), "[\"dim\",\"metric\"]");
+    // Rows are kept in arrival order up to the selection size
+    Assert.assertEquals(selectionResults.getJSONArray("results").toString(),
+        "[[\"a\",\"1\"],[\"b\",\"2\"],[\"c\",\"3\"]]");
+  }
+
+  @Test
+  public void testSelectionOrderBy() throws Exception {
+    SelectionSort selectionSort = new SelectionSort();
+    selectionSort.setColumn("metric");
+    selectionSort.setIsAsc(false);
+    BrokerRequest brokerRequest = getSelectionBrokerRequest(2, selectionSort);
+    DefaultStreamingReducer reducer = new DefaultStreamingReducer(brokerRequest);
+    reducer.reduce(new ServerInstance("localhost:0"), getSelectionDataTable(ORDERED_SELECTION_DATA_SCHEMA, 10, 100, 5,
+        row(4, "a"), row(1, "b")));
+    reducer.reduce(new ServerInstance("localhost:1"), getSelectionDataTable(ORDERED_SELECTION_DATA_SCHEMA, 20, 200, 7,
+        row(3, "c"), row(5, "d")));
+    BrokerResponse brokerResponse = reducer.getBrokerResponse();
+
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 30);
+    Assert.assertEquals(brokerResponse.getExceptionsSize(), 0);
+    Assert.assertEquals(brokerResponse.getSelectionResults().getJSONArray("results").toString(),
+        "[[\"5\",\"d\"],[\"4\",\"a\"]]");
+  }
+
+  @Test
+  public void testAggregation() throws Exception {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setAggregationsInfo(Arrays.asList(getAggregationInfo("count", "*"),
+        getAggregationInfo("sum", "metric"), getAggregationInfo("max", "metric")));
+    DefaultStreamingReducer reducer = new DefaultStreamingReducer(brokerRequest);
+    IntermediateResultsBlock block = new IntermediateResultsBlock(
+        AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+        Arrays.<Serializable> asList(10L, 25.0, 7.0));
+    reducer.reduce(new ServerInstance("localhost:0"), getDataTable(block, 10, 100, 5, false));
+    reducer.reduce(new ServerInstance("localhost:1"), getExceptionsDataTable(QueryException.SERVER_BUSY_ERROR));
+    block = new IntermediateResultsBlock(AggregationFunctionFactory.getAggregationFunction(brokerRequest),
+        Arrays.<Serializable> asList(4L, 15.0, 9.0));
+    reducer.reduce(new ServerInstance("localhost:2"), getDataTable(block, 4, 200, 3, true));
+    BrokerResponse brokerResponse = reducer.getBrokerResponse();
+
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 14);
+    Assert.assertEquals(brokerResponse.getTotalDocs(), 300);
+    Assert.assertEquals(brokerResponse.getTimeUsedMs(), 5);
+    Assert.assertTrue(brokerResponse.isPartialResult());
+    assertExceptions(brokerResponse, QueryException.SERVER_BUSY_ERROR);
+    List<JSONObject> aggregationResults = brokerResponse.getAggregationResults();
+    Assert.assertEquals(aggregationResults.size(), 3);
+    Assert.assertEquals(aggregationResults.get(0).getString("function"), "count_star");
+    Assert.assertEquals(Long.parseLong(aggregationResults.get(0).getString("value")), 14L);
+    Assert.assertEquals(aggregationResults.get(1).getString("function"), "sum_metric");
+    Assert.assertEquals(Double.parseDouble(aggregationResults.get(1).getString("value")), 40.0);
+    Assert.assertEquals(aggregationResults.get(2).getString("function"), "max_metric");
+    Assert.assertEquals(Double.parseDouble(aggregationResults.get(2).getString("value")), 9.0);
+  }
+
+  @Test
+  public void testAggregationGroupBy() throws Exception {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setAggregationsInfo(Arrays.asList(getAggregationInfo("sum", "metric")));
+    GroupBy groupBy = new GroupBy();
+    groupBy.setColumns(Arrays.asList("dim"));
+    groupBy.setTopN(10);
+    brokerRequest.setGroupBy(groupBy);
+    DefaultStreamingReducer reducer = new DefaultStreamingReducer(brokerRequest);
+    reducer.reduce(new ServerInstance("localhost:0"),
+        getGroupByDataTable(brokerRequest, 10, 100, 5, true, "a", 1.0, "b", 5.0));
+    reducer.reduce(new ServerInstance("localhost:1"), getExceptionsDataTable(QueryException.EXECUTION_TIMEOUT_ERROR));
+    reducer.reduce(new ServerInstance("localhost:2"),
+        getGroupByDataTable(brokerRequest, 20, 200, 7, false, "a", 6.0, "c", 2.0));
+    BrokerResponse brokerResponse = reducer.getBrokerResponse();
+
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 30);
+    Assert.assertEquals(brokerResponse.getTotalDocs(), 300);
+    Assert.assertTrue(brokerResponse.isPartialResult());
+    assertExceptions(brokerResponse, QueryException.EXECUTION_TIMEOUT_ERROR);
+    JSONObject aggregationResult = brokerResponse.getAggregationResults().get(0);
+    Assert.assertEquals(aggregationResult.getString("function"), "sum_metric");
+    JSONArray groupByResult = aggregationResult.getJSONArray("groupByResult");
+    Assert.assertEquals(groupByResult.length(), 3);
+    String[] expectedGroups = new String[] { "a", "b", "c" };
+    double[] expectedValues = new double[] { 7.0, 5.0, 2.0 };
+    for (int i = 0; i < expectedGroups.length; i++) {
+      Assert.assertEquals(groupByResult.getJSONObject(i).getJSONArray("group").getString(0), expectedGroups[i]);
+      Assert.assertEquals(Double.parseDouble(groupByResult.getJSONObject(i).getString("value")), expectedValues[i]);
+    }
+  }
+
+  @Test
+  public void testExceptionsOnly() throws Exception {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setAggregationsInfo(Arrays.asList(getAggregationInfo("count", "*")));
+    DefaultStreamingReducer reducer = new DefaultStreamingReducer(brokerRequest);
+    DataTable partialExceptionsDataTable = getExceptionsDataTable(QueryException.EXECUTION_TIMEOUT_ERROR);
+    partialExceptionsDataTable.getMetadata().put("partialResult", "true");
+    reducer.reduce(new ServerInstance("localhost:0"), partialExceptionsDataTable);
+    reducer.reduce(new ServerInstance("localhost:1"), getExceptionsDataTable(QueryException.SERVER_BUSY_ERROR));
+    BrokerResponse brokerResponse = reducer.getBrokerResponse();
+
+    Assert.assertEquals(brokerResponse.getNumDocsScanned(), 0);
+    Assert.assertTrue(brokerResponse.isPartialResult());
+    assertExceptions(brokerResponse, QueryException.EXECUTION_TIMEOUT_ERROR, QueryException.SERVER_BUSY_ERROR);
+    // No server returned a result, the aggregation still gets its default value
+    Assert.assertEquals(brokerResponse.getAggregationResults().size(), 1);
+
+    // Nothing reduced at all
+    Assert.assertSame(new DefaultStreamingReducer(brokerRequest).getBrokerResponse(), BrokerResponse.EMPTY_RESULT);
+  }
+
+  private static BrokerRequest getSelectionBrokerRequest(int size, SelectionSort selectionSort) {
+    Selection selection = new Selection();
+    selection.setSelectionColumns(Arrays.asList("dim", "metric"));
+    selection.setOffset(0);
+    selection.setSize(size);
+    if (selectionSort != null) {
+      selection.setSelectionSortSequence(Arrays.asList(selectionSort));
+    }
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setSelections(selection);
+    return brokerRequest;
+  }
+
+  private static AggregationInfo getAggregationInfo(String type, String column) {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", column);
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+
+  private static Serializable[] row(Serializable... values) {
+    return values;
+  }
+
+  private static DataTable getSelectionDataTable(DataSchema dataSchema, long numDocsScanned, long totalDocs,
+      long timeUsedMs, Serializable[]... rows) throws Exception {
+    IntermediateResultsBlock block = new IntermediateResultsBlock();
+    block.setSelectionDataSchema(dataSchema);
+    block.setSelectionResult(new ArrayList<Serializable[]>(Arrays.asList(rows)));
+    return getDataTable(block, numDocsScanned, totalDocs, timeUsedMs, false);
+  }
+
+  private static DataTable getGroupByDataTable(BrokerRequest brokerRequest, long numDocsScanned, long totalDocs,
+      long timeUsedMs, boolean isPartialResult, Object... groupsAndValues) throws Exception {
+    Map<String, Serializable> groupByResult = new HashMap<String, Serializable>();
+    for (int i = 0; i < groupsAndValues.length; i += 2) {
+      groupByResult.put((String) groupsAndValues[i], (Serializable) groupsAndValues[i + 1]);
+    }
+    List<Map<String, Serializable>> groupByResults = new ArrayList<Map<String, Serializable>>();
+    groupByResults.add(groupByResult);
+    IntermediateResultsBlock block = new IntermediateResultsBlock(
+        AggregationFunctionFactory.getAggregationFunction(brokerRequest), groupByResults, true);
+    return getDataTable(block, numDocsScanned, totalDocs, timeUsedMs, isPartialResult);
+  }
+
+  private static DataTable getDataTable(IntermediateResultsBlock block, long numDocsScanned, long totalDocs,
+      long timeUsedMs, boolean isPartialResult) throws Exception {
+    block.setNumDocsScanned(numDocsScanned);
+    block.setTotalDocs(totalDocs);
+    block.setTimeUsedMs(timeUsedMs);
+    block.setPartialResult(isPartialResult);
+    // Go through the bytes sent over the wire
+    return new DataTable(block.getDataTable().toBytes());
+  }
+
+  private static DataTable getExceptionsDataTable(ProcessingException processingException) {
+    ProcessingException exception = processingException.deepCopy();
+    exception.setMessage("Error from the server");
+    DataTable dataTable = new DataTable();
+    dataTable.addException(exception);
+    return dataTable;
+  }
+
+  private static void assertExceptions(BrokerResponse brokerResponse, ProcessingException... expectedExceptions) {
+    Assert.assertEquals(brokerResponse.getExceptionsSize(), expectedExceptions.length);
+    for (int i = 0; i < expectedExceptions.length; i++) {
+      Assert.assertEquals(brokerResponse.getExceptions().get(i).getErrorCode(), expectedExceptions[i].getErrorCode());
+      Assert.assertEquals(brokerResponse.getExceptions().get(i).getMessage(), "Error from the server");
+    }
+  }
+}
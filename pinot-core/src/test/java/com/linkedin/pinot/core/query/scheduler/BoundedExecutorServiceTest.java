@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class BoundedExecutorServiceTest {
+  private static final int NUM_THREADS = 8;
+
+  private ThreadPoolExecutor _threadPool;
+
+  @BeforeClass
+  public void setUp() {
+    _threadPool = new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>());
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _threadPool.shutdownNow();
+  }
+
+  @Test
+  public void testRunsAtMostMaxRunningTasks() throws Exception {
+    BoundedExecutorService executorService = new BoundedExecutorService(_threadPool, 3);
+    final AtomicInteger numRunningTasks = new AtomicInteger(0);
+    final AtomicInteger maxNumRunningTasks = new AtomicInteger(0);
+    List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < 50; i++) {
+      final int taskId = i;
+      futures.add(executorService.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          int running = numRunningTasks.incrementAndGet();
+          synchronized (maxNumRunningTasks) {
+            maxNumRunningTasks.set(Math.max(maxNumRunningTasks.get(), running));
+          }
+          Thread.sleep(1);
+          numRunningTasks.decrementAndGet();
+          return taskId;
+        }
+      }));
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      Assert.assertEquals(futures.get(i).get(10, TimeUnit.SECONDS).intValue(), i);
+    }
+    Assert.assertTrue(maxNumRunningTasks.get() <= 3);
+    executorService.shutdown();
+    Assert.assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAvailableThreads() throws Exception {
+    BoundedExecutorService executorService = new BoundedExecutorService(_threadPool, 2);
+    Assert.assertEquals(executorService.getNumAvailableThreads(), 2);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Future<?> future = executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(executorService.getNumAvailableThreads(), 1);
+    release.countDown();
+    future.get(10, TimeUnit.SECONDS);
+    executorService.shutdown();
+    Assert.assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertEquals(executorService.getNumAvailableThreads(), 2);
+  }
+}
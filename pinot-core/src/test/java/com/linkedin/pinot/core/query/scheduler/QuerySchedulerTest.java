@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.data.DataManager;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class QuerySchedulerTest {
+  private static final long TIMEOUT_SECONDS = 10L;
+  private static final ServerMetrics SERVER_METRICS = new ServerMetrics(new MetricsRegistry());
+
+  @Test
+  public void testFactory() {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    Configuration config = new PropertiesConfiguration();
+    Assert.assertTrue(
+        QuerySchedulerFactory.create(queryExecutor, config, SERVER_METRICS) instanceof FCFSQueryScheduler);
+    config.setProperty(QuerySchedulerFactory.TYPE, "fairShare");
+    Assert.assertTrue(
+        QuerySchedulerFactory.create(queryExecutor, config, SERVER_METRICS) instanceof FairShareQueryScheduler);
+    config.setProperty(QuerySchedulerFactory.TYPE, "priority");
+    Assert.assertTrue(
+        QuerySchedulerFactory.create(queryExecutor, config, SERVER_METRICS) instanceof PriorityQueryScheduler);
+    config.setProperty(QuerySchedulerFactory.TYPE, "unknown");
+    try {
+      QuerySchedulerFactory.create(queryExecutor, config, SERVER_METRICS);
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testFCFSRunsQueriesInArrivalOrder() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    QueryScheduler queryScheduler = new FCFSQueryScheduler(queryExecutor, getConfig(1), SERVER_METRICS);
+    try {
+      ListenableFuture<DataTable> blocker = queryExecutor.submitBlocking(queryScheduler, 0L, "c");
+      List<ListenableFuture<DataTable>> futures = new ArrayList<ListenableFuture<DataTable>>();
+      futures.add(queryScheduler.submit(getInstanceRequest(1L, "a")));
+      futures.add(queryScheduler.submit(getInstanceRequest(2L, "b")));
+      futures.add(queryScheduler.submit(getInstanceRequest(3L, "a")));
+      queryExecutor.release(0L);
+      blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      waitFor(futures);
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 1L, 2L, 3L));
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testFairShareFavorsTablesWithFewerRunningQueries() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    QueryScheduler queryScheduler = new FairShareQueryScheduler(queryExecutor, getConfig(2), SERVER_METRICS);
+    try {
+      // Table a keeps one worker busy for the whole test, table c holds the other one until all queries are queued
+      ListenableFuture<DataTable> longRunning = queryExecutor.submitBlocking(queryScheduler, 0L, "a");
+      ListenableFuture<DataTable> blocker = queryExecutor.submitBlocking(queryScheduler, 1L, "c");
+      List<ListenableFuture<DataTable>> futures = new ArrayList<ListenableFuture<DataTable>>();
+      futures.add(queryScheduler.submit(getInstanceRequest(2L, "a")));
+      futures.add(queryScheduler.submit(getInstanceRequest(3L, "a")));
+      futures.add(queryScheduler.submit(getInstanceRequest(4L, "b")));
+      queryExecutor.release(1L);
+      blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      waitFor(futures);
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 1L, 4L, 2L, 3L));
+      queryExecutor.release(0L);
+      longRunning.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testPriorityRunsHigherPriorityTablesFirst() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    Configuration config = getConfig(1);
+    config.setProperty(PriorityQueryScheduler.PRIORITY + ".b", 10);
+    QueryScheduler queryScheduler = new PriorityQueryScheduler(queryExecutor, config, SERVER_METRICS);
+    try {
+      ListenableFuture<DataTable> blocker = queryExecutor.submitBlocking(queryScheduler, 0L, "c");
+      List<ListenableFuture<DataTable>> futures = new ArrayList<ListenableFuture<DataTable>>();
+      futures.add(queryScheduler.submit(getInstanceRequest(1L, "a")));
+      futures.add(queryScheduler.submit(getInstanceRequest(2L, "b")));
+      futures.add(queryScheduler.submit(getInstanceRequest(3L, "a")));
+      futures.add(queryScheduler.submit(getInstanceRequest(4L, "b")));
+      queryExecutor.release(0L);
+      blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      waitFor(futures);
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 2L, 4L, 1L, 3L));
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testShutDownFailsPendingQueries() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    QueryScheduler queryScheduler = new FCFSQueryScheduler(queryExecutor, getConfig(1), SERVER_METRICS);
+    queryExecutor.submitBlocking(queryScheduler, 0L, "a");
+    ListenableFuture<DataTable> pending = queryScheduler.submit(getInstanceRequest(1L, "a"));
+    queryScheduler.shutDown();
+    Assert.assertTrue(isServerBusyResponse(pending.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+    Assert.assertTrue(isServerBusyResponse(queryScheduler.submit(getInstanceRequest(2L, "a")).get(TIMEOUT_SECONDS,
+        TimeUnit.SECONDS)));
+    queryExecutor.release(0L);
+    Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L));
+  }
+
+  @Test
+  public void testRejectsQueriesOverPendingLimits() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    Configuration config = getConfig(1);
+    config.setProperty(QueueingQueryScheduler.MAX_PENDING_QUERIES, 3);
+    config.setProperty(QueueingQueryScheduler.MAX_PENDING_QUERIES_PER_TABLE, 2);
+    QueryScheduler queryScheduler = new FCFSQueryScheduler(queryExecutor, config, SERVER_METRICS);
+    try {
+      ListenableFuture<DataTable> blocker = queryExecutor.submitBlocking(queryScheduler, 0L, "c");
+      List<ListenableFuture<DataTable>> futures = new ArrayList<ListenableFuture<DataTable>>();
+      futures.add(queryScheduler.submit(getInstanceRequest(1L, "a")));
+      futures.add(queryScheduler.submit(getInstanceRequest(2L, "a")));
+      // Over the limit of table a, but table b still has room
+      ListenableFuture<DataTable> rejectedForTable = queryScheduler.submit(getInstanceRequest(3L, "a"));
+      futures.add(queryScheduler.submit(getInstanceRequest(4L, "b")));
+      // Over the limit of the server
+      ListenableFuture<DataTable> rejectedForServer = queryScheduler.submit(getInstanceRequest(5L, "b"));
+      Assert.assertTrue(rejectedForTable.isDone());
+      Assert.assertTrue(isServerBusyResponse(rejectedForTable.get()));
+      Assert.assertTrue(rejectedForServer.isDone());
+      Assert.assertTrue(isServerBusyResponse(rejectedForServer.get()));
+      queryExecutor.release(0L);
+      blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      waitFor(futures);
+      for (ListenableFuture<DataTable> future : futures) {
+        Assert.assertFalse(isServerBusyResponse(future.get()));
+      }
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 1L, 2L, 4L));
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testRunningQueriesPerTableLimit() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    Configuration config = getConfig(2);
+    config.setProperty(QueueingQueryScheduler.MAX_RUNNING_QUERIES_PER_TABLE, 1);
+    QueryScheduler queryScheduler = new FCFSQueryScheduler(queryExecutor, config, SERVER_METRICS);
+    try {
+      // Table a is at its limit while this query runs, so the free worker skips ahead to table b
+      ListenableFuture<DataTable> longRunning = queryExecutor.submitBlocking(queryScheduler, 0L, "a");
+      ListenableFuture<DataTable> pending = queryScheduler.submit(getInstanceRequest(1L, "a"));
+      ListenableFuture<DataTable> other = queryScheduler.submit(getInstanceRequest(2L, "b"));
+      other.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      Assert.assertFalse(pending.isDone());
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 2L));
+      queryExecutor.release(0L);
+      longRunning.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      pending.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 2L, 1L));
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testQueueWaitComesOutOfTimeBudget() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor();
+    QueryScheduler queryScheduler = new FCFSQueryScheduler(queryExecutor, getConfig(1), SERVER_METRICS);
+    try {
+      ListenableFuture<DataTable> blocker = queryExecutor.submitBlocking(queryScheduler, 0L, "a");
+      InstanceRequest expiring = getInstanceRequest(1L, "a");
+      expiring.setTimeoutMs(10L);
+      ListenableFuture<DataTable> expiringFuture = queryScheduler.submit(expiring);
+      InstanceRequest patient = getInstanceRequest(2L, "a");
+      patient.setTimeoutMs(60000L);
+      ListenableFuture<DataTable> patientFuture = queryScheduler.submit(patient);
+      Thread.sleep(50L);
+      queryExecutor.release(0L);
+      blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      Assert.assertTrue(expiringFuture.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getMetadata()
+          .containsKey("Exception" + QueryException.EXECUTION_TIMEOUT_ERROR.getErrorCode()));
+      patientFuture.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 2L));
+      // The query executor gets the time left after waiting
+      Assert.assertTrue(patient.getTimeoutMs() <= 60000L - 50L);
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  @Test
+  public void testErrorsAreAnsweredAndDoNotStopWorkers() throws Exception {
+    RecordingQueryExecutor queryExecutor = new RecordingQueryExecutor() {
+      @Override
+      public DataTable processQuery(InstanceRequest instanceRequest) {
+        super.processQuery(instanceRequest);
+        if (instanceRequest.getRequestId() == 0L) {
+          throw new NoClassDefFoundError("com/linkedin/pinot/Missing");
+        }
+        return new DataTable();
+      }
+    };
+    QueryScheduler queryScheduler = new FCFSQueryScheduler(queryExecutor, getConfig(1), SERVER_METRICS);
+    try {
+      ListenableFuture<DataTable> failing = queryScheduler.submit(getInstanceRequest(0L, "a"));
+      ListenableFuture<DataTable> next = queryScheduler.submit(getInstanceRequest(1L, "a"));
+      String errorMessage = failing.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getMetadata()
+          .get("Exception" + QueryException.INTERNAL_ERROR.getErrorCode());
+      Assert.assertNotNull(errorMessage);
+      Assert.assertTrue(errorMessage.contains("NoClassDefFoundError"), errorMessage);
+      // The only worker survived the error
+      Assert.assertFalse(next.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getMetadata()
+          .containsKey("Exception" + QueryException.INTERNAL_ERROR.getErrorCode()));
+      Assert.assertEquals(queryExecutor.getExecutedRequestIds(), Arrays.asList(0L, 1L));
+    } finally {
+      queryScheduler.shutDown();
+    }
+  }
+
+  private static Configuration getConfig(int numWorkerThreads) {
+    Configuration config = new PropertiesConfiguration();
+    config.setProperty(QueueingQueryScheduler.NUM_WORKER_THREADS, numWorkerThreads);
+    return config;
+  }
+
+  private static InstanceRequest getInstanceRequest(long requestId, String tableName) {
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setQuerySource(querySource);
+    InstanceRequest instanceRequest = new InstanceRequest();
+    instanceRequest.setRequestId(requestId);
+    instanceRequest.setQuery(brokerRequest);
+    return instanceRequest;
+  }
+
+  private static boolean isServerBusyResponse(DataTable dataTable) {
+    return dataTable.getMetadata().containsKey("Exception" + QueryException.SERVER_BUSY_ERROR.getErrorCode());
+  }
+
+  private static void waitFor(List<ListenableFuture<DataTable>> futures) throws Exception {
+    for (ListenableFuture<DataTable> future : futures) {
+      future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Records the order in which queries start executing. Queries submitted through
+   * {@link #submitBlocking(QueryScheduler, long, String)} hold their worker thread until released.
+   */
+  private static class RecordingQueryExecutor implements QueryExecutor {
+    private final List<Long> _executedRequestIds = Collections.synchronizedList(new ArrayList<Long>());
+    private final Map<Long, CountDownLatch> _gates = Collections.synchronizedMap(new HashMap<Long, CountDownLatch>());
+    private final Map<Long, CountDownLatch> _started = Collections.synchronizedMap(new HashMap<Long, CountDownLatch>());
+
+    ListenableFuture<DataTable> submitBlocking(QueryScheduler queryScheduler, long requestId, String tableName)
+        throws InterruptedException {
+      CountDownLatch started = new CountDownLatch(1);
+      _gates.put(requestId, new CountDownLatch(1));
+      _started.put(requestId, started);
+      ListenableFuture<DataTable> future = queryScheduler.submit(getInstanceRequest(requestId, tableName));
+      Assert.assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      return future;
+    }
+
+    void release(long requestId) {
+      _gates.get(requestId).countDown();
+    }
+
+    List<Long> getExecutedRequestIds() {
+      synchronized (_executedRequestIds) {
+        return new ArrayList<Long>(_executedRequestIds);
+      }
+    }
+
+    @Override
+    public DataTable processQuery(InstanceRequest instanceRequest) {
+      long requestId = instanceRequest.getRequestId();
+      _executedRequestIds.add(requestId);
+      CountDownLatch gate = _gates.get(requestId);
+      if (gate != null) {
+        _started.get(requestId).countDown();
+        try {
+          gate.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return new DataTable();
+    }
+
+    @Override
+    public void init(Configuration queryExecutorConfig, DataManager dataManager, ServerMetrics serverMetrics) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutDown() {
+    }
+
+    @Override
+    public boolean isStarted() {
+      return true;
+    }
+
+    @Override
+    public void updateResourceTimeOutInMs(String resource, long timeOutMs) {
+    }
+  }
+}
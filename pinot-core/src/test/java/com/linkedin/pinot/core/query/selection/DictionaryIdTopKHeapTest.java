@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.selection;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class DictionaryIdTopKHeapTest {
+
+  @Test
+  public void testAscendingThenDescending() {
+    // Doc i has dictionary ids (i % 10, i) for the two sort columns.
+    DictionaryIdTopKHeap heap = new DictionaryIdTopKHeap(5, new boolean[] { true, false });
+    for (int docId = 0; docId < 100; ++docId) {
+      heap.offer(docId, new int[] { docId % 10, docId });
+    }
+    Assert.assertTrue(heap.isFull());
+    int[] docIds = heap.getDocIds();
+    Arrays.sort(docIds);
+    Assert.assertEquals(docIds, new int[] { 50, 60, 70, 80, 90 });
+    // The root is the first row to be evicted.
+    Assert.assertEquals(heap.getRootDictId(0), 0);
+    Assert.assertEquals(heap.getRootDictId(1), 50);
+  }
+
+  @Test
+  public void testMatchesSort() {
+    Random random = new Random(17);
+    int numDocs = 1000;
+    int maxSize = 20;
+    int[] values = new int[numDocs];
+    DictionaryIdTopKHeap heap = new DictionaryIdTopKHeap(maxSize, new boolean[] { false });
+    for (int docId = 0; docId < numDocs; ++docId) {
+      values[docId] = random.nextInt(100000);
+      heap.offer(docId, new int[] { values[docId] });
+    }
+    int[] expected = values.clone();
+    Arrays.sort(expected);
+    expected = Arrays.copyOfRange(expected, numDocs - maxSize, numDocs);
+    int[] actual = heap.getDocIds();
+    for (int i = 0; i < actual.length; ++i) {
+      actual[i] = values[actual[i]];
+    }
+    Arrays.sort(actual);
+    Assert.assertEquals(actual, expected);
+  }
+
+  @Test
+  public void testNotFull() {
+    DictionaryIdTopKHeap heap = new DictionaryIdTopKHeap(10, new boolean[] { true });
+    Assert.assertTrue(heap.offer(3, new int[] { 7 }));
+    Assert.assertTrue(heap.offer(4, new int[] { 2 }));
+    Assert.assertFalse(heap.isFull());
+    Assert.assertEquals(heap.size(), 2);
+    Assert.assertEquals(heap.getRootDictId(0), 7);
+  }
+}
@@ -211,4 +211,48 @@ public class FixedBitWidthRowColDataFileReaderTest {
 
     }
   }
+
+  @Test
+  public void testReadIntsRange() throws Exception {
+    int maxBits = 5;
+    int numElements = 100;
+    File file = new File("testReadIntsFixedBitWidthSingleCol");
+    try {
+      CustomBitSet bitset = CustomBitSet.withBitLength(numElements * maxBits);
+      int max = (int) Math.pow(2, maxBits);
+      Random r = new Random();
+      int[] values = new int[numElements];
+      for (int i = 0; i < numElements; i++) {
+        int value = r.nextInt(max);
+        values[i] = value;
+        for (int j = maxBits - 1; j >= 0; j--) {
+          if ((value & (1 << j)) != 0) {
+            bitset.setBit(i * maxBits + (maxBits - j - 1));
+          }
+        }
+      }
+      FileOutputStream fos = new FileOutputStream(file);
+      fos.write(bitset.toByteArray());
+      fos.close();
+
+      FixedBitWidthRowColDataFileReader heapReader = FixedBitWidthRowColDataFileReader.forHeap(file, numElements,
+          1, new int[] { maxBits });
+      int[] readValues = new int[10];
+      heapReader.readInts(numElements - 10, 0, 10, readValues);
+      for (int i = 0; i < 10; i++) {
+        Assert.assertEquals(readValues[i], values[numElements - 10 + i]);
+      }
+
+      // A range running past the last row is rejected before anything is read
+      try {
+        heapReader.readInts(numElements - 5, 0, 10, readValues);
+        Assert.fail("Expected IndexOutOfBoundsException");
+      } catch (IndexOutOfBoundsException e) {
+        // Expected
+      }
+      heapReader.close();
+    } finally {
+      file.delete();
+    }
+  }
 }
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByArrayBasedOperator;
+import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
+import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Checks that the array based group by operator gives the same results as the per function group by operators.
+ */
+public class AggregationGroupByArrayBasedOperatorTest {
+
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory() + File.separator
+      + "TestAggregationGroupByArrayBasedOperator");
+  private static final int NUM_PRIMITIVE_AGGREGATIONS = 5;
+
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "time_day",
+            TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+  }
+
+  @Test
+  public void testSameResultsAsPerFunctionOperators() {
+    final PlanMaker instancePlanMaker = new InstancePlanMakerImplV2();
+
+    final PlanNode arrayBasedPlanNode = instancePlanMaker.makeInnerSegmentPlan(_indexSegment, getBrokerRequest(false));
+    final Operator arrayBasedOperator = arrayBasedPlanNode.run();
+    Assert.assertTrue(arrayBasedOperator instanceof MAggregationGroupByArrayBasedOperator);
+    arrayBasedOperator.open();
+    final IntermediateResultsBlock arrayBasedBlock = (IntermediateResultsBlock) arrayBasedOperator.nextBlock();
+    arrayBasedOperator.close();
+
+    // Distinct count is not supported by the array based operator, so this goes through the per function operators.
+    final PlanNode perFunctionPlanNode = instancePlanMaker.makeInnerSegmentPlan(_indexSegment, getBrokerRequest(true));
+    final Operator perFunctionOperator = perFunctionPlanNode.run();
+    Assert.assertTrue(perFunctionOperator instanceof MAggregationGroupByOperator);
+    perFunctionOperator.open();
+    final IntermediateResultsBlock perFunctionBlock = (IntermediateResultsBlock) perFunctionOperator.nextBlock();
+    perFunctionOperator.close();
+
+    Assert.assertEquals(arrayBasedBlock.getNumDocsScanned(), perFunctionBlock.getNumDocsScanned());
+    for (int i = 0; i < NUM_PRIMITIVE_AGGREGATIONS; ++i) {
+      final Map<String, Serializable> expected = perFunctionBlock.getAggregationGroupByOperatorResult().get(i);
+      final Map<String, Serializable> actual = arrayBasedBlock.getAggregationGroupByOperatorResult().get(i);
+      Assert.assertEquals(actual.keySet(), expected.keySet());
+      for (final String groupKey : expected.keySet()) {
+        final Serializable expectedValue = expected.get(groupKey);
+        final Serializable actualValue = actual.get(groupKey);
+        if (expectedValue instanceof AvgPair) {
+          Assert.assertEquals(((AvgPair) actualValue).getFirst(), ((AvgPair) expectedValue).getFirst(), 1e-5);
+          Assert.assertEquals(((AvgPair) actualValue).getSecond(), ((AvgPair) expectedValue).getSecond());
+        } else if (expectedValue instanceof Double) {
+          Assert.assertEquals((Double) actualValue, (Double) expectedValue, 1e-5);
+        } else {
+          Assert.assertEquals(actualValue, expectedValue);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDenseGroupKeySpace() {
+    int maxKeySpace = MAggregationGroupByArrayBasedOperator.MAX_DENSE_GROUP_KEY_SPACE;
+    Assert.assertTrue(MAggregationGroupByArrayBasedOperator.isDenseGroupKeySpace(100, 1000));
+    Assert.assertTrue(MAggregationGroupByArrayBasedOperator.isDenseGroupKeySpace(maxKeySpace, 10 * maxKeySpace));
+    // Too large key space, regardless of the number of docs
+    Assert.assertFalse(MAggregationGroupByArrayBasedOperator.isDenseGroupKeySpace(maxKeySpace + 1, Integer.MAX_VALUE));
+    // More group keys than docs
+    Assert.assertFalse(MAggregationGroupByArrayBasedOperator.isDenseGroupKeySpace(1000, 100));
+  }
+
+  private static BrokerRequest getBrokerRequest(boolean withDistinctCount) {
+    final BrokerRequest brokerRequest = new BrokerRequest();
+    final List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    aggregationsInfo.add(getAggregationInfo("count", "*"));
+    aggregationsInfo.add(getAggregationInfo("sum", "met_impressionCount"));
+    aggregationsInfo.add(getAggregationInfo("max", "met_impressionCount"));
+    aggregationsInfo.add(getAggregationInfo("min", "met_impressionCount"));
+    aggregationsInfo.add(getAggregationInfo("avg", "met_impressionCount"));
+    if (withDistinctCount) {
+      aggregationsInfo.add(getAggregationInfo("distinctCount", "column12"));
+    }
+    brokerRequest.setAggregationsInfo(aggregationsInfo);
+
+    final GroupBy groupBy = new GroupBy();
+    final List<String> columns = new ArrayList<String>();
+    columns.add("column11");
+    columns.add("column10");
+    groupBy.setColumns(columns);
+    groupBy.setTopN(15);
+    brokerRequest.setGroupBy(groupBy);
+    return brokerRequest;
+  }
+
+  private static AggregationInfo getAggregationInfo(String type, String column) {
+    final Map<String, String> params = new HashMap<String, String>();
+    params.put("column", column);
+    final AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+}
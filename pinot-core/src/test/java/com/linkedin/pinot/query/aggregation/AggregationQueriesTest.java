@@ -16,6 +16,7 @@
 package com.linkedin.pinot.query.aggregation;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.query.ReduceService;
 import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
@@ -46,13 +48,26 @@ import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
 import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.block.query.AggregationResultBlock;
 import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdSet;
+import com.linkedin.pinot.core.common.BlockDocIdValueSet;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockMetadata;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.BlockValIterator;
+import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
 import com.linkedin.pinot.core.operator.MProjectionOperator;
+import com.linkedin.pinot.core.operator.MatchEntireSegmentDocIdSetBlock;
 import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
 import com.linkedin.pinot.core.operator.query.BAggregationFunctionOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationOperator;
@@ -60,13 +75,18 @@ import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.PlanNode;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV0;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
 import com.linkedin.pinot.core.query.aggregation.CombineService;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
 import com.linkedin.pinot.core.query.reduce.DefaultReduceService;
 import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
 import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.InvertedIndexReader;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 import com.linkedin.pinot.core.util.DoubleComparisonUtil;
 import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
 import com.linkedin.pinot.util.TestUtils;
@@ -240,6 +260,75 @@ public class AggregationQueriesTest {
     }
   }
 
+  /**
+   * Compares the results of the functions computed in the single pass of MAggregationOperator with the results of
+   * their own BAggregationFunctionOperator, over several projection blocks. The metric column leaves some docs without
+   * a value and maps some others to the null dictionary id, and its copy without dictionary, as well as distinct
+   * count, are delegated to their BAggregationFunctionOperator.
+   */
+  @Test
+  public void testSinglePassMatchesAggregationFunctionOperators() {
+    final List<AggregationInfo> aggregationInfos = new ArrayList<AggregationInfo>();
+    final List<Boolean> hasDictionaries = new ArrayList<Boolean>();
+    aggregationInfos.add(getCountAggregationInfo());
+    hasDictionaries.add(true);
+    for (String type : new String[] { "sum", "min", "max", "avg" }) {
+      aggregationInfos.add(getAggregationInfo(type, "met_impressionCount"));
+      hasDictionaries.add(true);
+    }
+    aggregationInfos.add(getDistinctCountAggregationInfo("column12"));
+    hasDictionaries.add(true);
+    for (String type : new String[] { "sum", "max" }) {
+      aggregationInfos.add(getAggregationInfo(type, "met_impressionCount_noDictionary"));
+      hasDictionaries.add(false);
+    }
+
+    final MProjectionOperator projectionOperator = new MProjectionOperator(getSparseDataSourceMap(),
+        getDocIdSetOperator(_indexSegment.getTotalDocs(), 2000));
+    final List<BAggregationFunctionOperator> aggregationFunctionOperatorList =
+        new ArrayList<BAggregationFunctionOperator>();
+    for (int i = 0; i < aggregationInfos.size(); ++i) {
+      aggregationFunctionOperatorList.add(new BAggregationFunctionOperator(aggregationInfos.get(i),
+          new UReplicatedProjectionOperator(projectionOperator), hasDictionaries.get(i)));
+    }
+    final MAggregationOperator aggregationOperator =
+        new MAggregationOperator(_indexSegment, aggregationInfos, projectionOperator, aggregationFunctionOperatorList);
+    final IntermediateResultsBlock block = (IntermediateResultsBlock) aggregationOperator.nextBlock();
+    Assert.assertEquals(_indexSegment.getTotalDocs(), block.getNumDocsScanned());
+    // Only the docs with a value are aggregated, ie. the 10001 docs but the multiples of 3 or 5
+    Assert.assertEquals(5333L, ((AvgPair) block.getAggregationResult().get(4)).getSecond().longValue());
+
+    for (int i = 0; i < aggregationInfos.size(); ++i) {
+      final MProjectionOperator functionProjectionOperator = new MProjectionOperator(getSparseDataSourceMap(),
+          getDocIdSetOperator(_indexSegment.getTotalDocs(), 2000));
+      final BAggregationFunctionOperator aggregationFunctionOperator =
+          new BAggregationFunctionOperator(aggregationInfos.get(i), new UReplicatedProjectionOperator(
+              functionProjectionOperator), hasDictionaries.get(i));
+      final AggregationFunction aggregationFunction = aggregationFunctionOperator.getAggregationFunction();
+      Serializable expected = AggregationFunctionFactory.get(aggregationInfos.get(i), true).getDefaultValue();
+      int numBlocks = 0;
+      while (functionProjectionOperator.nextBlock() != null) {
+        expected = aggregationFunction.combineTwoValues(expected,
+            ((AggregationResultBlock) aggregationFunctionOperator.nextBlock()).getAggregationResult());
+        numBlocks++;
+      }
+      Assert.assertEquals(6, numBlocks);
+
+      final String function = aggregationFunction.getFunctionName();
+      final Serializable actual = block.getAggregationResult().get(i);
+      LOGGER.info("Function : {}, single pass : {}, function operator : {}", function, actual, expected);
+      if (expected instanceof AvgPair) {
+        Assert.assertEquals(function, ((AvgPair) expected).getFirst(), ((AvgPair) actual).getFirst(),
+            Math.abs(((AvgPair) expected).getFirst()) * 1e-12);
+        Assert.assertEquals(function, ((AvgPair) expected).getSecond(), ((AvgPair) actual).getSecond());
+      } else if (expected instanceof Double) {
+        Assert.assertEquals(function, (Double) expected, (Double) actual, Math.abs((Double) expected) * 1e-12);
+      } else {
+        Assert.assertEquals(function, expected, actual);
+      }
+    }
+  }
+
   @Test
   public void testInnerSegmentPlanMakerForAggregationFunctionOperatorNoFilter() throws Exception {
     final BrokerRequest brokerRequest = getAggregationNoFilterBrokerRequest();
@@ -403,6 +492,57 @@ public class AggregationQueriesTest {
     return dataSourceMap;
   }
 
+  /**
+   * Returns a doc id set operator going over all the docs of the segment in blocks of the given size.
+   */
+  private static BReusableFilteredDocIdSetOperator getDocIdSetOperator(final int numDocs, int blockSize) {
+    final Operator matchAllFilterOperator = new Operator() {
+      private boolean _isDone = false;
+
+      @Override
+      public boolean open() {
+        return true;
+      }
+
+      @Override
+      public Block nextBlock() {
+        if (_isDone) {
+          return null;
+        }
+        _isDone = true;
+        return new MatchEntireSegmentDocIdSetBlock(numDocs);
+      }
+
+      @Override
+      public Block nextBlock(BlockId blockId) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean close() {
+        return true;
+      }
+    };
+    return new BReusableFilteredDocIdSetOperator(matchAllFilterOperator, numDocs, blockSize);
+  }
+
+  private static Map<String, DataSource> getSparseDataSourceMap() {
+    final Map<String, DataSource> dataSourceMap = getDataSourceMap();
+    final DataSource metricDataSource = dataSourceMap.get("met_impressionCount");
+    dataSourceMap.put("met_impressionCount", new SparseDataSource(metricDataSource, true));
+    dataSourceMap.put("met_impressionCount_noDictionary", new SparseDataSource(metricDataSource, false));
+    return dataSourceMap;
+  }
+
+  private static AggregationInfo getAggregationInfo(String type, String column) {
+    final Map<String, String> params = new HashMap<String, String>();
+    params.put("column", column);
+    final AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType(type);
+    aggregationInfo.setAggregationParams(params);
+    return aggregationInfo;
+  }
+
   private static AggregationInfo getCountAggregationInfo() {
     final String type = "count";
     final Map<String, String> params = new HashMap<String, String>();
@@ -496,4 +636,233 @@ public class AggregationQueriesTest {
     RequestUtils.generateFilterFromTree(filterQueryTree, brokerRequest);
     return brokerRequest;
   }
+
+  /**
+   * Single value column which has no value for every third doc, and the null dictionary id for every fifth doc when it
+   * has a dictionary. Without dictionary, the values are read with nextDoubleVal().
+   */
+  private static class SparseDataSource implements DataSource {
+    private final DataSource _dataSource;
+    private final boolean _hasDictionary;
+
+    SparseDataSource(DataSource dataSource, boolean hasDictionary) {
+      _dataSource = dataSource;
+      _hasDictionary = hasDictionary;
+    }
+
+    @Override
+    public boolean open() {
+      return _dataSource.open();
+    }
+
+    @Override
+    public Block nextBlock() {
+      return nextBlock(new BlockId(0));
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      final Block block = _dataSource.nextBlock(blockId);
+      final BlockMetadata metadata = new SparseBlockMetadata(block.getMetadata(), _hasDictionary);
+      final BlockSingleValIterator iterator = (BlockSingleValIterator) block.getBlockValueSet().iterator();
+      final Dictionary dictionary = block.getMetadata().getDictionary();
+      final BlockValSet blockValSet = new BlockValSet() {
+        @Override
+        public BlockValIterator iterator() {
+          return new SparseIterator(iterator, dictionary, _hasDictionary);
+        }
+
+        @Override
+        public DataType getValueType() {
+          return iterator.getValueType();
+        }
+      };
+      return new Block() {
+        @Override
+        public BlockId getId() {
+          return block.getId();
+        }
+
+        @Override
+        public boolean applyPredicate(Predicate predicate) {
+          return block.applyPredicate(predicate);
+        }
+
+        @Override
+        public BlockDocIdSet getBlockDocIdSet() {
+          return block.getBlockDocIdSet();
+        }
+
+        @Override
+        public BlockValSet getBlockValueSet() {
+          return blockValSet;
+        }
+
+        @Override
+        public BlockDocIdValueSet getBlockDocIdValueSet() {
+          return block.getBlockDocIdValueSet();
+        }
+
+        @Override
+        public BlockMetadata getMetadata() {
+          return metadata;
+        }
+      };
+    }
+
+    @Override
+    public boolean close() {
+      return _dataSource.close();
+    }
+
+    @Override
+    public boolean setPredicate(Predicate predicate) {
+      return _dataSource.setPredicate(predicate);
+    }
+
+    @Override
+    public DataSourceMetadata getDataSourceMetadata() {
+      return _dataSource.getDataSourceMetadata();
+    }
+
+    @Override
+    public InvertedIndexReader getInvertedIndex() {
+      return _dataSource.getInvertedIndex();
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+      return _hasDictionary ? _dataSource.getDictionary() : null;
+    }
+  }
+
+  private static class SparseIterator extends BlockSingleValIterator {
+    private final BlockSingleValIterator _iterator;
+    private final Dictionary _dictionary;
+    private final boolean _hasDictionary;
+    private int _docId = -1;
+
+    SparseIterator(BlockSingleValIterator iterator, Dictionary dictionary, boolean hasDictionary) {
+      _iterator = iterator;
+      _dictionary = dictionary;
+      _hasDictionary = hasDictionary;
+    }
+
+    @Override
+    public boolean skipTo(int docId) {
+      _docId = docId;
+      return _iterator.skipTo(docId) && (docId % 3 != 0);
+    }
+
+    @Override
+    public int nextIntVal() {
+      final int dictionaryId = _iterator.nextIntVal();
+      return (_hasDictionary && _docId % 5 == 0) ? Dictionary.NULL_VALUE_INDEX : dictionaryId;
+    }
+
+    @Override
+    public double nextDoubleVal() {
+      return _dictionary.getDoubleValue(_iterator.nextIntVal());
+    }
+
+    @Override
+    public int currentDocId() {
+      return _iterator.currentDocId();
+    }
+
+    @Override
+    public boolean reset() {
+      return _iterator.reset();
+    }
+
+    @Override
+    public boolean next() {
+      return _iterator.next();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return _iterator.hasNext();
+    }
+
+    @Override
+    public int size() {
+      return _iterator.size();
+    }
+
+    @Override
+    public DataType getValueType() {
+      return _iterator.getValueType();
+    }
+  }
+
+  private static class SparseBlockMetadata implements BlockMetadata {
+    private final BlockMetadata _metadata;
+    private final boolean _hasDictionary;
+
+    SparseBlockMetadata(BlockMetadata metadata, boolean hasDictionary) {
+      _metadata = metadata;
+      _hasDictionary = hasDictionary;
+    }
+
+    @Override
+    public int getSize() {
+      return _metadata.getSize();
+    }
+
+    @Override
+    public int getLength() {
+      return _metadata.getLength();
+    }
+
+    @Override
+    public int getStartDocId() {
+      return _metadata.getStartDocId();
+    }
+
+    @Override
+    public int getEndDocId() {
+      return _metadata.getEndDocId();
+    }
+
+    @Override
+    public boolean isSorted() {
+      return _metadata.isSorted();
+    }
+
+    @Override
+    public boolean isSparse() {
+      return true;
+    }
+
+    @Override
+    public boolean hasInvertedIndex() {
+      return _metadata.hasInvertedIndex();
+    }
+
+    @Override
+    public boolean hasDictionary() {
+      return _hasDictionary;
+    }
+
+    @Override
+    public boolean isSingleValue() {
+      return _metadata.isSingleValue();
+    }
+
+    @Override
+    public Dictionary getDictionary() {
+      return _hasDictionary ? _metadata.getDictionary() : null;
+    }
+
+    @Override
+    public int getMaxNumberOfMultiValues() {
+      return _metadata.getMaxNumberOfMultiValues();
+    }
+
+    @Override
+    public DataType getDataType() {
+      return _metadata.getDataType();
+    }
+  }
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
+import com.linkedin.pinot.core.query.utils.DataTableCustomSerDe;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+
+
+/**
+ * Round trips aggregation intermediate results through version 1 and version 2 data tables.
+ */
+public class DataTableCustomSerDeTest {
+
+  static {
+    DataTableCustomSerDe.register();
+  }
+
+  @Test
+  public void testGroupByResultsRoundTrip() throws Exception {
+    AvgAggregationFunction avgFunction = new AvgAggregationFunction();
+    HashMap<String, Serializable> avgMap = new HashMap<String, Serializable>();
+    HashMap<String, Serializable> distinctMap = new HashMap<String, Serializable>();
+    HashMap<String, Serializable> sumMap = new HashMap<String, Serializable>();
+    for (int i = 0; i < 1000; i++) {
+      String groupKey = "key\t" + i + "\tvalue_" + (i % 7);
+      avgMap.put(groupKey, avgFunction.getAvgPair(i * 1.5, i + 1));
+      IntOpenHashSet set = new IntOpenHashSet();
+      for (int j = 0; j < i % 10; j++) {
+        set.add(i * j);
+      }
+      distinctMap.put(groupKey, set);
+      sumMap.put(groupKey, (i % 3 == 0) ? null : i * 2.0);
+    }
+    List<HashMap<String, Serializable>> results = Arrays.asList(avgMap, distinctMap, sumMap);
+
+    for (int version : new int[] { DataTable.VERSION_1, DataTable.VERSION_2 }) {
+      DataSchema dataSchema =
+          new DataSchema(new String[] { "functionName", "GroupByResultMap" }, new DataType[] { DataType.STRING,
+              DataType.OBJECT });
+      DataTableBuilder builder = new DataTableBuilder(dataSchema, version);
+      builder.open();
+      for (int i = 0; i < results.size(); i++) {
+        builder.startRow();
+        builder.setColumn(0, "function" + i);
+        builder.setColumn(1, results.get(i));
+        builder.finishRow();
+      }
+      builder.seal();
+
+      DataTable dataTable = new DataTable(ByteBuffer.wrap(builder.build().toBytes()));
+      Assert.assertEquals(dataTable.getVersion(), version);
+      Assert.assertEquals(dataTable.getNumberOfRows(), results.size());
+
+      Map<String, Serializable> actualAvg = dataTable.getObject(0, 1);
+      Assert.assertEquals(actualAvg.size(), avgMap.size());
+      for (String key : avgMap.keySet()) {
+        AvgPair expected = (AvgPair) avgMap.get(key);
+        AvgPair actual = (AvgPair) actualAvg.get(key);
+        Assert.assertEquals(actual.getFirst(), expected.getFirst());
+        Assert.assertEquals(actual.getSecond(), expected.getSecond());
+      }
+      Assert.assertEquals(dataTable.getObject(1, 1), distinctMap);
+      Assert.assertEquals(dataTable.getObject(2, 1), sumMap);
+      Assert.assertEquals(dataTable.getString(2, 0), "function2");
+    }
+  }
+
+  @Test
+  public void testScalarValues() {
+    DataTableCustomSerDe serDe = new DataTableCustomSerDe();
+    List<Serializable> values = new ArrayList<Serializable>();
+    values.add(17L);
+    values.add(Double.NEGATIVE_INFINITY);
+    values.add(42);
+    values.add("some string");
+    values.add(null);
+    // No dedicated encoding, goes through java serialization.
+    values.add(new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+    for (Serializable value : values) {
+      Serializable actual = serDe.deserialize(ByteBuffer.wrap(serDe.serialize(value)));
+      Assert.assertEquals(actual, value);
+    }
+  }
+
+  @Test
+  public void testHyperLogLog() {
+    DataTableCustomSerDe serDe = new DataTableCustomSerDe();
+    // Few values give a sparse sketch, many values a dense one
+    for (int numValues : new int[] { 0, 10, 100000 }) {
+      HyperLogLog hyperLogLog = new HyperLogLog();
+      for (int i = 0; i < numValues; i++) {
+        hyperLogLog.offer((long) i);
+      }
+      byte[] bytes = serDe.serialize(hyperLogLog);
+      // Type tag followed by the sketch, no java serialization
+      Assert.assertEquals(bytes.length, hyperLogLog.toBytes().length + 1);
+      HyperLogLog actual = serDe.deserialize(ByteBuffer.wrap(bytes));
+      Assert.assertEquals(actual.getLog2m(), hyperLogLog.getLog2m());
+      Assert.assertEquals(actual.toBytes(), hyperLogLog.toBytes());
+      Assert.assertEquals(actual.cardinality(), hyperLogLog.cardinality());
+    }
+  }
+}
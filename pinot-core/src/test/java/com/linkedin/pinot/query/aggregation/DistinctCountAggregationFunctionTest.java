@@ -0,0 +1,432 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdSet;
+import com.linkedin.pinot.core.common.BlockDocIdValueSet;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockMetadata;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.BlockValIterator;
+import com.linkedin.pinot.core.common.BlockValSet;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.operator.DocIdSetBlock;
+import com.linkedin.pinot.core.query.aggregation.CombineLevel;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationFunction;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+
+
+/**
+ * Compares the dictionary id based distinct count with collecting the hash code of every matching value in a set,
+ * which is how distinct count used to aggregate, and the HLL sketch with offering every matching value. Sets are
+ * compared with equals(), as their iteration order differs.
+ */
+public class DistinctCountAggregationFunctionTest {
+  private static final int NUM_DOCS = 10000;
+  private static final int NUM_GROUPS = 7;
+  // Large enough compared to the block for dictionary ids to be collected in a RoaringBitmap rather than a BitSet
+  private static final int LARGE_CARDINALITY = 1 << 20;
+
+  @Test
+  public void testAggregate() {
+    for (int cardinality : new int[] { 1, 100, LARGE_CARDINALITY }) {
+      Random random = new Random(cardinality);
+      Dictionary dictionary = new TestDictionary(cardinality, 0);
+      int[] dictionaryIds = randomDictionaryIds(random, cardinality);
+      int[] docIds = randomDocIds(random);
+
+      IntOpenHashSet expected = new IntOpenHashSet();
+      for (int docId : docIds) {
+        addValue(expected, dictionary, dictionaryIds[docId]);
+      }
+
+      DistinctCountAggregationFunction function = newFunction();
+      IntOpenHashSet actual = function.aggregate(new DocIdSetBlock(docIds, docIds.length),
+          new Block[] { new DictionaryIdBlock(dictionaryIds, dictionary) });
+      Assert.assertTrue(actual.equals(expected), "Cardinality " + cardinality);
+    }
+  }
+
+  @Test
+  public void testGroupBy() {
+    for (int cardinality : new int[] { 1, 100, LARGE_CARDINALITY }) {
+      Random random = new Random(cardinality);
+      Dictionary dictionary = new TestDictionary(cardinality, 0);
+      int[] dictionaryIds = randomDictionaryIds(random, cardinality);
+      Block[] blocks = new Block[] { new DictionaryIdBlock(dictionaryIds, dictionary) };
+
+      DistinctCountAggregationFunction function = newFunction();
+      Map<Integer, IntOpenHashSet> expected = new HashMap<Integer, IntOpenHashSet>();
+      Map<Integer, IntOpenHashSet> groupResults = new HashMap<Integer, IntOpenHashSet>();
+      for (int docId : randomDocIds(random)) {
+        int group = docId % NUM_GROUPS;
+        IntOpenHashSet expectedValues = expected.get(group);
+        if (expectedValues == null) {
+          expectedValues = new IntOpenHashSet();
+          expected.put(group, expectedValues);
+        }
+        addValue(expectedValues, dictionary, dictionaryIds[docId]);
+        groupResults.put(group, function.aggregate(groupResults.get(group), docId, blocks));
+      }
+
+      Assert.assertEquals(groupResults.size(), expected.size());
+      for (Map.Entry<Integer, IntOpenHashSet> entry : groupResults.entrySet()) {
+        Serializable segmentResult = function.toSegmentResult(entry.getValue(), blocks);
+        // Only plain int sets may leave the segment, they are what the data table serializes
+        Assert.assertEquals(segmentResult.getClass(), IntOpenHashSet.class);
+        Assert.assertEquals(segmentResult, expected.get(entry.getKey()), "Cardinality " + cardinality);
+      }
+    }
+  }
+
+  @Test
+  public void testMergeAcrossSegments() {
+    int cardinality = 100;
+    Random random = new Random(0);
+    // The second segment has values of the first segment under other dictionary ids, and new values
+    Dictionary[] dictionaries = new Dictionary[] { new TestDictionary(cardinality, 0),
+        new TestDictionary(cardinality, cardinality / 2) };
+
+    DistinctCountAggregationFunction function = newFunction();
+    IntOpenHashSet expected = new IntOpenHashSet();
+    Map<Integer, IntOpenHashSet> expectedGroups = new HashMap<Integer, IntOpenHashSet>();
+    List<IntOpenHashSet> segmentResults = new ArrayList<IntOpenHashSet>();
+    Map<Integer, IntOpenHashSet> mergedGroups = new HashMap<Integer, IntOpenHashSet>();
+    for (Dictionary dictionary : dictionaries) {
+      int[] dictionaryIds = randomDictionaryIds(random, cardinality);
+      int[] docIds = randomDocIds(random);
+      Block[] blocks = new Block[] { new DictionaryIdBlock(dictionaryIds, dictionary) };
+
+      segmentResults.add(function.aggregate(new DocIdSetBlock(docIds, docIds.length), blocks));
+
+      Map<Integer, IntOpenHashSet> groupResults = new HashMap<Integer, IntOpenHashSet>();
+      for (int docId : docIds) {
+        int group = docId % NUM_GROUPS;
+        addValue(expected, dictionary, dictionaryIds[docId]);
+        IntOpenHashSet expectedValues = expectedGroups.get(group);
+        if (expectedValues == null) {
+          expectedValues = new IntOpenHashSet();
+          expectedGroups.put(group, expectedValues);
+        }
+        addValue(expectedValues, dictionary, dictionaryIds[docId]);
+        groupResults.put(group, function.aggregate(groupResults.get(group), docId, blocks));
+      }
+      for (Map.Entry<Integer, IntOpenHashSet> entry : groupResults.entrySet()) {
+        IntOpenHashSet segmentResult = (IntOpenHashSet) function.toSegmentResult(entry.getValue(), blocks);
+        mergedGroups.put(entry.getKey(), function.combineTwoValues(mergedGroups.get(entry.getKey()), segmentResult));
+      }
+    }
+
+    List<IntOpenHashSet> combined = function.combine(segmentResults, CombineLevel.INSTANCE);
+    Assert.assertEquals(combined.size(), 1);
+    Assert.assertTrue(combined.get(0).equals(expected));
+    Assert.assertEquals(function.reduce(combined), Integer.valueOf(expected.size()));
+    Assert.assertTrue(mergedGroups.equals(expectedGroups));
+  }
+
+  @Test
+  public void testHyperLogLogAggregate() {
+    // Offered dictionary ids are tracked for the small dictionaries only, both give the sketch of all the values
+    for (int cardinality : new int[] { 1, 100, LARGE_CARDINALITY }) {
+      Random random = new Random(cardinality);
+      Dictionary dictionary = new TestDictionary(cardinality, 0);
+      int[] dictionaryIds = randomDictionaryIds(random, cardinality);
+      int[] docIds = randomDocIds(random);
+
+      HyperLogLog expected = new HyperLogLog();
+      for (int docId : docIds) {
+        if (dictionaryIds[docId] == Dictionary.NULL_VALUE_INDEX) {
+          expected.offer(Integer.MIN_VALUE);
+        } else {
+          expected.offer(dictionary.get(dictionaryIds[docId]));
+        }
+      }
+
+      HyperLogLog actual = new DistinctCountHLLAggregationFunction().aggregate(new DocIdSetBlock(docIds, docIds.length),
+          new Block[] { new DictionaryIdBlock(dictionaryIds, dictionary) });
+      Assert.assertTrue(Arrays.equals(actual.toBytes(), expected.toBytes()), "Cardinality " + cardinality);
+    }
+  }
+
+  private static DistinctCountAggregationFunction newFunction() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", "column");
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType("distinctCount");
+    aggregationInfo.setAggregationParams(params);
+    DistinctCountAggregationFunction function = new DistinctCountAggregationFunction();
+    function.init(aggregationInfo);
+    return function;
+  }
+
+  /**
+   * Adds a value the way distinct count used to: the hash code of the value, or Integer.MIN_VALUE for null.
+   */
+  private static void addValue(IntOpenHashSet values, Dictionary dictionary, int dictionaryId) {
+    if (dictionaryId == Dictionary.NULL_VALUE_INDEX) {
+      values.add(Integer.MIN_VALUE);
+    } else {
+      values.add(dictionary.get(dictionaryId).hashCode());
+    }
+  }
+
+  private static int[] randomDictionaryIds(Random random, int cardinality) {
+    int[] dictionaryIds = new int[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i++) {
+      dictionaryIds[i] = (random.nextInt(100) == 0) ? Dictionary.NULL_VALUE_INDEX : random.nextInt(cardinality);
+    }
+    return dictionaryIds;
+  }
+
+  private static int[] randomDocIds(Random random) {
+    int[] docIds = new int[NUM_DOCS];
+    int numDocIds = 0;
+    for (int docId = 0; docId < NUM_DOCS; docId++) {
+      if (random.nextInt(3) != 0) {
+        docIds[numDocIds++] = docId;
+      }
+    }
+    int[] ret = new int[numDocIds];
+    System.arraycopy(docIds, 0, ret, 0, numDocIds);
+    return ret;
+  }
+
+  /**
+   * Dictionary of string values "value_(id + offset)", without storing them.
+   */
+  private static class TestDictionary implements Dictionary {
+    private final int _length;
+    private final int _offset;
+
+    public TestDictionary(int length, int offset) {
+      _length = length;
+      _offset = offset;
+    }
+
+    @Override
+    public int indexOf(Object rawValue) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object get(int dictionaryId) {
+      return "value_" + (dictionaryId + _offset);
+    }
+
+    @Override
+    public long getLongValue(int dictionaryId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double getDoubleValue(int dictionaryId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getStringValue(int dictionaryId) {
+      return (String) get(dictionaryId);
+    }
+
+    @Override
+    public String toString(int dictionaryId) {
+      return getStringValue(dictionaryId);
+    }
+
+    @Override
+    public int length() {
+      return _length;
+    }
+  }
+
+  /**
+   * Single value block of a dictionary encoded column, NULL_VALUE_INDEX standing for null.
+   */
+  private static class DictionaryIdBlock implements Block {
+    private final int[] _dictionaryIds;
+    private final Dictionary _dictionary;
+
+    public DictionaryIdBlock(int[] dictionaryIds, Dictionary dictionary) {
+      _dictionaryIds = dictionaryIds;
+      _dictionary = dictionary;
+    }
+
+    @Override
+    public BlockValSet getBlockValueSet() {
+      return new BlockValSet() {
+        @Override
+        public BlockValIterator iterator() {
+          return new BlockSingleValIterator() {
+            private int _docId = 0;
+
+            @Override
+            public boolean skipTo(int docId) {
+              if (docId >= _dictionaryIds.length) {
+                return false;
+              }
+              _docId = docId;
+              return true;
+            }
+
+            @Override
+            public int nextIntVal() {
+              return _dictionaryIds[_docId++];
+            }
+
+            @Override
+            public int currentDocId() {
+              return _docId;
+            }
+
+            @Override
+            public boolean reset() {
+              _docId = 0;
+              return true;
+            }
+
+            @Override
+            public boolean next() {
+              throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean hasNext() {
+              return _docId < _dictionaryIds.length;
+            }
+
+            @Override
+            public int size() {
+              return _dictionaryIds.length;
+            }
+
+            @Override
+            public DataType getValueType() {
+              return DataType.STRING;
+            }
+          };
+        }
+
+        @Override
+        public DataType getValueType() {
+          return DataType.STRING;
+        }
+      };
+    }
+
+    @Override
+    public BlockMetadata getMetadata() {
+      return new BlockMetadata() {
+        @Override
+        public int getSize() {
+          return _dictionaryIds.length;
+        }
+
+        @Override
+        public int getLength() {
+          return _dictionaryIds.length;
+        }
+
+        @Override
+        public int getStartDocId() {
+          return 0;
+        }
+
+        @Override
+        public int getEndDocId() {
+          return _dictionaryIds.length - 1;
+        }
+
+        @Override
+        public boolean isSorted() {
+          return false;
+        }
+
+        @Override
+        public boolean isSparse() {
+          return false;
+        }
+
+        @Override
+        public boolean hasInvertedIndex() {
+          return false;
+        }
+
+        @Override
+        public boolean hasDictionary() {
+          return true;
+        }
+
+        @Override
+        public boolean isSingleValue() {
+          return true;
+        }
+
+        @Override
+        public Dictionary getDictionary() {
+          return _dictionary;
+        }
+
+        @Override
+        public int getMaxNumberOfMultiValues() {
+          return 0;
+        }
+
+        @Override
+        public DataType getDataType() {
+          return DataType.STRING;
+        }
+      };
+    }
+
+    @Override
+    public BlockId getId() {
+      return new BlockId(0);
+    }
+
+    @Override
+    public boolean applyPredicate(Predicate predicate) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BlockDocIdSet getBlockDocIdSet() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BlockDocIdValueSet getBlockDocIdValueSet() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.aggregation;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.AggregationInfo;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.GroupByResultMap;
+import com.linkedin.pinot.core.query.utils.DataTableCustomSerDe;
+
+
+/**
+ * Checks that GroupByResultMap behaves like a string keyed map and merges like the string keyed combine.
+ */
+public class GroupByResultMapTest {
+  private static final String DELIMITER = "\t";
+
+  @Test
+  public void testMapSemantics() {
+    GroupByResultMap map = new GroupByResultMap(2);
+    Map<String, Serializable> expected = new HashMap<String, Serializable>();
+    Random random = new Random(17);
+    for (int i = 0; i < 5000; i++) {
+      String key = "a" + random.nextInt(50) + DELIMITER + "b" + random.nextInt(50);
+      Serializable value = (double) i;
+      Assert.assertEquals(map.put(key, value), expected.put(key, value));
+    }
+    for (int i = 0; i < 500; i++) {
+      String key = "a" + random.nextInt(60) + DELIMITER + "b" + random.nextInt(60);
+      Assert.assertEquals(map.remove(key), expected.remove(key));
+    }
+    Assert.assertEquals(map.size(), expected.size());
+    Assert.assertEquals(map, expected);
+    Assert.assertEquals(expected, map);
+    Assert.assertNull(map.get("unknown" + DELIMITER + "b1"));
+    Assert.assertNull(map.get("no delimiter"));
+
+    // Removed groups can be put again.
+    String key = "a1" + DELIMITER + "b1";
+    map.remove(key);
+    Assert.assertFalse(map.containsKey(key));
+    map.put(key, 1.0);
+    Assert.assertEquals(map.get(key), 1.0);
+
+    Iterator<Map.Entry<String, Serializable>> iterator = map.entrySet().iterator();
+    while (iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+    Assert.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testMerge() {
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType("sum");
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", "met");
+    aggregationInfo.setAggregationParams(params);
+    AggregationFunction sum = AggregationFunctionFactory.get(aggregationInfo, true);
+
+    Random random = new Random(31);
+    GroupByResultMap typed1 = new GroupByResultMap(3);
+    GroupByResultMap typed2 = new GroupByResultMap(3);
+    Map<String, Serializable> plain = new HashMap<String, Serializable>();
+    Map<String, Serializable> expected = new HashMap<String, Serializable>();
+    for (int i = 0; i < 3000; i++) {
+      String key = random.nextInt(10) + DELIMITER + random.nextInt(10) + DELIMITER + random.nextInt(10);
+      Map<String, Serializable> target = (i % 3 == 0) ? typed1 : ((i % 3 == 1) ? typed2 : plain);
+      Double previous = (Double) target.get(key);
+      target.put(key, (previous == null) ? 1.0 : previous + 1.0);
+      Double total = (Double) expected.get(key);
+      expected.put(key, (total == null) ? 1.0 : total + 1.0);
+    }
+
+    // Round trip through the wire format before merging, as the broker does.
+    DataTableCustomSerDe serDe = new DataTableCustomSerDe();
+    GroupByResultMap decoded = serDe.deserialize(ByteBuffer.wrap(serDe.serialize(typed2)));
+    Assert.assertEquals(decoded, typed2);
+
+    typed1.merge(decoded, sum);
+    typed1.merge(plain, sum);
+    Assert.assertEquals(typed1, expected);
+
+    for (int groupId = 0; groupId < typed1.getNumGroups(); ++groupId) {
+      String[] values = typed1.getGroupValues(groupId);
+      Assert.assertEquals(values.length, 3);
+      Assert.assertEquals(typed1.getResult(groupId), expected.get(typed1.getGroupKey(groupId)));
+    }
+  }
+}
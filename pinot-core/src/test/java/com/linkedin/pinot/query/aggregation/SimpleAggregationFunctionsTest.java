@@ -18,6 +18,10 @@ package com.linkedin.pinot.query.aggregation;
 import static org.testng.Assert.assertEquals;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -34,9 +38,13 @@ import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction
 import com.linkedin.pinot.core.query.aggregation.function.AvgAggregationFunction.AvgPair;
 import com.linkedin.pinot.core.query.aggregation.function.CountAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.DistinctCountAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.DistinctCountHLLAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MaxAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.MinAggregationFunction;
+import com.linkedin.pinot.core.query.aggregation.function.PercentileEstAggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.function.SumAggregationFunction;
+import com.linkedin.pinot.core.query.utils.HyperLogLog;
+import com.linkedin.pinot.core.query.utils.TDigest;
 
 
 public class SimpleAggregationFunctionsTest {
@@ -198,6 +206,72 @@ public class SimpleAggregationFunctionsTest {
     }
   }
 
+  @Test
+  public void testDistinctCountHLLAggregation()
+      throws Exception {
+    AggregationFunction aggregationFunction = new DistinctCountHLLAggregationFunction();
+    aggregationFunction.init(_paramsInfo);
+
+    int[] sizes = new int[] { 1, 10, 100, 1000, _sizeOfCombineList };
+
+    // Test combine
+    for (int size : sizes) {
+      List<Serializable> aggregationResults = getHyperLogLogs(size);
+      List<Serializable> combinedResult = aggregationFunction.combine(aggregationResults, CombineLevel.SEGMENT);
+      assertEquals(((HyperLogLog) (combinedResult.get(0))).cardinality(), size, size * 0.05);
+    }
+
+    // Test reduce
+    for (int size : sizes) {
+      List<Serializable> combinedResults = getHyperLogLogs(size);
+      long reduceSize = (Long) aggregationFunction.reduce(combinedResults);
+      assertEquals(reduceSize, size, size * 0.05);
+    }
+
+    // Test serialization
+    HyperLogLog hyperLogLog = new HyperLogLog();
+    for (int i = 0; i < 100000; ++i) {
+      hyperLogLog.offer(i);
+    }
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+    objectOutputStream.writeObject(hyperLogLog);
+    objectOutputStream.close();
+    HyperLogLog deserialized = (HyperLogLog) new ObjectInputStream(
+        new ByteArrayInputStream(byteArrayOutputStream.toByteArray())).readObject();
+    assertEquals(deserialized.cardinality(), hyperLogLog.cardinality());
+  }
+
+  @Test
+  public void testPercentileEstAggregation() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("column", _columnName);
+    AggregationInfo aggregationInfo = new AggregationInfo();
+    aggregationInfo.setAggregationType("percentileest90");
+    aggregationInfo.setAggregationParams(params);
+    AggregationFunction aggregationFunction = new PercentileEstAggregationFunction();
+    aggregationFunction.init(aggregationInfo);
+    assertEquals(aggregationFunction.getFunctionName(), "percentileEst90_" + _columnName);
+
+    // Test combine
+    List<Serializable> aggregationResults = getTDigests(_sizeOfCombineList);
+    List<Serializable> combinedResult = aggregationFunction.combine(aggregationResults, CombineLevel.SEGMENT);
+    assertEquals(((TDigest) (combinedResult.get(0))).size(), _sizeOfCombineList);
+    assertEquals(((TDigest) (combinedResult.get(0))).quantile(0.5), _sizeOfCombineList * 0.5, _sizeOfCombineList * 0.01);
+
+    // Test reduce
+    List<Serializable> combinedResults = getTDigests(_sizeOfReduceList);
+    double reduceResult = (Double) aggregationFunction.reduce(combinedResults);
+    assertEquals(reduceResult, _sizeOfReduceList * 0.9, _sizeOfReduceList * 0.01);
+
+    assertEquals(PercentileEstAggregationFunction.getPercentile("PercentileEst99"), 99);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testPercentileEstWithoutPercentile() {
+    PercentileEstAggregationFunction.getPercentile("percentileest");
+  }
+
   private static List<Serializable> getLongValues(int numberOfElements) {
     List<Serializable> longContainers = new ArrayList<Serializable>();
     for (int i = 0; i < numberOfElements; ++i) {
@@ -223,6 +297,26 @@ public class SimpleAggregationFunctionsTest {
     return avgPairList;
   }
 
+  private static List<Serializable> getHyperLogLogs(int numberOfElements) {
+    List<Serializable> hyperLogLogs = new ArrayList<Serializable>();
+    for (int i = 0; i < numberOfElements; ++i) {
+      HyperLogLog hyperLogLog = new HyperLogLog();
+      hyperLogLog.offer(i);
+      hyperLogLogs.add(hyperLogLog);
+    }
+    return hyperLogLogs;
+  }
+
+  private static List<Serializable> getTDigests(int numberOfElements) {
+    List<Serializable> tDigests = new ArrayList<Serializable>();
+    for (int i = 0; i < numberOfElements; ++i) {
+      TDigest tDigest = new TDigest();
+      tDigest.offer(i);
+      tDigests.add(tDigest);
+    }
+    return tDigests;
+  }
+
   private static List<Serializable> getIntOpenHashSets(int numberOfElements) {
     List<Serializable> intOpenHashSets = new ArrayList<Serializable>();
     for (int i = 0; i < numberOfElements; ++i) {
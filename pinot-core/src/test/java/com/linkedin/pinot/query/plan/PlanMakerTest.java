@@ -44,6 +44,7 @@ import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.GroupBy;
+import com.linkedin.pinot.common.request.QuerySource;
 import com.linkedin.pinot.common.request.Selection;
 import com.linkedin.pinot.common.request.SelectionSort;
 import com.linkedin.pinot.common.response.BrokerResponse;
@@ -59,6 +60,7 @@ import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.operator.query.MAggregationGroupByOperator;
 import com.linkedin.pinot.core.operator.query.MAggregationOperator;
+import com.linkedin.pinot.core.operator.query.MSegmentResultCacheOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOnlyOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOrderByOperator;
 import com.linkedin.pinot.core.plan.Plan;
@@ -67,6 +69,8 @@ import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV1;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.cache.SegmentResultCache;
+import com.linkedin.pinot.core.query.executor.QueryDeadline;
 import com.linkedin.pinot.core.query.reduce.DefaultReduceService;
 import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
@@ -414,6 +418,89 @@ public class PlanMakerTest {
     System.out.println(brokerResponse.getAggregationResults());
   }
 
+  @Test
+  public void testInterSegmentAggregationPlanMakerWithSegmentResultCache() {
+    SegmentResultCache segmentResultCache = new SegmentResultCache(64 * 1024 * 1024);
+    PlanMaker instancePlanMaker = new InstancePlanMakerImplV2(segmentResultCache);
+    BrokerRequest brokerRequest = _brokerRequest.deepCopy();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName("testTable_OFFLINE");
+    brokerRequest.setQuerySource(querySource);
+    ExecutorService executorService = Executors.newCachedThreadPool(new NamedThreadFactory("test-plan-maker"));
+
+    for (int i = 0; i < 2; i++) {
+      Plan globalPlan =
+          instancePlanMaker.makeInterSegmentPlan(_indexSegmentList, brokerRequest, executorService, 150000);
+      globalPlan.execute();
+      DataTable instanceResponse = globalPlan.getInstanceResponse();
+      Assert.assertEquals(200001L * _indexSegmentList.size(), instanceResponse.getLong(0, 0));
+      Assert.assertEquals(20000100000.0 * _indexSegmentList.size(), instanceResponse.getDouble(0, 1));
+      Assert.assertEquals(200000.0, instanceResponse.getDouble(0, 2));
+      Assert.assertEquals(0.0, instanceResponse.getDouble(0, 3));
+      Assert.assertEquals(100000.0, Double.parseDouble(instanceResponse.getObject(0, 4).toString()));
+      Assert.assertEquals(10, ((IntOpenHashSet) instanceResponse.getObject(0, 5)).size());
+      Assert.assertEquals(100, ((IntOpenHashSet) instanceResponse.getObject(0, 6)).size());
+      Assert.assertTrue(segmentResultCache.size() > 0);
+    }
+    Assert.assertTrue(segmentResultCache.getNumHits() >= _indexSegmentList.size());
+
+    // Unloading a segment drops its cached results
+    for (IndexSegment indexSegment : _indexSegmentList) {
+      segmentResultCache.invalidate("testTable_OFFLINE", indexSegment.getSegmentName());
+    }
+    Assert.assertEquals(segmentResultCache.size(), 0);
+    Assert.assertEquals(segmentResultCache.getSizeInBytes(), 0);
+    executorService.shutdown();
+  }
+
+  @Test
+  public void testSegmentResultCacheSkipsResultsCutShortByDeadline() throws Exception {
+    SegmentResultCache segmentResultCache = new SegmentResultCache(64 * 1024 * 1024);
+    InstancePlanMakerImplV2 instancePlanMaker = new InstancePlanMakerImplV2(segmentResultCache);
+    BrokerRequest brokerRequest = _brokerRequest.deepCopy();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName("testTable_OFFLINE");
+    brokerRequest.setQuerySource(querySource);
+    IndexSegment indexSegment = _indexSegmentList.get(0);
+    String cacheKey = segmentResultCache.getKey(indexSegment, brokerRequest);
+    Assert.assertNotNull(cacheKey);
+
+    // A deadline that already passed stops the scan of the segment at its first block
+    IntermediateResultsBlock block;
+    QueryDeadline.set(System.currentTimeMillis() - 1);
+    try {
+      MSegmentResultCacheOperator operator =
+          new MSegmentResultCacheOperator(instancePlanMaker.makeInnerSegmentPlan(indexSegment, brokerRequest).run(),
+              segmentResultCache, cacheKey, "testTable_OFFLINE", indexSegment.getSegmentName());
+      block = (IntermediateResultsBlock) operator.nextBlock();
+    } finally {
+      QueryDeadline.clear();
+    }
+    Assert.assertTrue(block.isPartialResult());
+    Assert.assertEquals(segmentResultCache.size(), 0);
+
+    // The broker learns that the response is partial
+    DefaultReduceService reduceService = new DefaultReduceService();
+    Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    instanceResponseMap.put(new ServerInstance("localhost:1111"), block.getDataTable());
+    Assert.assertTrue(reduceService.reduceOnDataTable(brokerRequest, instanceResponseMap).isPartialResult());
+
+    // The next query misses the cache and scans the whole segment again
+    ExecutorService executorService = Executors.newCachedThreadPool(new NamedThreadFactory("test-plan-maker"));
+    Plan globalPlan =
+        instancePlanMaker.makeInterSegmentPlan(Arrays.asList(indexSegment), brokerRequest, executorService, 150000);
+    globalPlan.execute();
+    DataTable instanceResponse = globalPlan.getInstanceResponse();
+    Assert.assertEquals(instanceResponse.getLong(0, 0), 200001L);
+    Assert.assertNull(instanceResponse.getMetadata().get("partialResult"));
+    instanceResponseMap.put(new ServerInstance("localhost:1111"), instanceResponse);
+    Assert.assertFalse(reduceService.reduceOnDataTable(brokerRequest, instanceResponseMap).isPartialResult());
+    Assert.assertEquals(segmentResultCache.getNumHits(), 0);
+    Assert.assertEquals(segmentResultCache.getNumMisses(), 1);
+    Assert.assertEquals(segmentResultCache.size(), 1);
+    executorService.shutdown();
+  }
+
   @Test
   public void testInterSegmentAggregationGroupByPlanMakerAndRun() {
     PlanMaker instancePlanMaker = new InstancePlanMakerImplV1();
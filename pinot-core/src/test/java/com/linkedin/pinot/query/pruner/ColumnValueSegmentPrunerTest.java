@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.pruner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.query.pruner.ColumnValueSegmentPruner;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+public class ColumnValueSegmentPrunerTest {
+  private static final String AVRO_DATA = "data/simpleData200001.avro";
+  private static final File INDEX_DIR = new File(FileUtils.getTempDirectory(), "ColumnValueSegmentPrunerTest");
+
+  private IndexSegment _indexSegment;
+  private final ColumnValueSegmentPruner _segmentPruner = new ColumnValueSegmentPruner();
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath =
+        TestUtils.getFileFromResourceUrl(ColumnValueSegmentPrunerTest.class.getClassLoader().getResource(AVRO_DATA));
+    if (INDEX_DIR.exists()) {
+      FileUtils.deleteQuietly(INDEX_DIR);
+    }
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "dim1",
+            TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testEquality() {
+    // met goes from 0 to 200000
+    Assert.assertFalse(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "5", FilterOperator.EQUALITY))));
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "300000", FilterOperator.EQUALITY))));
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "-1", FilterOperator.EQUALITY))));
+    // Values of another type are never pruned
+    Assert.assertFalse(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "abc", FilterOperator.EQUALITY))));
+  }
+
+  @Test
+  public void testIn() {
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment,
+        getBrokerRequest(getLeaf("met", "300000\t\t300001", FilterOperator.IN))));
+    Assert.assertFalse(_segmentPruner.prune(_indexSegment,
+        getBrokerRequest(getLeaf("met", "300000\t\t5", FilterOperator.IN))));
+  }
+
+  @Test
+  public void testRange() {
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "[250000\t\t*)", FilterOperator.RANGE))));
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "(200000\t\t*)", FilterOperator.RANGE))));
+    Assert.assertFalse(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "[200000\t\t*)", FilterOperator.RANGE))));
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "(*\t\t0)", FilterOperator.RANGE))));
+    Assert.assertFalse(_segmentPruner.prune(_indexSegment, getBrokerRequest(getLeaf("met", "[10\t\t20]", FilterOperator.RANGE))));
+  }
+
+  @Test
+  public void testAndOr() {
+    List<FilterQueryTree> children = new ArrayList<FilterQueryTree>();
+    children.add(getLeaf("met", "5", FilterOperator.EQUALITY));
+    children.add(getLeaf("met", "300000", FilterOperator.EQUALITY));
+    Assert.assertTrue(_segmentPruner.prune(_indexSegment,
+        getBrokerRequest(new FilterQueryTree(0, null, null, FilterOperator.AND, children))));
+    Assert.assertFalse(_segmentPruner.prune(_indexSegment,
+        getBrokerRequest(new FilterQueryTree(0, null, null, FilterOperator.OR, children))));
+  }
+
+  private static FilterQueryTree getLeaf(String column, String value, FilterOperator operator) {
+    List<String> values = new ArrayList<String>();
+    values.add(value);
+    return new FilterQueryTree(column, values, operator, null);
+  }
+
+  private static BrokerRequest getBrokerRequest(FilterQueryTree filterQueryTree) {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    RequestUtils.generateFilterFromTree(filterQueryTree, brokerRequest);
+    return brokerRequest;
+  }
+}
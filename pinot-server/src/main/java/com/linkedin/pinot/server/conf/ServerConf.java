@@ -30,11 +30,16 @@ public class ServerConf {
   private static String PINOT_SERVER_INSTANCE = "pinot.server.instance";
   private static String PINOT_SERVER_METRICS = "pinot.server.metrics";
   private static String PINOT_SERVER_QUERY = "pinot.server.query.executor";
+  private static String PINOT_SERVER_QUERY_SCHEDULER = "pinot.server.query.scheduler";
   private static String PINOT_SERVER_REQUEST = "pinot.server.request";
   private static String PINOT_SERVER_NETTY = "pinot.server.netty";
   private static String PINOT_SERVER_INSTANCE_DATA_MANAGER_CLASS = "pinot.server.instance.data.manager.class";
   private static String PINOT_SERVER_QUERY_EXECUTOR_CLASS = "pinot.server.query.executor.class";
   private static String PINOT_SERVER_REQUEST_HANDLER_FACTORY_CLASS = "pinot.server.requestHandlerFactory.class";
+  private static String PINOT_SERVER_RESPONSE_COMPRESSION_THRESHOLD = "pinot.server.response.compression.threshold";
+
+  // Responses up to this size are sent uncompressed even if the broker asks for compression
+  public static final int DEFAULT_RESPONSE_COMPRESSION_THRESHOLD_BYTES = 32 * 1024;
 
   private Configuration _serverConf;
 
@@ -54,6 +59,10 @@ public class ServerConf {
     return _serverConf.subset(PINOT_SERVER_QUERY);
   }
 
+  public Configuration getQuerySchedulerConfig() {
+    return _serverConf.subset(PINOT_SERVER_QUERY_SCHEDULER);
+  }
+
   public Configuration getRequestConfig() {
     return _serverConf.subset(PINOT_SERVER_REQUEST);
   }
@@ -82,4 +91,8 @@ public class ServerConf {
     return _serverConf.getString(PINOT_SERVER_REQUEST_HANDLER_FACTORY_CLASS);
   }
 
+  public int getResponseCompressionThresholdBytes() {
+    return _serverConf.getInt(PINOT_SERVER_RESPONSE_COMPRESSION_THRESHOLD, DEFAULT_RESPONSE_COMPRESSION_THRESHOLD_BYTES);
+  }
+
 }
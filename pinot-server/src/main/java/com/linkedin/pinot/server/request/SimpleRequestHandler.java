@@ -16,6 +16,7 @@
 package com.linkedin.pinot.server.request;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,6 +25,9 @@ import org.apache.thrift.protocol.TCompactProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.ServerMeter;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
@@ -34,16 +38,29 @@ import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.DataTableBuilder;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
 import com.linkedin.pinot.serde.SerDe;
-import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
+import com.linkedin.pinot.server.conf.ServerConf;
+import com.linkedin.pinot.transport.common.CompressionCodec;
+import com.linkedin.pinot.transport.common.ResponseCompressionUtils;
+import com.linkedin.pinot.transport.netty.ByteBufTransport;
+import com.linkedin.pinot.transport.netty.NettyServer.AsyncRequestHandler;
 
 
 /**
  * A simple implementation of RequestHandler.
  *
+ * When built with a {@link QueryScheduler}, requests are only deserialized on the Netty worker thread. They are
+ * executed and their responses serialized on the scheduler worker threads.
+ *
+ * Requests are decoded straight from the received buffer, and responses are handed to Netty as a buffer wrapping the
+ * serialized data table sections, so neither side goes through an intermediate byte array.
+ *
+ * Responses larger than the compression threshold are compressed with the codec the broker asked for in the instance
+ * request, if any. A negative threshold disables response compression.
  *
  */
-public class SimpleRequestHandler implements RequestHandler {
+public class SimpleRequestHandler implements AsyncRequestHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleRequestHandler.class);
 
@@ -51,65 +68,177 @@ public class SimpleRequestHandler implements RequestHandler {
 
   QueryExecutor _queryExecutor = null;
 
+  private final QueryScheduler _queryScheduler;
+
+  private int _responseCompressionThresholdBytes = ServerConf.DEFAULT_RESPONSE_COMPRESSION_THRESHOLD_BYTES;
+
   public SimpleRequestHandler(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
     _queryExecutor = queryExecutor;
     _serverMetrics = serverMetrics;
+    _queryScheduler = null;
+  }
+
+  public SimpleRequestHandler(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryExecutor = queryScheduler.getQueryExecutor();
+    _serverMetrics = serverMetrics;
+    _queryScheduler = queryScheduler;
+  }
+
+  public void setResponseCompressionThresholdBytes(int responseCompressionThresholdBytes) {
+    _responseCompressionThresholdBytes = responseCompressionThresholdBytes;
   }
 
   @Override
   public byte[] processRequest(ByteBuf request) {
+    ByteBuf response = processRequestInternal(request);
+    try {
+      byte[] responseBytes = new byte[response.readableBytes()];
+      response.readBytes(responseBytes);
+      return responseBytes;
+    } finally {
+      response.release();
+    }
+  }
+
+  private ByteBuf processRequestInternal(ByteBuf request) {
     long queryStartTime = System.nanoTime();
     _serverMetrics.addMeteredValue(null, ServerMeter.QUERIES, 1);
 
     LOGGER.debug("processing request : {}", request);
 
     DataTable instanceResponse = null;
-
-    byte[] byteArray = new byte[request.readableBytes()];
-    request.readBytes(byteArray);
-    SerDe serDe = new SerDe(new TCompactProtocol.Factory());
     BrokerRequest brokerRequest = null;
+    CompressionCodec compressionCodec = CompressionCodec.NONE;
     try {
-      final InstanceRequest queryRequest = new InstanceRequest();
-      serDe.deserialize(queryRequest, byteArray);
-      long deserRequestTime = System.nanoTime();
-      _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.TOTAL_QUERY_TIME, deserRequestTime - queryStartTime);
-      LOGGER.info("instance request : {}", queryRequest);
+      final InstanceRequest queryRequest = deserializeRequest(request, queryStartTime);
       brokerRequest = queryRequest.getQuery();
+      compressionCodec = getResponseCompressionCodec(queryRequest);
 
       long startTime = System.nanoTime();
       instanceResponse = _queryExecutor.processQuery(queryRequest);
       long totalNanos = System.nanoTime() - startTime;
       _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.QUERY_PROCESSING, totalNanos);
     } catch (Exception e) {
-      LOGGER.error("Got exception while processing request. Returning error response", e);
-      _serverMetrics.addMeteredValue(null, ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
-      DataTableBuilder dataTableBuilder = new DataTableBuilder(null);
-      List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
-      ProcessingException exception = QueryException.INTERNAL_ERROR.deepCopy();
-      exception.setMessage(e.getMessage());
-      exceptions.add(exception);
-      instanceResponse = dataTableBuilder.buildExceptions();
+      instanceResponse = getErrorResponse(e);
+    }
+    return serializeResponse(brokerRequest, instanceResponse, compressionCodec, queryStartTime);
+  }
+
+  @Override
+  public ListenableFuture<ByteBuf> processRequestAsync(ByteBuf request) {
+    if (_queryScheduler == null) {
+      return Futures.immediateFuture(processRequestInternal(request));
+    }
+    final long queryStartTime = System.nanoTime();
+    _serverMetrics.addMeteredValue(null, ServerMeter.QUERIES, 1);
+
+    LOGGER.debug("processing request : {}", request);
+
+    final InstanceRequest queryRequest;
+    try {
+      queryRequest = deserializeRequest(request, queryStartTime);
+    } catch (Exception e) {
+      return Futures.immediateFuture(
+          serializeResponse(null, getErrorResponse(e), CompressionCodec.NONE, queryStartTime));
+    }
+    final BrokerRequest brokerRequest = queryRequest.getQuery();
+    final CompressionCodec compressionCodec = getResponseCompressionCodec(queryRequest);
+    final long startTime = System.nanoTime();
+    return Futures.transform(_queryScheduler.submit(queryRequest), new Function<DataTable, ByteBuf>() {
+      @Override
+      public ByteBuf apply(DataTable instanceResponse) {
+        _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.QUERY_PROCESSING, System.nanoTime() - startTime);
+        return serializeResponse(brokerRequest, instanceResponse, compressionCodec, queryStartTime);
+      }
+    });
+  }
+
+  private InstanceRequest deserializeRequest(ByteBuf request, long queryStartTime) throws Exception {
+    SerDe serDe = new SerDe(new TCompactProtocol.Factory());
+    final InstanceRequest queryRequest = new InstanceRequest();
+    serDe.deserialize(queryRequest, new ByteBufTransport(request));
+    long deserRequestTime = System.nanoTime();
+    _serverMetrics.addPhaseTiming(null, ServerQueryPhase.TOTAL_QUERY_TIME, deserRequestTime - queryStartTime);
+    LOGGER.info("instance request : {}", queryRequest);
+    return queryRequest;
+  }
+
+  /**
+   * Returns the codec the broker asked the response to be compressed with, or NONE if it did not ask for one or asked
+   * for one this server does not know about.
+   */
+  private CompressionCodec getResponseCompressionCodec(InstanceRequest queryRequest) {
+    if (!queryRequest.isSetResponseCompressionCodec()) {
+      return CompressionCodec.NONE;
     }
+    CompressionCodec codec = CompressionCodec.fromId(queryRequest.getResponseCompressionCodec());
+    if (codec == null) {
+      LOGGER.warn("Unsupported response compression codec id {}, sending uncompressed response",
+          queryRequest.getResponseCompressionCodec());
+      return CompressionCodec.NONE;
+    }
+    return codec;
+  }
+
+  private DataTable getErrorResponse(Exception e) {
+    LOGGER.error("Got exception while processing request. Returning error response", e);
+    _serverMetrics.addMeteredValue(null, ServerMeter.UNCAUGHT_EXCEPTIONS, 1);
+    DataTableBuilder dataTableBuilder = new DataTableBuilder(null);
+    List<ProcessingException> exceptions = new ArrayList<ProcessingException>();
+    ProcessingException exception = QueryException.INTERNAL_ERROR.deepCopy();
+    exception.setMessage(e.getMessage());
+    exceptions.add(exception);
+    return dataTableBuilder.buildExceptions();
+  }
 
-    byte[] responseByte;
+  /**
+   * The returned buffer wraps the sections of the serialized data table rather than copying them.
+   */
+  private ByteBuf serializeResponse(BrokerRequest brokerRequest, DataTable instanceResponse,
+      CompressionCodec compressionCodec, long queryStartTime) {
+    ByteBuf responseBuf;
     long serializationStartTime = System.nanoTime();
     try {
       if (instanceResponse == null) {
         LOGGER.warn("Instance response is null.");
-        responseByte = new byte[0];
+        responseBuf = Unpooled.EMPTY_BUFFER;
       } else {
-        responseByte = instanceResponse.toBytes();
+        responseBuf = Unpooled.wrappedBuffer(instanceResponse.toByteBuffers());
       }
     } catch (Exception e) {
       _serverMetrics.addMeteredValue(null, ServerMeter.RESPONSE_SERIALIZATION_EXCEPTIONS, 1);
       LOGGER.error("Got exception while serializing response.", e);
-      responseByte = null;
+      responseBuf = Unpooled.EMPTY_BUFFER;
     }
     long serializationEndTime = System.nanoTime();
     _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.RESPONSE_SERIALIZATION, serializationEndTime - serializationStartTime);
-    _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.TOTAL_QUERY_TIME, serializationEndTime - queryStartTime);
-    return responseByte;
+    if (compressionCodec != CompressionCodec.NONE && _responseCompressionThresholdBytes >= 0
+        && responseBuf.readableBytes() > _responseCompressionThresholdBytes) {
+      responseBuf = compressResponse(brokerRequest, responseBuf, compressionCodec);
+    }
+    _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.TOTAL_QUERY_TIME, System.nanoTime() - queryStartTime);
+    return responseBuf;
+  }
+
+  /**
+   * Falls back to the uncompressed response if it does not compress or compression fails, the broker can read both.
+   */
+  private ByteBuf compressResponse(BrokerRequest brokerRequest, ByteBuf responseBuf, CompressionCodec codec) {
+    long compressionStartTime = System.nanoTime();
+    try {
+      ByteBuf compressedBuf = ResponseCompressionUtils.compress(responseBuf, codec);
+      if (compressedBuf != null) {
+        responseBuf.release();
+        return compressedBuf;
+      }
+    } catch (Exception e) {
+      _serverMetrics.addMeteredValue(null, ServerMeter.RESPONSE_COMPRESSION_EXCEPTIONS, 1);
+      LOGGER.error("Got exception while compressing response with " + codec + ", sending it uncompressed.", e);
+    } finally {
+      _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.RESPONSE_COMPRESSION,
+          System.nanoTime() - compressionStartTime);
+    }
+    return responseBuf;
   }
 
 }
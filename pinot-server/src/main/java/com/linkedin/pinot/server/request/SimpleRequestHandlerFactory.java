@@ -17,6 +17,8 @@ package com.linkedin.pinot.server.request;
 
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
+import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
 
@@ -31,8 +33,12 @@ public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
 
   private QueryExecutor _queryExecutor;
 
+  private QueryScheduler _queryScheduler;
+
   private ServerMetrics _serverMetrics;
 
+  private int _responseCompressionThresholdBytes = ServerConf.DEFAULT_RESPONSE_COMPRESSION_THRESHOLD_BYTES;
+
   public SimpleRequestHandlerFactory() {
 
   }
@@ -42,13 +48,30 @@ public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
     _serverMetrics = serverMetrics;
   }
 
+  public SimpleRequestHandlerFactory(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryExecutor = queryScheduler.getQueryExecutor();
+    _queryScheduler = queryScheduler;
+    _serverMetrics = serverMetrics;
+  }
+
   public void init(QueryExecutor queryExecutor) {
     _queryExecutor = queryExecutor;
   }
 
+  public void setResponseCompressionThresholdBytes(int responseCompressionThresholdBytes) {
+    _responseCompressionThresholdBytes = responseCompressionThresholdBytes;
+  }
+
   @Override
   public RequestHandler createNewRequestHandler() {
-    return new SimpleRequestHandler(_queryExecutor, _serverMetrics);
+    SimpleRequestHandler requestHandler;
+    if (_queryScheduler != null) {
+      requestHandler = new SimpleRequestHandler(_queryScheduler, _serverMetrics);
+    } else {
+      requestHandler = new SimpleRequestHandler(_queryExecutor, _serverMetrics);
+    }
+    requestHandler.setResponseCompressionThresholdBytes(_responseCompressionThresholdBytes);
+    return requestHandler;
   }
 
 }
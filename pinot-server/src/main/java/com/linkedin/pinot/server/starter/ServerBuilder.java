@@ -28,6 +28,8 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.data.DataManager;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.core.query.scheduler.QueryScheduler;
+import com.linkedin.pinot.core.query.scheduler.QuerySchedulerFactory;
 import com.linkedin.pinot.server.conf.NettyServerConfig;
 import com.linkedin.pinot.server.conf.ServerConf;
 import com.linkedin.pinot.server.request.SimpleRequestHandlerFactory;
@@ -166,7 +168,30 @@ public class ServerBuilder {
       IllegalAccessException, ClassNotFoundException {
     String className = _serverConf.getRequestHandlerFactoryClassName();
     LOGGER.info("Trying to Load Request Handler Factory by Class : " + className);
-    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryExecutor, _serverMetrics);
+    SimpleRequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryExecutor, _serverMetrics);
+    requestHandlerFactory.setResponseCompressionThresholdBytes(_serverConf.getResponseCompressionThresholdBytes());
+    return requestHandlerFactory;
+  }
+
+  /**
+   * Build the QueryScheduler that executes queries off the Netty worker threads
+   * @param queryExecutor
+   * @return
+   */
+  public QueryScheduler buildQueryScheduler(QueryExecutor queryExecutor) {
+    LOGGER.info("Trying to build QueryScheduler");
+    return QuerySchedulerFactory.create(queryExecutor, _serverConf.getQuerySchedulerConfig(), _serverMetrics);
+  }
+
+  /**
+   * Build RequestHandlerFactory on top of a QueryScheduler
+   * @param queryScheduler
+   * @return
+   */
+  public RequestHandlerFactory buildRequestHandlerFactory(QueryScheduler queryScheduler) {
+    LOGGER.info("Trying to build Request Handler Factory with Query Scheduler : " + queryScheduler.getClass().getName());
+    SimpleRequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryScheduler, _serverMetrics);
+    requestHandlerFactory.setResponseCompressionThresholdBytes(_serverConf.getResponseCompressionThresholdBytes());
     return requestHandlerFactory;
   }
 
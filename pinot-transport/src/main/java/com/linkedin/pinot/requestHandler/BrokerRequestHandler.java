@@ -18,12 +18,16 @@ package com.linkedin.pinot.requestHandler;
 import io.netty.buffer.ByteBuf;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -37,7 +41,9 @@ import com.linkedin.pinot.common.config.TableNameBuilder;
 import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.BrokerQueryPhase;
+import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.query.StreamingReducer;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.request.FilterQuery;
@@ -47,6 +53,7 @@ import com.linkedin.pinot.common.response.BrokerResponse;
 import com.linkedin.pinot.common.response.ProcessingException;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.DataTableSerDeRegistry;
 import com.linkedin.pinot.routing.RoutingTable;
 import com.linkedin.pinot.routing.RoutingTableLookupRequest;
 import com.linkedin.pinot.routing.TimeBoundaryService;
@@ -54,12 +61,23 @@ import com.linkedin.pinot.routing.TimeBoundaryService.TimeBoundaryInfo;
 import com.linkedin.pinot.serde.SerDe;
 import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.CompressionCodec;
+import com.linkedin.pinot.transport.common.LatencyAwareReplicaSelection;
+import com.linkedin.pinot.transport.common.RandomReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
+import com.linkedin.pinot.transport.common.ReplicaSelection.ReplicaSelectionPolicy;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
+import com.linkedin.pinot.transport.common.ResponseCompressionUtils;
 import com.linkedin.pinot.transport.common.RoundRobinReplicaSelection;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.config.PerTableRoutingConfig;
+import com.linkedin.pinot.transport.config.RoutingTableConfig;
+import com.linkedin.pinot.transport.config.SpeculativeRequestConfig;
 import com.linkedin.pinot.transport.scattergather.ScatterGather;
 import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
 
 
 /**
@@ -79,20 +97,70 @@ public class BrokerRequestHandler {
   private final BrokerMetrics _brokerMetrics;
   private final TimeBoundaryService _timeBoundaryService;
   private final long _brokerTimeOut;
-
-  //TODO: Currently only using RoundRobin selection. But, this can be allowed to be configured.
-  private RoundRobinReplicaSelection _replicaSelection;
+  // Whether server responses are reduced one by one as they arrive, instead of after all of them are gathered
+  private final boolean _streamingReduce;
+  private final SpeculativeRequestConfig _speculativeRequestConfig;
+  // Codec servers are asked to compress their large responses with
+  private final CompressionCodec _responseCompressionCodec;
+  // Recent scatter-gather latencies (ms) of each table, to derive the delay of speculative requests from
+  private final ConcurrentHashMap<String, Histogram> _scatterGatherLatencyMap =
+      new ConcurrentHashMap<String, Histogram>();
+
+  // Replica selection for tables not configuring any other policy
+  private final ReplicaSelection _replicaSelection;
+  // Replica selection of each configured policy, shared by the tables using it
+  private final Map<ReplicaSelectionPolicy, ReplicaSelection> _replicaSelections;
+  private final Map<String, ReplicaSelectionPolicy> _tableReplicaSelectionPolicies;
+  // Cache of the broker responses, null if disabled
+  private final BrokerResultCache _resultCache;
 
   public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
       ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOut) {
+    this(table, timeBoundaryService, scatterGatherer, reduceService, brokerMetrics, brokerTimeOut, false,
+        new SpeculativeRequestConfig(), new RoutingTableConfig(), null);
+  }
+
+  public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
+      ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOut,
+      boolean streamingReduce, SpeculativeRequestConfig speculativeRequestConfig,
+      RoutingTableConfig routingTableConfig, BrokerResultCache resultCache) {
+    this(table, timeBoundaryService, scatterGatherer, reduceService, brokerMetrics, brokerTimeOut, streamingReduce,
+        speculativeRequestConfig, routingTableConfig, resultCache, CompressionCodec.NONE);
+  }
+
+  public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
+      ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOut,
+      boolean streamingReduce, SpeculativeRequestConfig speculativeRequestConfig,
+      RoutingTableConfig routingTableConfig, BrokerResultCache resultCache, CompressionCodec responseCompressionCodec) {
     _routingTable = table;
     _timeBoundaryService = timeBoundaryService;
     _scatterGatherer = scatterGatherer;
     _requestIdGen = new AtomicLong(0);
     _replicaSelection = new RoundRobinReplicaSelection();
+    _replicaSelections = new HashMap<ReplicaSelectionPolicy, ReplicaSelection>();
+    _replicaSelections.put(ReplicaSelectionPolicy.ROUND_ROBIN, _replicaSelection);
+    _replicaSelections.put(ReplicaSelectionPolicy.RANDOM, new RandomReplicaSelection(System.currentTimeMillis()));
+    _replicaSelections.put(ReplicaSelectionPolicy.LATENCY_AWARE, new LatencyAwareReplicaSelection());
+    _tableReplicaSelectionPolicies = new HashMap<String, ReplicaSelectionPolicy>();
+    for (Entry<String, PerTableRoutingConfig> entry : routingTableConfig.getPerTableRoutingCfg().entrySet()) {
+      ReplicaSelectionPolicy policy = entry.getValue().getReplicaSelectionPolicy();
+      if (!_replicaSelections.containsKey(policy)) {
+        LOGGER.warn("Replica selection policy {} is not supported for table {}, using {}", policy, entry.getKey(),
+            ReplicaSelectionPolicy.ROUND_ROBIN);
+        continue;
+      }
+      _tableReplicaSelectionPolicies.put(entry.getKey(), policy);
+    }
+    _resultCache = resultCache;
+    if (_resultCache != null) {
+      _routingTable.addRoutingTableChangeListener(_resultCache);
+    }
     _reduceService = reduceService;
     _brokerMetrics = brokerMetrics;
     _brokerTimeOut = brokerTimeOut;
+    _streamingReduce = streamingReduce;
+    _speculativeRequestConfig = speculativeRequestConfig;
+    _responseCompressionCodec = responseCompressionCodec;
   }
 
   /**
@@ -116,13 +184,46 @@ public class BrokerRequestHandler {
       return BrokerResponse.getNullBrokerResponse();
     }
     List<String> matchedTables = getMatchedTables(request);
+    if (matchedTables.isEmpty()) {
+      return BrokerResponse.getNullBrokerResponse();
+    }
+
+    // The key is computed before the table name of the request gets resolved
+    String resultCacheKey = getResultCacheKey(request, matchedTables);
+    if (resultCacheKey != null) {
+      BrokerResponse cachedResponse = _resultCache.get(resultCacheKey);
+      if (cachedResponse != null) {
+        _brokerMetrics.addMeteredValue(request, BrokerMeter.RESULT_CACHE_HITS, 1);
+        return cachedResponse;
+      }
+      _brokerMetrics.addMeteredValue(request, BrokerMeter.RESULT_CACHE_MISSES, 1);
+    }
+
+    Object response;
     if (matchedTables.size() > 1) {
-      return processFederatedBrokerRequest(request, overriddenSelection);
+      response = processFederatedBrokerRequest(request, overriddenSelection);
+    } else {
+      response = processSingleTableBrokerRequest(request, matchedTables.get(0), overriddenSelection);
+    }
+
+    if ((resultCacheKey != null) && (response instanceof BrokerResponse)) {
+      _resultCache.put(resultCacheKey, matchedTables, (BrokerResponse) response);
     }
-    if (matchedTables.size() == 1) {
-      return processSingleTableBrokerRequest(request, matchedTables.get(0), overriddenSelection);
+    return response;
+  }
+
+  /**
+   * Returns the key to cache the response of the request under, or null if it is not to be cached.
+   */
+  private String getResultCacheKey(BrokerRequest request, List<String> matchedTables) {
+    if (_resultCache == null) {
+      return null;
+    }
+    long[] segmentSetFingerprints = new long[matchedTables.size()];
+    for (int i = 0; i < matchedTables.size(); i++) {
+      segmentSetFingerprints[i] = _routingTable.getSegmentSetFingerprint(matchedTables.get(i));
     }
-    return BrokerResponse.getNullBrokerResponse();
+    return _resultCache.getKey(request, matchedTables, segmentSetFingerprints);
   }
 
   /**
@@ -234,7 +335,8 @@ public class BrokerRequestHandler {
       throws InterruptedException {
     // Step1
     final long routingStartTime = System.nanoTime();
-    RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
+    RoutingTableLookupRequest rtRequest =
+        new RoutingTableLookupRequest(request.getQuerySource().getTableName(), request);
     Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
     if (segmentServices == null || segmentServices.isEmpty()) {
       LOGGER.warn("Not found ServerInstances to Segments Mapping:");
@@ -246,11 +348,13 @@ public class BrokerRequestHandler {
 
     // Step 2-4
     final long scatterGatherStartTime = System.nanoTime();
-    ScatterGatherRequestImpl scatterRequest =
-        new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
-            ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
-            overriddenSelection, _requestIdGen.incrementAndGet(), _brokerTimeOut);
-    CompositeFuture<ServerInstance, ByteBuf> response = _scatterGatherer.scatterGather(scatterRequest);
+    CompositeFuture<ServerInstance, ByteBuf> response = scatterGather(request, segmentServices, overriddenSelection);
+
+    if (_streamingReduce) {
+      // Step 5-6 : Deserialize and reduce the responses as they arrive
+      return getStreamingReducedBrokerResponse(request, Collections.singletonList(response), scatterGatherStartTime,
+          false);
+    }
 
     //Step 5 - Deserialize Responses and build instance response map
     final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
@@ -274,12 +378,10 @@ public class BrokerRequestHandler {
         for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
           try {
             ByteBuf b = e.getValue();
-            byte[] b2 = new byte[b.readableBytes()];
-            if (b2 == null || b2.length == 0) {
+            if (b.readableBytes() == 0) {
               continue;
             }
-            b.readBytes(b2);
-            DataTable r2 = new DataTable(b2);
+            DataTable r2 = new DataTable(ResponseCompressionUtils.decompress(b.nioBuffer()));
             if (errors != null && errors.containsKey(e.getKey())) {
               Throwable throwable = errors.get(e.getKey());
               r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
@@ -324,7 +426,8 @@ public class BrokerRequestHandler {
         new HashMap<BrokerRequest, CompositeFuture<ServerInstance, ByteBuf>>();
     for (BrokerRequest request : requests) {
       final long routingStartTime = System.nanoTime();
-      RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
+      RoutingTableLookupRequest rtRequest =
+          new RoutingTableLookupRequest(request.getQuerySource().getTableName(), request);
       Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
       if (segmentServices == null || segmentServices.isEmpty()) {
         LOGGER.info("Not found ServerInstances to Segments Mapping for Table - " + rtRequest.getTableName());
@@ -338,14 +441,16 @@ public class BrokerRequestHandler {
 
       // Step 2-4
       scatterGatherStartTime = System.nanoTime();
-      ScatterGatherRequestImpl scatterRequest =
-          new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
-              ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
-              overriddenSelection, _requestIdGen.incrementAndGet(), _brokerTimeOut);
-      responseFuturesList.put(request, _scatterGatherer.scatterGather(scatterRequest));
+      responseFuturesList.put(request, scatterGather(request, segmentServices, overriddenSelection));
     }
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
+    if (_streamingReduce) {
+      // Step 5-6 : Deserialize and reduce the responses as they arrive
+      return getStreamingReducedBrokerResponse(federatedBrokerRequest, responseFuturesList.values(),
+          scatterGatherStartTime, true);
+    }
+
     long scatterGatherTime = 0;
     long deserializationTime = 0;
     //Step 5 - Deserialize Responses and build instance response map
@@ -373,12 +478,10 @@ public class BrokerRequestHandler {
           for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
             try {
               ByteBuf b = e.getValue();
-              byte[] b2 = new byte[b.readableBytes()];
-              if (b2 == null || b2.length == 0) {
+              if (b.readableBytes() == 0) {
                 continue;
               }
-              b.readBytes(b2);
-              DataTable r2 = new DataTable(b2);
+              DataTable r2 = new DataTable(ResponseCompressionUtils.decompress(b.nioBuffer()));
               // Hybrid requests may get response from same instance, so we need to distinguish them.
               ServerInstance decoratedServerInstance =
                   new ServerInstance(e.getKey().getHostname(), e.getKey().getPort(), responseSeq.incrementAndGet());
@@ -422,6 +525,146 @@ public class BrokerRequestHandler {
     }
   }
 
+  /**
+   * Scatters the request to the selected servers. When speculative requests are enabled for the table, segments
+   * whose server did not respond within the configured percentile of the recent scatter-gather latencies of the table
+   * are also queried on another replica.
+   */
+  private CompositeFuture<ServerInstance, ByteBuf> scatterGather(BrokerRequest request,
+      Map<ServerInstance, SegmentIdSet> segmentServices, BucketingSelection overriddenSelection)
+      throws InterruptedException {
+    final String tableName = request.getQuerySource().getTableName();
+    final boolean speculativeRequestsEnabled = _speculativeRequestConfig.getDelayPercentile(tableName) > 0;
+    long speculativeRequestDelayMs = -1;
+    if (speculativeRequestsEnabled) {
+      speculativeRequestDelayMs = getSpeculativeRequestDelayMs(tableName);
+    }
+    ScatterGatherRequestImpl scatterRequest =
+        new ScatterGatherRequestImpl(request, segmentServices, getReplicaSelection(tableName),
+            ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(),
+            (speculativeRequestDelayMs >= 0) ? 1 : 0, speculativeRequestDelayMs, _routingTable, overriddenSelection,
+            _requestIdGen.incrementAndGet(), _brokerTimeOut, _responseCompressionCodec);
+    final long scatterGatherStartTime = System.nanoTime();
+    final CompositeFuture<ServerInstance, ByteBuf> response = _scatterGatherer.scatterGather(scatterRequest);
+    if (speculativeRequestsEnabled) {
+      final Histogram scatterGatherLatency = getScatterGatherLatency(tableName);
+      response.addListener(new Runnable() {
+        @Override
+        public void run() {
+          scatterGatherLatency.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scatterGatherStartTime));
+        }
+      }, null);
+    }
+    return response;
+  }
+
+  /**
+   * Returns the replica selection configured for the table, either under its name or under its name without the
+   * table type suffix.
+   */
+  private ReplicaSelection getReplicaSelection(String tableName) {
+    ReplicaSelectionPolicy policy = _tableReplicaSelectionPolicies.get(tableName);
+    if (null == policy) {
+      policy = _tableReplicaSelectionPolicies.get(TableNameBuilder.extractRawTableName(tableName));
+    }
+    return (null == policy) ? _replicaSelection : _replicaSelections.get(policy);
+  }
+
+  /**
+   * Returns the delay (ms) after which speculative requests are sent for the table, or -1 if not enough scatter-gather
+   * latencies were recorded for the table yet.
+   */
+  private long getSpeculativeRequestDelayMs(String tableName) {
+    Histogram scatterGatherLatency = getScatterGatherLatency(tableName);
+    if (scatterGatherLatency.count() < _speculativeRequestConfig.getMinNumSamples()) {
+      return -1;
+    }
+    double quantile = Math.min(_speculativeRequestConfig.getDelayPercentile(tableName), 100) / 100;
+    long delayMs = (long) scatterGatherLatency.getSnapshot().getValue(quantile);
+    return Math.max(delayMs, _speculativeRequestConfig.getMinDelayMs());
+  }
+
+  private Histogram getScatterGatherLatency(String tableName) {
+    Histogram scatterGatherLatency = _scatterGatherLatencyMap.get(tableName);
+    if (scatterGatherLatency == null) {
+      // Biased histograms favor the recent latencies
+      scatterGatherLatency =
+          MetricsHelper.newHistogram(null, new MetricName(BrokerRequestHandler.class, tableName
+              + ".scatterGatherLatencyMs"), true);
+      _scatterGatherLatencyMap.putIfAbsent(tableName, scatterGatherLatency);
+    }
+    return scatterGatherLatency;
+  }
+
+  /**
+   * Deserializes the server responses and folds them into a {@link StreamingReducer} in the order they arrive, so the
+   * reduce overlaps with waiting for the slower servers and only one response has to be kept around at a time.
+   *
+   * @param request Broker request to reduce the responses for
+   * @param responseFutures Responses of the scatter gather requests
+   * @param scatterGatherStartTime Time the first request was scattered
+   * @param decorateServerInstances Whether to distinguish responses of the same instance for different requests
+   * @return Broker response
+   * @throws InterruptedException
+   */
+  private BrokerResponse getStreamingReducedBrokerResponse(BrokerRequest request,
+      Collection<CompositeFuture<ServerInstance, ByteBuf>> responseFutures, long scatterGatherStartTime,
+      boolean decorateServerInstances) throws InterruptedException {
+    StreamingReducer streamingReducer = _reduceService.getStreamingReducer(request);
+    int responseSeq = -1;
+    long deserializationTime = 0;
+    long reduceTime = 0;
+    for (CompositeFuture<ServerInstance, ByteBuf> response : responseFutures) {
+      ServerInstance serverInstance;
+      while ((serverInstance = response.takeCompletedKey()) != null) {
+        ByteBuf b = response.removeResponse(serverInstance);
+        Throwable throwable = response.getError().get(serverInstance);
+        if (throwable != null) {
+          _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+        }
+        if (b == null || b.readableBytes() == 0) {
+          continue;
+        }
+
+        final long deserializationStartTime = System.nanoTime();
+        DataTable dataTable;
+        try {
+          dataTable = new DataTable(ResponseCompressionUtils.decompress(b.nioBuffer()));
+          if (throwable != null) {
+            dataTable.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
+          }
+        } catch (Exception ex) {
+          LOGGER.error("Got exceptions in collect query result for instance " + serverInstance + ", error: "
+              + ex.getMessage(), ex);
+          _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
+          continue;
+        } finally {
+          deserializationTime += System.nanoTime() - deserializationStartTime;
+        }
+
+        if (decorateServerInstances) {
+          // Hybrid requests may get response from same instance, so we need to distinguish them.
+          serverInstance =
+              new ServerInstance(serverInstance.getHostname(), serverInstance.getPort(), ++responseSeq);
+        }
+        final long reduceStartTime = System.nanoTime();
+        streamingReducer.reduce(serverInstance, dataTable);
+        reduceTime += System.nanoTime() - reduceStartTime;
+      }
+    }
+    final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime - deserializationTime - reduceTime;
+
+    final long reduceStartTime = System.nanoTime();
+    BrokerResponse brokerResponse = streamingReducer.getBrokerResponse();
+    reduceTime += System.nanoTime() - reduceStartTime;
+
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.REDUCE, reduceTime);
+    _brokerMetrics.addMeteredValue(request, BrokerMeter.DOCUMENTS_SCANNED, brokerResponse.getNumDocsScanned());
+    return brokerResponse;
+  }
+
   public static class ScatterGatherRequestImpl implements ScatterGatherRequest {
     private final BrokerRequest _brokerRequest;
     private final Map<ServerInstance, SegmentIdSet> _segmentServices;
@@ -429,22 +672,32 @@ public class BrokerRequestHandler {
     private final ReplicaSelectionGranularity _replicaSelectionGranularity;
     private final Object _hashKey;
     private final int _numSpeculativeRequests;
+    private final long _speculativeRequestDelayMs;
+    private final RoutingTable _routingTable;
     private final BucketingSelection _bucketingSelection;
     private final long _requestId;
     private final long _requestTimeoutMs;
+    private final long _requestStartTimeMs;
+    private final CompressionCodec _responseCompressionCodec;
 
     public ScatterGatherRequestImpl(BrokerRequest request, Map<ServerInstance, SegmentIdSet> segmentServices,
         ReplicaSelection replicaSelection, ReplicaSelectionGranularity replicaSelectionGranularity, Object hashKey,
-        int numSpeculativeRequests, BucketingSelection bucketingSelection, long requestId, long requestTimeoutMs) {
+        int numSpeculativeRequests, long speculativeRequestDelayMs, RoutingTable routingTable,
+        BucketingSelection bucketingSelection, long requestId, long requestTimeoutMs,
+        CompressionCodec responseCompressionCodec) {
       _brokerRequest = request;
       _segmentServices = segmentServices;
       _replicaSelection = replicaSelection;
       _replicaSelectionGranularity = replicaSelectionGranularity;
       _hashKey = hashKey;
       _numSpeculativeRequests = numSpeculativeRequests;
+      _speculativeRequestDelayMs = speculativeRequestDelayMs;
+      _routingTable = routingTable;
       _bucketingSelection = bucketingSelection;
       _requestId = requestId;
       _requestTimeoutMs = requestTimeoutMs;
+      _requestStartTimeMs = System.currentTimeMillis();
+      _responseCompressionCodec = responseCompressionCodec;
     }
 
     @Override
@@ -457,8 +710,15 @@ public class BrokerRequestHandler {
       InstanceRequest r = new InstanceRequest();
       r.setRequestId(_requestId);
       r.setEnableTrace(_brokerRequest.isEnableTrace());
+      r.setDataTableVersion(DataTableSerDeRegistry.getInstance().getMaxSupportedDataTableVersion());
       r.setQuery(_brokerRequest);
       r.setSearchSegments(querySegments.getSegmentsNameList());
+      // Servers stop working on the query once the time the broker still waits for it runs out
+      r.setTimeoutMs(Math.max(0L, _requestTimeoutMs - (System.currentTimeMillis() - _requestStartTimeMs)));
+      // Older servers ignore the codec and keep sending uncompressed responses, which are still understood
+      if (_responseCompressionCodec != CompressionCodec.NONE) {
+        r.setResponseCompressionCodec(_responseCompressionCodec.getId());
+      }
 
       // _serde is not threadsafe.
       return getSerde().serialize(r);
@@ -485,6 +745,16 @@ public class BrokerRequestHandler {
       return _numSpeculativeRequests;
     }
 
+    @Override
+    public long getSpeculativeRequestDelayMS() {
+      return _speculativeRequestDelayMs;
+    }
+
+    @Override
+    public List<ServerInstance> getReplicas(SegmentId segmentId) {
+      return _routingTable.findReplicas(_brokerRequest.getQuerySource().getTableName(), segmentId);
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return _bucketingSelection;
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.routing.RoutingTableChangeListener;
+
+
+/**
+ * Caches the broker responses of queries, in least recently used order and bounded in number of entries.
+ *
+ * Responses are keyed on the canonical form of the broker request and the fingerprints of the segments routed to for
+ * each of the queried tables (see {@link com.linkedin.pinot.routing.RoutingTable#getSegmentSetFingerprint(String)}),
+ * so a response is never served once segments were added, removed or replaced. Entries of a table are also dropped
+ * when its routing changes, and expire after a TTL which is shorter for realtime tables, as consuming segments keep
+ * changing without any change of their routing.
+ */
+@ThreadSafe
+public class BrokerResultCache implements RoutingTableChangeListener {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BrokerResultCache.class);
+
+  private final long _offlineTtlMs;
+  private final long _realtimeTtlMs;
+  // Access ordered, so that the eldest entry is the least recently used one
+  private final LinkedHashMap<String, CacheEntry> _cache;
+
+  public BrokerResultCache(final int maxNumEntries, long offlineTtlMs, long realtimeTtlMs) {
+    _offlineTtlMs = offlineTtlMs;
+    _realtimeTtlMs = realtimeTtlMs;
+    _cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        return size() > maxNumEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the key to cache the response of the request under, or null if the response cannot be cached.
+   *
+   * @param request Broker request, as received by the broker
+   * @param tableNames Tables the request is routed to
+   * @param segmentSetFingerprints Fingerprints of the segments routed to for each of the tables
+   */
+  public String getKey(BrokerRequest request, List<String> tableNames, long[] segmentSetFingerprints) {
+    if (request.isEnableTrace()) {
+      // Traces are specific to each execution
+      return null;
+    }
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < tableNames.size(); i++) {
+      if (segmentSetFingerprints[i] == -1) {
+        return null;
+      }
+      key.append(tableNames.get(i)).append(':').append(segmentSetFingerprints[i]).append(';');
+    }
+    // Bucket hash key only affects the replicas being queried
+    BrokerRequest canonicalRequest = request.deepCopy();
+    canonicalRequest.unsetBucketHashKey();
+    key.append(canonicalRequest.toString());
+    return key.toString();
+  }
+
+  /**
+   * Returns a copy of the cached response for the key, or null if there is none or it expired. Copies are handed out,
+   * so that callers can modify the response without affecting later hits.
+   */
+  public BrokerResponse get(String key) {
+    BrokerResponse brokerResponse;
+    synchronized (_cache) {
+      CacheEntry entry = _cache.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.getExpirationTimeMs() < System.currentTimeMillis()) {
+        _cache.remove(key);
+        return null;
+      }
+      brokerResponse = entry.getBrokerResponse();
+    }
+    return brokerResponse.deepCopy();
+  }
+
+  /**
+   * Caches a copy of the response of a request to the given tables. Responses with exceptions and partial responses
+   * are not cached.
+   */
+  public void put(String key, List<String> tableNames, BrokerResponse brokerResponse) {
+    if ((brokerResponse == null) || (brokerResponse.getExceptionsSize() > 0) || brokerResponse.isPartialResult()) {
+      return;
+    }
+    long ttlMs = _offlineTtlMs;
+    for (String tableName : tableNames) {
+      if (TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.REALTIME) {
+        ttlMs = Math.min(ttlMs, _realtimeTtlMs);
+      }
+    }
+    if (ttlMs <= 0) {
+      return;
+    }
+    CacheEntry entry = new CacheEntry(tableNames, brokerResponse.deepCopy(), System.currentTimeMillis() + ttlMs);
+    synchronized (_cache) {
+      _cache.put(key, entry);
+    }
+  }
+
+  /**
+   * Drops the cached responses of all the requests to the table.
+   */
+  public void invalidate(String tableName) {
+    int numInvalidated = 0;
+    synchronized (_cache) {
+      Iterator<CacheEntry> iterator = _cache.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().getTableNames().contains(tableName)) {
+          iterator.remove();
+          numInvalidated++;
+        }
+      }
+    }
+    LOGGER.info("Invalidated {} cached responses for table : {}", numInvalidated, tableName);
+  }
+
+  @Override
+  public void onRoutingTableChange(String tableName) {
+    invalidate(tableName);
+  }
+
+  public int size() {
+    synchronized (_cache) {
+      return _cache.size();
+    }
+  }
+
+  private static class CacheEntry {
+    private final List<String> _tableNames;
+    private final BrokerResponse _brokerResponse;
+    private final long _expirationTimeMs;
+
+    public CacheEntry(List<String> tableNames, BrokerResponse brokerResponse, long expirationTimeMs) {
+      _tableNames = tableNames;
+      _brokerResponse = brokerResponse;
+      _expirationTimeMs = expirationTimeMs;
+    }
+
+    public List<String> getTableNames() {
+      return _tableNames;
+    }
+
+    public BrokerResponse getBrokerResponse() {
+      return _brokerResponse;
+    }
+
+    public long getExpirationTimeMs() {
+      return _expirationTimeMs;
+    }
+  }
+}
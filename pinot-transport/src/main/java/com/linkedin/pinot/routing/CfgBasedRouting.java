@@ -15,9 +15,11 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 import com.linkedin.pinot.transport.config.PerTableRoutingConfig;
 import com.linkedin.pinot.transport.config.RoutingTableConfig;
@@ -50,6 +52,23 @@ public class CfgBasedRouting implements RoutingTable {
     return cfg.buildRequestRoutingMap();
   }
 
+  @Override
+  public List<ServerInstance> findReplicas(String tableName, SegmentId segmentId) {
+    // Config based routing does not route individual segments
+    return null;
+  }
+
+  @Override
+  public long getSegmentSetFingerprint(String tableName) {
+    // Segments served by the configured servers are not known
+    return -1;
+  }
+
+  @Override
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    // Config based routing never changes
+  }
+
   @Override
   public void start() {
     // Nothing to be done here
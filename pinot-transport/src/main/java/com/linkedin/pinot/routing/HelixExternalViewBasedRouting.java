@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -22,6 +23,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 import org.apache.helix.model.ExternalView;
@@ -30,12 +33,18 @@ import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.linkedin.pinot.common.config.AbstractTableConfig;
 import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.metadata.segment.SegmentZKMetadata;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
 import com.linkedin.pinot.routing.builder.BalancedRandomRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.KafkaHighLevelConsumerBasedRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.RoutingTableBuilder;
+import com.linkedin.pinot.routing.builder.RoutingTableInstancePruner;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -54,14 +63,25 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
 
   private final Map<String, List<ServerToSegmentSetMap>> _brokerRoutingTable =
       new ConcurrentHashMap<String, List<ServerToSegmentSetMap>>();
+  // Table name to segment name to the servers which are serving the segment
+  private final Map<String, Map<String, List<ServerInstance>>> _segmentReplicasMap =
+      new ConcurrentHashMap<String, Map<String, List<ServerInstance>>>();
+  // Table name to the fingerprint of its routed segments and their CRCs
+  private final Map<String, Long> _segmentSetFingerprintMap = new ConcurrentHashMap<String, Long>();
+  // Offline table name to the time ranges of its segments
+  private final Map<String, SegmentTimeRanges> _segmentTimeRangesMap = new ConcurrentHashMap<String, SegmentTimeRanges>();
+  private final List<RoutingTableChangeListener> _routingTableChangeListeners =
+      new CopyOnWriteArrayList<RoutingTableChangeListener>();
   private final Map<String, Long> _routingTableModifiedTimeStampMap = new HashMap<String, Long>();
   private final Random _random = new Random(System.currentTimeMillis());
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
 
   public HelixExternalViewBasedRouting(RoutingTableBuilder defaultOfflineRoutingTableBuilder,
       RoutingTableBuilder defaultRealtimeRoutingTableBuilder, Map<String, RoutingTableBuilder> routingTableBuilderMap,
       ZkHelixPropertyStore<ZNRecord> propertyStore) {
     _timeBoundaryService = new HelixExternalViewBasedTimeBoundaryService(propertyStore);
+    _propertyStore = propertyStore;
     if (defaultOfflineRoutingTableBuilder != null) {
       _defaultOfflineRoutingTableBuilder = defaultOfflineRoutingTableBuilder;
     } else {
@@ -87,7 +107,33 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       return null;
     }
     List<ServerToSegmentSetMap> serverToSegmentSetMaps = _brokerRoutingTable.get(tableName);
-    return serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    Map<ServerInstance, SegmentIdSet> routing =
+        serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    SegmentTimeRanges segmentTimeRanges = _segmentTimeRangesMap.get(tableName);
+    if (request.getBrokerRequest() == null || segmentTimeRanges == null) {
+      return routing;
+    }
+    return segmentTimeRanges.prune(routing, request.getBrokerRequest());
+  }
+
+  @Override
+  public List<ServerInstance> findReplicas(String tableName, SegmentId segmentId) {
+    Map<String, List<ServerInstance>> segmentReplicas = _segmentReplicasMap.get(tableName);
+    if (segmentReplicas == null) {
+      return null;
+    }
+    return segmentReplicas.get(segmentId.getSegmentId());
+  }
+
+  @Override
+  public long getSegmentSetFingerprint(String tableName) {
+    Long fingerprint = _segmentSetFingerprintMap.get(tableName);
+    return (fingerprint == null) ? -1 : fingerprint;
+  }
+
+  @Override
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener) {
+    _routingTableChangeListeners.add(listener);
   }
 
   @Override
@@ -141,15 +187,40 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     if (_routingTableBuilderMap.containsKey(tableName) && (_routingTableBuilderMap.get(tableName) != null)) {
       routingTableBuilder = _routingTableBuilderMap.get(tableName);
     }
+    // Routing table builders may modify the external view, so compute the replicas first
+    try {
+      _segmentReplicasMap.put(tableName, computeSegmentReplicas(externalView, instanceConfigList));
+    } catch (Exception e) {
+      LOGGER.error("Failed to compute the segment replicas for table : " + tableName, e);
+    }
     LOGGER.info("Trying to compute routing table for table : " + tableName + ",by : " + routingTableBuilder);
+    List<ServerToSegmentSetMap> serverToSegmentSetMap = null;
     try {
-      List<ServerToSegmentSetMap> serverToSegmentSetMap =
+      serverToSegmentSetMap =
           routingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
-
       _brokerRoutingTable.put(tableName, serverToSegmentSetMap);
     } catch (Exception e) {
       LOGGER.error("Failed to compute/update the routing table" + e.getCause(), e);
     }
+    if (serverToSegmentSetMap != null) {
+      // The segment metadata comes from ZK, failing to read it must not hold back the routing table update
+      List<? extends SegmentZKMetadata> segmentZKMetadataList = null;
+      try {
+        segmentZKMetadataList = getSegmentZKMetadataList(tableName);
+        updateSegmentTimeRanges(tableName, segmentZKMetadataList);
+      } catch (Exception e) {
+        LOGGER.error("Failed to read the segment metadata for table : " + tableName
+            + ", keeping the previous segment time ranges", e);
+      }
+      try {
+        if (segmentZKMetadataList == null) {
+          segmentZKMetadataList = new ArrayList<SegmentZKMetadata>();
+        }
+        updateSegmentSetFingerprint(tableName, serverToSegmentSetMap, segmentZKMetadataList);
+      } catch (Exception e) {
+        LOGGER.error("Failed to update the segment set fingerprint for table : " + tableName, e);
+      }
+    }
     try {
       LOGGER.info("Trying to compute time boundary service for table : " + tableName);
       _timeBoundaryService.updateTimeBoundaryService(externalView);
@@ -159,13 +230,151 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
 
   }
 
+  private static Map<String, List<ServerInstance>> computeSegmentReplicas(ExternalView externalView,
+      List<InstanceConfig> instanceConfigList) {
+    RoutingTableInstancePruner pruner = new RoutingTableInstancePruner(instanceConfigList);
+    Map<String, ServerInstance> serverInstanceMap = new HashMap<String, ServerInstance>();
+    Map<String, List<ServerInstance>> segmentReplicas = new HashMap<String, List<ServerInstance>>();
+    for (String segment : externalView.getPartitionSet()) {
+      Map<String, String> instanceToStateMap = externalView.getStateMap(segment);
+      List<ServerInstance> replicas = new ArrayList<ServerInstance>(instanceToStateMap.size());
+      for (Map.Entry<String, String> entry : instanceToStateMap.entrySet()) {
+        String instance = entry.getKey();
+        if (!"ONLINE".equals(entry.getValue()) || pruner.isShuttingDown(instance)) {
+          continue;
+        }
+        ServerInstance serverInstance = serverInstanceMap.get(instance);
+        if (serverInstance == null) {
+          serverInstance = ServerToSegmentSetMap.getServerInstance(instance);
+          serverInstanceMap.put(instance, serverInstance);
+        }
+        replicas.add(serverInstance);
+      }
+      segmentReplicas.put(segment, replicas);
+    }
+    return segmentReplicas;
+  }
+
+  /**
+   * Fingerprints the segments routed to for the table with their CRCs, and notifies the listeners if it changed.
+   * The fingerprint does not depend on the order of the segments, nor on which servers they are routed to.
+   */
+  private void updateSegmentSetFingerprint(String tableName, List<ServerToSegmentSetMap> serverToSegmentSetMaps,
+      List<? extends SegmentZKMetadata> segmentZKMetadataList) {
+    long fingerprint = 0;
+    if (!serverToSegmentSetMaps.isEmpty()) {
+      Map<String, Long> segmentCrcs = new HashMap<String, Long>();
+      for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+        segmentCrcs.put(segmentZKMetadata.getSegmentName(), segmentZKMetadata.getCrc());
+      }
+      ServerToSegmentSetMap serverToSegmentSetMap = serverToSegmentSetMaps.get(0);
+      long numSegments = 0;
+      for (String server : serverToSegmentSetMap.getServerSet()) {
+        for (String segment : serverToSegmentSetMap.getSegmentSet(server)) {
+          Long crc = segmentCrcs.get(segment);
+          fingerprint += mix(((long) segment.hashCode() << 32) ^ ((crc == null) ? -1 : crc));
+          numSegments++;
+        }
+      }
+      fingerprint = mix(fingerprint + numSegments);
+    }
+    // Keep -1 for tables whose segments are not tracked
+    if (fingerprint == -1) {
+      fingerprint = 0;
+    }
+    Long previousFingerprint = _segmentSetFingerprintMap.put(tableName, fingerprint);
+    if ((previousFingerprint == null) || (previousFingerprint != fingerprint)) {
+      LOGGER.info("Segments routed to for table : " + tableName + " changed");
+      notifyRoutingTableChange(tableName);
+    }
+  }
+
+  private List<? extends SegmentZKMetadata> getSegmentZKMetadataList(String tableName) {
+    if (_propertyStore == null) {
+      return new ArrayList<SegmentZKMetadata>();
+    }
+    if (TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.REALTIME) {
+      return ZKMetadataProvider.getRealtimeSegmentZKMetadataListForTable(_propertyStore, tableName);
+    }
+    return ZKMetadataProvider.getOfflineSegmentZKMetadataListForTable(_propertyStore, tableName);
+  }
+
+  /**
+   * Keeps the time ranges of the segments of an offline table, in the time unit of the table, so that queries with a
+   * time filter are only routed to the segments which can match it.
+   */
+  private void updateSegmentTimeRanges(String tableName, List<? extends SegmentZKMetadata> segmentZKMetadataList) {
+    if (_propertyStore == null || TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.REALTIME) {
+      return;
+    }
+    try {
+      AbstractTableConfig tableConfig = ZKMetadataProvider.getOfflineTableConfig(_propertyStore, tableName);
+      String timeColumn = tableConfig.getValidationConfig().getTimeColumnName();
+      TimeUnit tableTimeUnit =
+          HelixExternalViewBasedTimeBoundaryService.getTimeUnitFromString(tableConfig.getValidationConfig()
+              .getTimeType());
+      if (timeColumn == null || tableTimeUnit == null) {
+        _segmentTimeRangesMap.remove(tableName);
+        return;
+      }
+      Map<String, long[]> segmentTimeRanges = new HashMap<String, long[]>();
+      for (SegmentZKMetadata segmentZKMetadata : segmentZKMetadataList) {
+        OfflineSegmentZKMetadata offlineSegmentZKMetadata = (OfflineSegmentZKMetadata) segmentZKMetadata;
+        long startTime = offlineSegmentZKMetadata.getStartTime();
+        long endTime = offlineSegmentZKMetadata.getEndTime();
+        if (endTime <= 0 || startTime > endTime) {
+          continue;
+        }
+        TimeUnit segmentTimeUnit = offlineSegmentZKMetadata.getTimeUnit();
+        if (segmentTimeUnit != null && segmentTimeUnit != tableTimeUnit) {
+          startTime = tableTimeUnit.convert(startTime, segmentTimeUnit);
+          if (segmentTimeUnit.toMillis(1) > tableTimeUnit.toMillis(1)) {
+            // The end time covers a whole unit of the segment, eg. the last hour of the end day
+            endTime = tableTimeUnit.convert(endTime + 1, segmentTimeUnit) - 1;
+          } else {
+            endTime = tableTimeUnit.convert(endTime, segmentTimeUnit);
+          }
+        }
+        segmentTimeRanges.put(offlineSegmentZKMetadata.getSegmentName(), new long[] { startTime, endTime });
+      }
+      _segmentTimeRangesMap.put(tableName, new SegmentTimeRanges(timeColumn, segmentTimeRanges));
+    } catch (Exception e) {
+      LOGGER.warn("Failed to compute the segment time ranges for table : " + tableName + ", not pruning on time", e);
+      _segmentTimeRangesMap.remove(tableName);
+    }
+  }
+
+  private static long mix(long h) {
+    // Finalizer of MurmurHash3, spreads every input bit over the whole output
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private void notifyRoutingTableChange(String tableName) {
+    for (RoutingTableChangeListener listener : _routingTableChangeListeners) {
+      try {
+        listener.onRoutingTableChange(tableName);
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while notifying routing table change for table : " + tableName, e);
+      }
+    }
+  }
+
   public synchronized void markDataResourceOffline(String tableName) {
     LOGGER.info("Trying to remove data table from broker : " + tableName);
     if (_dataTableSet.contains(tableName)) {
       _dataTableSet.remove(tableName);
       _brokerRoutingTable.remove(tableName);
+      _segmentReplicasMap.remove(tableName);
+      _segmentSetFingerprintMap.remove(tableName);
+      _segmentTimeRangesMap.remove(tableName);
       _routingTableModifiedTimeStampMap.remove(tableName);
       _timeBoundaryService.remove(tableName);
+      notifyRoutingTableChange(tableName);
     }
   }
 
@@ -15,9 +15,11 @@
  */
 package com.linkedin.pinot.routing;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -32,6 +34,26 @@ public interface RoutingTable {
    */
   public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request);
 
+  /**
+   * Return all the servers which can serve the segment of the table, eg. to send speculative requests to.
+   *
+   * @return Servers hosting the segment, or null if they are not known.
+   */
+  public List<ServerInstance> findReplicas(String tableName, SegmentId segmentId);
+
+  /**
+   * Return a fingerprint of the segments routed to for the table and of their CRCs. It changes whenever a segment is
+   * added, removed or replaced, so results computed on the table can be cached under it.
+   *
+   * @return Fingerprint of the routed segments, or -1 if the segments of the table are not tracked.
+   */
+  public long getSegmentSetFingerprint(String tableName);
+
+  /**
+   * Register a listener to be notified when the segments routed to for a table change.
+   */
+  public void addRoutingTableChangeListener(RoutingTableChangeListener listener);
+
   /**
    * Initialize and start the Routing table population
    */
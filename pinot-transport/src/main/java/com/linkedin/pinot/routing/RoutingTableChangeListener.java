@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+/**
+ * Gets notified by the routing table when the segments routed to for a table change.
+ */
+public interface RoutingTableChangeListener {
+
+  /**
+   * Called when the set of segments routed to for the table or any of their CRCs changed, or when the table was
+   * removed from the routing table.
+   *
+   * @param tableName Table whose routing changed
+   */
+  public void onRoutingTableChange(String tableName);
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+/**
+ * Time ranges of the segments of an offline table, in the time unit of the table, used to prune the segments that
+ * cannot match the time filter of a query before scattering it.
+ *
+ * Only EQUALITY, IN and RANGE predicates on the time column at the top level of the filter, or under top level ANDs,
+ * narrow the time range of a query. Segments without a time range are never pruned.
+ */
+public class SegmentTimeRanges {
+  private final String _timeColumn;
+  // Segment name to its start and end times, both inclusive
+  private final Map<String, long[]> _segmentTimeRanges;
+
+  public SegmentTimeRanges(String timeColumn, Map<String, long[]> segmentTimeRanges) {
+    _timeColumn = timeColumn;
+    _segmentTimeRanges = segmentTimeRanges;
+  }
+
+  public String getTimeColumn() {
+    return _timeColumn;
+  }
+
+  /**
+   * Returns the routing restricted to the segments which can match the time filter of the request, leaving out the
+   * servers with no such segment. The given routing is returned as is when the request has no time filter.
+   *
+   * When no segment can match, one segment is still kept so that the query returns a well formed empty result.
+   */
+  public Map<ServerInstance, SegmentIdSet> prune(Map<ServerInstance, SegmentIdSet> routing, BrokerRequest request) {
+    if (routing == null || request.getFilterQuery() == null) {
+      return routing;
+    }
+    long[] queryTimeRange = getQueryTimeRange(RequestUtils.generateFilterQueryTree(request));
+    if (queryTimeRange == null) {
+      return routing;
+    }
+    Map<ServerInstance, SegmentIdSet> prunedRouting = new HashMap<ServerInstance, SegmentIdSet>();
+    ServerInstance anyServer = null;
+    SegmentId anySegment = null;
+    for (Map.Entry<ServerInstance, SegmentIdSet> entry : routing.entrySet()) {
+      SegmentIdSet prunedSegments = null;
+      for (SegmentId segment : entry.getValue().getSegments()) {
+        if (canMatch(segment.getSegmentId(), queryTimeRange)) {
+          if (prunedSegments == null) {
+            prunedSegments = new SegmentIdSet();
+            prunedRouting.put(entry.getKey(), prunedSegments);
+          }
+          prunedSegments.addSegment(segment);
+        } else if (anySegment == null) {
+          anyServer = entry.getKey();
+          anySegment = segment;
+        }
+      }
+    }
+    if (prunedRouting.isEmpty() && anySegment != null) {
+      SegmentIdSet segments = new SegmentIdSet();
+      segments.addSegment(anySegment);
+      prunedRouting.put(anyServer, segments);
+    }
+    return prunedRouting;
+  }
+
+  private boolean canMatch(String segmentName, long[] queryTimeRange) {
+    long[] segmentTimeRange = _segmentTimeRanges.get(segmentName);
+    if (segmentTimeRange == null) {
+      return true;
+    }
+    return segmentTimeRange[0] <= queryTimeRange[1] && queryTimeRange[0] <= segmentTimeRange[1];
+  }
+
+  /**
+   * Returns the start and end times (inclusive) the filter restricts the time column to, or null if it does not.
+   */
+  long[] getQueryTimeRange(FilterQueryTree filterQueryTree) {
+    if (filterQueryTree == null) {
+      return null;
+    }
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      if (filterQueryTree.getOperator() != FilterOperator.AND) {
+        return null;
+      }
+      long[] timeRange = null;
+      for (FilterQueryTree child : children) {
+        long[] childTimeRange = getQueryTimeRange(child);
+        if (childTimeRange == null) {
+          continue;
+        }
+        if (timeRange == null) {
+          timeRange = childTimeRange;
+        } else {
+          timeRange = new long[] { Math.max(timeRange[0], childTimeRange[0]), Math.min(timeRange[1], childTimeRange[1]) };
+        }
+      }
+      return timeRange;
+    }
+    if (!_timeColumn.equals(filterQueryTree.getColumn())) {
+      return null;
+    }
+    try {
+      switch (filterQueryTree.getOperator()) {
+        case EQUALITY: {
+          long value = Long.parseLong(filterQueryTree.getValue().get(0));
+          return new long[] { value, value };
+        }
+        case IN: {
+          long min = Long.MAX_VALUE;
+          long max = Long.MIN_VALUE;
+          for (String value : filterQueryTree.getValue().get(0).split("\t\t")) {
+            long longValue = Long.parseLong(value);
+            min = Math.min(min, longValue);
+            max = Math.max(max, longValue);
+          }
+          return new long[] { min, max };
+        }
+        case RANGE:
+          return getRangeTimeRange(filterQueryTree.getValue().get(0).trim());
+        default:
+          return null;
+      }
+    } catch (NumberFormatException e) {
+      // Time values which are not integers, never prune on them
+      return null;
+    }
+  }
+
+  /**
+   * Parses a range such as "[lower\t\tupper)", where "*" stands for an unbounded side.
+   */
+  private static long[] getRangeTimeRange(String range) {
+    String[] boundaries = range.substring(1, range.length() - 1).split("\t\t");
+    long start = Long.MIN_VALUE;
+    if (!boundaries[0].equals("*")) {
+      start = Long.parseLong(boundaries[0]);
+      if (range.startsWith("(")) {
+        start++;
+      }
+    }
+    long end = Long.MAX_VALUE;
+    if (!boundaries[1].equals("*")) {
+      end = Long.parseLong(boundaries[1]);
+      if (range.endsWith(")")) {
+        end--;
+      }
+    }
+    return new long[] { start, end };
+  }
+}
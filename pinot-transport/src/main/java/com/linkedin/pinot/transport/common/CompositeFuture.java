@@ -22,8 +22,10 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,6 +68,14 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
 
   private final GatherModeOnError _gatherMode;
 
+  // Keys of the completed underlying futures in completion order, followed by COMPLETION_MARKER once this future is done
+  private final LinkedBlockingQueue<Object> _completedKeys;
+
+  private static final Object COMPLETION_MARKER = new Object();
+
+  // Number of underlying futures processed so far
+  private final AtomicInteger _numCompletedFutures;
+
   // Descriptive name of the future
   private final String _name;
 
@@ -75,6 +85,8 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     _delayedResponseMap = new ConcurrentHashMap<K, V>();
     _errorMap = new ConcurrentHashMap<K, Throwable>();
     _gatherMode = mode;
+    _completedKeys = new LinkedBlockingQueue<Object>();
+    _numCompletedFutures = new AtomicInteger(0);
   }
 
   /**
@@ -97,6 +109,9 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     } else {
       _latch = new CountDownLatch(0);
     }
+    if (_futures.isEmpty()) {
+      _completedKeys.offer(COMPLETION_MARKER);
+    }
     for (KeyedFuture<K, V> entry : _futures) {
       if (null != entry) {
         addResponseFutureListener(entry);
@@ -104,12 +119,39 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     }
   }
 
+  /**
+   * Blocks until the next underlying future completes and returns its key. The response or error for the key can then
+   * be looked up with {@link #removeResponse(Object)} and {@link #getError()}. Returns null once this future is done
+   * and all the keys completed before that have been returned.
+   *
+   * This lets callers process responses as they arrive instead of waiting for {@link #get()}.
+   */
+  @SuppressWarnings("unchecked")
+  public K takeCompletedKey() throws InterruptedException {
+    Object key = _completedKeys.take();
+    if (key == COMPLETION_MARKER) {
+      // Keep the marker around so that subsequent calls do not block.
+      _completedKeys.offer(COMPLETION_MARKER);
+      return null;
+    }
+    return (K) key;
+  }
+
+  /**
+   * Removes and returns the response for the given key, so that callers processing responses one at a time do not keep
+   * all of them referenced until the whole request is done. A removed response is no longer part of {@link #get()}.
+   */
+  public V removeResponse(K key) {
+    return _delayedResponseMap.remove(key);
+  }
+
   /**
    * Call cancel on underlying futures. Dont worry if they are completed.
    * If they are already completed, cancel will be discarded. THis is best-effort only !!.
    */
   @Override
   protected void cancelUnderlyingFutures() {
+    _completedKeys.offer(COMPLETION_MARKER);
     for (KeyedFuture<K, V> entry : _futures) {
       entry.cancel(true);
     }
@@ -164,14 +206,19 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
     if (null != response) {
       LOGGER.debug("Response from {} is {}", name, response);
       _delayedResponseMap.putAll(response);
+      _completedKeys.addAll(response.keySet());
     } else if (null != error) {
       LOGGER.debug("Error from {} is : {}", name, error);
       _errorMap.putAll(error);
+      _completedKeys.addAll(error.keySet());
 
       if (_gatherMode == GatherModeOnError.SHORTCIRCUIT_AND) {
         ret = true; // We are done as we got an error
       }
     }
+    if (ret || _numCompletedFutures.incrementAndGet() == _futures.size()) {
+      _completedKeys.offer(COMPLETION_MARKER);
+    }
     return ret;
   }
 
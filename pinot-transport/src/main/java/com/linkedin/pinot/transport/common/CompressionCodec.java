@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.io.IOException;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import org.xerial.snappy.Snappy;
+
+
+/**
+ * Codecs a server can compress its responses with.
+ *
+ * The broker asks for a codec by putting its id into the instance request, and the server writes the id of the codec
+ * it actually used into the header of the compressed response, see {@link ResponseCompressionUtils}.
+ */
+public enum CompressionCodec {
+  NONE(0) {
+    @Override
+    public int maxCompressedLength(int length) {
+      return length;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+      System.arraycopy(src, srcOff, dest, destOff, srcLen);
+      return srcLen;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+        throws IOException {
+      if (srcLen != destLen) {
+        throw new IOException("Expected " + destLen + " bytes but got " + srcLen);
+      }
+      System.arraycopy(src, srcOff, dest, destOff, srcLen);
+    }
+  },
+
+  LZ4(1) {
+    @Override
+    public int maxCompressedLength(int length) {
+      return LZ4Holder.COMPRESSOR.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) throws IOException {
+      try {
+        return LZ4Holder.COMPRESSOR.compress(src, srcOff, srcLen, dest, destOff, dest.length - destOff);
+      } catch (LZ4Exception e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+        throws IOException {
+      try {
+        int bytesRead = LZ4Holder.DECOMPRESSOR.decompress(src, srcOff, dest, destOff, destLen);
+        if (bytesRead != srcLen) {
+          throw new IOException("Expected to read " + srcLen + " compressed bytes but read " + bytesRead);
+        }
+      } catch (LZ4Exception e) {
+        throw new IOException(e);
+      }
+    }
+  },
+
+  SNAPPY(2) {
+    @Override
+    public int maxCompressedLength(int length) {
+      return Snappy.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) throws IOException {
+      return Snappy.compress(src, srcOff, srcLen, dest, destOff);
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+        throws IOException {
+      int uncompressedLength = Snappy.uncompress(src, srcOff, srcLen, dest, destOff);
+      if (uncompressedLength != destLen) {
+        throw new IOException("Expected " + destLen + " uncompressed bytes but got " + uncompressedLength);
+      }
+    }
+  };
+
+  private final int _id;
+
+  private CompressionCodec(int id) {
+    _id = id;
+  }
+
+  public int getId() {
+    return _id;
+  }
+
+  /**
+   * @return Upper bound of the compressed size of the given number of bytes
+   */
+  public abstract int maxCompressedLength(int length);
+
+  /**
+   * Compress the source bytes into the destination array, which must have room for at least
+   * {@link #maxCompressedLength(int)} bytes after the offset.
+   *
+   * @return Number of compressed bytes written
+   */
+  public abstract int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) throws IOException;
+
+  /**
+   * Decompress exactly srcLen bytes into exactly destLen bytes.
+   */
+  public abstract void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+      throws IOException;
+
+  /**
+   * @return The codec with the given id, or null if this version does not know about it
+   */
+  public static CompressionCodec fromId(int id) {
+    for (CompressionCodec codec : values()) {
+      if (codec._id == id) {
+        return codec;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Lazily loads LZ4, which may pick a native implementation, so that it is only initialized when actually used.
+   */
+  private static class LZ4Holder {
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
+    private static final LZ4FastDecompressor DECOMPRESSOR = FACTORY.fastDecompressor();
+  }
+}
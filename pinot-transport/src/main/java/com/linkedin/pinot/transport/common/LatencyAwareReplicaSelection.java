@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.linkedin.pinot.common.response.ServerInstance;
+
+
+/**
+ * Selects replicas by their expected completion time. For each server, an exponentially weighted moving average
+ * (EWMA) of the response latencies and the number of outstanding requests are tracked. The expected completion time
+ * of a server is its EWMA latency times its number of outstanding requests (including the new one).
+ *
+ * To avoid herding all requests on the currently best server, two candidates are picked at random and the one with
+ * the lower expected completion time is selected (power of two choices). Servers without any latency sample are
+ * assumed to be as fast as the average of the other candidates.
+ *
+ * Expected to be thread-safe.
+ */
+@ThreadSafe
+public class LatencyAwareReplicaSelection extends ReplicaSelection {
+  public static final double DEFAULT_EWMA_ALPHA = 0.2;
+  public static final long DEFAULT_ERROR_PENALTY_MS = 1000;
+
+  // Weight of the latest latency in the EWMA
+  private final double _alpha;
+  // Latency recorded for failed requests, if they failed faster than that
+  private final long _errorPenaltyMs;
+  private final ConcurrentHashMap<ServerInstance, ServerStats> _serverStatsMap;
+  private final Random _rand;
+
+  public LatencyAwareReplicaSelection() {
+    this(DEFAULT_EWMA_ALPHA, DEFAULT_ERROR_PENALTY_MS, System.currentTimeMillis());
+  }
+
+  public LatencyAwareReplicaSelection(double alpha, long errorPenaltyMs, long seed) {
+    _alpha = alpha;
+    _errorPenaltyMs = errorPenaltyMs;
+    _serverStatsMap = new ConcurrentHashMap<ServerInstance, ServerStats>();
+    _rand = new Random(seed);
+  }
+
+  @Override
+  public void reset(SegmentId p) {
+    // Nothing to be done here, the stats are per server
+  }
+
+  @Override
+  public void reset(SegmentIdSet p) {
+    // Nothing to be done here, the stats are per server
+  }
+
+  @Override
+  public ServerInstance selectServer(SegmentId p, List<ServerInstance> orderedServers, Object bucketKey) {
+    int size = orderedServers.size();
+
+    if (size <= 0) {
+      return null;
+    }
+
+    if (size == 1) {
+      return orderedServers.get(0);
+    }
+
+    int first = _rand.nextInt(size);
+    int second = _rand.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+
+    ServerInstance firstServer = orderedServers.get(first);
+    ServerInstance secondServer = orderedServers.get(second);
+    ServerStats firstStats = _serverStatsMap.get(firstServer);
+    ServerStats secondStats = _serverStatsMap.get(secondServer);
+
+    // Servers without samples are assumed to be as fast as the other one
+    double firstLatency = hasSamples(firstStats) ? firstStats.getLatencyMs() : -1;
+    double secondLatency = hasSamples(secondStats) ? secondStats.getLatencyMs() : -1;
+    if (firstLatency < 0) {
+      firstLatency = Math.max(secondLatency, 0);
+    }
+    if (secondLatency < 0) {
+      secondLatency = firstLatency;
+    }
+
+    double firstCost = expectedCompletionTime(firstLatency, firstStats);
+    double secondCost = expectedCompletionTime(secondLatency, secondStats);
+    return (secondCost < firstCost) ? secondServer : firstServer;
+  }
+
+  @Override
+  public void onRequestSent(ServerInstance server) {
+    getServerStats(server).getNumOutstandingRequests().incrementAndGet();
+  }
+
+  @Override
+  public void onRequestCompleted(ServerInstance server, long latencyMs, boolean isError) {
+    ServerStats stats = getServerStats(server);
+    stats.getNumOutstandingRequests().decrementAndGet();
+    stats.update(isError ? Math.max(latencyMs, _errorPenaltyMs) : latencyMs, _alpha);
+  }
+
+  @Override
+  public void onRequestCancelled(ServerInstance server) {
+    getServerStats(server).getNumOutstandingRequests().decrementAndGet();
+  }
+
+  /**
+   * Returns the EWMA latency (ms) of the server, or -1 if no response from the server was seen yet.
+   */
+  public double getLatencyMs(ServerInstance server) {
+    ServerStats stats = _serverStatsMap.get(server);
+    return hasSamples(stats) ? stats.getLatencyMs() : -1;
+  }
+
+  /**
+   * Returns the number of requests sent to the server which have not completed yet.
+   */
+  public int getNumOutstandingRequests(ServerInstance server) {
+    ServerStats stats = _serverStatsMap.get(server);
+    return (null == stats) ? 0 : stats.getNumOutstandingRequests().get();
+  }
+
+  private ServerStats getServerStats(ServerInstance server) {
+    ServerStats stats = _serverStatsMap.get(server);
+    if (null == stats) {
+      stats = new ServerStats();
+      ServerStats existingStats = _serverStatsMap.putIfAbsent(server, stats);
+      if (null != existingStats) {
+        stats = existingStats;
+      }
+    }
+    return stats;
+  }
+
+  private static boolean hasSamples(ServerStats stats) {
+    return (null != stats) && (stats.getLatencyMs() >= 0);
+  }
+
+  private static double expectedCompletionTime(double latencyMs, ServerStats stats) {
+    int numOutstandingRequests = (null == stats) ? 0 : Math.max(stats.getNumOutstandingRequests().get(), 0);
+    // Add 1 ms so that outstanding requests still count for servers with sub-millisecond latencies
+    return (latencyMs + 1) * (numOutstandingRequests + 1);
+  }
+
+  /**
+   * Latency and load of a single server
+   */
+  private static class ServerStats {
+    private final AtomicInteger _numOutstandingRequests = new AtomicInteger(0);
+    private volatile double _latencyMs = -1;
+
+    public AtomicInteger getNumOutstandingRequests() {
+      return _numOutstandingRequests;
+    }
+
+    public double getLatencyMs() {
+      return _latencyMs;
+    }
+
+    public synchronized void update(long latencyMs, double alpha) {
+      if (_latencyMs < 0) {
+        _latencyMs = latencyMs;
+      } else {
+        _latencyMs = (alpha * latencyMs) + ((1 - alpha) * _latencyMs);
+      }
+    }
+  }
+}
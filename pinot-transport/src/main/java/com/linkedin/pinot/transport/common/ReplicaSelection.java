@@ -51,6 +51,12 @@ public abstract class ReplicaSelection {
           (ascending) order. A key ( in the request) is hashed
           to determine the replica
     **/
+    LATENCY_AWARE,
+    /**
+          Replica with the least expected completion time, based on
+          the observed latencies and outstanding requests, among two
+          picked at random
+    **/
 
   };
 
@@ -85,4 +91,34 @@ public abstract class ReplicaSelection {
    */
   public abstract ServerInstance selectServer(SegmentId p, List<ServerInstance> orderedServers, Object hashKey);
 
+  /**
+   * This is a notification by the scatter-gather layer that a request has been sent to the server.
+   * Policies adapting to the load of the servers can use it to track outstanding requests.
+   * @param server Server the request was sent to
+   */
+  public void onRequestSent(ServerInstance server) {
+    // Nothing to be done by default
+  }
+
+  /**
+   * This is a notification by the scatter-gather layer that a request previously sent to the server
+   * has completed, either with a response or an error.
+   * @param server Server the request was sent to
+   * @param latencyMs Time between sending the request and its completion
+   * @param isError true if the request failed
+   */
+  public void onRequestCompleted(ServerInstance server, long latencyMs, boolean isError) {
+    // Nothing to be done by default
+  }
+
+  /**
+   * This is a notification by the scatter-gather layer that a request previously sent to the server
+   * was cancelled before it completed (eg: a speculative request which lost the race). The time it was
+   * outstanding says nothing about the server's latency.
+   * @param server Server the request was sent to
+   */
+  public void onRequestCancelled(ServerInstance server) {
+    // Nothing to be done by default
+  }
+
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Framing of compressed server responses.
+ *
+ * A compressed response has the following format, anything else is an uncompressed response:
+ *
+ * 0                                                         31
+ * ------------------------------------------------------------
+ * |                  Magic ( 32 bits)                        |
+ * |                  Codec id ( 32 bits)                     |
+ * |                  Uncompressed length ( 32 bits)          |
+ * |                  Compressed payload                      |
+ * |                    ...............                       |
+ * ------------------------------------------------------------
+ *
+ * The magic is negative, so it can not be mistaken for the version a serialized data table starts with.
+ */
+public class ResponseCompressionUtils {
+  public static final int COMPRESSED_RESPONSE_MAGIC = 0xC0DEC0DE;
+  public static final int HEADER_LENGTH = 12;
+
+  private ResponseCompressionUtils() {
+  }
+
+  /**
+   * Compress the readable bytes of the response, without changing its reader index.
+   *
+   * @return A new buffer holding the compressed response, or null if compression does not make the response smaller
+   */
+  public static ByteBuf compress(ByteBuf response, CompressionCodec codec) throws IOException {
+    int length = response.readableBytes();
+    byte[] uncompressed = new byte[length];
+    response.getBytes(response.readerIndex(), uncompressed);
+
+    byte[] compressed = new byte[HEADER_LENGTH + codec.maxCompressedLength(length)];
+    int compressedLength = codec.compress(uncompressed, 0, length, compressed, HEADER_LENGTH);
+    if (HEADER_LENGTH + compressedLength >= length) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.wrap(compressed, 0, HEADER_LENGTH);
+    header.putInt(COMPRESSED_RESPONSE_MAGIC);
+    header.putInt(codec.getId());
+    header.putInt(length);
+    return Unpooled.wrappedBuffer(compressed, 0, HEADER_LENGTH + compressedLength);
+  }
+
+  public static boolean isCompressed(ByteBuf response) {
+    return response.readableBytes() >= HEADER_LENGTH
+        && response.getInt(response.readerIndex()) == COMPRESSED_RESPONSE_MAGIC;
+  }
+
+  /**
+   * @return Size of the response once decompressed, only valid if {@link #isCompressed(ByteBuf)}
+   */
+  public static int getUncompressedLength(ByteBuf response) {
+    return response.getInt(response.readerIndex() + 8);
+  }
+
+  /**
+   * Decompress the remaining bytes of the response if it is compressed, without changing its position.
+   *
+   * @return The decompressed response, or the response itself if it is not compressed
+   */
+  public static ByteBuffer decompress(ByteBuffer response) throws IOException {
+    int position = response.position();
+    if (response.remaining() < HEADER_LENGTH || response.getInt(position) != COMPRESSED_RESPONSE_MAGIC) {
+      return response;
+    }
+    int codecId = response.getInt(position + 4);
+    CompressionCodec codec = CompressionCodec.fromId(codecId);
+    if (codec == null) {
+      throw new IOException("Unsupported response compression codec id: " + codecId);
+    }
+    int uncompressedLength = response.getInt(position + 8);
+
+    int compressedLength = response.remaining() - HEADER_LENGTH;
+    byte[] compressed;
+    int compressedOffset;
+    if (response.hasArray()) {
+      compressed = response.array();
+      compressedOffset = response.arrayOffset() + position + HEADER_LENGTH;
+    } else {
+      compressed = new byte[compressedLength];
+      compressedOffset = 0;
+      ByteBuffer duplicate = response.duplicate();
+      duplicate.position(position + HEADER_LENGTH);
+      duplicate.get(compressed);
+    }
+    byte[] uncompressed = new byte[uncompressedLength];
+    codec.decompress(compressed, compressedOffset, compressedLength, uncompressed, 0, uncompressedLength);
+    return ByteBuffer.wrap(uncompressed);
+  }
+}
@@ -137,7 +137,8 @@ public class SelectingFuture<K, T> extends AbstractCompositeListenableFuture<K,
   @Override
   protected boolean processFutureResult(String name, Map<K, T> response, Map<K, Throwable> error) {
     boolean done = false;
-    if ((null != response)) {
+    // A future with errors (eg: a composite future which got some of its responses) has not completed successfully.
+    if ((null != response) && ((null == error) || error.isEmpty())) {
       LOGGER.debug("Error got from {} is : {}", name, response);
 
       _delayedResponse = response;
@@ -20,6 +20,7 @@ import org.apache.commons.configuration.ConfigurationException;
 
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
 import com.linkedin.pinot.transport.config.RoutingTableConfig;
+import com.linkedin.pinot.transport.config.SpeculativeRequestConfig;
 
 
 public class TransportClientConf {
@@ -33,6 +34,7 @@ public class TransportClientConf {
   public static final String CFG_BASED_ROUTING = "routing";
   public static final String HELIX_CONFIG = "helix";
   public static final String CONNECTION_POOL_CONFIG = "connPool";
+  public static final String SPECULATIVE_REQUEST_CONFIG = "speculativeRequest";
 
   // TODO: Revisit defaults
   private static final String DEFAULT_ROUTING_MODE = "CONFIG";
@@ -40,24 +42,27 @@ public class TransportClientConf {
   private RoutingMode _routingMode;
   private RoutingTableConfig _cfgBasedRouting;
   private ConnectionPoolConfig _connPool;
+  private SpeculativeRequestConfig _speculativeRequest;
 
   public TransportClientConf() {
     _routingMode = RoutingMode.valueOf(DEFAULT_ROUTING_MODE);
     _cfgBasedRouting = new RoutingTableConfig();
     _connPool = new ConnectionPoolConfig();
+    _speculativeRequest = new SpeculativeRequestConfig();
   }
 
   public void init(Configuration cfg) throws ConfigurationException {
     if (cfg.containsKey(ROUTING_MODE_KEY)) {
       _routingMode = RoutingMode.valueOf(cfg.getString(ROUTING_MODE_KEY));
     }
-    if ((_routingMode == RoutingMode.CONFIG)) {
-      _cfgBasedRouting.init(cfg.subset(CFG_BASED_ROUTING));
-    }
+    // Also loaded for other routing modes, as it holds the per table replica selection policy
+    _cfgBasedRouting.init(cfg.subset(CFG_BASED_ROUTING));
 
     if (cfg.containsKey(CONNECTION_POOL_CONFIG)) {
       _connPool.init(cfg.subset(CONNECTION_POOL_CONFIG));
     }
+
+    _speculativeRequest.init(cfg.subset(SPECULATIVE_REQUEST_CONFIG));
   }
 
   public RoutingMode getRoutingMode() {
@@ -71,4 +76,8 @@ public class TransportClientConf {
   public ConnectionPoolConfig getConnPool() {
     return _connPool;
   }
+
+  public SpeculativeRequestConfig getSpeculativeRequest() {
+    return _speculativeRequest;
+  }
 }
@@ -23,6 +23,7 @@ import java.util.Map;
 import org.apache.commons.configuration.Configuration;
 
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.ReplicaSelection.ReplicaSelectionPolicy;
 import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
@@ -37,6 +38,10 @@ import com.linkedin.pinot.transport.common.SegmentIdSet;
  * pinot.broker.routing.midas.serversForPartitions.0=localhost:9099
  * pinot.broker.routing.midas.serversForPartitions.1=localhost:9099
  *
+ * The replica selection policy of the table (ROUND_ROBIN by default) can also be set when the routing
+ * table comes from Helix:
+ * pinot.broker.routing.midas.replicaSelection=LATENCY_AWARE
+ *
  *
  */
 public class PerTableRoutingConfig {
@@ -44,9 +49,12 @@ public class PerTableRoutingConfig {
   private static final String NUM_NODES_PER_REPLICA = "numNodesPerReplica";
   private static final String SERVERS_FOR_NODE = "serversForNode";
   private static final String DEFAULT_SERVERS_FOR_NODE = "default";
+  private static final String REPLICA_SELECTION = "replicaSelection";
+  private static final ReplicaSelectionPolicy DEFAULT_REPLICA_SELECTION = ReplicaSelectionPolicy.ROUND_ROBIN;
 
   private final Configuration _tableCfg;
   private int _numNodes;
+  private ReplicaSelectionPolicy _replicaSelectionPolicy = DEFAULT_REPLICA_SELECTION;
   private List<ServerInstance> _defaultServers;
   private final Map<Integer, List<ServerInstance>> _nodeToInstancesMap;
 
@@ -66,7 +74,7 @@ public class PerTableRoutingConfig {
 
     _nodeToInstancesMap.clear();
 
-    _numNodes = _tableCfg.getInt(NUM_NODES_PER_REPLICA);
+    _numNodes = _tableCfg.getInt(NUM_NODES_PER_REPLICA, 0);
     for (int i = 0; i < _numNodes; i++) {
       List<String> servers = _tableCfg.getList(getKey(SERVERS_FOR_NODE, i + ""));
 
@@ -80,6 +88,10 @@ public class PerTableRoutingConfig {
     if ((null != servers) && (!servers.isEmpty())) {
       _defaultServers = getServerInstances(servers);
     }
+
+    if (_tableCfg.containsKey(REPLICA_SELECTION)) {
+      _replicaSelectionPolicy = ReplicaSelectionPolicy.valueOf(_tableCfg.getString(REPLICA_SELECTION));
+    }
   }
 
   private String getKey(String prefix, String suffix) {
@@ -95,6 +107,10 @@ public class PerTableRoutingConfig {
     return _defaultServers;
   }
 
+  public ReplicaSelectionPolicy getReplicaSelectionPolicy() {
+    return _replicaSelectionPolicy;
+  }
+
   //
   //  /**
   //   * Builds a map needed for routing the partitions in the partition-group passed.
@@ -166,6 +182,7 @@ public class PerTableRoutingConfig {
   @Override
   public String toString() {
     return "PerTableRoutingConfig [_tableCfg=" + _tableCfg + ", _numNodes=" + _numNodes + ", _defaultServers="
-        + _defaultServers + ", _nodeToInstancesMap=" + _nodeToInstancesMap + "]";
+        + _defaultServers + ", _nodeToInstancesMap=" + _nodeToInstancesMap + ", _replicaSelectionPolicy="
+        + _replicaSelectionPolicy + "]";
   }
 }
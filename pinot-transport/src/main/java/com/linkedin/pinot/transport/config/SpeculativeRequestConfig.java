@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.config;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.configuration.Configuration;
+
+
+/**
+ * Config for speculative requests, which are sent to other replicas for the segments of a server which did not
+ * respond within the given percentile of the recent scatter-gather latencies of the table.
+ *
+ * Relevant config for illustration:
+ *
+ * pinot.broker.transport.speculativeRequest.delayPercentile=99
+ * pinot.broker.transport.speculativeRequest.minDelayMs=10
+ * pinot.broker.transport.speculativeRequest.minNumSamples=100
+ * pinot.broker.transport.speculativeRequest.tables.midas_OFFLINE.delayPercentile=95
+ *
+ */
+public class SpeculativeRequestConfig {
+
+  // Percentile of the scatter-gather latencies after which speculative requests are sent. 0 turns them off.
+  public static final String DELAY_PERCENTILE_KEY = "delayPercentile";
+
+  // Minimum delay (ms) before speculative requests are sent
+  public static final String MIN_DELAY_MS_KEY = "minDelayMs";
+
+  // Minimum number of scatter-gather latencies recorded for a table, before speculative requests are sent for it
+  public static final String MIN_NUM_SAMPLES_KEY = "minNumSamples";
+
+  // Per table overrides of the delay percentile
+  public static final String TABLES_KEY = "tables";
+
+  private static final double DEFAULT_DELAY_PERCENTILE = 0;
+  private static final long DEFAULT_MIN_DELAY_MS = 10;
+  private static final long DEFAULT_MIN_NUM_SAMPLES = 100;
+
+  // Percentile of the scatter-gather latencies after which speculative requests are sent
+  private double _delayPercentile;
+
+  // Minimum delay (ms) before speculative requests are sent
+  private long _minDelayMs;
+
+  // Minimum number of scatter-gather latencies recorded for a table, before speculative requests are sent for it
+  private long _minNumSamples;
+
+  // Per table overrides of the delay percentile
+  private final Map<String, Double> _tableDelayPercentiles;
+
+  public SpeculativeRequestConfig() {
+    _delayPercentile = DEFAULT_DELAY_PERCENTILE;
+    _minDelayMs = DEFAULT_MIN_DELAY_MS;
+    _minNumSamples = DEFAULT_MIN_NUM_SAMPLES;
+    _tableDelayPercentiles = new HashMap<String, Double>();
+  }
+
+  public void init(Configuration cfg) {
+    if (cfg.containsKey(DELAY_PERCENTILE_KEY)) {
+      _delayPercentile = cfg.getDouble(DELAY_PERCENTILE_KEY);
+    }
+
+    if (cfg.containsKey(MIN_DELAY_MS_KEY)) {
+      _minDelayMs = cfg.getLong(MIN_DELAY_MS_KEY);
+    }
+
+    if (cfg.containsKey(MIN_NUM_SAMPLES_KEY)) {
+      _minNumSamples = cfg.getLong(MIN_NUM_SAMPLES_KEY);
+    }
+
+    Configuration tablesCfg = cfg.subset(TABLES_KEY);
+    Iterator<?> keys = tablesCfg.getKeys();
+    while (keys.hasNext()) {
+      String key = (String) keys.next();
+      String suffix = "." + DELAY_PERCENTILE_KEY;
+      if (key.endsWith(suffix)) {
+        _tableDelayPercentiles.put(key.substring(0, key.length() - suffix.length()), tablesCfg.getDouble(key));
+      }
+    }
+  }
+
+  /**
+   * Returns the percentile of the scatter-gather latencies of the table after which speculative requests are sent,
+   * or a non positive value if they are turned off for the table.
+   */
+  public double getDelayPercentile(String tableName) {
+    Double tableDelayPercentile = _tableDelayPercentiles.get(tableName);
+    if (tableDelayPercentile != null) {
+      return tableDelayPercentile;
+    }
+    return _delayPercentile;
+  }
+
+  public long getMinDelayMs() {
+    return _minDelayMs;
+  }
+
+  public long getMinNumSamples() {
+    return _minNumSamples;
+  }
+
+  @Override
+  public String toString() {
+    return "SpeculativeRequestConfig [_delayPercentile=" + _delayPercentile + ", _minDelayMs=" + _minDelayMs
+        + ", _minNumSamples=" + _minNumSamples + ", _tableDelayPercentiles=" + _tableDelayPercentiles + "]";
+  }
+}
@@ -38,6 +38,10 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
   public static final String SEND_RESPONSE_MS = "Send-Response-MS";
   public static final String PROCESSING_LATENCY_MS = "Processing-Latency-MS";
   public static final String ERRORS = "errors";
+  public static final String COMPRESSED_RESPONSES = "compressed-responses";
+  public static final String BYTES_BEFORE_COMPRESSION = "bytes-before-compression";
+  public static final String BYTES_AFTER_COMPRESSION = "bytes-after-compression";
+  public static final String COMPRESSION_RATIO_PERCENT = "Compression-Ratio-Percent";
 
   // Num Requests
   private final AggregatedCounter _requestsReceived;
@@ -57,6 +61,16 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
   // Total processing latency including that of sending response
   private final AggregatedHistogram<Sampling> _processingLatencyMsHistogram;
 
+  // Num compressed responses
+  private final AggregatedCounter _compressedResponses;
+
+  // Size of the compressed responses before and after compression
+  private final AggregatedCounter _bytesBeforeCompression;
+  private final AggregatedCounter _bytesAfterCompression;
+
+  // Compressed size of a response as percentage of its uncompressed size
+  private final AggregatedHistogram<Sampling> _compressionRatioPercentHistogram;
+
   public AggregatedTransportServerMetrics(AggregatedMetricsRegistry registry, String group) {
     _requestsReceived = MetricsHelper.newAggregatedCounter(registry, new MetricName(group, "", REQUESTS_RECEIVED));
     _bytesSent = MetricsHelper.newAggregatedCounter(registry, new MetricName(group, "", BYTES_SENT));
@@ -66,6 +80,14 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
         MetricsHelper.newAggregatedHistogram(registry, new MetricName(group, "", SEND_RESPONSE_MS));
     _processingLatencyMsHistogram =
         MetricsHelper.newAggregatedHistogram(registry, new MetricName(group, "", PROCESSING_LATENCY_MS));
+    _compressedResponses =
+        MetricsHelper.newAggregatedCounter(registry, new MetricName(group, "", COMPRESSED_RESPONSES));
+    _bytesBeforeCompression =
+        MetricsHelper.newAggregatedCounter(registry, new MetricName(group, "", BYTES_BEFORE_COMPRESSION));
+    _bytesAfterCompression =
+        MetricsHelper.newAggregatedCounter(registry, new MetricName(group, "", BYTES_AFTER_COMPRESSION));
+    _compressionRatioPercentHistogram =
+        MetricsHelper.newAggregatedHistogram(registry, new MetricName(group, "", COMPRESSION_RATIO_PERCENT));
   }
 
   /**
@@ -79,6 +101,10 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
     _errors.add(metric.getErrors());
     _sendResponseMsHistogram.add(metric.getSendResponseMsHistogram());
     _processingLatencyMsHistogram.add(metric.getProcessingLatencyMsHistogram());
+    _compressedResponses.add(metric.getCompressedResponses());
+    _bytesBeforeCompression.add(metric.getBytesBeforeCompression());
+    _bytesAfterCompression.add(metric.getBytesAfterCompression());
+    _compressionRatioPercentHistogram.add(metric.getCompressionRatioPercentHistogram());
   }
 
   /**
@@ -93,6 +119,10 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
     _errors.add(metric.getErrors());
     _sendResponseMsHistogram.add(metric.getSendResponseMsHistogram());
     _processingLatencyMsHistogram.add(metric.getProcessingLatencyMsHistogram());
+    _compressedResponses.add(metric.getCompressedResponses());
+    _bytesBeforeCompression.add(metric.getBytesBeforeCompression());
+    _bytesAfterCompression.add(metric.getBytesAfterCompression());
+    _compressionRatioPercentHistogram.add(metric.getCompressionRatioPercentHistogram());
   }
 
   /**
@@ -106,6 +136,10 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
     _errors.remove(metric.getErrors());
     _sendResponseMsHistogram.remove(metric.getSendResponseMsHistogram());
     _processingLatencyMsHistogram.remove(metric.getProcessingLatencyMsHistogram());
+    _compressedResponses.remove(metric.getCompressedResponses());
+    _bytesBeforeCompression.remove(metric.getBytesBeforeCompression());
+    _bytesAfterCompression.remove(metric.getBytesAfterCompression());
+    _compressionRatioPercentHistogram.remove(metric.getCompressionRatioPercentHistogram());
   }
 
   /**
@@ -119,6 +153,10 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
     _errors.remove(metric.getErrors());
     _sendResponseMsHistogram.remove(metric.getSendResponseMsHistogram());
     _processingLatencyMsHistogram.remove(metric.getProcessingLatencyMsHistogram());
+    _compressedResponses.remove(metric.getCompressedResponses());
+    _bytesBeforeCompression.remove(metric.getBytesBeforeCompression());
+    _bytesAfterCompression.remove(metric.getBytesAfterCompression());
+    _compressionRatioPercentHistogram.remove(metric.getCompressionRatioPercentHistogram());
   }
 
   @Override
@@ -151,6 +189,29 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
     return new LatencyMetric(_processingLatencyMsHistogram);
   }
 
+  @Override
+  public long getTotalCompressedResponses() {
+    return _compressedResponses.count();
+  }
+
+  @Override
+  public long getTotalBytesBeforeCompression() {
+    return _bytesBeforeCompression.count();
+  }
+
+  @Override
+  public long getTotalBytesAfterCompression() {
+    return _bytesAfterCompression.count();
+  }
+
+  /**
+   * Get the distribution of the compressed size of responses as percentage of their uncompressed size
+   * @return
+   */
+  public AggregatedHistogram<Sampling> getCompressionRatioPercentHistogram() {
+    return _compressionRatioPercentHistogram;
+  }
+
   private AggregatedCounter getRequestsReceived() {
     return _requestsReceived;
   }
@@ -174,4 +235,16 @@ public class AggregatedTransportServerMetrics implements TransportServerMetrics
   private AggregatedHistogram<Sampling> getProcessingLatencyMsHistogram() {
     return _processingLatencyMsHistogram;
   }
+
+  private AggregatedCounter getCompressedResponses() {
+    return _compressedResponses;
+  }
+
+  private AggregatedCounter getBytesBeforeCompression() {
+    return _bytesBeforeCompression;
+  }
+
+  private AggregatedCounter getBytesAfterCompression() {
+    return _bytesAfterCompression;
+  }
 }
@@ -30,6 +30,10 @@ public class NettyServerMetrics implements TransportServerMetrics {
   public static final String SEND_RESPONSE_MS = "Send-Response-MS";
   public static final String PROCESSING_LATENCY_MS = "Processing-Latency-MS";
   public static final String ERRORS = "errors";
+  public static final String COMPRESSED_RESPONSES = "compressed-responses";
+  public static final String BYTES_BEFORE_COMPRESSION = "bytes-before-compression";
+  public static final String BYTES_AFTER_COMPRESSION = "bytes-after-compression";
+  public static final String COMPRESSION_RATIO_PERCENT = "Compression-Ratio-Percent";
 
   // Num Requests
   private final Counter _requestsReceived;
@@ -49,6 +53,16 @@ public class NettyServerMetrics implements TransportServerMetrics {
   // Total processing latency including that of sending response
   private final Histogram _processingLatencyMsHistogram;
 
+  // Num compressed responses
+  private final Counter _compressedResponses;
+
+  // Size of the compressed responses before and after compression
+  private final Counter _bytesBeforeCompression;
+  private final Counter _bytesAfterCompression;
+
+  // Compressed size of a response as percentage of its uncompressed size
+  private final Histogram _compressionRatioPercentHistogram;
+
   public NettyServerMetrics(MetricsRegistry registry, String group) {
     _requestsReceived = MetricsHelper.newCounter(registry, new MetricName(group, "", REQUESTS_RECEIVED));
     _bytesSent = MetricsHelper.newCounter(registry, new MetricName(group, "", BYTES_SENT));
@@ -57,6 +71,11 @@ public class NettyServerMetrics implements TransportServerMetrics {
     _sendResponseMsHistogram = MetricsHelper.newHistogram(registry, new MetricName(group, "", SEND_RESPONSE_MS), false);
     _processingLatencyMsHistogram =
         MetricsHelper.newHistogram(registry, new MetricName(group, "", PROCESSING_LATENCY_MS), false);
+    _compressedResponses = MetricsHelper.newCounter(registry, new MetricName(group, "", COMPRESSED_RESPONSES));
+    _bytesBeforeCompression = MetricsHelper.newCounter(registry, new MetricName(group, "", BYTES_BEFORE_COMPRESSION));
+    _bytesAfterCompression = MetricsHelper.newCounter(registry, new MetricName(group, "", BYTES_AFTER_COMPRESSION));
+    _compressionRatioPercentHistogram =
+        MetricsHelper.newHistogram(registry, new MetricName(group, "", COMPRESSION_RATIO_PERCENT), false);
   }
 
   public void addServingStats(long requestSize, long responseSize, long numRequests, boolean error,
@@ -70,6 +89,15 @@ public class NettyServerMetrics implements TransportServerMetrics {
     _processingLatencyMsHistogram.update(processingLatencyMs);
   }
 
+  public void addCompressionStats(long uncompressedSize, long compressedSize) {
+    _compressedResponses.inc();
+    _bytesBeforeCompression.inc(uncompressedSize);
+    _bytesAfterCompression.inc(compressedSize);
+    if (uncompressedSize > 0) {
+      _compressionRatioPercentHistogram.update(compressedSize * 100 / uncompressedSize);
+    }
+  }
+
   public Counter getRequestsReceived() {
     return _requestsReceived;
   }
@@ -94,12 +122,29 @@ public class NettyServerMetrics implements TransportServerMetrics {
     return _processingLatencyMsHistogram;
   }
 
+  public Counter getCompressedResponses() {
+    return _compressedResponses;
+  }
+
+  public Counter getBytesBeforeCompression() {
+    return _bytesBeforeCompression;
+  }
+
+  public Counter getBytesAfterCompression() {
+    return _bytesAfterCompression;
+  }
+
+  public Histogram getCompressionRatioPercentHistogram() {
+    return _compressionRatioPercentHistogram;
+  }
+
   @Override
   public String toString() {
     return "NettyServerMetric [_requestsReceived=" + _requestsReceived.count() + ", _bytesSent=" + _bytesSent.count()
         + ", _bytesReceived=" + _bytesReceived.count() + ", _errors=" + _errors.count() + ", _sendResponseMsGauge="
         + _sendResponseMsHistogram.count() + ", _processingLatencyMsGauge=" + _processingLatencyMsHistogram.count()
-        + "]";
+        + ", _compressedResponses=" + _compressedResponses.count() + ", _bytesBeforeCompression="
+        + _bytesBeforeCompression.count() + ", _bytesAfterCompression=" + _bytesAfterCompression.count() + "]";
   }
 
   @Override
@@ -131,4 +176,19 @@ public class NettyServerMetrics implements TransportServerMetrics {
   public LatencyMetric<Histogram> getProcessingLatencyMs() {
     return new LatencyMetric<Histogram>(_processingLatencyMsHistogram);
   }
+
+  @Override
+  public long getTotalCompressedResponses() {
+    return _compressedResponses.count();
+  }
+
+  @Override
+  public long getTotalBytesBeforeCompression() {
+    return _bytesBeforeCompression.count();
+  }
+
+  @Override
+  public long getTotalBytesAfterCompression() {
+    return _bytesAfterCompression.count();
+  }
 }
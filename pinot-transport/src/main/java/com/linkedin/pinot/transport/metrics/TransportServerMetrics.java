@@ -46,6 +46,24 @@ public interface TransportServerMetrics {
    */
   public long getTotalErrors();
 
+  /**
+   * Get total responses sent compressed by this server instance
+   * @return
+   */
+  public long getTotalCompressedResponses();
+
+  /**
+   * Get total size of the compressed responses before compression
+   * @return
+   */
+  public long getTotalBytesBeforeCompression();
+
+  /**
+   * Get total size of the compressed responses after compression
+   * @return
+   */
+  public long getTotalBytesAfterCompression();
+
   /**
    * Get Latency Metric for flushing the response
    * @return
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import io.netty.buffer.ByteBuf;
+
+import org.apache.thrift.transport.TTransport;
+
+
+/**
+ * Read-only thrift transport over a Netty {@link ByteBuf}. Lets thrift objects be decoded straight from the
+ * received buffer without first copying its content into a byte array.
+ *
+ * The transport does not take ownership of the buffer; the caller remains responsible for releasing it.
+ */
+public class ByteBufTransport extends TTransport {
+  private final ByteBuf _buffer;
+
+  public ByteBufTransport(ByteBuf buffer) {
+    _buffer = buffer;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return true;
+  }
+
+  @Override
+  public void open() {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public int read(byte[] buf, int off, int len) {
+    int bytesToRead = Math.min(len, _buffer.readableBytes());
+    _buffer.readBytes(buf, off, bytesToRead);
+    return bytesToRead;
+  }
+
+  @Override
+  public void write(byte[] buf, int off, int len) {
+    throw new UnsupportedOperationException("ByteBufTransport is read-only");
+  }
+}
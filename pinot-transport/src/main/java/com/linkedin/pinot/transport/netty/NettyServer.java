@@ -31,10 +31,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.linkedin.pinot.common.metrics.AggregatedMetricsRegistry;
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.transport.common.ResponseCompressionUtils;
 import com.linkedin.pinot.transport.metrics.AggregatedTransportServerMetrics;
 import com.linkedin.pinot.transport.metrics.NettyServerMetrics;
 
@@ -74,6 +78,24 @@ public abstract class NettyServer implements Runnable {
     public byte[] processRequest(ByteBuf request);
   }
 
+  /**
+   * A request handler which hands the request off instead of processing it on the Netty worker thread.
+   * The response is written back to the channel when the returned future completes, so one slow request does not
+   * hold up the other channels served by the same event loop.
+   */
+  public static interface AsyncRequestHandler extends RequestHandler {
+    /**
+     * The request bytebuf is released by the caller as soon as this method returns, so the implementation must be
+     * done reading it by then. The returned future is expected to complete with an error response rather than fail.
+     * Ownership of the response bytebuf passes to the caller, which releases it once it has been written out, so the
+     * response may wrap the serialized data without copying it.
+     *
+     * @param request Serialized request
+     * @return Future of the serialized response
+     */
+    public ListenableFuture<ByteBuf> processRequestAsync(ByteBuf request);
+  }
+
   public static interface RequestHandlerFactory {
 
     /**
@@ -213,6 +235,15 @@ public abstract class NettyServer implements Runnable {
       ByteBuf request = (ByteBuf) msg;
       _lastRequsetSizeInBytes = request.readableBytes();
 
+      if (_handler instanceof AsyncRequestHandler) {
+        try {
+          processRequestAsync(ctx, request);
+        } finally {
+          request.release();
+        }
+        return;
+      }
+
       //Call processing handler
       _lastProcessingLatency = MetricsHelper.startTimer();
       byte[] response = _handler.processRequest(request);
@@ -220,6 +251,7 @@ public abstract class NettyServer implements Runnable {
 
       // Send Response
       ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
+      addCompressionStats(responseBuf);
       _lastSendResponseLatency = MetricsHelper.startTimer();
       ChannelFuture f = ctx.writeAndFlush(responseBuf);
       _state = State.RESPONSE_WRITTEN;
@@ -227,6 +259,56 @@ public abstract class NettyServer implements Runnable {
       request.release();
     }
 
+    /**
+     * Several requests of the channel may be in flight at once, so the metrics of a request are tracked in the
+     * callbacks rather than in the handler state.
+     */
+    private void processRequestAsync(final ChannelHandlerContext ctx, ByteBuf request) {
+      final long requestStartTime = _requestStartTime;
+      final long requestSizeInBytes = _lastRequsetSizeInBytes;
+      final TimerContext processingLatency = MetricsHelper.startTimer();
+      ListenableFuture<ByteBuf> responseFuture = ((AsyncRequestHandler) _handler).processRequestAsync(request);
+      Futures.addCallback(responseFuture, new FutureCallback<ByteBuf>() {
+        @Override
+        public void onSuccess(ByteBuf response) {
+          processingLatency.stop();
+          // The buffer is released by the channel once written, so its size has to be captured beforehand
+          final long responseSizeInBytes = response.readableBytes();
+          addCompressionStats(response);
+          final TimerContext sendResponseLatency = MetricsHelper.startTimer();
+          ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+              sendResponseLatency.stop();
+              _metric.addServingStats(requestSizeInBytes, responseSizeInBytes, 1L, false,
+                  processingLatency.getLatencyMs(), sendResponseLatency.getLatencyMs());
+              long totalQueryTime = System.currentTimeMillis() - requestStartTime;
+              if (totalQueryTime > _defaultLargeQueryLatencyMs) {
+                LOGGER.info("Trace Info: request handler processing time : {}, send response latency: {}, total time to handle request: {}",
+                    processingLatency.getLatencyMs(), sendResponseLatency.getLatencyMs(), totalQueryTime);
+              }
+            }
+          });
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          exceptionCaught(ctx, t);
+        }
+      });
+    }
+
+    /**
+     * Responses are compressed by the request handler, the sizes before and after compression are recorded from the
+     * header of the compressed response.
+     */
+    private void addCompressionStats(ByteBuf response) {
+      if (ResponseCompressionUtils.isCompressed(response)) {
+        _metric.addCompressionStats(ResponseCompressionUtils.getUncompressedLength(response),
+            response.readableBytes());
+      }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
       _state = State.EXCEPTION;
@@ -25,7 +25,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -37,7 +40,9 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
 import com.linkedin.pinot.transport.common.BucketingSelection;
+import com.linkedin.pinot.transport.common.Cancellable;
 import com.linkedin.pinot.transport.common.CompositeFuture;
 import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
 import com.linkedin.pinot.transport.common.KeyedFuture;
@@ -45,10 +50,12 @@ import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
 import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.common.SelectingFuture;
 import com.linkedin.pinot.transport.netty.NettyClientConnection;
 import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
 import com.linkedin.pinot.transport.pool.KeyedPool;
 import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Meter;
 import com.yammer.metrics.core.MetricName;
 
 
@@ -66,14 +73,31 @@ public class ScatterGatherImpl implements ScatterGather {
   private final Histogram _latency = MetricsHelper.newHistogram(null, new MetricName(ScatterGatherImpl.class,
       "ScatterGatherLatency"), false);
 
+  private final Meter _speculativeRequestsSent = MetricsHelper.newMeter(null, new MetricName(ScatterGatherImpl.class,
+      "SpeculativeRequestsSent"), "requests", TimeUnit.SECONDS);
+
+  private final Meter _speculativeRequestsWon = MetricsHelper.newMeter(null, new MetricName(ScatterGatherImpl.class,
+      "SpeculativeRequestsWon"), "requests", TimeUnit.SECONDS);
+
+  /**
+   * Scheduler for sending speculative requests. Speculative requests are not sent if it is null.
+   */
+  private final ScheduledExecutorService _speculativeRequestScheduler;
+
   /**
    * Connection Pool for sending scatter-gather requests
    */
   private final KeyedPool<ServerInstance, NettyClientConnection> _connPool;
 
   public ScatterGatherImpl(KeyedPool<ServerInstance, NettyClientConnection> pool, ExecutorService service) {
+    this(pool, service, null);
+  }
+
+  public ScatterGatherImpl(KeyedPool<ServerInstance, NettyClientConnection> pool, ExecutorService service,
+      ScheduledExecutorService speculativeRequestScheduler) {
     _connPool = pool;
     _executorService = service;
+    _speculativeRequestScheduler = speculativeRequestScheduler;
   }
 
   @Override
@@ -136,8 +160,16 @@ public class ScatterGatherImpl implements ScatterGather {
     if (sentSuccessfully) {
       List<KeyedFuture<ServerInstance, ByteBuf>> responseFutures =
           new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+      int speculativeRequestSeq = 0;
       for (SingleRequestHandler h : handlers) {
-        responseFutures.add(h.getResponseFuture());
+        Map<ServerInstance, SegmentIdSet> speculativeServers = selectSpeculativeServers(ctxt, h);
+        if (null == speculativeServers) {
+          responseFutures.add(h.getResponseFuture());
+        } else {
+          responseFutures.add(new SpeculativeRequestHandler(ctxt, h, speculativeServers, speculativeRequestSeq)
+              .start());
+          speculativeRequestSeq += speculativeServers.size();
+        }
       }
       response.start(responseFutures);
     } else {
@@ -278,6 +310,52 @@ public class ScatterGatherImpl implements ScatterGather {
     requestContext.setSelectedServers(selectedServers);
   }
 
+  /**
+   * Select the replicas to send the speculative request for the segments of the given scattered request to. The
+   * replicas already selected for other segments are preferred, so that the speculative request is split over as few
+   * servers as possible.
+   *
+   * @return Selected servers with their segments, or null if no speculative request needs to or can be sent.
+   */
+  protected Map<ServerInstance, SegmentIdSet> selectSpeculativeServers(ScatterGatherRequestContext requestContext,
+      SingleRequestHandler handler) {
+    ScatterGatherRequest request = requestContext.getRequest();
+    if ((null == _speculativeRequestScheduler) || (request.getNumSpeculativeRequests() <= 0)
+        || (request.getSpeculativeRequestDelayMS() < 0) || (null == handler.getResponseFuture())) {
+      return null;
+    }
+
+    Map<ServerInstance, SegmentIdSet> selectedServers = new HashMap<ServerInstance, SegmentIdSet>();
+    ReplicaSelection selection = request.getReplicaSelection();
+    for (SegmentId segmentId : handler.getSegmentIds().getSegments()) {
+      List<ServerInstance> replicas = request.getReplicas(segmentId);
+      if (null == replicas) {
+        return null;
+      }
+      List<ServerInstance> candidates = new ArrayList<ServerInstance>(replicas.size());
+      ServerInstance selectedServer = null;
+      for (ServerInstance replica : replicas) {
+        if (replica.equals(handler.getServer())) {
+          continue;
+        }
+        if (selectedServers.containsKey(replica)) {
+          selectedServer = replica;
+          break;
+        }
+        candidates.add(replica);
+      }
+      if (null == selectedServer) {
+        if (candidates.isEmpty()) {
+          // No other replica for this segment
+          return null;
+        }
+        selectedServer = selection.selectServer(segmentId, candidates, request.getHashKey());
+      }
+      mergePartitionGroup(selectedServers, selectedServer, segmentId);
+    }
+    return selectedServers;
+  }
+
   public static class ScatterGatherRequestContext {
     private final long _startTimeMs;
 
@@ -398,6 +476,7 @@ public class ScatterGatherImpl implements ScatterGather {
         ByteBuf req = Unpooled.wrappedBuffer(serializedRequest);
         _responseFuture = conn.sendRequest(req, _request.getRequestId(), _timeoutMS);
         _isSent.set(true);
+        trackResponseTime(_responseFuture);
         LOGGER.debug("Response Future is : {}", _responseFuture);
       } catch (TimeoutException e1) {
         LOGGER.error("Timed out waiting for connection for server (" + _server + ") (" + _request.getRequestId()
@@ -411,6 +490,31 @@ public class ScatterGatherImpl implements ScatterGather {
       }
     }
 
+    /**
+     * Let the replica selection policy know about the outstanding request and the time it took to complete. Cancelled
+     * requests are not timed, as they did not get the chance to complete.
+     */
+    private void trackResponseTime(final ResponseFuture responseFuture) {
+      final ReplicaSelection replicaSelection = _request.getReplicaSelection();
+      if (null == replicaSelection) {
+        return;
+      }
+      final long sendTimeMs = System.currentTimeMillis();
+      replicaSelection.onRequestSent(_server);
+      responseFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (responseFuture.isCancelled()) {
+            replicaSelection.onRequestCancelled(_server);
+            return;
+          }
+          Map<ServerInstance, Throwable> error = responseFuture.getError();
+          replicaSelection.onRequestCompleted(_server, System.currentTimeMillis() - sendTimeMs,
+              (null != error) && !error.isEmpty());
+        }
+      }, null);
+    }
+
     /**
      * Cancel checking-out request if possible. If in unsafe state (request already sent),
      * discard the connection from the pool.
@@ -436,15 +540,206 @@ public class ScatterGatherImpl implements ScatterGather {
       return _server;
     }
 
+    public SegmentIdSet getSegmentIds() {
+      return _segmentIds;
+    }
+
     public ResponseFuture getResponseFuture() {
       return _responseFuture;
     }
   }
 
+  /**
+   * Sends the speculative request for the segments of a scattered request, once the scattered request has neither
+   * responded within the speculative request delay nor failed. The response future of the handler and the one of the
+   * speculative request race in a {@link SelectingFuture}: whichever completes successfully first is the response,
+   * and the other one gets cancelled.
+   */
+  private class SpeculativeRequestHandler implements Runnable, Cancellable {
+    private final ScatterGatherRequestContext _ctxt;
+    private final SingleRequestHandler _handler;
+    // Servers to send the speculative request to, with their segments
+    private final List<ServerInstance> _servers;
+    private final List<SegmentIdSet> _segmentIdSets;
+    // Futures for the speculative responses, completed once the speculative request is sent and answered. They are
+    // keyed by distinct server instances, so that they do not collide with the responses of other scattered requests
+    // to the same servers.
+    private final List<AsyncResponseFuture<ServerInstance, ByteBuf>> _speculativeResponseFutures;
+    private final List<SingleRequestHandler> _speculativeHandlers = new CopyOnWriteArrayList<SingleRequestHandler>();
+    private final AtomicBoolean _isSent = new AtomicBoolean(false);
+    private final AtomicBoolean _isCancelled = new AtomicBoolean(false);
+    private volatile ScheduledFuture<?> _scheduledFuture;
+
+    public SpeculativeRequestHandler(ScatterGatherRequestContext ctxt, SingleRequestHandler handler,
+        Map<ServerInstance, SegmentIdSet> speculativeServers, int seq) {
+      _ctxt = ctxt;
+      _handler = handler;
+      _servers = new ArrayList<ServerInstance>(speculativeServers.size());
+      _segmentIdSets = new ArrayList<SegmentIdSet>(speculativeServers.size());
+      _speculativeResponseFutures =
+          new ArrayList<AsyncResponseFuture<ServerInstance, ByteBuf>>(speculativeServers.size());
+      for (Entry<ServerInstance, SegmentIdSet> e : speculativeServers.entrySet()) {
+        ServerInstance key = new ServerInstance(e.getKey().getHostname(), e.getKey().getPort(), ++seq);
+        AsyncResponseFuture<ServerInstance, ByteBuf> future =
+            new AsyncResponseFuture<ServerInstance, ByteBuf>(key, "Speculative request "
+                + ctxt.getRequest().getRequestId() + " to server " + e.getKey());
+        future.setCancellable(this);
+        _servers.add(e.getKey());
+        _segmentIdSets.add(e.getValue());
+        _speculativeResponseFutures.add(future);
+      }
+    }
+
+    /**
+     * Schedules the speculative request and returns the future for the first successful response.
+     */
+    public KeyedFuture<ServerInstance, ByteBuf> start() {
+      List<KeyedFuture<ServerInstance, ByteBuf>> speculativeResponseFutures =
+          new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>(_speculativeResponseFutures);
+      CompositeFuture<ServerInstance, ByteBuf> speculativeResponse =
+          new CompositeFuture<ServerInstance, ByteBuf>("speculativeRequest", GatherModeOnError.SHORTCIRCUIT_AND);
+      speculativeResponse.start(speculativeResponseFutures);
+
+      List<KeyedFuture<ServerInstance, ByteBuf>> candidates = new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>(2);
+      candidates.add(_handler.getResponseFuture());
+      candidates.add(speculativeResponse);
+      final SelectingFuture<ServerInstance, ByteBuf> selectingFuture =
+          new SelectingFuture<ServerInstance, ByteBuf>("speculativeScatterRequest");
+      selectingFuture.start(candidates);
+      selectingFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          onSelected(selectingFuture);
+        }
+      }, null);
+
+      _scheduledFuture =
+          _speculativeRequestScheduler.schedule(this, _ctxt.getRequest().getSpeculativeRequestDelayMS(),
+              TimeUnit.MILLISECONDS);
+      // Do not wait for the delay if the scattered request already failed.
+      _handler.getResponseFuture().addListener(new Runnable() {
+        @Override
+        public void run() {
+          Map<ServerInstance, Throwable> error = _handler.getResponseFuture().getError();
+          if ((null != error) && !error.isEmpty()) {
+            LOGGER.info("Request {} to server {} failed, sending speculative request", _ctxt.getRequest()
+                .getRequestId(), _handler.getServer());
+            SpeculativeRequestHandler.this.run();
+          }
+        }
+      }, null);
+      return selectingFuture;
+    }
+
+    private void onSelected(SelectingFuture<ServerInstance, ByteBuf> selectingFuture) {
+      ScheduledFuture<?> scheduledFuture = _scheduledFuture;
+      if (null != scheduledFuture) {
+        scheduledFuture.cancel(false);
+      }
+      try {
+        Map<ServerInstance, ByteBuf> response = selectingFuture.get();
+        if (_isSent.get() && (null != response) && !response.containsKey(_handler.getServer())) {
+          _speculativeRequestsWon.mark();
+        }
+      } catch (Exception e) {
+        LOGGER.debug("Caught exception while getting the selected response", e);
+      }
+    }
+
+    /**
+     * Send the speculative request, unless it was already sent or is not needed anymore.
+     */
+    @Override
+    public void run() {
+      if (_isCancelled.get() || (_handler.getResponseFuture().isDone() && !hasError(_handler.getResponseFuture()))) {
+        return;
+      }
+      if (!_isSent.compareAndSet(false, true)) {
+        return;
+      }
+      LOGGER.debug("Sending speculative request {} for segments {} of server {}", _ctxt.getRequest().getRequestId(),
+          _handler.getSegmentIds(), _handler.getServer());
+      _speculativeRequestsSent.mark();
+
+      for (int i = 0; i < _servers.size(); i++) {
+        final AsyncResponseFuture<ServerInstance, ByteBuf> speculativeResponseFuture =
+            _speculativeResponseFutures.get(i);
+        final SingleRequestHandler handler =
+            new SingleRequestHandler(_connPool, _servers.get(i), _ctxt.getRequest(), _segmentIdSets.get(i),
+                _ctxt.getTimeRemaining(), new CountDownLatch(1));
+        _speculativeHandlers.add(handler);
+        if (_isCancelled.get()) {
+          handler.cancel();
+        }
+        _executorService.submit(new Runnable() {
+          @Override
+          public void run() {
+            handler.run();
+            forwardResponse(handler.getResponseFuture(), speculativeResponseFuture);
+          }
+        });
+      }
+    }
+
+    /**
+     * Cancels the speculative request, called when the response of the scattered request was selected.
+     */
+    @Override
+    public boolean cancel() {
+      _isCancelled.set(true);
+      for (SingleRequestHandler handler : _speculativeHandlers) {
+        handler.cancel();
+      }
+      return true;
+    }
+
+    private boolean hasError(KeyedFuture<ServerInstance, ByteBuf> future) {
+      Map<ServerInstance, Throwable> error = future.getError();
+      return (null != error) && !error.isEmpty();
+    }
+
+    private void forwardResponse(final ResponseFuture from, final AsyncResponseFuture<ServerInstance, ByteBuf> to) {
+      if (null == from) {
+        // Request was cancelled before being sent
+        to.onError(new IllegalStateException("Speculative request " + _ctxt.getRequest().getRequestId()
+            + " was cancelled"));
+        return;
+      }
+      from.addListener(new Runnable() {
+        @Override
+        public void run() {
+          if (hasError(from)) {
+            to.onError(from.getError().values().iterator().next());
+            return;
+          }
+          try {
+            ByteBuf response = from.getOne();
+            if (null == response) {
+              to.onError(new IllegalStateException("Speculative request " + _ctxt.getRequest().getRequestId()
+                  + " was cancelled"));
+            } else {
+              to.onSuccess(response);
+            }
+          } catch (Exception e) {
+            to.onError(e);
+          }
+        }
+      }, null);
+    }
+  }
+
   public Histogram getLatency() {
     return _latency;
   }
 
+  public Meter getSpeculativeRequestsSent() {
+    return _speculativeRequestsSent;
+  }
+
+  public Meter getSpeculativeRequestsWon() {
+    return _speculativeRequestsWon;
+  }
+
   /**
    * This is used to checkin the connections once the responses/errors are obtained
    *
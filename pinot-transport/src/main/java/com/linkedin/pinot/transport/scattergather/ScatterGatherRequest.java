@@ -15,12 +15,14 @@
  */
 package com.linkedin.pinot.transport.scattergather;
 
+import java.util.List;
 import java.util.Map;
 
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.transport.common.BucketingSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelection;
 import com.linkedin.pinot.transport.common.ReplicaSelectionGranularity;
+import com.linkedin.pinot.transport.common.SegmentId;
 import com.linkedin.pinot.transport.common.SegmentIdSet;
 
 
@@ -74,10 +76,23 @@ public interface ScatterGatherRequest {
    * to be sent foe each scattered request. To turn off speculative requests, this method should
    * return 0.
    *
-   * TODO: Currently Not implemented
+   * Currently at most one speculative request is sent for each scattered request. It is only sent when there is no
+   * response after {@link #getSpeculativeRequestDelayMS()}, or when the scattered request failed.
    */
   public int getNumSpeculativeRequests();
 
+  /**
+   * Return the time in MS to wait for the response of a scattered request before sending the speculative request
+   * for its segments to other replicas.
+   */
+  public long getSpeculativeRequestDelayMS();
+
+  /**
+   * Return the servers hosting the segment, among which the replicas for speculative requests are selected.
+   * @return Servers hosting the segment, or null if they are not known.
+   */
+  public List<ServerInstance> getReplicas(SegmentId segmentId);
+
   /**
    * Used for diagnostics, A predefined selection of service can be chosen for each segments
    * and sent to the Scatter-Gather. Scatter-Gather will honor such selection and do not override them.
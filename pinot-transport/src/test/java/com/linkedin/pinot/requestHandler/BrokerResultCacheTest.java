@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.response.BrokerResponse;
+
+
+public class BrokerResultCacheTest {
+
+  @Test
+  public void testKey() {
+    BrokerResultCache cache = new BrokerResultCache(10, 1000000L, 1000000L);
+    List<String> tables = Arrays.asList("myTable_OFFLINE", "myTable_REALTIME");
+
+    String key = cache.getKey(getRequest("myTable"), tables, new long[] { 1, 2 });
+    Assert.assertNotNull(key);
+    Assert.assertEquals(cache.getKey(getRequest("myTable"), tables, new long[] { 1, 2 }), key);
+
+    // Different segments, different requests
+    Assert.assertFalse(key.equals(cache.getKey(getRequest("myTable"), tables, new long[] { 1, 3 })));
+    Assert.assertFalse(key.equals(cache.getKey(getRequest("otherTable"), tables, new long[] { 1, 2 })));
+
+    // Bucket hash key does not matter
+    BrokerRequest request = getRequest("myTable");
+    request.setBucketHashKey("key");
+    Assert.assertEquals(cache.getKey(request, tables, new long[] { 1, 2 }), key);
+
+    // Not cached: untracked segments or traced requests
+    Assert.assertNull(cache.getKey(getRequest("myTable"), tables, new long[] { 1, -1 }));
+    request = getRequest("myTable");
+    request.setEnableTrace(true);
+    Assert.assertNull(cache.getKey(request, tables, new long[] { 1, 2 }));
+  }
+
+  @Test
+  public void testCache() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(2, 1000000L, 1L);
+    BrokerResponse response = new BrokerResponse();
+
+    cache.put("key0", Arrays.asList("table0_OFFLINE"), response);
+    cache.put("key1", Arrays.asList("table1_OFFLINE"), response);
+    Assert.assertEquals(cache.get("key0").toString(), response.toString());
+
+    // Least recently used entry is evicted
+    cache.put("key2", Arrays.asList("table0_OFFLINE", "table2_OFFLINE"), response);
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertNull(cache.get("key1"));
+    Assert.assertNotNull(cache.get("key0"));
+
+    // Invalidation drops all the entries of the table
+    cache.onRoutingTableChange("table0_OFFLINE");
+    Assert.assertEquals(cache.size(), 0);
+
+    // Realtime entries expire sooner
+    cache.put("key3", Arrays.asList("table3_OFFLINE", "table3_REALTIME"), response);
+    Thread.sleep(10);
+    Assert.assertNull(cache.get("key3"));
+
+    // Responses with exceptions are not cached
+    cache.put("key4", Arrays.asList("table4_OFFLINE"), BrokerResponse.NO_TABLE_RESULT);
+    Assert.assertNull(cache.get("key4"));
+
+    // Neither are partial responses
+    BrokerResponse partialResponse = new BrokerResponse();
+    partialResponse.setPartialResult(true);
+    cache.put("key5", Arrays.asList("table5_OFFLINE"), partialResponse);
+    Assert.assertNull(cache.get("key5"));
+  }
+
+  @Test
+  public void testCachedResponseIsNotShared() throws Exception {
+    BrokerResultCache cache = new BrokerResultCache(10, 1000000L, 1000000L);
+    BrokerResponse response = new BrokerResponse();
+    response.setTotalDocs(10);
+    response.addToAggregationResults(new JSONObject().put("function", "count_star").put("value", "10"));
+    response.setSelectionResults(new JSONObject().put("columns", new JSONArray().put("column")));
+    cache.put("key", Arrays.asList("table_OFFLINE"), response);
+    String expected = response.toString();
+
+    // Modifying the response put or the responses returned does not modify the cached one
+    response.setTotalDocs(20);
+    response.getAggregationResults().get(0).put("value", "20");
+    BrokerResponse cachedResponse = cache.get("key");
+    Assert.assertEquals(cachedResponse.toString(), expected);
+    cachedResponse.setTimeUsedMs(5);
+    cachedResponse.getAggregationResults().get(0).put("value", "30");
+    cachedResponse.getSelectionResults().getJSONArray("columns").put("otherColumn");
+    cachedResponse.addToExceptions(QueryException.BROKER_TIMEOUT_ERROR);
+    Assert.assertNotSame(cache.get("key"), cachedResponse);
+    Assert.assertEquals(cache.get("key").toString(), expected);
+  }
+
+  private static BrokerRequest getRequest(String tableName) {
+    BrokerRequest request = new BrokerRequest();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    request.setQuerySource(querySource);
+    return request;
+  }
+}
@@ -163,6 +163,60 @@ public class CompositeFutureTest {
     executor.shutdown();
   }
 
+  @Test
+  /**
+   * Keys of the underlying futures are handed out in completion order, for both responses and errors.
+   * @throws Exception
+   */
+  public void testCompletedKeys() throws Exception {
+    int numFutures = 10;
+    Map<String, KeyedFuture<String, String>> futureMap = new HashMap<String, KeyedFuture<String, String>>();
+    for (int i = 0; i < numFutures; i++) {
+      String key = "key_" + i;
+      futureMap.put(key, new AsyncResponseFuture<String, String>(key, ""));
+    }
+    CompositeFuture<String, String> compositeFuture =
+        new CompositeFuture<String, String>("test", GatherModeOnError.AND);
+    compositeFuture.start(futureMap.values());
+
+    // Complete the futures in reverse order, every third one with an error
+    for (int i = numFutures - 1; i >= 0; i--) {
+      String k = "key_" + i;
+      AsyncResponseFuture<String, String> future = (AsyncResponseFuture<String, String>) futureMap.get(k);
+      if (i % 3 == 0) {
+        future.onError(new Exception("error processing_" + i));
+      } else {
+        future.onSuccess("dummy Message_" + i);
+      }
+      Assert.assertEquals(compositeFuture.takeCompletedKey(), k);
+      if (i % 3 == 0) {
+        Assert.assertNull(compositeFuture.removeResponse(k));
+        Assert.assertNotNull(compositeFuture.getError().get(k));
+      } else {
+        Assert.assertEquals(compositeFuture.removeResponse(k), "dummy Message_" + i);
+      }
+    }
+
+    Assert.assertTrue(compositeFuture.isDone(), "Composite Is Done ? ");
+    Assert.assertNull(compositeFuture.takeCompletedKey());
+    Assert.assertNull(compositeFuture.takeCompletedKey());
+    Assert.assertTrue(compositeFuture.get().isEmpty(), "All responses removed :");
+
+    // With SHORTCIRCUIT_AND, no more keys are handed out after the first error
+    futureMap.clear();
+    for (int i = 0; i < numFutures; i++) {
+      String key = "key_" + i;
+      futureMap.put(key, new AsyncResponseFuture<String, String>(key, ""));
+    }
+    compositeFuture = new CompositeFuture<String, String>("test", GatherModeOnError.SHORTCIRCUIT_AND);
+    compositeFuture.start(futureMap.values());
+    ((AsyncResponseFuture<String, String>) futureMap.get("key_0")).onSuccess("dummy Message_0");
+    ((AsyncResponseFuture<String, String>) futureMap.get("key_1")).onError(new Exception("error processing_1"));
+    Assert.assertEquals(compositeFuture.takeCompletedKey(), "key_0");
+    Assert.assertEquals(compositeFuture.takeCompletedKey(), "key_1");
+    Assert.assertNull(compositeFuture.takeCompletedKey());
+  }
+
   @Test
   /**
    * Cancelled Future. Future Client calls get() and another listens before cancel().
@@ -90,6 +90,60 @@ public class ReplicaSelectionTest {
 
   }
 
+  @Test
+  public void testLatencyAwareSelection() {
+    LatencyAwareReplicaSelection sel1 = new LatencyAwareReplicaSelection(0.5, 1000, 0);
+
+    ServerInstance s1 = new ServerInstance("localhost", 8080);
+    ServerInstance s2 = new ServerInstance("localhost", 8081);
+
+    // Verify for an empty list, selectServer returns null
+    List<ServerInstance> candidates = new ArrayList<ServerInstance>();
+    Assert.assertNull(sel1.selectServer(new SegmentId("1"), candidates, null));
+    candidates.add(s1);
+    Assert.assertEquals(sel1.selectServer(new SegmentId("1"), candidates, null), s1);
+    candidates.add(s2);
+
+    // EWMA of the latencies
+    sel1.onRequestSent(s1);
+    Assert.assertEquals(sel1.getNumOutstandingRequests(s1), 1);
+    sel1.onRequestCompleted(s1, 100, false);
+    Assert.assertEquals(sel1.getNumOutstandingRequests(s1), 0);
+    Assert.assertEquals(sel1.getLatencyMs(s1), 100.0);
+    sel1.onRequestSent(s1);
+    sel1.onRequestCompleted(s1, 300, false);
+    Assert.assertEquals(sel1.getLatencyMs(s1), 200.0);
+    sel1.onRequestSent(s2);
+    sel1.onRequestCompleted(s2, 10, false);
+    Assert.assertEquals(sel1.getLatencyMs(s2), 10.0);
+
+    // Cancelled requests are no longer outstanding, but do not change the latency
+    sel1.onRequestSent(s2);
+    Assert.assertEquals(sel1.getNumOutstandingRequests(s2), 1);
+    sel1.onRequestCancelled(s2);
+    Assert.assertEquals(sel1.getNumOutstandingRequests(s2), 0);
+    Assert.assertEquals(sel1.getLatencyMs(s2), 10.0);
+
+    // The faster server is selected
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(sel1.selectServer(new SegmentId("1"), candidates, null), s2);
+    }
+
+    // Until it has too many outstanding requests
+    for (int i = 0; i < 50; i++) {
+      sel1.onRequestSent(s2);
+    }
+    Assert.assertEquals(sel1.selectServer(new SegmentId("1"), candidates, null), s1);
+
+    // Errors are penalized
+    for (int i = 0; i < 50; i++) {
+      sel1.onRequestCompleted(s2, 1, true);
+    }
+    Assert.assertEquals(sel1.getNumOutstandingRequests(s2), 0);
+    Assert.assertTrue(sel1.getLatencyMs(s2) > sel1.getLatencyMs(s1));
+    Assert.assertEquals(sel1.selectServer(new SegmentId("1"), candidates, null), s1);
+  }
+
   public static class BucketKey {
     private final int _key;
 
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class ResponseCompressionUtilsTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    // Repeated keys, like the ones of a wide selection or group by response
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.append("memberId_").append(i % 10).append("\tcountry_us\t");
+    }
+    byte[] payload = builder.toString().getBytes("UTF-8");
+
+    for (CompressionCodec codec : new CompressionCodec[] { CompressionCodec.LZ4, CompressionCodec.SNAPPY }) {
+      ByteBuf response = Unpooled.wrappedBuffer(payload);
+      ByteBuf compressed = ResponseCompressionUtils.compress(response, codec);
+      Assert.assertNotNull(compressed, codec.toString());
+      Assert.assertTrue(compressed.readableBytes() < payload.length, codec.toString());
+      Assert.assertTrue(ResponseCompressionUtils.isCompressed(compressed));
+      Assert.assertEquals(ResponseCompressionUtils.getUncompressedLength(compressed), payload.length);
+      // Compression does not consume the response
+      Assert.assertEquals(response.readableBytes(), payload.length);
+
+      ByteBuffer decompressed = ResponseCompressionUtils.decompress(compressed.nioBuffer());
+      byte[] actual = new byte[decompressed.remaining()];
+      decompressed.get(actual);
+      Assert.assertEquals(actual, payload, codec.toString());
+    }
+  }
+
+  @Test
+  public void testUncompressedResponse() throws Exception {
+    // Serialized data tables start with a small positive version
+    ByteBuffer response = ByteBuffer.allocate(64);
+    response.putInt(2);
+    response.flip();
+    Assert.assertFalse(ResponseCompressionUtils.isCompressed(Unpooled.wrappedBuffer(response.duplicate())));
+    Assert.assertSame(ResponseCompressionUtils.decompress(response), response);
+
+    ByteBuffer empty = ByteBuffer.allocate(0);
+    Assert.assertSame(ResponseCompressionUtils.decompress(empty), empty);
+  }
+
+  @Test
+  public void testIncompressibleResponse() throws Exception {
+    byte[] payload = new byte[1024];
+    new Random(0).nextBytes(payload);
+    Assert.assertNull(ResponseCompressionUtils.compress(Unpooled.wrappedBuffer(payload), CompressionCodec.LZ4));
+  }
+
+  @Test
+  public void testFromId() {
+    for (CompressionCodec codec : CompressionCodec.values()) {
+      Assert.assertEquals(CompressionCodec.fromId(codec.getId()), codec);
+    }
+    Assert.assertNull(CompressionCodec.fromId(-1));
+  }
+}
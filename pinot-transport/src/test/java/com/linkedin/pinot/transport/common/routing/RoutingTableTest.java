@@ -28,6 +28,7 @@ import org.testng.annotations.Test;
 import com.linkedin.pinot.common.response.ServerInstance;
 import com.linkedin.pinot.common.utils.SegmentNameBuilder;
 import com.linkedin.pinot.routing.HelixExternalViewBasedRouting;
+import com.linkedin.pinot.routing.RoutingTableChangeListener;
 import com.linkedin.pinot.routing.RoutingTableLookupRequest;
 import com.linkedin.pinot.routing.builder.KafkaHighLevelConsumerBasedRoutingTableBuilder;
 import com.linkedin.pinot.routing.builder.RandomRoutingTableBuilder;
@@ -77,6 +78,49 @@ public class RoutingTableTest {
     }
   }
 
+  @Test
+  public void testSegmentSetFingerprint() {
+    RoutingTableBuilder routingStrategy = new RandomRoutingTableBuilder(10);
+    HelixExternalViewBasedRouting routingTable = new HelixExternalViewBasedRouting(routingStrategy, null, null, null);
+    final List<String> changedTables = new ArrayList<String>();
+    routingTable.addRoutingTableChangeListener(new RoutingTableChangeListener() {
+      @Override
+      public void onRoutingTableChange(String tableName) {
+        changedTables.add(tableName);
+      }
+    });
+    Assert.assertEquals(routingTable.getSegmentSetFingerprint("testResource0_OFFLINE"), -1);
+
+    ExternalView externalView = new ExternalView("testResource0_OFFLINE");
+    externalView.setState("segment0", "dataServer_instance_0", "ONLINE");
+    externalView.setState("segment1", "dataServer_instance_1", "ONLINE");
+    externalView.getRecord().setModifiedTime(1);
+    routingTable.markDataResourceOnline("testResource0_OFFLINE", externalView, new ArrayList<InstanceConfig>());
+    long fingerprint = routingTable.getSegmentSetFingerprint("testResource0_OFFLINE");
+    Assert.assertTrue(fingerprint != -1);
+    Assert.assertEquals(changedTables, Arrays.asList("testResource0_OFFLINE"));
+
+    // Moving a segment to another server keeps the fingerprint
+    externalView = new ExternalView("testResource0_OFFLINE");
+    externalView.setState("segment0", "dataServer_instance_1", "ONLINE");
+    externalView.setState("segment1", "dataServer_instance_0", "ONLINE");
+    externalView.getRecord().setModifiedTime(2);
+    routingTable.markDataResourceOnline("testResource0_OFFLINE", externalView, new ArrayList<InstanceConfig>());
+    Assert.assertEquals(routingTable.getSegmentSetFingerprint("testResource0_OFFLINE"), fingerprint);
+    Assert.assertEquals(changedTables.size(), 1);
+
+    // Adding a segment changes it
+    externalView.setState("segment2", "dataServer_instance_0", "ONLINE");
+    externalView.getRecord().setModifiedTime(3);
+    routingTable.markDataResourceOnline("testResource0_OFFLINE", externalView, new ArrayList<InstanceConfig>());
+    Assert.assertTrue(routingTable.getSegmentSetFingerprint("testResource0_OFFLINE") != fingerprint);
+    Assert.assertEquals(changedTables.size(), 2);
+
+    routingTable.markDataResourceOffline("testResource0_OFFLINE");
+    Assert.assertEquals(routingTable.getSegmentSetFingerprint("testResource0_OFFLINE"), -1);
+    Assert.assertEquals(changedTables.size(), 3);
+  }
+
   private void assertResourceRequest(HelixExternalViewBasedRouting routingTable, String resource,
       String expectedSegmentList, int expectedNumSegment) {
     RoutingTableLookupRequest request = new RoutingTableLookupRequest(resource);
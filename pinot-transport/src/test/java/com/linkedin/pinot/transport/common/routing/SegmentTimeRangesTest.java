@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common.routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.routing.SegmentTimeRanges;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+public class SegmentTimeRangesTest {
+  private static final ServerInstance SERVER_0 = new ServerInstance("localhost", 1000);
+  private static final ServerInstance SERVER_1 = new ServerInstance("localhost", 1001);
+
+  @Test
+  public void testPrune() {
+    Map<String, long[]> timeRanges = new HashMap<String, long[]>();
+    timeRanges.put("segment0", new long[] { 0, 9 });
+    timeRanges.put("segment1", new long[] { 10, 19 });
+    timeRanges.put("segment2", new long[] { 20, 29 });
+    SegmentTimeRanges segmentTimeRanges = new SegmentTimeRanges("daysSinceEpoch", timeRanges);
+
+    Map<ServerInstance, SegmentIdSet> routing = new HashMap<ServerInstance, SegmentIdSet>();
+    routing.put(SERVER_0, getSegmentIdSet("segment0", "segment1"));
+    routing.put(SERVER_1, getSegmentIdSet("segment2", "segmentWithoutTime"));
+
+    // No filter on the time column
+    Assert.assertSame(segmentTimeRanges.prune(routing, getBrokerRequest(getLeaf("dim", "5", FilterOperator.EQUALITY))),
+        routing);
+
+    Map<ServerInstance, SegmentIdSet> pruned =
+        segmentTimeRanges.prune(routing, getBrokerRequest(getLeaf("daysSinceEpoch", "[25\t\t*)", FilterOperator.RANGE)));
+    Assert.assertEquals(pruned.size(), 1);
+    Assert.assertEquals(pruned.get(SERVER_1), getSegmentIdSet("segment2", "segmentWithoutTime"));
+
+    pruned =
+        segmentTimeRanges.prune(routing, getBrokerRequest(getLeaf("daysSinceEpoch", "(9\t\t20)", FilterOperator.RANGE)));
+    Assert.assertEquals(pruned.get(SERVER_0), getSegmentIdSet("segment1"));
+    Assert.assertEquals(pruned.get(SERVER_1), getSegmentIdSet("segmentWithoutTime"));
+
+    // Time filter under an AND with another column
+    List<FilterQueryTree> children = new ArrayList<FilterQueryTree>();
+    children.add(getLeaf("dim", "5", FilterOperator.EQUALITY));
+    children.add(getLeaf("daysSinceEpoch", "3\t\t5", FilterOperator.IN));
+    pruned = segmentTimeRanges.prune(routing,
+        getBrokerRequest(new FilterQueryTree(0, null, null, FilterOperator.AND, children)));
+    Assert.assertEquals(pruned.get(SERVER_0), getSegmentIdSet("segment0"));
+
+    // Time filter under an OR can not be used
+    pruned = segmentTimeRanges.prune(routing,
+        getBrokerRequest(new FilterQueryTree(0, null, null, FilterOperator.OR, children)));
+    Assert.assertSame(pruned, routing);
+  }
+
+  @Test
+  public void testPruneAllSegments() {
+    Map<String, long[]> timeRanges = new HashMap<String, long[]>();
+    timeRanges.put("segment0", new long[] { 0, 9 });
+    timeRanges.put("segment1", new long[] { 10, 19 });
+    SegmentTimeRanges segmentTimeRanges = new SegmentTimeRanges("daysSinceEpoch", timeRanges);
+    Map<ServerInstance, SegmentIdSet> routing = new HashMap<ServerInstance, SegmentIdSet>();
+    routing.put(SERVER_0, getSegmentIdSet("segment0"));
+    routing.put(SERVER_1, getSegmentIdSet("segment1"));
+
+    // One segment is kept, so that the query still gets a well formed empty result
+    Map<ServerInstance, SegmentIdSet> pruned =
+        segmentTimeRanges.prune(routing, getBrokerRequest(getLeaf("daysSinceEpoch", "100", FilterOperator.EQUALITY)));
+    Assert.assertEquals(pruned.size(), 1);
+    Assert.assertEquals(pruned.values().iterator().next().getSegments().size(), 1);
+  }
+
+  private static SegmentIdSet getSegmentIdSet(String... segments) {
+    SegmentIdSet segmentIdSet = new SegmentIdSet();
+    for (String segment : segments) {
+      segmentIdSet.addSegment(new SegmentId(segment));
+    }
+    return segmentIdSet;
+  }
+
+  private static FilterQueryTree getLeaf(String column, String value, FilterOperator operator) {
+    List<String> values = new ArrayList<String>();
+    values.add(value);
+    return new FilterQueryTree(column, values, operator, null);
+  }
+
+  private static BrokerRequest getBrokerRequest(FilterQueryTree filterQueryTree) {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    RequestUtils.generateFilterFromTree(filterQueryTree, brokerRequest);
+    return brokerRequest;
+  }
+}
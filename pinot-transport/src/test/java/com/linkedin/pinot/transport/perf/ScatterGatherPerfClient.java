@@ -473,6 +473,16 @@ public class ScatterGatherPerfClient implements Runnable {
       return 0;
     }
 
+    @Override
+    public long getSpeculativeRequestDelayMS() {
+      return -1;
+    }
+
+    @Override
+    public List<ServerInstance> getReplicas(SegmentId segmentId) {
+      return null;
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return null;
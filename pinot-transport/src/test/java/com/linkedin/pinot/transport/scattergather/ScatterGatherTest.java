@@ -22,9 +22,13 @@ import io.netty.util.HashedWheelTimer;
 import io.netty.util.ResourceLeakDetector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
@@ -599,6 +603,250 @@ public class ScatterGatherTest {
     server4.shutdownGracefully();
   }
 
+  @Test
+  public void testSpeculativeRequestWins() throws Exception {
+
+    MetricsRegistry registry = new MetricsRegistry();
+
+    // Server start
+    int serverPort1 = 7101; // Slow server
+    int serverPort2 = 7102;
+    NettyTCPServer server1 = new NettyTCPServer(serverPort1, new TestRequestHandlerFactory(0, 1, 3000, false), null);
+    NettyTCPServer server2 = new NettyTCPServer(serverPort2, new TestRequestHandlerFactory(1, 1), null);
+
+    Thread t1 = new Thread(server1);
+    Thread t2 = new Thread(server2);
+    t1.start();
+    t2.start();
+
+    //Client setup
+    ScheduledExecutorService timedExecutor = new ScheduledThreadPoolExecutor(1);
+    ScheduledExecutorService speculativeRequestScheduler = new ScheduledThreadPoolExecutor(1);
+    ExecutorService service = new ThreadPoolExecutor(5, 5, 5, TimeUnit.DAYS, new LinkedBlockingDeque<Runnable>());
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyClientMetrics clientMetrics = new NettyClientMetrics(registry, "client_");
+    PooledNettyClientResourceManager rm =
+        new PooledNettyClientResourceManager(eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    KeyedPoolImpl<ServerInstance, NettyClientConnection> pool =
+        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(1, 1, 300000, 1, rm, timedExecutor, service, registry);
+    rm.setPool(pool);
+
+    SegmentId segmentId = new SegmentId("0");
+    SegmentIdSet pg = new SegmentIdSet();
+    pg.addSegment(segmentId);
+
+    ServerInstance serverInstance1 = new ServerInstance("localhost", serverPort1);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", serverPort2);
+
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg);
+
+    Map<SegmentIdSet, String> pgMapStr = new HashMap<SegmentIdSet, String>();
+    pgMapStr.put(pg, "request_0");
+
+    Map<SegmentId, List<ServerInstance>> replicasMap = new HashMap<SegmentId, List<ServerInstance>>();
+    replicasMap.put(segmentId, Arrays.asList(serverInstance1, serverInstance2));
+
+    ScatterGatherRequest req =
+        new TestScatterGatherRequest(pgMap, pgMapStr, new RoundRobinReplicaSelection(),
+            ReplicaSelectionGranularity.SEGMENT_ID_SET, 1, 10000, 100, replicasMap);
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(pool, service, speculativeRequestScheduler);
+    long numSpeculativeRequestsSent = scImpl.getSpeculativeRequestsSent().count();
+    long numSpeculativeRequestsWon = scImpl.getSpeculativeRequestsWon().count();
+    long startTime = System.currentTimeMillis();
+    CompositeFuture<ServerInstance, ByteBuf> fut = scImpl.scatterGather(req);
+    Map<ServerInstance, ByteBuf> v = fut.get();
+    long timeTaken = System.currentTimeMillis() - startTime;
+
+    // The speculative request to the second server answers before the slow server
+    Assert.assertTrue(timeTaken < 3000, "Response did not wait for the slow server, took " + timeTaken + " ms");
+    Assert.assertEquals(v.size(), 1);
+    Assert.assertNull(v.get(serverInstance1), "No response from the slow server");
+    ByteBuf b = v.get(new ServerInstance("localhost", serverPort2, 1));
+    Assert.assertNotNull(b, "Response from the speculative request");
+    byte[] b2 = new byte[b.readableBytes()];
+    b.readBytes(b2);
+    String response = new String(b2);
+    Assert.assertEquals(response, "response_1_0");
+    Assert.assertTrue(fut.getError().isEmpty());
+
+    Assert.assertEquals(scImpl.getSpeculativeRequestsSent().count() - numSpeculativeRequestsSent, 1);
+    Assert.assertEquals(scImpl.getSpeculativeRequestsWon().count() - numSpeculativeRequestsWon, 1);
+
+    pool.shutdown();
+    service.shutdown();
+    speculativeRequestScheduler.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    server1.shutdownGracefully();
+    server2.shutdownGracefully();
+  }
+
+  @Test
+  public void testSpeculativeRequestCancelledWhenPrimaryWins() throws Exception {
+
+    MetricsRegistry registry = new MetricsRegistry();
+
+    // Server start
+    int serverPort1 = 7111;
+    int serverPort2 = 7112; // Slow server
+    NettyTCPServer server1 = new NettyTCPServer(serverPort1, new TestRequestHandlerFactory(0, 1, 500, false), null);
+    NettyTCPServer server2 = new NettyTCPServer(serverPort2, new TestRequestHandlerFactory(1, 1, 3000, false), null);
+
+    Thread t1 = new Thread(server1);
+    Thread t2 = new Thread(server2);
+    t1.start();
+    t2.start();
+
+    //Client setup
+    ScheduledExecutorService timedExecutor = new ScheduledThreadPoolExecutor(1);
+    ScheduledExecutorService speculativeRequestScheduler = new ScheduledThreadPoolExecutor(1);
+    ExecutorService service = new ThreadPoolExecutor(5, 5, 5, TimeUnit.DAYS, new LinkedBlockingDeque<Runnable>());
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyClientMetrics clientMetrics = new NettyClientMetrics(registry, "client_");
+    PooledNettyClientResourceManager rm =
+        new PooledNettyClientResourceManager(eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    KeyedPoolImpl<ServerInstance, NettyClientConnection> pool =
+        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(1, 1, 300000, 1, rm, timedExecutor, service, registry);
+    rm.setPool(pool);
+
+    SegmentId segmentId = new SegmentId("0");
+    SegmentIdSet pg = new SegmentIdSet();
+    pg.addSegment(segmentId);
+
+    ServerInstance serverInstance1 = new ServerInstance("localhost", serverPort1);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", serverPort2);
+
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg);
+
+    Map<SegmentIdSet, String> pgMapStr = new HashMap<SegmentIdSet, String>();
+    pgMapStr.put(pg, "request_0");
+
+    Map<SegmentId, List<ServerInstance>> replicasMap = new HashMap<SegmentId, List<ServerInstance>>();
+    replicasMap.put(segmentId, Arrays.asList(serverInstance1, serverInstance2));
+
+    RecordingReplicaSelection replicaSelection = new RecordingReplicaSelection();
+    ScatterGatherRequest req =
+        new TestScatterGatherRequest(pgMap, pgMapStr, replicaSelection,
+            ReplicaSelectionGranularity.SEGMENT_ID_SET, 1, 10000, 100, replicasMap);
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(pool, service, speculativeRequestScheduler);
+    long numSpeculativeRequestsSent = scImpl.getSpeculativeRequestsSent().count();
+    long numSpeculativeRequestsWon = scImpl.getSpeculativeRequestsWon().count();
+    long startTime = System.currentTimeMillis();
+    CompositeFuture<ServerInstance, ByteBuf> fut = scImpl.scatterGather(req);
+    Map<ServerInstance, ByteBuf> v = fut.get();
+    long timeTaken = System.currentTimeMillis() - startTime;
+
+    // The speculative request is sent after 100 ms, but the first server still answers first
+    Assert.assertTrue(timeTaken < 3000, "Response did not wait for the speculative request, took " + timeTaken
+        + " ms");
+    Assert.assertEquals(v.size(), 1);
+    ByteBuf b = v.get(serverInstance1);
+    Assert.assertNotNull(b, "Response from the first server");
+    byte[] b2 = new byte[b.readableBytes()];
+    b.readBytes(b2);
+    String response = new String(b2);
+    Assert.assertEquals(response, "response_0_0");
+    Assert.assertTrue(fut.getError().isEmpty());
+
+    Assert.assertEquals(scImpl.getSpeculativeRequestsSent().count() - numSpeculativeRequestsSent, 1);
+    Assert.assertEquals(scImpl.getSpeculativeRequestsWon().count() - numSpeculativeRequestsWon, 0);
+
+    // The outstanding speculative request got cancelled instead of waiting for the slow server, and is not counted
+    // as a completed request of that server
+    Thread.sleep(200);
+    Assert.assertTrue(replicaSelection.getCancelledServers().contains(serverInstance2),
+        "Speculative request cancelled");
+    Assert.assertFalse(replicaSelection.getCompletedServers().contains(serverInstance2),
+        "Cancelled speculative request not completed");
+    Assert.assertTrue(replicaSelection.getCompletedServers().contains(serverInstance1));
+
+    pool.shutdown();
+    service.shutdown();
+    speculativeRequestScheduler.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    server1.shutdownGracefully();
+    server2.shutdownGracefully();
+  }
+
+  @Test
+  public void testSpeculativeRequestAllReplicasFail() throws Exception {
+
+    MetricsRegistry registry = new MetricsRegistry();
+
+    // Server start
+    int serverPort1 = 7121; // error server
+    int serverPort2 = 7122; // error server
+    NettyTCPServer server1 = new NettyTCPServer(serverPort1, new TestRequestHandlerFactory(0, 1, 0, true), null);
+    NettyTCPServer server2 = new NettyTCPServer(serverPort2, new TestRequestHandlerFactory(1, 1, 0, true), null);
+
+    Thread t1 = new Thread(server1);
+    Thread t2 = new Thread(server2);
+    t1.start();
+    t2.start();
+
+    //Client setup
+    ScheduledExecutorService timedExecutor = new ScheduledThreadPoolExecutor(1);
+    ScheduledExecutorService speculativeRequestScheduler = new ScheduledThreadPoolExecutor(1);
+    ExecutorService service = new ThreadPoolExecutor(5, 5, 5, TimeUnit.DAYS, new LinkedBlockingDeque<Runnable>());
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyClientMetrics clientMetrics = new NettyClientMetrics(registry, "client_");
+    PooledNettyClientResourceManager rm =
+        new PooledNettyClientResourceManager(eventLoopGroup, new HashedWheelTimer(), clientMetrics);
+    KeyedPoolImpl<ServerInstance, NettyClientConnection> pool =
+        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(1, 1, 300000, 1, rm, timedExecutor, service, registry);
+    rm.setPool(pool);
+
+    SegmentId segmentId = new SegmentId("0");
+    SegmentIdSet pg = new SegmentIdSet();
+    pg.addSegment(segmentId);
+
+    ServerInstance serverInstance1 = new ServerInstance("localhost", serverPort1);
+    ServerInstance serverInstance2 = new ServerInstance("localhost", serverPort2);
+
+    Map<ServerInstance, SegmentIdSet> pgMap = new HashMap<ServerInstance, SegmentIdSet>();
+    pgMap.put(serverInstance1, pg);
+
+    Map<SegmentIdSet, String> pgMapStr = new HashMap<SegmentIdSet, String>();
+    pgMapStr.put(pg, "request_0");
+
+    Map<SegmentId, List<ServerInstance>> replicasMap = new HashMap<SegmentId, List<ServerInstance>>();
+    replicasMap.put(segmentId, Arrays.asList(serverInstance1, serverInstance2));
+
+    // The speculative request delay is longer than the request timeout, the speculative request is sent because the
+    // first server fails.
+    ScatterGatherRequest req =
+        new TestScatterGatherRequest(pgMap, pgMapStr, new RoundRobinReplicaSelection(),
+            ReplicaSelectionGranularity.SEGMENT_ID_SET, 1, 1000, 5000, replicasMap);
+    ScatterGatherImpl scImpl = new ScatterGatherImpl(pool, service, speculativeRequestScheduler);
+    long numSpeculativeRequestsSent = scImpl.getSpeculativeRequestsSent().count();
+    long numSpeculativeRequestsWon = scImpl.getSpeculativeRequestsWon().count();
+    long startTime = System.currentTimeMillis();
+    CompositeFuture<ServerInstance, ByteBuf> fut = scImpl.scatterGather(req);
+    Map<ServerInstance, ByteBuf> v = fut.get();
+    long timeTaken = System.currentTimeMillis() - startTime;
+
+    Assert.assertTrue(timeTaken < 5000, "Speculative request did not wait for its delay, took " + timeTaken + " ms");
+    Assert.assertTrue(v.isEmpty(), "No response from any replica");
+
+    Map<ServerInstance, Throwable> errorMap = fut.getError();
+    Assert.assertEquals(errorMap.size(), 1, "One error");
+    System.out.println("Error is :" + errorMap);
+
+    Assert.assertEquals(scImpl.getSpeculativeRequestsSent().count() - numSpeculativeRequestsSent, 1);
+    Assert.assertEquals(scImpl.getSpeculativeRequestsWon().count() - numSpeculativeRequestsWon, 0);
+
+    pool.shutdown();
+    service.shutdown();
+    speculativeRequestScheduler.shutdown();
+    eventLoopGroup.shutdownGracefully();
+
+    server1.shutdownGracefully();
+    server2.shutdownGracefully();
+  }
+
   public static class TestRequestHandlerFactory implements RequestHandlerFactory {
     public final int _numRequests;
     public final int _id;
@@ -679,6 +927,8 @@ public class ScatterGatherTest {
     private final ReplicaSelectionGranularity _granularity;
     private final int _numSpeculativeRequests;
     private final int _timeoutMS;
+    private final long _speculativeRequestDelayMS;
+    private final Map<SegmentId, List<ServerInstance>> _replicasMap;
 
     public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
         Map<SegmentIdSet, String> responsesMap) {
@@ -688,17 +938,29 @@ public class ScatterGatherTest {
       _granularity = ReplicaSelectionGranularity.SEGMENT_ID_SET;
       _numSpeculativeRequests = 0;
       _timeoutMS = 10000;
+      _speculativeRequestDelayMS = -1;
+      _replicasMap = null;
     }
 
     public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
         Map<SegmentIdSet, String> responsesMap, ReplicaSelection replicaSelection,
         ReplicaSelectionGranularity granularity, int numSpeculativeRequests, int timeoutMS) {
+      this(partitionServicesMap, responsesMap, replicaSelection, granularity, numSpeculativeRequests, timeoutMS, -1,
+          null);
+    }
+
+    public TestScatterGatherRequest(Map<ServerInstance, SegmentIdSet> partitionServicesMap,
+        Map<SegmentIdSet, String> responsesMap, ReplicaSelection replicaSelection,
+        ReplicaSelectionGranularity granularity, int numSpeculativeRequests, int timeoutMS,
+        long speculativeRequestDelayMS, Map<SegmentId, List<ServerInstance>> replicasMap) {
       _partitionServicesMap = partitionServicesMap;
       _responsesMap = responsesMap;
       _replicaSelection = replicaSelection;
       _granularity = granularity;
       _numSpeculativeRequests = numSpeculativeRequests;
       _timeoutMS = timeoutMS;
+      _speculativeRequestDelayMS = speculativeRequestDelayMS;
+      _replicasMap = replicasMap;
     }
 
     @Override
@@ -732,6 +994,19 @@ public class ScatterGatherTest {
       return _numSpeculativeRequests;
     }
 
+    @Override
+    public long getSpeculativeRequestDelayMS() {
+      return _speculativeRequestDelayMS;
+    }
+
+    @Override
+    public List<ServerInstance> getReplicas(SegmentId segmentId) {
+      if (null == _replicasMap) {
+        return null;
+      }
+      return _replicasMap.get(segmentId);
+    }
+
     @Override
     public BucketingSelection getPredefinedSelection() {
       return null;
@@ -770,4 +1045,29 @@ public class ScatterGatherTest {
       return orderedServers.get(0);
     }
   }
+
+  public static class RecordingReplicaSelection extends RoundRobinReplicaSelection {
+    private final Set<ServerInstance> _completedServers =
+        Collections.newSetFromMap(new ConcurrentHashMap<ServerInstance, Boolean>());
+    private final Set<ServerInstance> _cancelledServers =
+        Collections.newSetFromMap(new ConcurrentHashMap<ServerInstance, Boolean>());
+
+    @Override
+    public void onRequestCompleted(ServerInstance server, long latencyMs, boolean isError) {
+      _completedServers.add(server);
+    }
+
+    @Override
+    public void onRequestCancelled(ServerInstance server) {
+      _cancelledServers.add(server);
+    }
+
+    public Set<ServerInstance> getCompletedServers() {
+      return _completedServers;
+    }
+
+    public Set<ServerInstance> getCancelledServers() {
+      return _cancelledServers;
+    }
+  }
 }